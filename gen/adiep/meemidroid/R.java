@@ -145,6 +145,7 @@ public final class R {
         public static final int SpinnerLocationTimeSync=0x7f08005c;
         public static final int SplashScreen=0x7f08005e;
         public static final int StreamInfoTW=0x7f080018;
+        public static final int SyncProgress=0x7f080077;
         public static final int TableLayoutCredentials=0x7f08003e;
         public static final int TableLayoutMain=0x7f080015;
         public static final int TableLayoutMainRow1=0x7f080008;
@@ -218,6 +219,9 @@ public final class R {
     }
     public static final class string {
         public static final int AllertBlockUser=0x7f06003b;
+        public static final int AllertPostQueued=0x7f0600f0;
+        public static final int AllertPostFailed=0x7f0600f1;
+        public static final int AllertPostUnknown=0x7f0600f2;
         public static final int AllertCredentialsOk=0x7f060018;
         public static final int AllertExit=0x7f060012;
         public static final int AllertImageOk=0x7f06001a;
@@ -0,0 +1,215 @@
+package adiep.meemidroid;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+/**
+ * This class represents the memory cache of the decoded images, keyed by URL.
+ * The cache is bounded by the number of bytes used by the bitmaps (not by
+ * the number of images): when it's full, the least recently used images are
+ * evicted. The evicted bitmaps are not recycled, because they could still be
+ * displayed by a view.
+ *
+ * The cache counts its hits, misses and evictions, for diagnostics.
+ *
+ * All the methods are thread safe.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.1
+ */
+public class BitmapCache {
+	/**
+	 * This is the class constructor.
+	 *
+	 * @param MaxSize	the maximum size of the cache (in bytes)
+	 */
+	public BitmapCache(final long MaxSize) {
+		this.MaxSize = MaxSize;
+	}
+
+	/**
+	 * This method creates a cache sized as a fraction of the maximum heap of
+	 * the application.
+	 *
+	 * @param Fraction	the fraction of the heap to use (e.g., 8 means 1/8)
+	 *
+	 * @return	the new cache
+	 */
+	public static BitmapCache createForHeap(final int Fraction) {
+		return new BitmapCache( Runtime.getRuntime().maxMemory() / Fraction );
+	}
+
+	/**
+	 * This method returns the cached image of the input URL, and marks it as
+	 * the most recently used.
+	 *
+	 * @param URL	the URL of the image
+	 *
+	 * @return	the cached image, or null if the image is not cached
+	 */
+	public synchronized Bitmap get(final String URL) {
+		Bitmap B = Bitmaps.get(URL);
+
+		if (null != B) {
+			++Hits;
+		} else {
+			++Misses;
+		}
+
+		return B;
+	}
+
+	/**
+	 * This method returns true if the image of the input URL is cached, without
+	 * changing its usage order nor the statistics.
+	 *
+	 * @param URL	the URL of the image
+	 *
+	 * @return	true if the image is cached
+	 */
+	public synchronized boolean contains(final String URL) {
+		return Bitmaps.containsKey(URL);
+	}
+
+	/**
+	 * This method stores an image, evicting the least recently used ones if
+	 * the cache exceeds its maximum size.
+	 *
+	 * @param URL	the URL of the image
+	 * @param B		the image (null values are not cached)
+	 */
+	public synchronized void put(final String URL, final Bitmap B) {
+		if (null == B) {
+			return;
+		}
+
+		Bitmap Old = Bitmaps.put(URL, B);
+		if (null != Old) {
+			Size -= getSize(Old);
+		}
+
+		Size += getSize(B);
+
+		trimToSize(MaxSize);
+	}
+
+	/**
+	 * This method removes all the cached images.
+	 */
+	public synchronized void clear() {
+		Bitmaps.clear();
+		Size = 0;
+	}
+
+	/**
+	 * This method evicts the least recently used images until the cache uses
+	 * at most the input size.
+	 *
+	 * @param MaxBytes	the size to reach (in bytes)
+	 */
+	public synchronized void trimToSize(final long MaxBytes) {
+		Iterator<Map.Entry<String, Bitmap>> I = Bitmaps.entrySet().iterator();
+
+		while ( Size > MaxBytes && I.hasNext() ) {
+			Size -= getSize( I.next().getValue() );
+			I.remove();
+
+			++Evictions;
+		}
+	}
+
+	/**
+	 * This method halves the cache: it has to be called when the system is
+	 * running low on memory.
+	 */
+	public synchronized void onLowMemory() {
+		trimToSize(Size / 2);
+
+		Log.i("BitmapCache - onLowMemory", toString());
+	}
+
+	/**
+	 * This method returns the current size of the cache.
+	 *
+	 * @return	the size of the cache (in bytes)
+	 */
+	public synchronized long getSize() {
+		return Size;
+	}
+
+	/**
+	 * This method returns the maximum size of the cache.
+	 *
+	 * @return	the maximum size of the cache (in bytes)
+	 */
+	public long getMaxSize() {
+		return MaxSize;
+	}
+
+	/**
+	 * This method returns the number of images found in the cache.
+	 *
+	 * @return	the number of hits
+	 */
+	public synchronized int getHitCount() {
+		return Hits;
+	}
+
+	/**
+	 * This method returns the number of images not found in the cache.
+	 *
+	 * @return	the number of misses
+	 */
+	public synchronized int getMissCount() {
+		return Misses;
+	}
+
+	/**
+	 * This method returns the number of images evicted to respect the maximum
+	 * size of the cache.
+	 *
+	 * @return	the number of evictions
+	 */
+	public synchronized int getEvictionCount() {
+		return Evictions;
+	}
+
+	/**
+	 * This method returns a description of the cache usage, for diagnostics.
+	 *
+	 * @return	the description of the cache usage
+	 */
+	@Override
+	public synchronized String toString() {
+		return "BitmapCache[images=" + Bitmaps.size() + ", size=" + Size + "/" + MaxSize +
+			   ", hits=" + Hits + ", misses=" + Misses + ", evictions=" + Evictions + "]";
+	}
+
+
+	/**
+	 * This method returns the number of bytes used by a bitmap.
+	 *
+	 * @param B	the bitmap
+	 *
+	 * @return	the size of the bitmap (in bytes)
+	 */
+	private static long getSize(final Bitmap B) {
+		return (long)B.getRowBytes() * B.getHeight();
+	}
+
+
+	private final long MaxSize;
+	private long Size = 0;
+
+	// the access order is used to find the least recently used images
+	private final LinkedHashMap<String, Bitmap> Bitmaps = new LinkedHashMap<String, Bitmap>(32, 0.75f, true);
+
+	// statistics
+	private int Hits = 0;
+	private int Misses = 0;
+	private int Evictions = 0;
+}
@@ -0,0 +1,425 @@
+package adiep.meemidroid;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import adiep.meemidroid.engine.communication.HTTPResponseCache;
+import android.util.Log;
+
+/**
+ * This class represents the disk cache of the downloaded images (avatars and
+ * thumbnails). Each image is stored in its own file, named after the SHA-1
+ * digest of its URL, and the cache is bounded by the total size of the files:
+ * when it's full, the least recently used images are removed.
+ *
+ * The index of the cache (the files, their size and their usage order) is
+ * loaded from a journal once, when the cache is created, so the lookups don't
+ * access the file system. Every change is appended to the journal, which is
+ * compacted when it grows too much.
+ *
+ * A new image is written to a temporary file, that is renamed only when it's
+ * complete (see {@link #commit(String, File)}): a partial download is never
+ * returned by the cache.
+ *
+ * All the methods are thread safe.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.2
+ */
+public class DiskCache {
+	/**
+	 * This is the class constructor: it loads the index of the cache.
+	 *
+	 * @param D			the directory of the cache
+	 * @param MaxSize	the maximum size of the cache (in bytes)
+	 */
+	public DiskCache(final File D, final long MaxSize) {
+		this.Dir = D;
+		this.MaxSize = MaxSize;
+
+		if ( !Dir.exists() ) {
+			Dir.mkdirs();
+		}
+
+		if ( !readJournal() ) {
+			rebuild();
+		}
+
+		trim();
+	}
+
+	/**
+	 * This method returns the file storing the image of the input URL, and marks
+	 * it as the most recently used.
+	 *
+	 * @param URL	the URL of the image
+	 *
+	 * @return	the file storing the image, or null if the image is not cached
+	 */
+	public synchronized File get(final String URL) {
+		String Key = HTTPResponseCache.getKey(URL);
+
+		if ( null == Entries.get(Key) ) {
+			return null;
+		}
+
+		appendJournal(READ, Key, -1);
+
+		return new File(Dir, Key);
+	}
+
+	/**
+	 * This method returns a new temporary file where the image of the input URL
+	 * can be written: the image is added to the cache only calling
+	 * {@link #commit(String, File)}.
+	 *
+	 * @param URL	the URL of the image
+	 *
+	 * @return	the temporary file
+	 */
+	public File getTempFile(final String URL) {
+		return new File( Dir, HTTPResponseCache.getKey(URL) + "." + Thread.currentThread().getId() + TEMP_SUFFIX );
+	}
+
+	/**
+	 * This method adds an image to the cache: the temporary file is renamed, and
+	 * the least recently used images are removed if the cache is full.
+	 *
+	 * @param URL	the URL of the image
+	 * @param Temp	the temporary file storing the image (see {@link #getTempFile(String)})
+	 *
+	 * @return	the file storing the image, or null if the image can not be stored
+	 */
+	public synchronized File commit(final String URL, final File Temp) {
+		String Key = HTTPResponseCache.getKey(URL);
+		File F = new File(Dir, Key);
+
+		Long Old = Entries.remove(Key);
+		if (null != Old) {
+			Size -= Old;
+		}
+
+		if ( !Temp.renameTo(F) ) {
+			Temp.delete();
+			F.delete();
+
+			appendJournal(REMOVE, Key, -1);
+
+			return null;
+		}
+
+		long Length = F.length();
+
+		Entries.put(Key, Length);
+		Size += Length;
+
+		appendJournal(CLEAN, Key, Length);
+
+		trim();
+
+		// the new image could be too big for the cache
+		return Entries.containsKey(Key) ? F : null;
+	}
+
+	/**
+	 * This method removes the image of the input URL from the cache (e.g., when
+	 * its file has been deleted or damaged out of the cache).
+	 *
+	 * @param URL	the URL of the image
+	 */
+	public synchronized void remove(final String URL) {
+		String Key = HTTPResponseCache.getKey(URL);
+
+		new File(Dir, Key).delete();
+
+		Long Old = Entries.remove(Key);
+		if (null != Old) {
+			Size -= Old;
+
+			appendJournal(REMOVE, Key, -1);
+		}
+	}
+
+	/**
+	 * This method removes all the images from the cache.
+	 */
+	public synchronized void clear() {
+		closeJournal();
+
+		File[] Files = Dir.listFiles();
+		if (null != Files) {
+			for (File F : Files) {
+				F.delete();
+			}
+		}
+
+		Entries.clear();
+		Size = 0;
+
+		compactJournal();
+	}
+
+	/**
+	 * This method returns the current size of the cache.
+	 *
+	 * @return	the size of the cache (in bytes)
+	 */
+	public synchronized long getSize() {
+		return Size;
+	}
+
+	/**
+	 * This method returns a description of the cache usage, for diagnostics.
+	 *
+	 * @return	the description of the cache usage
+	 */
+	@Override
+	public synchronized String toString() {
+		return "DiskCache[files=" + Entries.size() + ", size=" + Size + "/" + MaxSize + "]";
+	}
+
+
+	/**
+	 * This method loads the index of the cache from the journal: each line
+	 * is an operation ("CLEAN key size", "READ key" or "REMOVE key").
+	 *
+	 * @return	true if the journal has been read
+	 */
+	private boolean readJournal() {
+		File Journal = new File(Dir, JOURNAL);
+
+		if ( !Journal.exists() ) {
+			return false;
+		}
+
+		BufferedReader In = null;
+		try {
+			In = new BufferedReader( new FileReader(Journal) );
+
+			if ( !JOURNAL_HEADER.equals( In.readLine() ) ) {
+				return false;
+			}
+
+			String Line;
+			while ( null != ( Line = In.readLine() ) ) {
+				String[] Parts = Line.split(" ");
+
+				if (CLEAN.equals(Parts[0]) && 3 == Parts.length) {
+					Long Old = Entries.put( Parts[1], Long.valueOf(Parts[2]) );
+
+					Size += Long.parseLong(Parts[2]) - ( (null != Old) ? Old : 0 );
+				} else if (READ.equals(Parts[0]) && 2 == Parts.length) {
+					// the access order is updated
+					Entries.get(Parts[1]);
+				} else if (REMOVE.equals(Parts[0]) && 2 == Parts.length) {
+					Long Old = Entries.remove(Parts[1]);
+
+					if (null != Old) {
+						Size -= Old;
+					}
+				}
+
+				++JournalLines;
+			}
+
+			return true;
+		} catch (IOException ex) {
+			Log.w("DiskCache - readJournal", "Cannot read the journal: the index will be rebuilt", ex);
+		} catch (NumberFormatException ex) {
+			Log.w("DiskCache - readJournal", "Corrupted journal: the index will be rebuilt", ex);
+		} finally {
+			if (null != In) {
+				try {
+					In.close();
+				} catch (IOException ex) {
+					// nothing to do
+				}
+			}
+		}
+
+		Entries.clear();
+		Size = 0;
+		JournalLines = 0;
+
+		return false;
+	}
+
+	/**
+	 * This method rebuilds the index from the files in the cache directory
+	 * (from the least recently modified one). The files not created by the
+	 * cache (e.g., by the previous versions of the application) are removed.
+	 */
+	private void rebuild() {
+		File[] Files = Dir.listFiles();
+
+		if (null != Files) {
+			Arrays.sort(Files, new Comparator<File>() {
+				public int compare(File F1, File F2) {
+					long M1 = F1.lastModified();
+					long M2 = F2.lastModified();
+
+					return (M1 < M2) ? -1 : ( (M1 == M2) ? 0 : 1 );
+				}
+			});
+
+			for (File F : Files) {
+				if ( KEY_LENGTH == F.getName().length() && F.isFile() ) {
+					Entries.put( F.getName(), F.length() );
+					Size += F.length();
+				} else {
+					F.delete();
+				}
+			}
+		}
+
+		compactJournal();
+	}
+
+	/**
+	 * This method removes the least recently used images until the cache fits
+	 * its maximum size.
+	 */
+	private synchronized void trim() {
+		Iterator<Map.Entry<String, Long>> I = Entries.entrySet().iterator();
+
+		while ( Size > MaxSize && I.hasNext() ) {
+			Map.Entry<String, Long> E = I.next();
+
+			new File( Dir, E.getKey() ).delete();
+			Size -= E.getValue();
+			I.remove();
+
+			appendJournal(REMOVE, E.getKey(), -1);
+		}
+	}
+
+	/**
+	 * This method appends an operation to the journal, compacting it if needed.
+	 *
+	 * @param Operation	the operation
+	 * @param Key		the key of the image
+	 * @param Length	the size of the image (only for {@link #CLEAN})
+	 */
+	private void appendJournal(final String Operation, final String Key, final long Length) {
+		if ( JournalLines > JOURNAL_COMPACT_THRESHOLD && JournalLines > 2 * Entries.size() ) {
+			compactJournal();
+			return;
+		}
+
+		try {
+			if (null == JournalWriter) {
+				JournalWriter = new BufferedWriter( new FileWriter(new File(Dir, JOURNAL), true) );
+			}
+
+			JournalWriter.write(Operation);
+			JournalWriter.write(' ');
+			JournalWriter.write(Key);
+
+			if (0 <= Length) {
+				JournalWriter.write(' ');
+				JournalWriter.write( Long.toString(Length) );
+			}
+
+			JournalWriter.write('\n');
+			JournalWriter.flush();
+
+			++JournalLines;
+		} catch (IOException ex) {
+			Log.w("DiskCache - appendJournal", "Cannot write the journal", ex);
+
+			closeJournal();
+		}
+	}
+
+	/**
+	 * This method rewrites the journal with only the current entries (in their
+	 * usage order): the new journal replaces the old one only when it's complete.
+	 */
+	private void compactJournal() {
+		closeJournal();
+
+		File Temp = new File(Dir, JOURNAL + TEMP_SUFFIX);
+
+		Writer Out = null;
+		try {
+			Out = new BufferedWriter( new FileWriter(Temp) );
+
+			Out.write(JOURNAL_HEADER);
+			Out.write('\n');
+
+			for (Map.Entry<String, Long> E : Entries.entrySet()) {
+				Out.write(CLEAN + " " + E.getKey() + " " + E.getValue() + "\n");
+			}
+
+			Out.close();
+			Out = null;
+
+			if ( !Temp.renameTo( new File(Dir, JOURNAL) ) ) {
+				throw new IOException("Cannot replace the journal");
+			}
+
+			JournalLines = Entries.size();
+		} catch (IOException ex) {
+			Log.w("DiskCache - compactJournal", "Cannot write the journal", ex);
+
+			Temp.delete();
+		} finally {
+			if (null != Out) {
+				try {
+					Out.close();
+				} catch (IOException ex) {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method closes the journal, if it's open.
+	 */
+	private void closeJournal() {
+		if (null != JournalWriter) {
+			try {
+				JournalWriter.close();
+			} catch (IOException ex) {
+				// nothing to do
+			}
+
+			JournalWriter = null;
+		}
+	}
+
+
+	private static final String JOURNAL = "journal";
+	private static final String JOURNAL_HEADER = "MeemiDroid.DiskCache 1";
+	private static final int JOURNAL_COMPACT_THRESHOLD = 2000;
+
+	private static final String CLEAN = "CLEAN";
+	private static final String READ = "READ";
+	private static final String REMOVE = "REMOVE";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	// the length of a key (an hexadecimal SHA-1 digest)
+	private static final int KEY_LENGTH = 40;
+
+	private final File Dir;
+	private final long MaxSize;
+	private long Size = 0;
+
+	// the size of the images, by key, from the least recently used one
+	private final LinkedHashMap<String, Long> Entries = new LinkedHashMap<String, Long>(64, 0.75f, true);
+
+	private Writer JournalWriter = null;
+	private int JournalLines = 0;
+}
@@ -1,65 +1,236 @@
 package adiep.meemidroid;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Stack;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
 import android.app.Activity;
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 
 /**
  * This class is an image loader specialized for downloading images starting from an URL.
- * It's use a simple cache on the SDCard in order improve performance. 
- * 
+ * It's use a cache on the SDCard (see {@link DiskCache}) in order improve performance.
+ *
+ * The images are downloaded by a small pool of threads and decoded by another
+ * thread, so a slow download doesn't delay the decoding of the images already
+ * downloaded. The requests are served from the most recent one (i.e., the rows
+ * just showed by a list), and the views waiting for the same image share a
+ * single download.
+ *
  * @author @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 0.5
+ * @version 1.4
  */
 public class ImageLoader {
 	/**
 	 * This method returns the shared instanced object of the ImageLoader class,
-	 * if exists. Otherwise it creates the shared instance.
-	 * 
+	 * if exists. Otherwise it creates the shared instance (it can be created in
+	 * advance by a background thread, since it opens the disk cache).
+	 *
 	 * @return	the shared instanced object of the ImageLoader class
 	 */
-	public static ImageLoader getInstance() {
+	public static synchronized ImageLoader getInstance() {
 		if (null == ILInstance) {
 			ILInstance = new ImageLoader(MeemiDroidApplication.getContext(), MeemiDroidApplication.USERS_AVATARS_CACHE);
 		}
-		
+
 		return ILInstance;
 	}
 
+	/**
+	 * This interface represents an object, other than an {@link ImageView}, that
+	 * displays an image loaded by the {@link ImageLoader} (e.g., an image inside
+	 * a text).
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	public interface Target {
+		/**
+		 * This method returns the width the image is displayed at.
+		 *
+		 * @return	the width of the image (in pixels)
+		 */
+		int getWidth();
+
+		/**
+		 * This method returns the height the image is displayed at.
+		 *
+		 * @return	the height of the image (in pixels)
+		 */
+		int getHeight();
+
+		/**
+		 * This method is called by the UI thread when the image is loaded.
+		 *
+		 * @param B	the loaded image, or null if the image can not be loaded
+		 */
+		void onImageLoaded(Bitmap B);
+	}
+
 	/**
 	 * This method loads the images specified by the input URL into the ImageView specified.
-	 *  
+	 * It has to be called by the UI thread.
+	 *
 	 * @param URL	the URL of the image to load
 	 * @param A		the current Android activity
 	 * @param IV	the ImageView that has to display the image
 	 */
 	public void DisplayImage(String URL, Activity A, ImageView IV) {
-		if (Cache.containsKey(URL))
-			IV.setImageBitmap(Cache.get(URL));
-		else {
-			queuePhoto(URL, A, IV);
+		Bitmap Cached = Cache.get(URL);
+
+		if (null != Cached) {
+			// the view could be still waiting for another image
+			cancel(IV);
+
+			IV.setImageBitmap(Cached);
+		} else {
+			queuePhoto(URL, IV);
 			IV.setImageResource(stub_id);
 		}
 	}
-	
+
+	/**
+	 * This method loads the images specified by the input URL into the target
+	 * specified. It has to be called by the UI thread.
+	 *
+	 * @param URL	the URL of the image to load
+	 * @param T		the target that has to display the image
+	 */
+	public void DisplayImage(String URL, Target T) {
+		Bitmap Cached = Cache.get(URL);
+
+		if (null != Cached) {
+			cancel(T);
+
+			T.onImageLoaded(Cached);
+		} else {
+			queuePhoto(URL, T);
+		}
+	}
+
+	/**
+	 * This method cancels the image requested for the input view, if it's not
+	 * yet displayed. The download is dropped if no other view is waiting for
+	 * the same image.
+	 *
+	 * @param IV	the ImageView
+	 */
+	public void cancel(ImageView IV) {
+		synchronized (Jobs) {
+			detach( IV, Targets.get(IV) );
+		}
+	}
+
+	/**
+	 * This method cancels the image requested for the input target, if it's not
+	 * yet displayed (see {@link #cancel(ImageView)}).
+	 *
+	 * @param T	the target
+	 */
+	public void cancel(Target T) {
+		synchronized (Jobs) {
+			detach( T, Targets.get(T) );
+		}
+	}
+
+	/**
+	 * This method downloads an image that is going to be displayed soon (e.g.,
+	 * in the next rows of a list), so it will be found in the SD cache. The
+	 * prefetched images are downloaded only when no view is waiting for other
+	 * images; an image requested by a view before being prefetched is also
+	 * decoded in memory.
+	 *
+	 * @param URL	the URL of the image (can be null)
+	 */
+	public void prefetch(String URL) {
+		if ( null == URL || 0 == URL.length() || Cache.contains(URL) ) {
+			return;
+		}
+
+		synchronized (Jobs) {
+			if ( !Jobs.containsKey(URL) ) {
+				Job J = new Job(URL);
+				Jobs.put(URL, J);
+
+				append(J);
+				Jobs.notify();
+			}
+		}
+	}
+
 	/**
-	 * This method stops the thread that has to load the image from an URL. 
+	 * This method cancels all the prefetches not yet started (see
+	 * {@link #prefetch(String)}).
+	 */
+	public void cancelPrefetch() {
+		synchronized (Jobs) {
+			Job J = Head;
+
+			while (null != J) {
+				Job Next = J.Next;
+
+				if ( J.Views.isEmpty() ) {
+					unlink(J);
+					Jobs.remove(J.Url);
+				}
+
+				J = Next;
+			}
+		}
+	}
+
+	/**
+	 * This method releases part of the memory used by the decoded images: it
+	 * has to be called when the system is running low on memory. Nothing is
+	 * done if the shared instance has not been created yet.
+	 */
+	public static void onLowMemory() {
+		if (null != ILInstance) {
+			ILInstance.Cache.onLowMemory();
+		}
+	}
+
+	/**
+	 * This method returns the memory cache of the decoded images (e.g., to
+	 * read its statistics).
+	 *
+	 * @return	the memory cache
+	 */
+	public BitmapCache getMemoryCache() {
+		return Cache;
+	}
+
+	/**
+	 * This method stops the threads that have to load the images from an URL.
 	 */
 	public void stopThread() {
-		photoLoaderThread.interrupt();
+		for (Thread T : Downloaders) {
+			T.interrupt();
+		}
+
+		Decoder.shutdownNow();
 	}
-	
+
 	/**
 	 * This method clears the cache.
 	 */
@@ -68,202 +239,552 @@ public class ImageLoader {
 		Cache.clear();
 
 		// clear SD cache
-		File[] files = CacheDir.listFiles();
-		for (File f : files)
-			f.delete();
+		DiskCache.clear();
 	}
-	
-	
-	private void queuePhoto(String url, Activity activity, ImageView imageView) {
-		// This ImageView may be used for other images before. So there may be
-		// some old tasks in the queue. We need to discard them.
-		photosQueue.Clean(imageView);
-		PhotoToLoad p = new PhotoToLoad(url, imageView);
-		synchronized (photosQueue.photosToLoad) {
-			photosQueue.photosToLoad.push(p);
-			photosQueue.photosToLoad.notifyAll();
-		}
-
-		// start thread if it's not started yet
-		if (photoLoaderThread.getState() == Thread.State.NEW)
-			photoLoaderThread.start();
+
+
+	/**
+	 * This method adds a request for an image: if the image is already
+	 * requested, the view waits for the same download.
+	 *
+	 * @param url		the URL of the image
+	 * @param imageView	the view (or the {@link Target}) that has to display the image
+	 */
+	private void queuePhoto(String url, Object imageView) {
+		synchronized (Jobs) {
+			Job Old = Targets.get(imageView);
+
+			if ( null != Old && Old.Url.equals(url) ) {
+				return;
+			}
+
+			// This ImageView may be used for other images before: it doesn't wait for them anymore
+			detach(imageView, Old);
+
+			Job J = Jobs.get(url);
+
+			if (null == J) {
+				J = new Job(url);
+				Jobs.put(url, J);
+
+				push(J);
+				Jobs.notify();
+			} else if (J.IsQueued) {
+				// the most recent requests are served first
+				unlink(J);
+				push(J);
+			}
+
+			// the image is decoded for the biggest view waiting for it
+			int[] Size = getTargetSize(imageView);
+			J.ReqWidth = Math.max(J.ReqWidth, Size[0]);
+			J.ReqHeight = Math.max(J.ReqHeight, Size[1]);
+
+			J.Views.add(imageView);
+			Targets.put(imageView, J);
+		}
 	}
 
-	private Bitmap getBitmap(String url) {
-		// I identify images by hashcode. Not a perfect solution, good for the
-		// demo.
-		String filename = String.valueOf(url.hashCode());
-		File f = new File(CacheDir, filename);
+	/**
+	 * This method detaches a view from the job it's waiting for: if no view is
+	 * waiting for the job anymore and it's not yet started, it's dropped.
+	 * It has to be called holding the lock of {@link #Jobs}.
+	 *
+	 * @param IV	the view
+	 * @param J		the job (can be null)
+	 */
+	private void detach(final Object IV, final Job J) {
+		if (null == J) {
+			return;
+		}
+
+		J.Views.remove(IV);
+		Targets.remove(IV);
+
+		if ( J.IsQueued && J.Views.isEmpty() ) {
+			unlink(J);
+			Jobs.remove(J.Url);
+		}
+	}
 
+	/**
+	 * This method adds a job on top of the queue (it will be the next one).
+	 * It has to be called holding the lock of {@link #Jobs}.
+	 *
+	 * @param J	the job
+	 */
+	private void push(final Job J) {
+		J.Next = Head;
+		J.Prev = null;
+
+		if (null != Head) {
+			Head.Prev = J;
+		} else {
+			Tail = J;
+		}
+
+		Head = J;
+		J.IsQueued = true;
+	}
+
+	/**
+	 * This method adds a job at the bottom of the queue (it will be served after
+	 * all the others). It has to be called holding the lock of {@link #Jobs}.
+	 *
+	 * @param J	the job
+	 */
+	private void append(final Job J) {
+		J.Prev = Tail;
+		J.Next = null;
+
+		if (null != Tail) {
+			Tail.Next = J;
+		} else {
+			Head = J;
+		}
+
+		Tail = J;
+		J.IsQueued = true;
+	}
+
+	/**
+	 * This method removes a job from the queue, wherever it is.
+	 * It has to be called holding the lock of {@link #Jobs}.
+	 *
+	 * @param J	the job
+	 */
+	private void unlink(final Job J) {
+		if (null != J.Prev) {
+			J.Prev.Next = J.Next;
+		} else {
+			Head = J.Next;
+		}
+
+		if (null != J.Next) {
+			J.Next.Prev = J.Prev;
+		} else {
+			Tail = J.Prev;
+		}
+
+		J.Prev = null;
+		J.Next = null;
+		J.IsQueued = false;
+	}
+
+	/**
+	 * This method waits for the next job: the job is removed from the queue,
+	 * but other views can still wait for it.
+	 *
+	 * @return	the next job
+	 *
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	private Job take() throws InterruptedException {
+		synchronized (Jobs) {
+			while (null == Head) {
+				Jobs.wait();
+			}
+
+			Job J = Head;
+			unlink(J);
+
+			return J;
+		}
+	}
+
+	/**
+	 * This method returns the encoded input image: the image is read from the
+	 * SD cache, or downloaded if it's not there yet. The downloaded bytes are
+	 * written to the SD cache while they are read from the network, so the
+	 * image can be decoded without reading it back from the file.
+	 *
+	 * @param url	the URL of the image
+	 *
+	 * @return	the encoded image, or null if the image can not be read
+	 */
+	private ImageData getImageData(String url) {
 		// from SD cache
-		Bitmap b = decodeFile(f);
-		if (b != null)
-			return b;
+		File Cached = DiskCache.get(url);
+		if (null != Cached) {
+			ImageData Data = readFile(Cached);
 
-		// from web
+			if (null != Data) {
+				return Data;
+			}
+
+			// the file has been deleted (or damaged) out of the cache: it's downloaded again
+			DiskCache.remove(url);
+		}
+
+		// from web: the image is added to the SD cache only when it's complete
+		File f = DiskCache.getTempFile(url);
 		try {
-			Bitmap bitmap = null;
-			InputStream is = new URL(url).openStream();
-			OutputStream os = new FileOutputStream(f);
-			Utility.CopyStream(is, os);
-			os.close();
-			bitmap = decodeFile(f);
-			return bitmap;
+			URLConnection Connection = new URL(url).openConnection();
+
+			InputStream is = Connection.getInputStream();
+			try {
+				ImageData Data = new ImageData( Math.max(Connection.getContentLength(), COPY_BUFFER_SIZE) );
+
+				OutputStream os = new FileOutputStream(f);
+				try {
+					byte[] Buffer = new byte[COPY_BUFFER_SIZE];
+
+					int Count;
+					while ( -1 != ( Count = is.read(Buffer) ) ) {
+						Data.write(Buffer, 0, Count);
+						os.write(Buffer, 0, Count);
+					}
+				} finally {
+					os.close();
+				}
+
+				DiskCache.commit(url, f);
+
+				return Data;
+			} finally {
+				is.close();
+			}
 		} catch (Exception ex) {
-			ex.printStackTrace();
+			Log.d("ImageLoader - getImageData", "Cannot download the image " + url, ex);
+
+			f.delete();
+
 			return null;
 		}
 	}
 
-	// decodes image and scales it to reduce memory consumption
-	private Bitmap decodeFile(File f) {
+	/**
+	 * This method reads a cached image, with a single read if possible.
+	 *
+	 * @param f	the file storing the image
+	 *
+	 * @return	the encoded image, or null if the file can not be read
+	 */
+	private static ImageData readFile(File f) {
+		int Length = (int)f.length();
+
+		if (0 >= Length) {
+			return null;
+		}
+
+		InputStream In = null;
 		try {
-			// decode image size
-			BitmapFactory.Options o = new BitmapFactory.Options();
-			o.inJustDecodeBounds = true;
-			BitmapFactory.decodeStream(new FileInputStream(f), null, o);
-
-			// Find the correct scale value. It should be the power of 2.
-			final int REQUIRED_SIZE = 64;
-			int width_tmp = o.outWidth, height_tmp = o.outHeight;
-			int scale = 1;
-			while (true) {
-				if (width_tmp / 2 < REQUIRED_SIZE
-						|| height_tmp / 2 < REQUIRED_SIZE)
-					break;
-				width_tmp /= 2;
-				height_tmp /= 2;
-				scale++;
-			}
+			In = new FileInputStream(f);
+
+			ImageData Data = new ImageData(Length);
+			Data.readFrom(In);
 
-			// decode with inSampleSize
-			BitmapFactory.Options o2 = new BitmapFactory.Options();
-			o2.inSampleSize = scale;
-			return BitmapFactory.decodeStream(new FileInputStream(f), null, o2);
-		} catch (FileNotFoundException e) {
-			// nothing to do
+			return Data;
+		} catch (IOException ex) {
+			Log.d("ImageLoader - readFile", "Cannot read the image " + f, ex);
+		} finally {
+			Utility.closeStream(In);
 		}
+
 		return null;
 	}
 
-	// Task for the queue
-	private class PhotoToLoad {
-		public String url;
-		public ImageView imageView;
+	/**
+	 * This method returns true if a view is waiting for the input job.
+	 *
+	 * @param J	the job
+	 *
+	 * @return	true if the image of the job has to be displayed
+	 */
+	private boolean isWaited(final Job J) {
+		synchronized (Jobs) {
+			return !J.Views.isEmpty();
+		}
+	}
 
-		public PhotoToLoad(String u, ImageView i) {
-			url = u;
-			imageView = i;
+	/**
+	 * This method decodes an image and scales it to reduce memory consumption:
+	 * the image is sampled to the size of the views waiting for it.
+	 *
+	 * @param Data	the encoded image
+	 * @param J		the job of the image
+	 *
+	 * @return	the decoded image, or null if the image can not be decoded
+	 */
+	private Bitmap decode(ImageData Data, Job J) {
+		int Width, Height;
+		synchronized (Jobs) {
+			Width = J.ReqWidth;
+			Height = J.ReqHeight;
 		}
+
+		return Utility.decodeSampledImage(Data.getBuffer(), Data.size(), Width, Height, true);
 	}
 
-	// stores list of photos to download
-	private class PhotosQueue {
-		private Stack<PhotoToLoad> photosToLoad = new Stack<PhotoToLoad>();
+	/**
+	 * This method returns the size an image has to be decoded for a view: the
+	 * view size if it's known (i.e., the view has been laid out, or it has a
+	 * fixed size), otherwise the default size of the avatars.
+	 *
+	 * @param Dest	the view (or the {@link Target})
+	 *
+	 * @return	the width and the height for the view
+	 */
+	private static int[] getTargetSize(final Object Dest) {
+		if (Dest instanceof Target) {
+			return new int[]{ ((Target)Dest).getWidth(), ((Target)Dest).getHeight() };
+		}
 
-		// removes all instances of this ImageView
-		public void Clean(ImageView image) {
-			for (int j = 0; j < photosToLoad.size();) {
-				if (photosToLoad.get(j).imageView == image)
-					photosToLoad.remove(j);
-				else
-					++j;
+		ImageView IV = (ImageView)Dest;
+
+		int Width = IV.getWidth();
+		int Height = IV.getHeight();
+
+		ViewGroup.LayoutParams Params = IV.getLayoutParams();
+
+		if (0 >= Width && null != Params) {
+			Width = Params.width;
+		}
+
+		if (0 >= Height && null != Params) {
+			Height = Params.height;
+		}
+
+		int Default = (int)( DEFAULT_SIZE_DIP * IV.getResources().getDisplayMetrics().density );
+
+		return new int[]{ (0 < Width) ? Width : Default, (0 < Height) ? Height : Default };
+	}
+
+	/**
+	 * This private class represents the request of an image, shared by all the
+	 * views waiting for it. The queued jobs are linked together, so a job can be
+	 * removed from the queue in constant time.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class Job {
+		public Job(final String U) {
+			this.Url = U;
+		}
+
+		public final String Url;
+		public final List<Object> Views = new ArrayList<Object>(1);
+
+		public int ReqWidth = 0;
+		public int ReqHeight = 0;
+
+		public boolean IsQueued = false;
+		public Job Prev = null;
+		public Job Next = null;
+	}
+
+	/**
+	 * This private class represents an encoded image in memory: its buffer is
+	 * decoded directly, without copying it.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class ImageData extends ByteArrayOutputStream {
+		public ImageData(final int Size) {
+			super(Size);
+		}
+
+		public byte[] getBuffer() {
+			return buf;
+		}
+
+		public void readFrom(final InputStream In) throws IOException {
+			while (true) {
+				if (count == buf.length) {
+					// the file is bigger than expected: the buffer is enlarged
+					int B = In.read();
+
+					if (-1 == B) {
+						return;
+					}
+
+					write(B);
+				}
+
+				int Count = In.read(buf, count, buf.length - count);
+
+				if (-1 == Count) {
+					return;
+				}
+
+				count += Count;
 			}
 		}
 	}
 
-	private class PhotosLoader extends Thread {
+	/**
+	 * This private class represents a download thread: it takes the most recent
+	 * job, downloads the image (if it's not in the SD cache) and hands it to
+	 * the decoding thread.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private final class PhotosLoader extends Thread {
+		public PhotosLoader(final int Index) {
+			super("MeemiDroid-ImageLoader-" + Index);
+		}
+
+		@Override
 		public void run() {
+			// low priority: in this way it will not affect the UI performance
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
 			try {
-				while (true) {
-					// thread waits until there are any images to load in the
-					// queue
-					if (photosQueue.photosToLoad.size() == 0)
-						synchronized (photosQueue.photosToLoad) {
-							photosQueue.photosToLoad.wait();
-						}
-					if (photosQueue.photosToLoad.size() != 0) {
-						PhotoToLoad photoToLoad;
-						synchronized (photosQueue.photosToLoad) {
-							photoToLoad = photosQueue.photosToLoad.pop();
-						}
-						Bitmap bmp = getBitmap(photoToLoad.url);
-						Cache.put(photoToLoad.url, bmp);
-						if (((String) photoToLoad.imageView.getTag())
-								.equals(photoToLoad.url)) {
-							BitmapDisplayer bd = new BitmapDisplayer(bmp,
-									photoToLoad.imageView);
-							Activity a = (Activity) photoToLoad.imageView
-									.getContext();
-							a.runOnUiThread(bd);
-						}
-					}
-					if (Thread.interrupted())
-						break;
+				while ( !isInterrupted() ) {
+					Job J = take();
+
+					ImageData Data = getImageData(J.Url);
+
+					Decoder.execute( new PhotoDecoder(J, Data) );
 				}
 			} catch (InterruptedException e) {
 				// allow thread to exit
+			} catch (RejectedExecutionException e) {
+				// the decoder has been stopped
 			}
 		}
 	}
 
-	// Used to display bitmap in the UI thread
-	private class BitmapDisplayer implements Runnable {
-		Bitmap bitmap;
-		ImageView imageView;
+	/**
+	 * This private class decodes a downloaded image, caches it and hands it to
+	 * the UI thread.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private final class PhotoDecoder implements Runnable {
+		public PhotoDecoder(final Job J, final ImageData D) {
+			this.CurrentJob = J;
+			this.Data = D;
+		}
+
+		public void run() {
+			Bitmap B = null;
 
-		public BitmapDisplayer(Bitmap b, ImageView i) {
-			bitmap = b;
-			imageView = i;
+			// a prefetched image is decoded only if a view is waiting for it
+			if ( null != Data && isWaited(CurrentJob) ) {
+				B = decode(Data, CurrentJob);
+			}
+
+			Cache.put(CurrentJob.Url, B);
+
+			UIHandler.post( new BitmapDisplayer(CurrentJob, B) );
+		}
+
+		private final Job CurrentJob;
+		private final ImageData Data;
+	}
+
+	// Used to display bitmap in the UI thread
+	private final class BitmapDisplayer implements Runnable {
+		public BitmapDisplayer(final Job J, final Bitmap B) {
+			this.CurrentJob = J;
+			this.MyBitmap = B;
 		}
 
 		public void run() {
-			if (bitmap != null)
-				imageView.setImageBitmap(bitmap);
-			else
-				imageView.setImageResource(stub_id);
+			List<Object> Views = new ArrayList<Object>(1);
+
+			synchronized (Jobs) {
+				if (Jobs.get(CurrentJob.Url) == CurrentJob) {
+					Jobs.remove(CurrentJob.Url);
+				}
+
+				for (Object IV : CurrentJob.Views) {
+					if (Targets.get(IV) == CurrentJob) {
+						Targets.remove(IV);
+						Views.add(IV);
+					}
+				}
+
+				CurrentJob.Views.clear();
+			}
+
+			for (Object Dest : Views) {
+				if (Dest instanceof Target) {
+					((Target)Dest).onImageLoaded(MyBitmap);
+					continue;
+				}
+
+				ImageView IV = (ImageView)Dest;
+
+				if (MyBitmap != null)
+					IV.setImageBitmap(MyBitmap);
+				else
+					IV.setImageResource(stub_id);
+			}
 		}
+
+		private final Job CurrentJob;
+		private final Bitmap MyBitmap;
 	}
-	
+
 	/**
-	 * This is the ImageLoader constructor. It setups the cache directory and prepares 
-	 * a support thread to download images.
-	 *  
+	 * This is the ImageLoader constructor. It setups the cache directory and starts
+	 * the support threads to download and decode images.
+	 *
 	 * @param C	the Android application context
 	 * @param CacheDirPath	plausible directory on the SDCard to use as cache
 	 */
 	private ImageLoader(Context C, final String CacheDirPath) {
-		// Make the background thread low priority. This way it will not affect
-		// the UI performance
-		photoLoaderThread.setPriority(Thread.NORM_PRIORITY - 1);
-
 		// Find the dir to save cached images
+		File CacheDir;
 		if ( android.os.Environment.getExternalStorageState().equals(android.os.Environment.MEDIA_MOUNTED) ) {
 			CacheDir = new File(android.os.Environment.getExternalStorageDirectory(), CacheDirPath);
 		} else {
-			CacheDir = C.getCacheDir();
+			CacheDir = new File(C.getCacheDir(), CacheDirPath);
 		}
-		
-		if ( !CacheDir.exists() ) {
-			CacheDir.mkdirs();
+
+		DiskCache = new DiskCache(CacheDir, DISK_CACHE_SIZE);
+
+		Decoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable R) {
+				Thread T = new Thread(R, "MeemiDroid-ImageDecoder");
+				T.setPriority(Thread.NORM_PRIORITY - 1);
+
+				return T;
+			}
+		});
+
+		for (int i = 0; i < Downloaders.length; ++i) {
+			Downloaders[i] = new PhotosLoader(i);
+			Downloaders[i].start();
 		}
 	}
-	
-	// the simplest in-memory cache implementation. This should be replaced with
-	// something like SoftReference or BitmapOptions.inPurgeable(since 1.6)
-	private HashMap<String, Bitmap> Cache = new HashMap<String, Bitmap>();
-
-	private File CacheDir;
-	
-	private PhotosQueue photosQueue = new PhotosQueue();
-	
-	private PhotosLoader photoLoaderThread = new PhotosLoader();
-	
+
+	// the decoded images, bounded by a fraction of the heap
+	private final BitmapCache Cache = BitmapCache.createForHeap(MEMORY_CACHE_HEAP_FRACTION);
+
+	// the downloaded images, bounded by size
+	private final DiskCache DiskCache;
+
+	// the requested images, by URL (all the fields below are guarded by its lock)
+	private final Map<String, Job> Jobs = new HashMap<String, Job>();
+
+	// the job each view (or target) is waiting for
+	private final Map<Object, Job> Targets = new HashMap<Object, Job>();
+
+	// the top of the queue of the jobs not yet started (the most recent one)
+	private Job Head = null;
+
+	// the bottom of the queue (the prefetched images)
+	private Job Tail = null;
+
+	private final Thread[] Downloaders = new Thread[DOWNLOAD_THREADS];
+	private final ExecutorService Decoder;
+
+	private final Handler UIHandler = new Handler( Looper.getMainLooper() );
+
 	/**
 	 * This is the stub images used when images are not yet loaded.
 	 */
 	private final static int stub_id = R.drawable.stub;
-	
-	
+
+	private static final int MEMORY_CACHE_HEAP_FRACTION = 8;
+	private static final long DISK_CACHE_SIZE = 4 * 1024 * 1024;	// bytes
+	private static final int DOWNLOAD_THREADS = 3;
+	private static final int DEFAULT_SIZE_DIP = 48;
+	private static final int COPY_BUFFER_SIZE = 8192;
+
+
 	private static ImageLoader ILInstance = null;
 }
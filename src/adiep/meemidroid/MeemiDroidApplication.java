@@ -5,6 +5,8 @@ import adiep.meemidroid.engine.MeemiEngine;
 import adiep.meemidroid.engine.MeemiPreferences;
 import android.app.Application;
 import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
 
 /**
  * This class represents is an extension of the Android Application
@@ -12,7 +14,7 @@ import android.content.Context;
  * object instance with a life equal to the application one.
  * 
  * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 0.3
+ * @version 0.6
  */
 public class MeemiDroidApplication extends Application {
 	
@@ -23,18 +25,72 @@ public class MeemiDroidApplication extends Application {
 	 * this function directly impacts the performance of starting the first activity,
 	 * service, or receiver in a process. If you override this method,
 	 * be sure to call super.onCreate(). 
+	 * 
+	 * Only the preferences and the engine are created here (the preferences
+	 * first, since the engine uses them): the rest of the initialization is done
+	 * when the main thread is idle for the first time, i.e. after the first frame
+	 * (see {@link #onFirstIdle()}). Each phase is measured by {@link StartupPhases}.
 	 */
 	@Override
 	public void onCreate() {
+		final long Start = StartupPhases.begin();
+		
 		super.onCreate();
 		
 		ApplicationContext = this;
 		
-		Engine = new MeemiEngine();
+		long PhaseStart = StartupPhases.begin();
 		
 		Prefs = new MeemiPreferences();
 		Prefs.load();
 		
+		StartupPhases.end("preferences", PhaseStart);
+		
+		PhaseStart = StartupPhases.begin();
+		
+		Engine = new MeemiEngine();
+		
+		StartupPhases.end("engine", PhaseStart);
+		
+		Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+			public boolean queueIdle() {
+				StartupPhases.end("first frame", Start);
+				
+				onFirstIdle();
+				
+				return false;
+			}
+		});
+		
+		StartupPhases.end("Application.onCreate", Start);
+	}
+	
+	/**
+	 * Called when the whole system is running low on memory: the memory
+	 * caches are trimmed, and the network statistics are logged.
+	 */
+	@Override
+	public void onLowMemory() {
+		super.onLowMemory();
+		
+		ImageLoader.onLowMemory();
+		MeemiTextCache.onLowMemory();
+		
+		if (null != Engine) {
+			Engine.onLowMemory();
+		}
+	}
+	
+	/**
+	 * This method completes the initialization of the application, once the
+	 * first frame has been showed: the location synchronization is started (so
+	 * the location engine is created), and the avatar cache is cleaned in
+	 * background if needed.
+	 * It's called by the UI thread, since the location updates are delivered to it.
+	 */
+	private void onFirstIdle() {
+		long PhaseStart = StartupPhases.begin();
+		
 		if ( Prefs.isLocationEnabled() ) {
 			Engine.setCurrentLocation( Prefs.getLastKnowLocation() );
 			Engine.startLocationSync( Prefs.getLocationSyncMin() );
@@ -42,6 +98,8 @@ public class MeemiDroidApplication extends Application {
 			Engine.stopLocationSync();
 		}
 		
+		StartupPhases.end("location sync", PhaseStart);
+		
 		if ( Prefs.isAvatarCacheToClean() ) {
 			Engine.clearAvatarCache(false, ApplicationContext);
 		}
@@ -0,0 +1,702 @@
+package adiep.meemidroid;
+
+/**
+ * This class compiles a message in Meemi format to HTML or to clean text (i.e., the
+ * light HTML displayed by a {@link android.widget.TextView}).
+ *
+ * The message is compiled in two linear steps, without building intermediate strings:
+ * (a) the markup delimiters ([b], **, __, [l:url|text], ...) are resolved into a table
+ *     with a mark for each character of the message;
+ * (b) the message is written once into the output, replacing the resolved delimiters
+ *     and recognizing the ScreenNames (e.g., @capobecchino) and the urls on the way.
+ *
+ * The delimiters are resolved as the previous chain of regular expressions did: a tag
+ * is closed by the first closing delimiter that follows it (on the same line), the
+ * ScreenNames are not searched into the links and into the urls, and so on.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.1
+ */
+public final class MeemiMarkup {
+	/**
+	 * This method transforms a message in Meemi format to HTML format.
+	 *
+	 * @param Meemi	the message to transform
+	 *
+	 * @return	the HTML version of the message
+	 */
+	public static String toHTML(final String Meemi) {
+		return new MeemiMarkup(Meemi, true).compile();
+	}
+
+	/**
+	 * This method transforms a message in Meemi format to a clean text message
+	 * that can be inserted into a {@link android.widget.TextView}.
+	 *
+	 * @param Meemi	the message to transform
+	 *
+	 * @return	the clean version of the message
+	 */
+	public static String toCleanText(final String Meemi) {
+		return new MeemiMarkup(Meemi, false).compile();
+	}
+
+
+	/**
+	 * This is the class constructor.
+	 *
+	 * @param Meemi	the message to transform
+	 * @param HTML	true to produce HTML, false to produce clean text
+	 */
+	private MeemiMarkup(final String Meemi, final boolean HTML) {
+		this.Source = Meemi;
+		this.Length = Meemi.length();
+		this.HTML = HTML;
+
+		this.Marks = new byte[Length];
+		this.Out = new StringBuilder( Length + (Length >> 1) );
+	}
+
+	/**
+	 * This method compiles the message.
+	 *
+	 * @return	the compiled message
+	 */
+	private String compile() {
+		findTags();
+
+		if (HTML) {
+			// the links with an upper case "L" are not links, but their content is
+			// protected from the ScreenNames anyway
+			findLinks(true);
+			findLinks(false);
+
+			findUrls();
+
+			emit(0, Length, LINKS | URLS | SCREEN_NAMES);
+		} else {
+			findLinks(false);
+
+			emit(0, Length, LINKS | SCREEN_NAMES);
+		}
+
+		return Out.toString();
+	}
+
+	/**
+	 * This method resolves the delimiters of the tags (e.g., [b] and [/b]): an opening
+	 * delimiter is closed by the first closing delimiter that follows it on the same
+	 * line, as the lazy ".*?" of a regular expression. The tags of different kinds
+	 * are resolved independently, since their delimiters can not overlap.
+	 */
+	private void findTags() {
+		boolean CheckLines = hasLineSeparators();
+
+		for (int t = 0; t < TAGS.length; ++t) {
+			String Opening = TAGS[t][0];
+			String Closing = TAGS[t][1];
+
+			int From = 0;
+			while (true) {
+				int Open = Source.indexOf(Opening, From);
+				if (0 > Open) {
+					break;
+				}
+
+				int Close = Source.indexOf( Closing, Open + Opening.length() );
+				if (0 > Close) {
+					// no other opening delimiter can be closed
+					break;
+				}
+
+				if ( CheckLines && hasLineSeparators(Open + Opening.length(), Close) ) {
+					From = Open + 1;
+					continue;
+				}
+
+				mark( Open, Opening.length(), 2 * t + 1 );
+				mark( Close, Closing.length(), 2 * t + 2 );
+
+				From = Close + Closing.length();
+			}
+		}
+	}
+
+	/**
+	 * This method resolves the links ([l:url|text]): the text of a link ends with
+	 * the first ']' that doesn't belong to a resolved tag delimiter.
+	 *
+	 * @param IgnoreCase	true to look for the links only to protect their content
+	 * 						from the ScreenNames (they are not transformed)
+	 */
+	private void findLinks(final boolean IgnoreCase) {
+		int From = 0;
+
+		while (true) {
+			int Open = indexOfLink(From, IgnoreCase);
+			if (0 > Open) {
+				return;
+			}
+
+			int Bar = Source.indexOf('|', Open + 3);
+			if (0 > Bar) {
+				return;
+			}
+
+			int End = Bar + 1;
+			while ( End < Length && ( ']' != Source.charAt(End) || isTag(End) ) ) {
+				++End;
+			}
+
+			if (End == Length) {
+				return;
+			}
+
+			if (IgnoreCase) {
+				protect(Open, End + 1);
+			} else {
+				addLink(Open, Bar, End);
+			}
+
+			Marks[Open] |= LINK;
+
+			From = End + 1;
+		}
+	}
+
+	/**
+	 * This method protects the urls (case insensitive) from the ScreenNames.
+	 */
+	private void findUrls() {
+		int i = 0;
+
+		while (i < Length) {
+			int End = isProtected(i) ? -1 : matchUrl(i, true);
+
+			if (0 <= End) {
+				protect(i, End);
+				i = End;
+			} else {
+				++i;
+			}
+		}
+	}
+
+	/**
+	 * This method writes a part of the message into the output.
+	 *
+	 * @param From	the beginning of the part (inclusive)
+	 * @param To	the end of the part (exclusive)
+	 * @param Rules	the rules applied to the part ({@link #LINKS}, {@link #URLS} and {@link #SCREEN_NAMES})
+	 */
+	private void emit(final int From, final int To, final int Rules) {
+		int i = From;
+
+		while (i < To) {
+			int Tag = Marks[i] & TAG_MASK;
+
+			if (0 != Tag) {
+				Out.append( getTagOutput(Tag) );
+				i += getTagLength(Tag);
+				continue;
+			}
+
+			if ( 0 != (Rules & LINKS) && 0 != (Marks[i] & LINK) ) {
+				int L = getLink(i);
+
+				if (0 <= L) {
+					emitLink(L);
+					i = Links[3 * L + 2] + 1;
+					continue;
+				}
+			}
+
+			char C = Source.charAt(i);
+
+			if ( 0 != (Rules & URLS) && ('h' == C || 'f' == C || 'm' == C) ) {
+				int End = matchUrl(i, false);
+
+				if (0 <= End) {
+					emitUrl(i, End);
+					i = End;
+					continue;
+				}
+			}
+
+			if ( 0 != (Rules & SCREEN_NAMES) && '@' == C ) {
+				int End = matchScreenName(i);
+
+				if (0 <= End) {
+					emitScreenName(i + 1, End);
+					i = End;
+					continue;
+				}
+			}
+
+			switch (C) {
+			case '%':
+				// strange (and dangerous) chars...
+				Out.append("&#037;");
+				break;
+			case '\r':
+				if ( i + 1 < To && '\n' == Source.charAt(i + 1) ) {
+					++i;
+				}
+				Out.append(HTML ? "<br />" : " ");
+				break;
+			case '\n':
+				Out.append(HTML ? "<br />" : " ");
+				break;
+			default:
+				Out.append(C);
+			}
+
+			++i;
+		}
+	}
+
+	/**
+	 * This method writes a link into the output.
+	 * TODO: change link to meemi post view activity (when ready :O) for links to Meemi world
+	 *
+	 * @param L	the index of the link
+	 */
+	private void emitLink(final int L) {
+		int Open = Links[3 * L];
+		int Bar = Links[3 * L + 1];
+		int End = Links[3 * L + 2];
+
+		if (HTML) {
+			Out.append("<a class=\"link\" href=\"");
+			emit(Open + 3, Bar, 0);
+			Out.append("\" title=\"go to ");
+			emit(Bar + 1, End, 0);
+			Out.append("\">");
+			emit(Bar + 1, End, 0);
+			Out.append("</a>");
+		} else {
+			Out.append("<i>");
+			emit(Bar + 1, End, SCREEN_NAMES);
+			Out.append("</i>");
+		}
+	}
+
+	/**
+	 * This method writes an url into the output.
+	 *
+	 * @param Start	the beginning of the url
+	 * @param End	the end of the url (see {@link #matchUrl(int, boolean)})
+	 */
+	private void emitUrl(final int Start, final int End) {
+		int Address = Source.indexOf("://", Start) + 3;
+
+		Out.append("<a class=\"link\" href=\"");
+		Out.append(Source, Start, Address);
+		appendUrl(Address, End);
+		Out.append("\" title=\"go to ");
+		appendUrl(Address, End);
+		Out.append("\">");
+		appendUrl(Address, End);
+		Out.append("</a>");
+
+		// the url ends in the middle of the encoded '%'
+		if ( '%' == Source.charAt(End - 1) ) {
+			Out.append(';');
+		}
+	}
+
+	/**
+	 * This method writes a part of an url into the output.
+	 *
+	 * @param From	the beginning of the part (inclusive)
+	 * @param To	the end of the part (exclusive)
+	 */
+	private void appendUrl(final int From, final int To) {
+		for (int i = From; i < To; ++i) {
+			char C = Source.charAt(i);
+
+			if ('%' == C) {
+				Out.append("&#037");
+			} else {
+				Out.append(C);
+			}
+		}
+	}
+
+	/**
+	 * This method writes a ScreenName into the output.
+	 *
+	 * @param From	the beginning of the ScreenName (after the '@')
+	 * @param To	the end of the ScreenName (exclusive)
+	 */
+	private void emitScreenName(final int From, final int To) {
+		if (HTML) {
+			Out.append(" <a class=\"link\" onClick=\"window.account.clickOnAccount('");
+			appendWord(From, To);
+			Out.append("')\" href='#'>@");
+			appendWord(From, To);
+			Out.append("</a>");
+		} else {
+			Out.append(" <i>@");
+			appendWord(From, To);
+			Out.append("</i>");
+		}
+	}
+
+	/**
+	 * This method writes the characters of a ScreenName into the output, skipping the
+	 * tag delimiters removed from the clean text (see {@link #matchScreenName(int)}).
+	 *
+	 * @param From	the beginning of the ScreenName (inclusive)
+	 * @param To	the end of the ScreenName (exclusive)
+	 */
+	private void appendWord(final int From, final int To) {
+		int i = From;
+
+		while (i < To) {
+			int Tag = Marks[i] & TAG_MASK;
+
+			if (0 != Tag) {
+				i += getTagLength(Tag);
+			} else {
+				Out.append( Source.charAt(i++) );
+			}
+		}
+	}
+
+	/**
+	 * This method checks if an url (e.g., http://meemi.com) begins in the input position.
+	 * The url ends with a space or with one of the chars '<', ';' and '|' of the
+	 * transformed message: e.g., an url ends with a resolved tag delimiter, and
+	 * it ends in the middle of an encoded '%'.
+	 *
+	 * @param Start			the position
+	 * @param IgnoreCase	true to ignore the case of the protocol
+	 *
+	 * @return	the end of the url (exclusive), or -1 if no url begins in the position
+	 */
+	private int matchUrl(final int Start, final boolean IgnoreCase) {
+		int Address = -1;
+
+		for (String P : PROTOCOLS) {
+			if ( matches(Start, P, IgnoreCase) ) {
+				Address = Start + P.length();
+				break;
+			}
+		}
+
+		if ( 0 > Address || ( 6 <= Start && matches(Start - 6, "href=\"", IgnoreCase) && !( !IgnoreCase && endsScreenName(Start - 2) ) ) ) {
+			return -1;
+		}
+
+		int End = Address;
+		while (End < Length) {
+			char C = Source.charAt(End);
+
+			if ( isTag(End) ) {
+				break;
+			}
+
+			// the links with an upper case "L" are transformed only when protected
+			if ( 0 != (Marks[End] & LINK) && ( IgnoreCase || isLink(End) ) ) {
+				break;
+			}
+
+			if ('%' == C) {
+				++End;
+				break;
+			}
+
+			if ( ' ' == C || '\t' == C || '\n' == C || '\u000B' == C || '\f' == C || '\r' == C ||
+				 '<' == C || ';' == C || '|' == C ) {
+				break;
+			}
+
+			// the ScreenNames out of the protected urls are transformed before the urls
+			if ( !IgnoreCase && '@' == C && 0 <= matchScreenName(End) ) {
+				break;
+			}
+
+			++End;
+		}
+
+		return (End > Address) ? End : -1;
+	}
+
+	/**
+	 * This method checks if a ScreenName (i.e., '@' followed by at least 5 word
+	 * characters) begins in the input position.
+	 *
+	 * @param Start	the position
+	 *
+	 * @return	the end of the ScreenName (exclusive), or -1 if no ScreenName begins in the position
+	 */
+	private int matchScreenName(final int Start) {
+		if ( isProtected(Start) ) {
+			return -1;
+		}
+
+		int Count = 0;
+		int End = Start + 1;
+		int i = End;
+
+		while (i < Length) {
+			int Tag = Marks[i] & TAG_MASK;
+
+			if (0 != Tag) {
+				// the delimiters removed from the clean text join the words
+				if ( HTML || 0 != getTagOutput(Tag).length() ) {
+					break;
+				}
+
+				i += getTagLength(Tag);
+				continue;
+			}
+
+			if ( isProtected(i) || !isWordChar( Source.charAt(i) ) ) {
+				break;
+			}
+
+			++Count;
+			End = ++i;
+		}
+
+		return (5 <= Count) ? End : -1;
+	}
+
+	/**
+	 * This method checks if a ScreenName ends in the input position: e.g., the "href"
+	 * of "@xhref=" is transformed with the ScreenName before the urls are.
+	 *
+	 * @param End	the position (exclusive)
+	 *
+	 * @return	true if a ScreenName ends in the position
+	 */
+	private boolean endsScreenName(final int End) {
+		int i = End - 1;
+
+		while ( 0 <= i && !isTag(i) && isWordChar( Source.charAt(i) ) ) {
+			--i;
+		}
+
+		return 0 <= i && '@' == Source.charAt(i) && End == matchScreenName(i);
+	}
+
+	/**
+	 * This method returns the position of the next link opening delimiter ("[l:").
+	 *
+	 * @param From			the position to start from
+	 * @param IgnoreCase	true to accept also "[L:"
+	 *
+	 * @return	the position of the delimiter, or -1 if there are no other links
+	 */
+	private int indexOfLink(final int From, final boolean IgnoreCase) {
+		int i = Source.indexOf('[', From);
+
+		while ( 0 <= i ) {
+			if ( matches(i, "[l:", IgnoreCase) ) {
+				return i;
+			}
+
+			i = Source.indexOf('[', i + 1);
+		}
+
+		return -1;
+	}
+
+	/**
+	 * This method checks if the message contains a lower case token in the input position.
+	 *
+	 * @param Start			the position
+	 * @param Token			the token (lower case)
+	 * @param IgnoreCase	true to ignore the case of the ASCII letters (as a regular expression)
+	 *
+	 * @return	true if the message contains the token
+	 */
+	private boolean matches(final int Start, final String Token, final boolean IgnoreCase) {
+		if (Start + Token.length() > Length) {
+			return false;
+		}
+
+		for (int k = 0; k < Token.length(); ++k) {
+			char C = Source.charAt(Start + k);
+
+			if (IgnoreCase && 'A' <= C && C <= 'Z') {
+				C += 'a' - 'A';
+			}
+
+			if ( Token.charAt(k) != C ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * This method checks if the message contains the line separators not transformed
+	 * into line breaks, that end the tags.
+	 *
+	 * @return	true if there are such line separators
+	 */
+	private boolean hasLineSeparators() {
+		return hasLineSeparators(0, Length);
+	}
+
+	/**
+	 * This method checks if a part of the message contains the line separators not
+	 * transformed into line breaks.
+	 *
+	 * @param From	the beginning of the part (inclusive)
+	 * @param To	the end of the part (exclusive)
+	 *
+	 * @return	true if there are such line separators
+	 */
+	private boolean hasLineSeparators(final int From, final int To) {
+		for (int i = From; i < To; ++i) {
+			char C = Source.charAt(i);
+
+			if ('\u0085' == C || '\u2028' == C || '\u2029' == C) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * This method marks a resolved tag delimiter.
+	 *
+	 * @param Start		the position of the delimiter
+	 * @param Len		the length of the delimiter
+	 * @param Tag		the delimiter (index of the tag * 2 + 1, plus 1 for the closing one)
+	 */
+	private void mark(final int Start, final int Len, final int Tag) {
+		Marks[Start] |= Tag;
+
+		for (int k = 1; k < Len; ++k) {
+			Marks[Start + k] |= INSIDE_TAG;
+		}
+	}
+
+	/**
+	 * This method protects a part of the message from the ScreenNames.
+	 *
+	 * @param From	the beginning of the part (inclusive)
+	 * @param To	the end of the part (exclusive)
+	 */
+	private void protect(final int From, final int To) {
+		for (int i = From; i < To; ++i) {
+			Marks[i] |= PROTECTED;
+		}
+	}
+
+	/**
+	 * This method adds a link ([l:url|text]).
+	 *
+	 * @param Open	the position of the opening delimiter
+	 * @param Bar	the position of the '|'
+	 * @param End	the position of the closing ']'
+	 */
+	private void addLink(final int Open, final int Bar, final int End) {
+		if (null == Links) {
+			Links = new int[3 * 4];
+		} else if ( 3 * LinksCount == Links.length ) {
+			int[] Tmp = new int[2 * Links.length];
+			System.arraycopy(Links, 0, Tmp, 0, Links.length);
+			Links = Tmp;
+		}
+
+		Links[3 * LinksCount] = Open;
+		Links[3 * LinksCount + 1] = Bar;
+		Links[3 * LinksCount + 2] = End;
+
+		++LinksCount;
+	}
+
+	/**
+	 * This method returns the link beginning in the input position. The positions
+	 * have to be asked in increasing order.
+	 *
+	 * @param Start	the position
+	 *
+	 * @return	the index of the link, or -1 if no link begins in the position
+	 */
+	private int getLink(final int Start) {
+		while ( NextLink < LinksCount && Links[3 * NextLink] < Start ) {
+			++NextLink;
+		}
+
+		return ( NextLink < LinksCount && Links[3 * NextLink] == Start ) ? NextLink : -1;
+	}
+
+	private boolean isLink(final int i) {
+		for (int L = 0; L < LinksCount; ++L) {
+			if (Links[3 * L] == i) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean isTag(final int i) {
+		return 0 != ( Marks[i] & (TAG_MASK | INSIDE_TAG) );
+	}
+
+	private boolean isProtected(final int i) {
+		return 0 != (Marks[i] & PROTECTED);
+	}
+
+	private String getTagOutput(final int Tag) {
+		return TAGS[(Tag - 1) >> 1][(HTML ? 2 : 4) + ( (Tag - 1) & 1 )];
+	}
+
+	private int getTagLength(final int Tag) {
+		return TAGS[(Tag - 1) >> 1][(Tag - 1) & 1].length();
+	}
+
+	private static boolean isWordChar(final char C) {
+		return ('a' <= C && C <= 'z') || ('A' <= C && C <= 'Z') || ('0' <= C && C <= '9') || '_' == C;
+	}
+
+
+	// the tags: opening and closing delimiters, HTML output, clean text output
+	private static final String[][] TAGS = {
+		{ "[b]", "[/b]", "<b>", "</b>", "<b>", "</b>" },
+		{ "**", "**", "<b>", "</b>", "<b>", "</b>" },
+		{ "<em>", "</em>", "<i>", "</i>", "<i>", "</i>" },
+		{ "[i]", "[/i]", "<i>", "</i>", "<i>", "</i>" },
+		{ "__", "__", "<i>", "</i>", "<i>", "</i>" },
+		{ "[u]", "[/u]", "<u>", "</u>", "<u>", "</u>" },
+		{ "[del]", "[/del]", "<del>", "</del>", "<del>", "</del>" },
+		{ "[quote]", "[/quote]", "<blockquote>", "</blockquote>", "", "" },
+		{ "[code]", "[/code]", "<pre><code>", "</code></pre>", "", "" }
+	};
+
+	// HTML urls (TODO: probably will be removed in future versions)
+	private static final String[] PROTOCOLS = { "http://", "https://", "ftp://", "mailto://" };
+
+	// the marks of the characters
+	private static final int TAG_MASK = 0x1F;		// a tag delimiter begins (see TAGS)
+	private static final int INSIDE_TAG = 0x20;		// inside a tag delimiter
+	private static final int PROTECTED = 0x40;		// inside a link or an url
+	private static final int LINK = 0x80;			// a link begins
+
+	// the rules applied by emit
+	private static final int LINKS = 1;
+	private static final int URLS = 2;
+	private static final int SCREEN_NAMES = 4;
+
+	private final String Source;
+	private final int Length;
+	private final boolean HTML;
+
+	private final byte[] Marks;
+	private final StringBuilder Out;
+
+	// the links: opening delimiter, '|' and closing ']' positions
+	private int[] Links = null;
+	private int LinksCount = 0;
+	private int NextLink = 0;
+}
@@ -0,0 +1,164 @@
+package adiep.meemidroid;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import adiep.meemidroid.engine.Meeme;
+import android.text.Html;
+import android.util.Log;
+
+/**
+ * This class represents the memory cache of the messages rendered to be showed
+ * by the lists (i.e., their clean text parsed by {@link Html#fromHtml(String)}).
+ *
+ * The messages are rendered on the background threads of the engine, when they
+ * are parsed (see {@link #prerender(List)}), so binding a row of a list only
+ * assigns the rendered text. A message is keyed by its id and by the hash of
+ * its content, so an edited message is rendered again. The cache is bounded by
+ * the number of messages: when it's full, the least recently used ones are evicted.
+ *
+ * All the methods are thread safe.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.1
+ */
+public final class MeemiTextCache {
+	/**
+	 * This method returns the rendered clean text of a message: if the message
+	 * has not been rendered yet, it's rendered by the calling thread.
+	 *
+	 * @param M	the message
+	 *
+	 * @return	the rendered clean text of the message
+	 */
+	public static CharSequence getCleanText(final Meeme M) {
+		Key K = new Key(M);
+
+		CharSequence Text;
+		synchronized (Texts) {
+			Text = Texts.get(K);
+
+			if (null != Text) {
+				++Hits;
+				return Text;
+			}
+
+			++Misses;
+		}
+
+		Text = render(M);
+
+		synchronized (Texts) {
+			Texts.put(K, Text);
+		}
+
+		return Text;
+	}
+
+	/**
+	 * This method renders the messages not yet cached. It has to be called by a
+	 * background thread.
+	 *
+	 * @param Meemis	the messages to render (can be null)
+	 */
+	public static void prerender(final List<Meeme> Meemis) {
+		if (null == Meemis) {
+			return;
+		}
+
+		// the first messages are the ones showed first, and the most recently used
+		for (int i = Math.min(Meemis.size(), MAX_ENTRIES) - 1; 0 <= i; --i) {
+			Meeme M = Meemis.get(i);
+			Key K = new Key(M);
+
+			synchronized (Texts) {
+				if ( null != Texts.get(K) ) {
+					continue;
+				}
+			}
+
+			CharSequence Text = render(M);
+
+			synchronized (Texts) {
+				Texts.put(K, Text);
+			}
+		}
+	}
+
+	/**
+	 * This method removes all the rendered messages: it has to be called when
+	 * the system is running low on memory.
+	 */
+	public static void onLowMemory() {
+		synchronized (Texts) {
+			Log.i("MeemiTextCache - onLowMemory", "messages=" + Texts.size() + ", hits=" + Hits + ", misses=" + Misses);
+
+			Texts.clear();
+		}
+	}
+
+
+	/**
+	 * This method renders the clean text of a message.
+	 *
+	 * @param M	the message
+	 *
+	 * @return	the rendered clean text
+	 */
+	private static CharSequence render(final Meeme M) {
+		return Html.fromHtml( Utility.fromMeemiToCleanText( M.getContent() ) );
+	}
+
+	/**
+	 * This private class represents the key of a rendered message.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class Key {
+		public Key(final Meeme M) {
+			this.Id = M.getId();
+			this.ContentHash = M.getContent().hashCode();
+		}
+
+		@Override
+		public boolean equals(Object O) {
+			if ( !(O instanceof Key) ) {
+				return false;
+			}
+
+			Key K = (Key)O;
+
+			return Id == K.Id && ContentHash == K.ContentHash;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (int)(Id ^ (Id >>> 32)) + ContentHash;
+		}
+
+		private final long Id;
+		private final int ContentHash;
+	}
+
+
+	private MeemiTextCache() {
+		// nothing to do
+	}
+
+
+	private static final int MAX_ENTRIES = 300;
+
+	// the rendered messages, from the least recently used one
+	private static final Map<Key, CharSequence> Texts = new LinkedHashMap<Key, CharSequence>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, CharSequence> Eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private static int Hits = 0;
+	private static int Misses = 0;
+}
@@ -0,0 +1,360 @@
+package adiep.meemidroid;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.text.Html;
+import android.text.Layout;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.ClickableSpan;
+import android.text.style.ImageSpan;
+import android.text.style.URLSpan;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * This class renders the Meemi messages as native styled text (see {@link Spanned}),
+ * so they can be displayed by a simple {@link TextView} instead of a WebView.
+ *
+ * The message is converted by {@link Utility#fromMeemiToHTML(String)}, as for the
+ * WebView, and the resulting HTML is parsed by {@link Html#fromHtml(String)}: the
+ * links to the Meemi accounts (e.g., @capobecchino) are replaced by spans that
+ * notify an {@link OnMentionClickListener}.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.1
+ */
+public class MeemiTextRenderer {
+	/**
+	 * This interface is implemented by the objects that are notified when
+	 * the user selects a ScreenName in a rendered message.
+	 */
+	public interface OnMentionClickListener {
+		/**
+		 * This method is called when the user selects a ScreenName.
+		 *
+		 * @param ScreenName	the selected ScreenName (without the '@')
+		 */
+		void onMentionClick(String ScreenName);
+	}
+
+	/**
+	 * This method renders a Meemi message as styled text.
+	 *
+	 * @param Meemi	the message to render
+	 * @param L		the listener notified when a ScreenName is selected (can be null)
+	 *
+	 * @return	the rendered message
+	 */
+	public static SpannableStringBuilder toSpanned(final String Meemi, final OnMentionClickListener L) {
+		SpannableStringBuilder Result = new SpannableStringBuilder( Html.fromHtml( Utility.fromMeemiToHTML(Meemi) ) );
+
+		// the ScreenNames are the only links without a real URL
+		URLSpan[] Links = Result.getSpans(0, Result.length(), URLSpan.class);
+		for (URLSpan U : Links) {
+			if ( !MENTION_URL.equals( U.getURL() ) ) {
+				continue;
+			}
+
+			int Start = Result.getSpanStart(U);
+			int End = Result.getSpanEnd(U);
+
+			Result.removeSpan(U);
+
+			if (null != L) {
+				String Name = Result.subSequence(Start, End).toString().trim();
+				if ( Name.startsWith("@") ) {
+					Name = Name.substring(1);
+				}
+
+				Result.setSpan(new MentionSpan(Name, L), Start, End, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+			}
+		}
+
+		// Html.fromHtml appends the paragraph breaks
+		int Length = Result.length();
+		while ( 0 < Length && Character.isWhitespace( Result.charAt(Length - 1) ) ) {
+			--Length;
+		}
+		Result.delete( Length, Result.length() );
+
+		return Result;
+	}
+
+	/**
+	 * This method inserts an image (e.g., the thumbnail of a photo) at the beginning
+	 * of a rendered message, on its own line: the image is a link to the input URL.
+	 *
+	 * @param Text	the rendered message
+	 * @param D		the image to insert (its bounds have to be set)
+	 * @param URL	the URL opened when the image is selected (can be null)
+	 */
+	public static void insertMedia(final SpannableStringBuilder Text, final Drawable D, final String URL) {
+		Text.insert(0, MEDIA_PLACEHOLDER);
+
+		Text.setSpan(new ImageSpan(D, ImageSpan.ALIGN_BASELINE), 0, 1, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+		if (null != URL) {
+			Text.setSpan(new URLSpan(URL), 0, 1, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+		}
+	}
+
+	/**
+	 * This method returns a drawable with square bounds of the input size.
+	 *
+	 * @param R			the resources of the application
+	 * @param ResID		the resource ID of the drawable
+	 * @param SizeDip	the size of the drawable (in density independent pixels)
+	 *
+	 * @return	the drawable
+	 */
+	public static Drawable getMediaDrawable(final Resources R, final int ResID, final int SizeDip) {
+		Drawable D = R.getDrawable(ResID);
+
+		int Size = toPixels(R, SizeDip);
+		D.setBounds(0, 0, Size, Size);
+
+		return D;
+	}
+
+	/**
+	 * This method converts a size in density independent pixels to pixels.
+	 *
+	 * @param R			the resources of the application
+	 * @param SizeDip	the size (in density independent pixels)
+	 *
+	 * @return	the size in pixels
+	 */
+	public static int toPixels(final Resources R, final int SizeDip) {
+		return (int)( SizeDip * R.getDisplayMetrics().density + 0.5f );
+	}
+
+
+	/**
+	 * This class represents an image downloaded by the {@link ImageLoader} and
+	 * displayed inside a text (see {@link #insertMedia(SpannableStringBuilder, Drawable, String)}):
+	 * a placeholder is drawn until the image is loaded, then the text view is invalidated.
+	 * The bounds of the drawable don't change, so the text is not laid out again.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 * @version 0.1
+	 */
+	public static class ThumbnailDrawable extends Drawable implements ImageLoader.Target {
+		/**
+		 * This is the class constructor.
+		 *
+		 * @param Host			the text view displaying the drawable
+		 * @param Placeholder	the drawable drawn until the image is loaded
+		 * @param SizeDip		the size of the drawable (in density independent pixels)
+		 */
+		public ThumbnailDrawable(final TextView Host, final Drawable Placeholder, final int SizeDip) {
+			this.Host = Host;
+			this.Placeholder = Placeholder;
+
+			int Size = toPixels(Host.getResources(), SizeDip);
+			setBounds(0, 0, Size, Size);
+		}
+
+		/**
+		 * This method returns the width the image is displayed at.
+		 *
+		 * @return	the width of the image (in pixels)
+		 */
+		public int getWidth() {
+			return getBounds().width();
+		}
+
+		/**
+		 * This method returns the height the image is displayed at.
+		 *
+		 * @return	the height of the image (in pixels)
+		 */
+		public int getHeight() {
+			return getBounds().height();
+		}
+
+		/**
+		 * This method is called by the UI thread when the image is loaded.
+		 *
+		 * @param B	the loaded image, or null if the image can not be loaded
+		 */
+		public void onImageLoaded(Bitmap B) {
+			Image = B;
+
+			Host.invalidate();
+		}
+
+		@Override
+		public int getIntrinsicWidth() {
+			return getBounds().width();
+		}
+
+		@Override
+		public int getIntrinsicHeight() {
+			return getBounds().height();
+		}
+
+		@Override
+		public void draw(Canvas C) {
+			Rect Bounds = getBounds();
+
+			if (null == Image) {
+				Placeholder.setBounds(Bounds);
+				Placeholder.draw(C);
+
+				return;
+			}
+
+			// the image is scaled to fit the bounds, keeping its aspect ratio
+			float Scale = Math.min( (float)Bounds.width() / Image.getWidth(), (float)Bounds.height() / Image.getHeight() );
+			int W = Math.round( Image.getWidth() * Scale );
+			int H = Math.round( Image.getHeight() * Scale );
+			int Left = Bounds.left + (Bounds.width() - W) / 2;
+			int Top = Bounds.top + (Bounds.height() - H) / 2;
+
+			Destination.set(Left, Top, Left + W, Top + H);
+			C.drawBitmap(Image, null, Destination, ImagePaint);
+		}
+
+		@Override
+		public void setAlpha(int alpha) {
+			ImagePaint.setAlpha(alpha);
+		}
+
+		@Override
+		public void setColorFilter(ColorFilter cf) {
+			ImagePaint.setColorFilter(cf);
+		}
+
+		@Override
+		public int getOpacity() {
+			return PixelFormat.TRANSLUCENT;
+		}
+
+
+		private final TextView Host;
+		private final Drawable Placeholder;
+		private Bitmap Image = null;
+
+		private final Rect Destination = new Rect();
+		private final Paint ImagePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	}
+
+	/**
+	 * This class dispatches the clicks on the links of a text view. Unlike
+	 * LinkMovementMethod, it doesn't make the text view focusable, so the row of
+	 * a list view containing the text view can still be selected (and long pressed).
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 * @version 0.1
+	 */
+	public static class LinkTouchListener implements View.OnTouchListener {
+		/**
+		 * This method returns the shared instance of the listener.
+		 *
+		 * @return	the listener
+		 */
+		public static LinkTouchListener getInstance() {
+			return Instance;
+		}
+
+		/**
+		 * This method is called when the text view is touched: the touch event
+		 * is consumed only if it selects a link.
+		 *
+		 * @param V		the text view
+		 * @param E		the touch event
+		 *
+		 * @return	true if the touch event selects a link
+		 */
+		public boolean onTouch(View V, MotionEvent E) {
+			int Action = E.getAction();
+			if (MotionEvent.ACTION_DOWN != Action && MotionEvent.ACTION_UP != Action) {
+				return false;
+			}
+
+			TextView TV = (TextView)V;
+			ClickableSpan Link = getLink( TV, (int)E.getX(), (int)E.getY() );
+
+			if (null == Link) {
+				return false;
+			}
+
+			if (MotionEvent.ACTION_UP == Action) {
+				Link.onClick(TV);
+			}
+
+			return true;
+		}
+
+		/**
+		 * This method returns the link displayed in the specified position of
+		 * a text view.
+		 *
+		 * @param TV	the text view
+		 * @param X		the horizontal position (relative to the text view)
+		 * @param Y		the vertical position (relative to the text view)
+		 *
+		 * @return	the link, or null if there is no link in the position
+		 */
+		private ClickableSpan getLink(final TextView TV, int X, int Y) {
+			Layout L = TV.getLayout();
+			CharSequence Text = TV.getText();
+
+			if ( null == L || !(Text instanceof Spanned) ) {
+				return null;
+			}
+
+			X += TV.getScrollX() - TV.getTotalPaddingLeft();
+			Y += TV.getScrollY() - TV.getTotalPaddingTop();
+
+			int Line = L.getLineForVertical(Y);
+			if ( X < L.getLineLeft(Line) || X > L.getLineRight(Line) ) {
+				return null;
+			}
+
+			int Offset = L.getOffsetForHorizontal(Line, X);
+
+			ClickableSpan[] Links = ((Spanned)Text).getSpans(Offset, Offset, ClickableSpan.class);
+
+			return (0 < Links.length) ? Links[0] : null;
+		}
+
+
+		private static final LinkTouchListener Instance = new LinkTouchListener();
+	}
+
+
+	/**
+	 * This private class represents a ScreenName in a rendered message.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static class MentionSpan extends ClickableSpan {
+		public MentionSpan(final String Name, final OnMentionClickListener L) {
+			this.Name = Name;
+			this.Listener = L;
+		}
+
+		@Override
+		public void onClick(View widget) {
+			Listener.onMentionClick(Name);
+		}
+
+		private final String Name;
+		private final OnMentionClickListener Listener;
+	}
+
+
+	private static final String MENTION_URL = "#";
+
+	// the object replacement character followed by a line break
+	private static final String MEDIA_PLACEHOLDER = "\uFFFC\n";
+}
@@ -0,0 +1,186 @@
+package adiep.meemidroid;
+
+import adiep.meemidroid.engine.MeemiCredentials;
+import adiep.meemidroid.engine.MeemiEngine;
+import adiep.meemidroid.engine.MeemiEngine.MeemiEngineResult;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Handler;
+
+/**
+ * This class prepares the application while the splash screen is showed, so
+ * the splash screen is closed as soon as the application is ready instead of
+ * after a fixed time.
+ *
+ * The startup is done in two phases:
+ * - a background thread loads the credentials, opens the caches (images and
+ *   stored lifestreams), and opens a connection to Meemi in advance;
+ * - the profile of the user and the first page of her lifestream are requested
+ *   in parallel (see {@link MeemiEngine#prefetchStartup(String, Context, MeemiEngine.Callbackable)}).
+ *
+ * The listener is notified when both the requests are completed, or when the
+ * maximum time runs out. If the credentials are not stored, the listener is
+ * notified after the first phase.
+ *
+ * All the methods have to be called by the UI thread.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.2
+ */
+public class StartupOrchestrator implements MeemiEngine.Callbackable {
+	/**
+	 * This interface is implemented by the objects that are notified when
+	 * the application is ready.
+	 */
+	public interface OnReadyListener {
+		/**
+		 * This method is called when the startup is completed (or the maximum
+		 * time has run out).
+		 */
+		void onStartupReady();
+	}
+
+	/**
+	 * This is the class constructor.
+	 *
+	 * @param C	the context used to do the requests (usually the splash screen)
+	 * @param L	the listener notified when the application is ready
+	 */
+	public StartupOrchestrator(final Context C, final OnReadyListener L) {
+		this.CurrentContext = C;
+		this.Listener = L;
+	}
+
+	/**
+	 * This method starts the startup.
+	 *
+	 * @param MaxTime	the maximum time to wait for the startup (in milliseconds)
+	 */
+	public void start(final long MaxTime) {
+		StartTime = StartupPhases.begin();
+
+		TimeoutHandler.postDelayed(Timeout, MaxTime);
+
+		new WarmUpTask().execute();
+	}
+
+	/**
+	 * This method stops waiting for the startup: the listener is not notified.
+	 * The requests already started are not cancelled, so the activities
+	 * doing the same requests share their responses.
+	 */
+	public void cancel() {
+		TimeoutHandler.removeCallbacks(Timeout);
+
+		IsReady = true;
+	}
+
+	/**
+	 * This method represents the callback point for the requests started by
+	 * {@link MeemiEngine#prefetchStartup(String, Context, MeemiEngine.Callbackable)}.
+	 *
+	 * @param Result	the API call result
+	 */
+	public void onEngineExecuteResult(MeemiEngineResult Result) {
+		switch (Result.CallbackMethod) {
+		case MeemiEngine.CB_USER_PROFILE:
+			// even the cached profile (while revalidated) is enough
+			IsProfileLoaded = true;
+			break;
+
+		case MeemiEngine.CB_LIFESTREAM:
+			IsLifestreamLoaded = true;
+			break;
+
+		default:
+			// nothing to do
+		}
+
+		if (IsProfileLoaded && IsLifestreamLoaded) {
+			ready("requests completed");
+		}
+	}
+
+
+	/**
+	 * This method notifies the listener that the application is ready (only
+	 * the first time it's called).
+	 *
+	 * @param Reason	the reason why the startup is completed (for the log)
+	 */
+	private void ready(final String Reason) {
+		if (IsReady) {
+			return;
+		}
+
+		IsReady = true;
+
+		TimeoutHandler.removeCallbacks(Timeout);
+
+		StartupPhases.end("splash (" + Reason + ")", StartTime);
+		StartupPhases.report();
+
+		Listener.onStartupReady();
+	}
+
+	/**
+	 * This private class represents the first phase of the startup, done by a
+	 * background thread: when it's completed, the requests are started.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private final class WarmUpTask extends AsyncTask<Void, Void, Void> {
+		@Override
+		protected Void doInBackground(Void... arg0) {
+			// the credentials are loaded here, instead of by the UI thread
+			MeemiDroidApplication.Engine.getCredentials();
+
+			long PhaseStart = StartupPhases.begin();
+
+			ImageLoader.getInstance();
+
+			StartupPhases.end("image cache", PhaseStart);
+
+			PhaseStart = StartupPhases.begin();
+
+			MeemiDroidApplication.Engine.warmUp();
+
+			StartupPhases.end("engine warm-up", PhaseStart);
+
+			return null;
+		}
+
+		@Override
+		protected void onPostExecute(Void V) {
+			if (IsReady) {
+				return;
+			}
+
+			MeemiCredentials Credentials = MeemiDroidApplication.Engine.getCredentials();
+
+			if ( !Credentials.isMemorized() ) {
+				// the main activity asks for the credentials
+				ready("no credentials");
+			} else {
+				MeemiDroidApplication.Engine.prefetchStartup( Credentials.getUsername(), CurrentContext, StartupOrchestrator.this );
+			}
+		}
+	}
+
+
+	private final Context CurrentContext;
+	private final OnReadyListener Listener;
+
+	private final Handler TimeoutHandler = new Handler();
+	private final Runnable Timeout = new Runnable() {
+		public void run() {
+			ready("maximum time elapsed");
+		}
+	};
+
+	private long StartTime = 0;
+
+	private boolean IsProfileLoaded = false;
+	private boolean IsLifestreamLoaded = false;
+	private boolean IsReady = false;
+}
@@ -0,0 +1,133 @@
+package adiep.meemidroid;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * This class measures the phases of the application startup: each phase is
+ * logged when it ends (with the thread running it), and the whole cold start
+ * breakdown is logged by {@link #report()}.
+ *
+ * The components that are expensive to create are wrapped in a {@link Provider},
+ * so they are created (and measured) the first time they are used, or in advance
+ * by a background thread.
+ *
+ * All the methods are thread safe.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.1
+ */
+public final class StartupPhases {
+	/**
+	 * This method returns the start time of a phase.
+	 *
+	 * @return	the current time (in milliseconds since boot)
+	 */
+	public static long begin() {
+		return SystemClock.uptimeMillis();
+	}
+
+	/**
+	 * This method logs the end of a phase, and adds it to the breakdown.
+	 *
+	 * @param Phase	the name of the phase
+	 * @param Start	the start time of the phase (see {@link #begin()})
+	 */
+	public static void end(final String Phase, final long Start) {
+		long Elapsed = SystemClock.uptimeMillis() - Start;
+		String ThreadName = Thread.currentThread().getName();
+
+		Log.i("StartupPhases", Phase + ": " + Elapsed + " ms (" + ThreadName + ")");
+
+		synchronized (Breakdown) {
+			if ( !IsReported ) {
+				Breakdown.append(' ').append(Phase).append('=').append(Elapsed).append("ms");
+			}
+		}
+	}
+
+	/**
+	 * This method logs the breakdown of the phases ended so far: it's called
+	 * once, when the startup is completed. The phases ended later are only logged.
+	 */
+	public static void report() {
+		synchronized (Breakdown) {
+			if (IsReported) {
+				return;
+			}
+
+			IsReported = true;
+
+			Log.i("StartupPhases - report", "cold start:" + Breakdown);
+		}
+	}
+
+
+	/**
+	 * This class represents a component created the first time it's requested
+	 * (by any thread): its creation is measured as a startup phase.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 * @version 0.1
+	 *
+	 * @param <T>	the type of the component
+	 */
+	public abstract static class Provider<T> {
+		/**
+		 * This is the class constructor.
+		 *
+		 * @param Phase	the name of the phase creating the component
+		 */
+		public Provider(final String Phase) {
+			this.Phase = Phase;
+		}
+
+		/**
+		 * This method returns the component, creating it if it's the first request.
+		 *
+		 * @return	the component
+		 */
+		public final synchronized T get() {
+			if (null == Instance) {
+				long Start = begin();
+
+				Instance = create();
+
+				end(Phase, Start);
+			}
+
+			return Instance;
+		}
+
+		/**
+		 * This method returns true if the component has been already created.
+		 *
+		 * @return	true if the component exists
+		 */
+		public final synchronized boolean isCreated() {
+			return null != Instance;
+		}
+
+		/**
+		 * This method creates the component.
+		 *
+		 * @return	the new component
+		 */
+		protected abstract T create();
+
+
+		private final String Phase;
+		private T Instance = null;
+	}
+
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private StartupPhases() {}
+
+
+	// the phases ended before the report
+	private static final StringBuilder Breakdown = new StringBuilder();
+	private static boolean IsReported = false;
+}
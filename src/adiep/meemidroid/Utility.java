@@ -13,6 +13,7 @@ import java.util.regex.Pattern;
 import org.apache.http.impl.cookie.DateParseException;
 
 import android.app.Activity;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
@@ -21,8 +22,8 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.net.Uri;
 import android.text.format.DateFormat;
-import android.util.Base64;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.View;
@@ -38,7 +39,7 @@ import android.widget.Toast;
  * This class contains all the code utility used in this application. 
  * 
  * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 0.5
+ * @version 0.7
  */
 public class Utility {
 	/**
@@ -78,6 +79,201 @@ public class Utility {
 		return ResizedImage;
 	}
 	
+	/**
+	 * This method returns the size of the input image, without decoding its pixels.
+	 * 
+	 * @param CR		the {@link ContentResolver} used to read the image
+	 * @param ImageUri	the URI of the image
+	 * 
+	 * @return	the image width and height, or null if the image can not be read
+	 */
+	public static int[] getImageSize(final ContentResolver CR, final Uri ImageUri) {
+		BitmapFactory.Options Bounds = new BitmapFactory.Options();
+		Bounds.inJustDecodeBounds = true;
+		
+		InputStream In = null;
+		try {
+			In = CR.openInputStream(ImageUri);
+			
+			BitmapFactory.decodeStream(In, null, Bounds);
+		} catch (IOException ex) {
+			Log.d("Utility - getImageSize", "Cannot read the image", ex);
+			
+			return null;
+		} finally {
+			closeStream(In);
+		}
+		
+		if (0 >= Bounds.outWidth || 0 >= Bounds.outHeight) {
+			return null;
+		}
+		
+		return new int[]{ Bounds.outWidth, Bounds.outHeight };
+	}
+	
+	/**
+	 * This method returns true if the image with the input size has to be resized
+	 * according to the input arguments Width and Height
+	 * (see {@link #resizeImage(ContentResolver, Uri, int, int, int, OutputStream)}).
+	 * 
+	 * @param Size		the image width and height
+	 * @param Width		the max width after the resize
+	 * @param Height	the max height after the resize
+	 * 
+	 * @return	true if the image has to be resized
+	 */
+	public static boolean isImageToResize(final int[] Size, final int Width, final int Height) {
+		return null != Size && (Width < Size[0] || Height < Size[1]);
+	}
+	
+	/**
+	 * This method resizes the input image according to the input arguments Width, Height and Quality
+	 * and writes the resized JPEG to the output stream.
+	 * Unlike {@link #resizeImage(byte[], int, int, int)}, the original image is never
+	 * loaded in memory: it's decoded directly from its stream at the smallest power of two
+	 * scale that is still bigger than the wanted size, and then scaled to the exact size.
+	 * 
+	 * @param CR		the {@link ContentResolver} used to read the image
+	 * @param ImageUri	the URI of the image to resize
+	 * @param Width		the max width after the resize
+	 * @param Height	the max height after the resize
+	 * @param Quality	the quality of the output resized image
+	 * @param Out		the stream where the resized image is written
+	 * 
+	 * @throws IOException if the image can not be read or written
+	 */
+	public static void resizeImage(final ContentResolver CR, final Uri ImageUri, final int Width, final int Height, final int Quality, final OutputStream Out) throws IOException {
+		int[] Size = getImageSize(CR, ImageUri);
+		
+		if (null == Size) {
+			throw new IOException("Cannot decode the image " + ImageUri);
+		}
+		
+		double Scale = 1.0;
+		if ( isImageToResize(Size, Width, Height) ) {
+			Scale = (double)Width / Size[0];
+			if (Size[1] > Size[0]) {
+				Scale = (double)Height / Size[1];
+			}
+		}
+		
+		int NewWidth = Math.max( 1, (int)(Scale * Size[0]) );
+		int NewHeight = Math.max( 1, (int)(Scale * Size[1]) );
+		
+		BitmapFactory.Options Decode = new BitmapFactory.Options();
+		Decode.inSampleSize = getSampleSize(Size[0], Size[1], NewWidth, NewHeight);
+		
+		Bitmap B = null;
+		InputStream In = null;
+		try {
+			In = CR.openInputStream(ImageUri);
+			
+			B = BitmapFactory.decodeStream(In, null, Decode);
+		} finally {
+			closeStream(In);
+		}
+		
+		if (null == B) {
+			throw new IOException("Cannot decode the image " + ImageUri);
+		}
+		
+		if ( B.getWidth() != NewWidth || B.getHeight() != NewHeight ) {
+			Bitmap SB = Bitmap.createScaledBitmap(B, NewWidth, NewHeight, true);
+			
+			if (SB != B) {
+				B.recycle();
+				B = SB;
+			}
+		}
+		
+		try {
+			B.compress(Bitmap.CompressFormat.JPEG, Quality, Out);
+		} finally {
+			B.recycle();
+		}
+	}
+	
+	/**
+	 * This method returns the biggest power of two sample size that decodes an
+	 * image still not smaller than the wanted size (see
+	 * {@link BitmapFactory.Options#inSampleSize}).
+	 * 
+	 * @param Width			the image width
+	 * @param Height		the image height
+	 * @param ReqWidth		the wanted width
+	 * @param ReqHeight		the wanted height
+	 * 
+	 * @return	the sample size (1 if the image is not bigger than the wanted size)
+	 */
+	public static int getSampleSize(final int Width, final int Height, final int ReqWidth, final int ReqHeight) {
+		int SampleSize = 1;
+		
+		if (0 >= ReqWidth || 0 >= ReqHeight) {
+			return SampleSize;
+		}
+		
+		while ( Width / (SampleSize * 2) >= ReqWidth && Height / (SampleSize * 2) >= ReqHeight ) {
+			SampleSize *= 2;
+		}
+		
+		return SampleSize;
+	}
+	
+	/**
+	 * This method decodes an image stored in memory, sampled to be not much
+	 * bigger than the wanted size (see {@link #getSampleSize(int, int, int, int)}).
+	 * The opaque images (i.e., the JPEG ones) are decoded as
+	 * {@link Bitmap.Config#RGB_565}, if requested, to halve the used memory.
+	 * 
+	 * @param Data			the encoded image
+	 * @param Length		the number of valid bytes in Data
+	 * @param ReqWidth		the wanted width
+	 * @param ReqHeight		the wanted height
+	 * @param UseRGB565		true to decode the opaque images as RGB_565
+	 * 
+	 * @return	the decoded image, or null if the image can not be decoded
+	 */
+	public static Bitmap decodeSampledImage(final byte[] Data, final int Length, final int ReqWidth, final int ReqHeight, final boolean UseRGB565) {
+		BitmapFactory.Options Options = new BitmapFactory.Options();
+		Options.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray(Data, 0, Length, Options);
+		
+		if (0 >= Options.outWidth || 0 >= Options.outHeight) {
+			return null;
+		}
+		
+		Options.inSampleSize = getSampleSize(Options.outWidth, Options.outHeight, ReqWidth, ReqHeight);
+		
+		if ( UseRGB565 && "image/jpeg".equals(Options.outMimeType) ) {
+			Options.inPreferredConfig = Bitmap.Config.RGB_565;
+		}
+		
+		Options.inJustDecodeBounds = false;
+		
+		try {
+			return BitmapFactory.decodeByteArray(Data, 0, Length, Options);
+		} catch (OutOfMemoryError ex) {
+			Log.w("Utility - decodeSampledImage", "Not enough memory to decode the image", ex);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This method closes the input stream, ignoring the errors.
+	 * 
+	 * @param S	the stream to close (can be null)
+	 */
+	public static void closeStream(final InputStream S) {
+		if (null != S) {
+			try {
+				S.close();
+			} catch (IOException ex) {
+				// nothing to do
+			}
+		}
+	}
+	
 	/**
 	 * This method copies the input stream into an output stream.
 	 * 
@@ -140,42 +336,7 @@ public class Utility {
 	 * @return	the clean version of the message
 	 */
 	public static final String fromMeemiToCleanText(final String Meemi) {
-		String CleanMeemi = "";
-		
-		// strange (and dangerous) chars... 
-		CleanMeemi = Meemi.replaceAll("%", "&#037;");
-		
-		// carriage return
-		CleanMeemi = CleanMeemi.replaceAll("(\\r\\n|\\n|\\r)", " ");
-		
-		// Bold		
-		CleanMeemi = CleanMeemi.replaceAll("\\[b\\](.*?)\\[/b\\]", "<b>$1</b>");
-		CleanMeemi = CleanMeemi.replaceAll("\\*\\*(.*?)\\*\\*", "<b>$1</b>");
-		
-		// Italic
-		CleanMeemi = CleanMeemi.replaceAll("<em>(.*?)</em>", "<i>$1</i>");
-		CleanMeemi = CleanMeemi.replaceAll("\\[i\\](.*?)\\[/i\\]", "<i>$1</i>");
-		CleanMeemi = CleanMeemi.replaceAll("__(.*?)__", "<i>$1</i>");
-		
-		// Underline
-		CleanMeemi = CleanMeemi.replaceAll("\\[u\\](.*?)\\[/u\\]", "<u>$1</u>");
-		
-		// Stroke
-		CleanMeemi = CleanMeemi.replaceAll("\\[del\\](.*?)\\[/del\\]", "<del>$1</del>");
-		
-		// Quote
-		CleanMeemi = CleanMeemi.replaceAll("\\[quote\\](.*?)\\[/quote\\]", "$1");
-		
-		// Code
-		CleanMeemi = CleanMeemi.replaceAll("\\[code\\](.*?)\\[/code\\]", "$1");
-		
-		// Link: TODO change link to meemi post view activity (when ready :O) for links to Meemi world
-		CleanMeemi = CleanMeemi.replaceAll("\\[l:([^\\|]*?)\\|([^\\]]*?)\\]", "<i>$2</i>");
-		
-		// ScreenName 
-		CleanMeemi = CleanMeemi.replaceAll("\\@(\\w{5,})", " <i>@$1</i>");
-		
-		return CleanMeemi;
+		return MeemiMarkup.toCleanText(Meemi);
 	}
 	
 	/**
@@ -187,105 +348,7 @@ public class Utility {
 	 * @return	the HTML version of the message
 	 */
 	public static final String fromMeemiToHTML(final String Meemi) {
-		String HTML = "";
-		
-		// strange (and dangerous) chars... 
-		HTML = Meemi.replaceAll("%", "&#037;");
-		
-		// carriage return
-		HTML = HTML.replaceAll("(\\r\\n|\\n|\\r)", "<br />");
-		
-		// Bold		
-		HTML = HTML.replaceAll("\\[b\\](.*?)\\[/b\\]", "<b>$1</b>");
-		HTML = HTML.replaceAll("\\*\\*(.*?)\\*\\*", "<b>$1</b>");
-		
-		// Italic
-		HTML = HTML.replaceAll("<em>(.*?)</em>", "<i>$1</i>");
-		HTML = HTML.replaceAll("\\[i\\](.*?)\\[/i\\]", "<i>$1</i>");
-		HTML = HTML.replaceAll("__(.*?)__", "<i>$1</i>");
-		
-		// Underline
-		HTML = HTML.replaceAll("\\[u\\](.*?)\\[/u\\]", "<u>$1</u>");
-		
-		// Stroke
-		HTML = HTML.replaceAll("\\[del\\](.*?)\\[/del\\]", "<del>$1</del>");
-		
-		// Quote
-		HTML = HTML.replaceAll("\\[quote\\](.*?)\\[/quote\\]", "<blockquote>$1</blockquote>");
-		
-		// Code
-		HTML = HTML.replaceAll("\\[code\\](.*?)\\[/code\\]", "<pre><code>$1</code></pre>");
-		
-		// the main idea is:
-		// (a) encode the links and the urls [forward transformation]
-		// (b) apply the other ScreenName transformation
-		// (c) decode back the links and urls [backward transformation]
-		// (d) apply links and url transformations
-		// TODO: this fix has a very high cost, but for the moment we don't have any better solution
-		
-		// forward transformation to resolve ScreenName problem
-		HTML = encodeParts(HTML, "\\[l:([^\\|]*?)\\|([^\\]]*?)\\]");
-		HTML = encodeParts(HTML, "(?<!href=\")(http|https|ftp|mailto)://([\\S&&[^<;|]]+)");
-		
-		// ScreenName
-		HTML = HTML.replaceAll("\\@(\\w{5,})", " <a class=\"link\" onClick=\"window.account.clickOnAccount('$1')\" href='#'>@$1</a>");
-		
-		// backward transformation
-		HTML = decodeParts(HTML, "\\{mds:([^\\}]*?)\\}");
-		
-		
-		// Link - TODO: change link to meemi post view activity (when ready :O) for links to Meemi world
-		HTML = HTML.replaceAll("\\[l:([^\\|]*?)\\|([^\\]]*?)\\]", "<a class=\"link\" href=\"$1\" title=\"go to $2\">$2</a>");
-		
-		// HTML urls (TODO: probably will be removed in future versions)
-		HTML = HTML.replaceAll("(?<!href=\")(http|https|ftp|mailto)://([\\S&&[^<;|]]+)", "<a class=\"link\" href=\"$1://$2\" title=\"go to $2\">$2</a>" );
-		//HTML = HTML.replaceAll("(?<!\\[l:\\s{0,10}?|\\[l:.{0,100}?\\|\\s{0,10}?)(http|https|ftp|mailto)://(\\S+)", "[l:$1://$2|$2]" );
-		
-		
-		
-		return HTML;
-	}
-	
-	public static String encodeParts(final String Msg, final String RegEx) {
-		Pattern P = Pattern.compile(RegEx, Pattern.CASE_INSENSITIVE);
-			
-		String R = "";
-		
-		Matcher M = P.matcher(Msg);
-		int LastIndex = 0;
-		while ( M.find() ) {
-			R += Msg.substring(LastIndex, M.start()) + "{mds:";
-			
-			String Part2Encode = Msg.substring(M.start(), M.end());
-			R += Base64.encodeToString(Part2Encode.getBytes(), Base64.DEFAULT);
-			
-			R += "}";
-			
-			LastIndex = M.end();
-		}
-		R += Msg.substring(LastIndex);
-		
-		return R;
-	}
-	
-	public static String decodeParts(final String Msg, final String RegEx) {
-		Pattern P = Pattern.compile(RegEx, Pattern.CASE_INSENSITIVE);
-			
-		String R = "";
-		
-		Matcher M = P.matcher(Msg);
-		int LastIndex = 0;
-		while ( M.find() ) {
-			R += Msg.substring(LastIndex, M.start());
-			
-			String Part2Decode = Msg.substring(M.start()+5, M.end()-1);
-			R += new String( Base64.decode(Part2Decode, Base64.DEFAULT) );
-			
-			LastIndex = M.end();
-		}
-		R += Msg.substring(LastIndex);
-		
-		return R;
+		return MeemiMarkup.toHTML(Meemi);
 	}
 	
 	/**
@@ -368,23 +431,47 @@ public class Utility {
 	 * @return the formated date
 	 */
 	public static String formatDate(final String StringDate, final String OutputFormat, final String InputFormat) {
-		String FormatedDate = "";
+		return formatDate( parseDate(StringDate, InputFormat), OutputFormat );
+	}
+	
+	/**
+	 * This method formats the input date according to the current localization context.
+	 * 
+	 * @param JavaDate		the date to format (can be null)
+	 * @param OutputFormat	the string representing the data format
+	 * 
+	 * @return the formated date, or an empty string if the date is null
+	 */
+	public static String formatDate(final Date JavaDate, final String OutputFormat) {
+		if (null == JavaDate) {
+			return "";
+		}
+		
+		return DateFormat.format( OutputFormat, JavaDate ).toString();
+	}
+	
+	/**
+	 * This method parses a date returned by the Meemi API.
+	 * 
+	 * @param StringDate	the date to parse
+	 * @param InputFormat	the string representing the data format
+	 * 
+	 * @return the parsed date, or null if the date is not valid
+	 */
+	public static Date parseDate(final String StringDate, final String InputFormat) {
+		Date JavaDate = null;
 		
 		String InputDate = StringDate.replaceAll("T", " ").replaceAll("Z", "");
 		
 		try {			
 			if ( !("0000-00-00".equals(InputDate)) ) {
-				Date JavaDate = org.apache.http.impl.cookie.DateUtils.parseDate(InputDate, new String[] {InputFormat});
-			
-				FormatedDate = DateFormat.format( OutputFormat, JavaDate ).toString();
+				JavaDate = org.apache.http.impl.cookie.DateUtils.parseDate(InputDate, new String[] {InputFormat});
 			}
 		} catch (DateParseException ex) {
 			Log.d("Utility", "Can not format the user date", ex);
-			
-			FormatedDate = "";
 		}
 		
-		return FormatedDate;
+		return JavaDate;
 	}
 	
 	/**
@@ -1,7 +1,5 @@
 package adiep.meemidroid.dialogs;
 
-import java.util.Map;
-
 import adiep.meemidroid.MeemiDroidApplication;
 import adiep.meemidroid.R;
 import adiep.meemidroid.Utility;
@@ -9,6 +7,7 @@ import adiep.meemidroid.dialogs.settings.CredentialsSettingDialog;
 import adiep.meemidroid.engine.MeemiEngine;
 import adiep.meemidroid.engine.MeemiEngine.Callbackable;
 import adiep.meemidroid.engine.MeemiEngine.MeemiEngineResult;
+import adiep.meemidroid.engine.UserProfile;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
@@ -33,7 +32,7 @@ import android.widget.Button;
  * meemis (i.e., Meemi messages), to access her profile, and so on.
  * 
  * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 0.5
+ * @version 0.6
  */
 public class MeemiDroidMain extends Activity implements MeemiEngine.Callbackable {
 	/**
@@ -51,7 +50,7 @@ public class MeemiDroidMain extends Activity implements MeemiEngine.Callbackable
 	public void onEngineExecuteResult(MeemiEngineResult Result) {
 		LogedUserInfo = MeemiEngine.parseUserProfileResult(Result);
 		
-		if ( null == LogedUserInfo || 0 == LogedUserInfo.size() ) {
+		if (null == LogedUserInfo) {
 			activateUI(false);
 			
 			if (IsFirstTimeLogin) {
@@ -87,8 +86,19 @@ public class MeemiDroidMain extends Activity implements MeemiEngine.Callbackable
         Intent Splash = new Intent(this, SplashScreen.class);
 		//IsAlreadyExitFromSplashScreen = true;
         startActivityForResult(Splash, ACTIVITY_SPLASH);
-       
-        LogedUserID = MeemiDroidApplication.Engine.getCredentials().getUsername();
+        
+        // the user is read after the splash screen, once the credentials have been loaded in background
+    }
+
+    /**
+     * This method is called when the activity is going to be destroyed:
+     * the pending requests done by this activity are cancelled.
+     */
+    @Override
+    protected void onDestroy() {
+        MeemiDroidApplication.Engine.cancelRequests(this);
+        
+        super.onDestroy();
     }
     
     /**
@@ -271,13 +281,17 @@ public class MeemiDroidMain extends Activity implements MeemiEngine.Callbackable
 	@Override
 	protected void onActivityResult(int requestCode, int resultCode, Intent data) {
 		switch (requestCode) {
-			case ACTIVITY_SPLASH:				
+			case ACTIVITY_SPLASH:
+				LogedUserID = MeemiDroidApplication.Engine.getCredentials().getUsername();
+				
 		        if ( !MeemiDroidApplication.Engine.getCredentials().isMemorized() ) {
 		        	Utility.ShowToast(this, R.string.AllertNoCredentials);
 		        	
 		        	showDialog(SETTING_CREDENTIAL_DIALOG);
 		        }
 		        
+		        // the profile has been requested during the splash screen: the
+		        // request in progress is shared, or the response is cached
 		        MeemiDroidApplication.Engine.getUserProfile(LogedUserID, this, this);
 		        
 				break;
@@ -400,7 +414,7 @@ public class MeemiDroidMain extends Activity implements MeemiEngine.Callbackable
 			Intent UserInfo = new Intent(MeemiDroidMain.this, MeemiUsersList.class);
 			
 			UserInfo.putExtra( MeemiUsersList.USER, LogedUserID );
-			UserInfo.putExtra( MeemiUsersList.NUM_OF_USERS, Integer.parseInt( LogedUserInfo.get("followings") ) );
+			UserInfo.putExtra( MeemiUsersList.NUM_OF_USERS, LogedUserInfo.getFollowings() );
 			UserInfo.putExtra( MeemiUsersList.TYPE, MeemiUsersList.FOLLOWING);
         	
         	startActivityForResult(UserInfo, ACTIVITY_USERSLIST);
@@ -417,7 +431,7 @@ public class MeemiDroidMain extends Activity implements MeemiEngine.Callbackable
 			Intent UserInfo = new Intent(MeemiDroidMain.this, MeemiUsersList.class);
 			
 			UserInfo.putExtra( MeemiUsersList.USER, LogedUserID );
-			UserInfo.putExtra( MeemiUsersList.NUM_OF_USERS, Integer.parseInt( LogedUserInfo.get("followers") ) );			
+			UserInfo.putExtra( MeemiUsersList.NUM_OF_USERS, LogedUserInfo.getFollowers() );			
 			UserInfo.putExtra( MeemiUsersList.TYPE, MeemiUsersList.FOLLOWERS);
         	
         	startActivityForResult(UserInfo, ACTIVITY_USERSLIST);
@@ -443,7 +457,7 @@ public class MeemiDroidMain extends Activity implements MeemiEngine.Callbackable
 	
 	
 	private String LogedUserID = null;
-	private Map<String, String> LogedUserInfo = null;
+	private UserProfile LogedUserInfo = null;
 	
 	private boolean IsFirstTimeLogin = true; 
 	//private boolean IsAlreadyExitFromSplashScreen = false;
@@ -1,14 +1,20 @@
 package adiep.meemidroid.dialogs;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.Map;
+import java.util.Set;
 
 import adiep.meemidroid.MeemiDroidApplication;
 import adiep.meemidroid.R;
 import adiep.meemidroid.dialogs.listadapters.LazyAdapterMeemisList;
 import adiep.meemidroid.dialogs.listadapters.LazyAdapterMeemisList.ViewHolder;
+import adiep.meemidroid.dialogs.listadapters.NextPageLoader;
+import adiep.meemidroid.dialogs.listadapters.ScrollPrefetcher;
 import adiep.meemidroid.engine.LifestreamConst;
+import adiep.meemidroid.engine.Meeme;
 import adiep.meemidroid.engine.MeemiEngine;
 import adiep.meemidroid.engine.MeemiEngine.Callbackable;
 import adiep.meemidroid.engine.MeemiEngine.MeemiEngineResult;
@@ -23,16 +29,21 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
+import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 import android.widget.AdapterView.OnItemClickListener;
-import android.widget.BaseAdapter;
 
 /**
  * This activity represents the list of meemi of a specific lifestream. 
+ * The messages stored offline are showed immediately, then the head of the
+ * lifestream is downloaded, page by page, until it reaches the stored messages,
+ * and merged in the list in the lifestream order.
+ * The refresh merges the head of the lifestream in the same way, without
+ * moving the rows the user is reading.
  * 
  * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 1.0
+ * @version 1.8
  */
 public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbackable {
 	/**
@@ -40,20 +51,68 @@ public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbac
 	 * the {@link MeemiEngine} instance.
 	 * In this {@link Activity}, it manages the response to the following
 	 * requests:
+	 * - {@link MeemiEngine#loadStoredLifeStream(String, int, android.content.Context, Callbackable)}
 	 * - {@link MeemiEngine#getLifeStream(String, String, int, android.content.Context, Callbackable)}
 	 * 
 	 * @param Result	the API call result
 	 * 
+	 * @see MeemiEngine#loadStoredLifeStream(String, int, android.content.Context, Callbackable)
 	 * @see MeemiEngine#getLifeStream(String, String, int, android.content.Context, Callbackable)
 	 */
 	@Override
 	public void onEngineExecuteResult(MeemiEngineResult Result) {
-		List<TreeMap<String, String>> TmpMeemisListToAdd = MeemiEngine.parseMeemiStreamResult(Result);
+		List<Meeme> TmpMeemisListToAdd = MeemiEngine.parseMeemiStreamResult(Result);
 		
-		if (null != TmpMeemisListToAdd) {
-			MeemisList.addAll(TmpMeemisListToAdd);
+		if (MeemiEngine.CB_STORED_LIFESTREAM == Result.CallbackMethod) {
+			showMeemis( TmpMeemisListToAdd, MeemisList.size() );
 			
-			Meemis.notifyDataSetChanged();
+			// now the newest messages can be downloaded, without covering the stored ones
+			startSync();
+		} else if ( MeemiEngine.isResultFailed(Result) ) {
+			// the page is requested again by the next scroll (the gap with the stored
+			// messages, if any, is filled when it's loaded)
+			Pager.onPageFailed(Result.Page);
+			
+			setSyncing(false);
+		} else if (0 != SyncPage && Result.Page == SyncPage) {
+			// a page of the head: if it doesn't reach the showed messages, there is a
+			// gap between them and the downloaded ones, and the next page is needed
+			// too (the pages are counted from the head of the lifestream, even after
+			// a refresh)
+			boolean IsGap = isSyncIncomplete(TmpMeemisListToAdd);
+			
+			if (1 == Result.Page) {
+				PageSize = TmpMeemisListToAdd.size();
+			}
+			
+			showMeemis(TmpMeemisListToAdd, SyncEnd);
+			
+			for (Meeme M : TmpMeemisListToAdd) {
+				SyncEnd = Math.max( SyncEnd, Positions.get( M.getId() ) + 1 );
+			}
+			
+			Pager.onPageLoaded( Result.Page, TmpMeemisListToAdd.isEmpty() );
+			
+			if (IsGap && SyncPage < MAX_SYNC_PAGES) {
+				Pager.requestPage(++SyncPage);
+			} else {
+				if ( !IsGap && 0 < PageSize ) {
+					// the rows showed before continue the head: the scroll goes on
+					// from the page of the last row, not from the page after the head
+					Pager.setLastPage( MeemisList.size() / PageSize );
+				}
+				
+				SyncPage = 0;
+				
+				if (!Result.IsStale) {
+					setSyncing(false);
+				}
+			}
+		} else {
+			// a page requested by the scroll: its messages are appended
+			showMeemis( TmpMeemisListToAdd, MeemisList.size() );
+			
+			Pager.onPageLoaded( Result.Page, TmpMeemisListToAdd.isEmpty() );
 		}
 	};
 	
@@ -81,6 +140,17 @@ public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbac
 		
 		registerForContextMenu( this.getListView() );
 	}
+
+	/**
+	 * This method is called when the activity is going to be destroyed:
+	 * the pending requests done by this activity are cancelled.
+	 */
+	@Override
+	protected void onDestroy() {
+		MeemiDroidApplication.Engine.cancelRequests(this);
+		
+		super.onDestroy();
+	}
 	
 	/**
     * This method inflates the activity main menu (from XML resource) and uses it
@@ -113,12 +183,11 @@ public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbac
 			TW.setText( MeemiDroidApplication.getContext().getString(R.string.LblStreamOf) + " " + CurrentMeemer);
 		}
 		
-		CurrentPage = 1;
-		
 		//int ResLoadExtraString = R.string.UserListItemExtraLoad;
 		//int ResLoadExtraIcon = R.drawable.main_ui_followers;
 		
-		MeemiDroidApplication.Engine.getLifeStream(CurrentMeemer, ListType, CurrentPage, MeemiLifestream.this, MeemiLifestream.this);
+		// the stored messages are showed first, then the newest ones are downloaded
+		MeemiDroidApplication.Engine.loadStoredLifeStream(CurrentMeemer, ListType, MeemiLifestream.this, MeemiLifestream.this);
 		
 		Meemis = new LazyAdapterMeemisList(this, MeemisList);
 		
@@ -126,10 +195,179 @@ public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbac
 		
 		getListView().setOnItemClickListener( new ItemClickListener() );
 		
+		// the next page and the avatars of the next rows are downloaded while the list is scrolled
+		Pager = new NextPageLoader( new NextPageListener(), new ScrollPrefetcher(Meemis) );
+		getListView().setOnScrollListener(Pager);
+		
 		// Fastscroll
 		getListView().setFastScrollEnabled( MeemiDroidApplication.Prefs.isFastScrollEnabled() );
 	}
 	
+	/**
+	 * This method merges the input messages in the list and updates the list view.
+	 * If messages are inserted or moved, the list view is reloaded keeping the first
+	 * visible message in the same place on the screen; otherwise only the visible
+	 * rows of the changed messages are updated.
+	 * 
+	 * @param NewMeemis	the messages to show, in the lifestream order (can be null)
+	 * @param At		the position of the list where the messages go
+	 * 
+	 * @see #mergeMeemis(List, int)
+	 */
+	private void showMeemis(final List<Meeme> NewMeemis, final int At) {
+		ListView LV = getListView();
+		
+		// the first visible message, and its distance from the top of the list view
+		long AnchorId = 0;
+		int AnchorTop = 0;
+		
+		int First = LV.getFirstVisiblePosition();
+		if ( First < MeemisList.size() && 0 < LV.getChildCount() ) {
+			AnchorId = MeemisList.get(First).getId();
+			AnchorTop = LV.getChildAt(0).getTop();
+		}
+		
+		ChangedPositions.clear();
+		
+		if ( mergeMeemis(NewMeemis, At) ) {
+			Meemis.notifyDataSetChanged();
+			
+			if (0 != AnchorId) {
+				LV.setSelectionFromTop( Positions.get(AnchorId), AnchorTop );
+			}
+		} else {
+			// no row is moved: only the visible changed ones are bound again
+			int Last = LV.getLastVisiblePosition();
+			
+			for (int Position : ChangedPositions) {
+				if (First <= Position && Position <= Last) {
+					Meemis.getView( Position, LV.getChildAt(Position - First), LV );
+				}
+			}
+		}
+	}
+	
+	/**
+	 * This method merges the input messages (a page of the lifestream) in the list,
+	 * keeping the order of the lifestream, that is not always the order of the
+	 * identifiers (e.g., the favorites are ordered by the time they were marked):
+	 * the first At rows are kept, the messages of the page follow them, and then
+	 * the other rows of the list, without the ones in the page.
+	 * The rows kept in their position are updated if they are changed (e.g., the
+	 * number of replies), and their positions are added to {@link #ChangedPositions}.
+	 * 
+	 * @param NewMeemis	the messages to merge, in the lifestream order (can be null)
+	 * @param At		the position of the list where the messages go
+	 * 
+	 * @return	true if messages have been inserted or moved in the list
+	 */
+	private boolean mergeMeemis(final List<Meeme> NewMeemis, final int At) {
+		if ( null == NewMeemis || NewMeemis.isEmpty() ) {
+			return false;
+		}
+		
+		Map<Long, Meeme> Downloaded = new HashMap<Long, Meeme>();
+		for (Meeme M : NewMeemis) {
+			Downloaded.put(M.getId(), M);
+		}
+		
+		Set<Long> PageIds = new HashSet<Long>( Downloaded.keySet() );
+		
+		List<Meeme> Merged = new ArrayList<Meeme>( MeemisList.size() + NewMeemis.size() );
+		
+		for (int i = 0; i < At; ++i) {
+			Meeme New = Downloaded.remove( MeemisList.get(i).getId() );
+			
+			Merged.add( (null != New) ? New : MeemisList.get(i) );
+		}
+		
+		for (Meeme M : NewMeemis) {
+			if ( null != Downloaded.remove( M.getId() ) ) {
+				Merged.add(M);
+			}
+		}
+		
+		for (int i = At; i < MeemisList.size(); ++i) {
+			if ( !PageIds.contains( MeemisList.get(i).getId() ) ) {
+				Merged.add( MeemisList.get(i) );
+			}
+		}
+		
+		boolean IsMoved = Merged.size() != MeemisList.size();
+		for (int i = 0; !IsMoved && i < Merged.size(); ++i) {
+			IsMoved = Merged.get(i).getId() != MeemisList.get(i).getId();
+		}
+		
+		if (IsMoved) {
+			MeemisList.clear();
+			Positions.clear();
+			
+			for (Meeme M : Merged) {
+				Positions.put( M.getId(), MeemisList.size() );
+				MeemisList.add(M);
+			}
+			
+			return true;
+		}
+		
+		for (int i = 0; i < Merged.size(); ++i) {
+			if ( !MeemisList.get(i).hasSameContents( Merged.get(i) ) ) {
+				MeemisList.set( i, Merged.get(i) );
+				ChangedPositions.add(i);
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This method shows (or hides) the indicator of the synchronization with Meemi:
+	 * it doesn't cover the list, so the messages can be read during the download.
+	 * 
+	 * @param Syncing	true if the newest messages are being downloaded
+	 */
+	private void setSyncing(final boolean Syncing) {
+		findViewById(R.id.SyncProgress).setVisibility(Syncing ? View.VISIBLE : View.GONE);
+	}
+	
+	/**
+	 * This method returns true if the input downloaded messages don't share any
+	 * message with the rows showed before the synchronization (the ones after
+	 * {@link #SyncEnd}): i.e., other new messages can be in the next page.
+	 * 
+	 * @param Downloaded	the downloaded messages
+	 * 
+	 * @return	true if the next page has to be downloaded too
+	 */
+	private boolean isSyncIncomplete(final List<Meeme> Downloaded) {
+		if ( null == Downloaded || Downloaded.isEmpty() || MeemisList.size() <= SyncEnd ) {
+			return false;
+		}
+		
+		for (Meeme M : Downloaded) {
+			Integer Position = Positions.get( M.getId() );
+			
+			if (null != Position && SyncEnd <= Position) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * This method starts the synchronization of the list with the head of the
+	 * lifestream: the pages are downloaded from the first one, and merged at the
+	 * top of the list, until a page reaches the rows already showed.
+	 */
+	private void startSync() {
+		SyncPage = 1;
+		SyncEnd = 0;
+		
+		setSyncing(true);
+		Pager.requestPage(SyncPage);
+	}
+	
 	/**
 	 * This method setups the context menu (long press) for select what you can do with a contact
 	 * in the users list.
@@ -171,8 +409,8 @@ public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbac
 	public boolean onContextItemSelected(MenuItem item) {
 		int ItemId = ((AdapterContextMenuInfo)item.getMenuInfo()).position;
 		
-		String MeemiId = (String) MeemisList.get(ItemId).get("Id");
-		String UserNick = (String) MeemisList.get(ItemId).get("MeemerName");
+		String MeemiId = MeemisList.get(ItemId).getIdString();
+		String UserNick = MeemisList.get(ItemId).getMeemerName();
 		
 		switch(item.getItemId()) {
 		case CM_SHOWUSERINFO:
@@ -202,13 +440,8 @@ public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbac
 		case CM_SWITCHFAV:
 			MeemiDroidApplication.Engine.switchAsFavorite(MeemiId, UserNick, this, null);
 			
-			TreeMap<String, String> TmpMeme = MeemisList.get(ItemId);
-			if ( "1".equals( TmpMeme.get("IsFavorite") ) ) {
-				TmpMeme.put("IsFavorite", "0");
-			} else {
-				TmpMeme.put("IsFavorite", "1");
-			}
-			MeemisList.set(ItemId, TmpMeme);
+			Meeme TmpMeme = MeemisList.get(ItemId);
+			MeemisList.set( ItemId, TmpMeme.withFavorite( !TmpMeme.isFavorite() ) );
 			Meemis.notifyDataSetChanged();		
 			
 			return true;	
@@ -237,8 +470,8 @@ public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbac
 		@Override
 		public void onItemClick(AdapterView<?> arg0, View arg1, int position, long arg3) {
 			if ( position < MeemisList.size() ) {
-				String MeemiId = (String) MeemisList.get(position).get("Id");
-				String UserNick = (String) MeemisList.get(position).get("MeemerName");
+				String MeemiId = MeemisList.get(position).getIdString();
+				String UserNick = MeemisList.get(position).getMeemerName();
 			
 				Intent ShowRepliesIntent = new Intent(MeemiLifestream.this, MeemiRepliesList.class);
 	        	
@@ -247,14 +480,25 @@ public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbac
 	        	
 	        	startActivityForResult(ShowRepliesIntent, ACTIVITY_REPLY);
 			} else {
-				++CurrentPage;
-				
-				MeemiDroidApplication.Engine.getLifeStream(CurrentMeemer, ListType, CurrentPage, MeemiLifestream.this, MeemiLifestream.this);
+				Pager.requestNextPage();
 			}
 		}
 		
 	}
 	
+	/**
+	 * This private class downloads the pages requested by the {@link NextPageLoader}
+	 * in background (the pages appended while scrolling, and the ones synchronizing
+	 * the head of the list): the messages are merged without a waiting dialog.
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private class NextPageListener implements NextPageLoader.OnLoadPageListener {
+		public void onLoadPage(int Page) {
+			MeemiDroidApplication.Engine.getLifeStream(CurrentMeemer, ListType, Page, false, MeemiLifestream.this, MeemiLifestream.this);
+		}
+	}
+	
 	/** 
 	 * This method defines options menu action.
 	 * 
@@ -271,22 +515,9 @@ public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbac
     	
 	    switch (item.getItemId()) {
 	    	case R.id.itemRefresh:
-	    		MeemisList.clear();
-	    		
-	    		/* I don't like this solution to move to the top of the
-				 * ListView... but is the only working method I found 
-				 */
-				MeemiLifestream.this.getListView().post(
-					new Thread() {
-						public void run() {
-							MeemiLifestream.this.getListView().setSelection(0);
-						}
-					}
-				);
-	    		
-	    		CurrentPage = 1;
-	    		
-				MeemiDroidApplication.Engine.getLifeStream(CurrentMeemer, ListType, CurrentPage, MeemiLifestream.this, MeemiLifestream.this);
+	    		// the head of the lifestream is merged in the list: if it doesn't reach
+	    		// the showed messages, the gap is filled like the stored ones
+	    		startSync();
 				
 	        	break;
 		  default:
@@ -315,15 +546,33 @@ public class MeemiLifestream extends ListActivity implements MeemiEngine.Callbac
 	private static final int ACTIVITY_REPLY = 2;
 	private static final int ACTIVITY_MESSAGES = 3;
 	
+	// the maximum number of pages downloaded to fill the gap with the stored messages
+	private static final int MAX_SYNC_PAGES = 5;
+	
 	private String CurrentMeemer = null;
 	private boolean IsCurrentMeemerEqualToLogedUser = false;
 	
 	private int ListType = LifestreamConst.GENERAL_LS;
 	//private boolean isUserOwner = false;
 	
-	private List<TreeMap<String, String>> MeemisList = new ArrayList<TreeMap<String, String>>();
+	private List<Meeme> MeemisList = new ArrayList<Meeme>();
+	
+	// the position of each message in MeemisList, by message identifier
+	private Map<Long, Integer> Positions = new HashMap<Long, Integer>();
+	
+	// the page of the lifestream head being synchronized (0 when the downloaded
+	// messages are synchronized with the showed ones), and the number of rows at
+	// the top of the list downloaded by the synchronization
+	private int SyncPage = 0;
+	private int SyncEnd = 0;
+	
+	// the number of messages of a page of the lifestream (the size of the first page)
+	private int PageSize = 0;
+	
+	// the positions of the messages changed by the last merge
+	private final List<Integer> ChangedPositions = new ArrayList<Integer>();
 	
-	private BaseAdapter Meemis = null;
-	private int CurrentPage = 1;
+	private LazyAdapterMeemisList Meemis = null;
+	private NextPageLoader Pager = null;
 	
 }
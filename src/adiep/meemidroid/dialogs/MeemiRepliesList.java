@@ -2,13 +2,13 @@ package adiep.meemidroid.dialogs;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.TreeMap;
 
 import adiep.meemidroid.MeemiDroidApplication;
 import adiep.meemidroid.R;
 import adiep.meemidroid.dialogs.listadapters.LazyAdapterRepliesList;
 import adiep.meemidroid.dialogs.listadapters.LazyAdapterRepliesList.ViewHolder;
 import adiep.meemidroid.engine.LifestreamConst;
+import adiep.meemidroid.engine.Meeme;
 import adiep.meemidroid.engine.MeemiEngine;
 import adiep.meemidroid.engine.MeemiEngine.Callbackable;
 import adiep.meemidroid.engine.MeemiEngine.MeemiEngineResult;
@@ -58,20 +58,22 @@ public class MeemiRepliesList extends ListActivity implements MeemiEngine.Callba
 			
 			// here we finalize the initialization of this Activity loading all the replies:
 			RepliesList.clear();
-			RepliesList.add(OriginalMeeme);
+			if (null != OriginalMeeme) {
+				RepliesList.add(OriginalMeeme);
+			}
 			
 			MeemiDroidApplication.Engine.getReplies(Meemer, MeemeID, 1, this, this);			
 			break;
 			
 		case MeemiEngine.CB_REPLYSTREAM:
-			List<TreeMap<String, String>> TmpRepliesList = MeemiEngine.parseMeemiStreamResult(Result);
+			List<Meeme> TmpRepliesList = MeemiEngine.parseMeemiStreamResult(Result);
 			
 			if (null != TmpRepliesList) {
 				RepliesList.addAll(TmpRepliesList);
 			}
 			
 			if (null == Replies) {
-				Replies = new LazyAdapterRepliesList( this, RepliesList, Integer.parseInt( (String)OriginalMeeme.get("NumOfComments") ) );
+				Replies = new LazyAdapterRepliesList( this, RepliesList, (null != OriginalMeeme) ? OriginalMeeme.getNumOfComments() : 0 );
 				
 				setListAdapter(Replies);
 			}
@@ -106,6 +108,17 @@ public class MeemiRepliesList extends ListActivity implements MeemiEngine.Callba
 		
 		registerForContextMenu( this.getListView() );
 	}
+
+	/**
+	 * This method is called when the activity is going to be destroyed:
+	 * the pending requests done by this activity are cancelled.
+	 */
+	@Override
+	protected void onDestroy() {
+		MeemiDroidApplication.Engine.cancelRequests(this);
+		
+		super.onDestroy();
+	}
 	
 	/**
     * This method inflates the activity main menu (from XML resource) and uses it
@@ -190,8 +203,8 @@ public class MeemiRepliesList extends ListActivity implements MeemiEngine.Callba
 	public boolean onContextItemSelected(MenuItem item) {
 		int ItemId = ((AdapterContextMenuInfo)item.getMenuInfo()).position;
 		
-		String MeemiId = (String) RepliesList.get(ItemId).get("Id");
-		String UserNick = (String) RepliesList.get(ItemId).get("MeemerName");
+		String MeemiId = RepliesList.get(ItemId).getIdString();
+		String UserNick = RepliesList.get(ItemId).getMeemerName();
 		
 		switch(item.getItemId()) {
 		case CM_SHOWUSERINFO:
@@ -221,13 +234,8 @@ public class MeemiRepliesList extends ListActivity implements MeemiEngine.Callba
 		case CM_SWITCHFAV:
 			MeemiDroidApplication.Engine.switchAsFavorite(MeemiId, UserNick, this, null);
 			
-			TreeMap<String, String> TmpMeme = RepliesList.get(ItemId);
-			if ( "1".equals( TmpMeme.get("IsFavorite") ) ) {
-				TmpMeme.put("IsFavorite", "0");
-			} else {
-				TmpMeme.put("IsFavorite", "1");
-			}
-			RepliesList.set(ItemId, TmpMeme);
+			Meeme TmpMeme = RepliesList.get(ItemId);
+			RepliesList.set( ItemId, TmpMeme.withFavorite( !TmpMeme.isFavorite() ) );
 			Replies.notifyDataSetChanged();		
 			
 			return true;
@@ -330,8 +338,8 @@ public class MeemiRepliesList extends ListActivity implements MeemiEngine.Callba
 		@Override
 		public void onItemClick(AdapterView<?> arg0, View arg1, int position, long arg3) {
 			if ( position < RepliesList.size() && 0 != position) {
-				String MeemiId = (String) RepliesList.get(position).get("Id");
-				String UserNick = (String) RepliesList.get(position).get("MeemerName");
+				String MeemiId = RepliesList.get(position).getIdString();
+				String UserNick = RepliesList.get(position).getMeemerName();
 			
 				Intent ShowRepliesIntent = new Intent(MeemiRepliesList.this, MeemiRepliesList.class);
 	        	
@@ -384,10 +392,10 @@ public class MeemiRepliesList extends ListActivity implements MeemiEngine.Callba
 	
 	private String Meemer = null;
 	private String MeemeID = null;
-	private TreeMap<String,String> OriginalMeeme = null;
+	private Meeme OriginalMeeme = null;
 	//private boolean isUserOwner = false;
 	
-	private List<TreeMap<String, String>> RepliesList = new ArrayList<TreeMap<String, String>>();
+	private List<Meeme> RepliesList = new ArrayList<Meeme>();
 	
 	private BaseAdapter Replies = null;	
 }
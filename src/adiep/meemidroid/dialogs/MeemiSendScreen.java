@@ -26,7 +26,7 @@ import android.widget.TextView;
  * This class represents the Activity to send a Meemi over the Internet.
  * 
  * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 0.7
+ * @version 0.9
  */
 public class MeemiSendScreen extends Activity implements MeemiEngine.Callbackable {
 	/**
@@ -60,17 +60,12 @@ public class MeemiSendScreen extends Activity implements MeemiEngine.Callbackabl
 					this.finish();
 				}
 			}
-		} else {
-			TextBox.setText("");
-			
-			ImagePreview.setVisibility(View.GONE);
-			
-			MessageInfo.setText("");
-			MessageInfo.setVisibility(View.GONE);
-		
-			if (IsAReply) {
-				// If we are sending a reply, after the transmission we have to close this activity ;) 
-				MeemiSendScreen.this.finish();
+		} else if ( null == MeemiEngine.parsePostMeemiResult(Result) ) {
+			// the post has been sent in background (see PostMessage): only the failures are notified
+			if ( MeemiEngine.isResultUnknown(Result) ) {
+				Utility.ShowToast(this, R.string.AllertPostUnknown);
+			} else {
+				Utility.ShowToast(this, R.string.AllertPostFailed);
 			}
 		}
 	};
@@ -106,6 +101,17 @@ public class MeemiSendScreen extends Activity implements MeemiEngine.Callbackabl
         	Utility.ShowToast(this, R.string.AllertNoInternet);
         }
 	}
+
+	/**
+	 * This method is called when the activity is going to be destroyed:
+	 * the pending requests done by this activity are cancelled.
+	 */
+	@Override
+	protected void onDestroy() {
+		MeemiDroidApplication.Engine.cancelRequests(this);
+		
+		super.onDestroy();
+	}
 	
     /**
 	 * This method is called when the activity change change orientation or the
@@ -202,12 +208,15 @@ public class MeemiSendScreen extends Activity implements MeemiEngine.Callbackabl
         	MessageInfo.setVisibility(View.VISIBLE);
         }
         
-        findViewById(R.id.ButtonPostMeemi).setEnabled( Utility.isInternetConnected(this) );
+        // the posts are written to the outbox, so they can be written even offline
+        findViewById(R.id.ButtonPostMeemi).setEnabled(true);
 	}
 	
 	
 	/**
-	 * This private class is used to manage the the send message button
+	 * This private class is used to manage the the send message button: the
+	 * post is written to the outbox of the {@link MeemiEngine}, so the form is
+	 * cleared immediately, without waiting for the transmission.
 	 * 
 	 * @author Andrea de Iacovo, and Eros Pedrini
 	 */
@@ -232,6 +241,21 @@ public class MeemiSendScreen extends Activity implements MeemiEngine.Callbackabl
 				
 				MeemiDroidApplication.Engine.postImage(Message, ImageUri, UsersList, MeemiSendScreen.this, MeemiSendScreen.this);
 			}
+			
+			Utility.ShowToast(MeemiSendScreen.this, R.string.AllertPostQueued);
+			
+			TextBox.setText("");
+			
+			ImagePreview.setVisibility(View.GONE);
+			Type = MessageType.MT_TEXT;
+			
+			MessageInfo.setText("");
+			MessageInfo.setVisibility(View.GONE);
+			
+			if (IsAReply) {
+				// If we are sending a reply, after the post we have to close this activity ;) 
+				MeemiSendScreen.this.finish();
+			}
 		}
 	}
 	
@@ -1,11 +1,15 @@
 package adiep.meemidroid.dialogs;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.Map;
 
 import adiep.meemidroid.dialogs.listadapters.LazyAdapterUsersList;
 import adiep.meemidroid.dialogs.listadapters.LazyAdapterUsersList.ViewHolder;
+import adiep.meemidroid.dialogs.listadapters.NextPageLoader;
+import adiep.meemidroid.dialogs.listadapters.ScrollPrefetcher;
+import adiep.meemidroid.engine.Friend;
 import adiep.meemidroid.engine.LifestreamConst;
 import adiep.meemidroid.engine.MeemiEngine;
 import adiep.meemidroid.engine.MeemiEngine.MeemiEngineResult;
@@ -22,7 +26,6 @@ import android.view.View;
 import android.widget.AdapterView;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 import android.widget.AdapterView.OnItemClickListener;
-import android.widget.BaseAdapter;
 import android.widget.TextView;
 
 /**
@@ -30,7 +33,7 @@ import android.widget.TextView;
  * by a specific Meemi user. 
  * 
  * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 0.5
+ * @version 0.8
  */
 public class MeemiUsersList extends ListActivity implements MeemiEngine.Callbackable {
 	/**
@@ -48,13 +51,42 @@ public class MeemiUsersList extends ListActivity implements MeemiEngine.Callback
 	 */
 	@Override
 	public void onEngineExecuteResult(MeemiEngineResult Result) {
-		List<TreeMap<String, String>> TmpUsersListToAdd = MeemiEngine.parseFriendsResult(Result);
+		if ( MeemiEngine.isResultFailed(Result) ) {
+			// the page is requested again by the next scroll
+			Pager.onPageFailed(Result.Page);
+			return;
+		}
 		
-		if ( null != TmpUsersListToAdd && 0 != TmpUsersListToAdd.size() ) {
-			UsersList.addAll(TmpUsersListToAdd);
+		List<Friend> TmpUsersListToAdd = MeemiEngine.parseFriendsResult(Result);
+		
+		StaleRows Stale = StalePages.remove(Result.Page);
+		
+		if (null != Stale) {
+			// the page showed from the cache has been updated: it's replaced, and
+			// the rows of the following stale pages are moved
+			UsersList.subList(Stale.Start, Stale.Start + Stale.Size).clear();
+			UsersList.addAll(Stale.Start, TmpUsersListToAdd);
+			
+			for (StaleRows S : StalePages.values()) {
+				if (S.Start > Stale.Start) {
+					S.Start += TmpUsersListToAdd.size() - Stale.Size;
+				}
+			}
+		} else if ( TmpUsersListToAdd.isEmpty() ) {
+			Pager.onPageLoaded(Result.Page, true);
+			return;
+		} else {
+			if (Result.IsStale) {
+				StalePages.put( Result.Page, new StaleRows( UsersList.size(), TmpUsersListToAdd.size() ) );
+			}
 			
-			Users.notifyDataSetChanged();
+			UsersList.addAll(TmpUsersListToAdd);
 		}
+		
+		// the last page contains the last users of the profile
+		Pager.onPageLoaded( Result.Page, UsersList.size() >= MaxNumOfUsers );
+		
+		Users.notifyDataSetChanged();
 	}
 	
 	
@@ -82,6 +114,17 @@ public class MeemiUsersList extends ListActivity implements MeemiEngine.Callback
 		
 		registerForContextMenu( this.getListView() );
 	}
+
+	/**
+	 * This method is called when the activity is going to be destroyed:
+	 * the pending requests done by this activity are cancelled.
+	 */
+	@Override
+	protected void onDestroy() {
+		MeemiDroidApplication.Engine.cancelRequests(this);
+		
+		super.onDestroy();
+	}
 	
 	/**
 	 * This method defines the layout of the activity and links all the listeners
@@ -92,19 +135,17 @@ public class MeemiUsersList extends ListActivity implements MeemiEngine.Callback
 		
 		TextView Header = (TextView)findViewById(R.id.TextViewUSersListHeader);
 		
-		CurrentPage = 1;
-		
 		int ResLoadExtraString = R.string.UserListItemExtraLoad;
 		int ResLoadExtraIcon = R.drawable.main_ui_followers;
 		
 		if (FOLLOWERS == ListType) {
 			Header.setText( getString(R.string.UserListActivityFollowers) + " " + CurrentUser );
 			
-			MeemiDroidApplication.Engine.getFollowers(CurrentUser, CurrentPage, this, this);
+			MeemiDroidApplication.Engine.getFollowers(CurrentUser, 1, this, this);
 		} else {
 			Header.setText( getString(R.string.UserListActivityFollowing) + " " + CurrentUser );
 			
-			MeemiDroidApplication.Engine.getFollowings(CurrentUser, CurrentPage, this, this);
+			MeemiDroidApplication.Engine.getFollowings(CurrentUser, 1, this, this);
 			
 			ResLoadExtraIcon = R.drawable.main_ui_following;
 		}
@@ -115,6 +156,10 @@ public class MeemiUsersList extends ListActivity implements MeemiEngine.Callback
 		
 		getListView().setOnItemClickListener( new ItemClickListener() );
 		
+		// the next page and the avatars of the next rows are downloaded while the list is scrolled
+		Pager = new NextPageLoader( new NextPageListener(), new ScrollPrefetcher(Users) );
+		getListView().setOnScrollListener(Pager);
+		
 		// Fastscroll
 		getListView().setFastScrollEnabled( MeemiDroidApplication.Prefs.isFastScrollEnabled() );
 	}
@@ -150,7 +195,7 @@ public class MeemiUsersList extends ListActivity implements MeemiEngine.Callback
 	public boolean onContextItemSelected(MenuItem item) {
 		int ItemId = ((AdapterContextMenuInfo)item.getMenuInfo()).position;
 		
-		String UserNick = (String) UsersList.get(ItemId).get("UserId");
+		String UserNick = UsersList.get(ItemId).getUserId();
 		
 		switch(item.getItemId()) {
 		case CM_SHOWUSERINFO:
@@ -193,24 +238,56 @@ public class MeemiUsersList extends ListActivity implements MeemiEngine.Callback
 		@Override
 		public void onItemClick(AdapterView<?> arg0, View arg1, int position, long arg3) {
 			if ( position < UsersList.size() ) {
-				String UserNick = (String) UsersList.get(position).get("UserId");
+				String UserNick = UsersList.get(position).getUserId();
 			
 				Intent UserInfo = new Intent(MeemiUsersList.this, UserScreen.class);
 				UserInfo.putExtra( UserScreen.USER, UserNick );
 			
 				startActivityForResult(UserInfo, ACTIVITY_USER);
 			} else {
-				++CurrentPage;
-				
-				if (FOLLOWERS == ListType) {
-					MeemiDroidApplication.Engine.getFollowers(CurrentUser, CurrentPage, MeemiUsersList.this, MeemiUsersList.this);
-				} else {
-					MeemiDroidApplication.Engine.getFollowings(CurrentUser, CurrentPage, MeemiUsersList.this, MeemiUsersList.this);
-				}
+				Pager.requestNextPage();
 			}
 		}
 		
 	}
+	
+	/**
+	 * This private class represents the rows of the list filled by a page showed
+	 * from the cache, that are replaced when the page is revalidated.
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static class StaleRows {
+		/**
+		 * The constructor.
+		 * 
+		 * @param S	the position of the first row
+		 * @param N	the number of rows
+		 */
+		public StaleRows(final int S, final int N) {
+			this.Start = S;
+			this.Size = N;
+		}
+		
+		public int Start;
+		public final int Size;
+	}
+	
+	/**
+	 * This private class downloads the pages requested by the {@link NextPageLoader}
+	 * in background: the users are appended without a waiting dialog.
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private class NextPageListener implements NextPageLoader.OnLoadPageListener {
+		public void onLoadPage(int Page) {
+			if (FOLLOWERS == ListType) {
+				MeemiDroidApplication.Engine.getFollowers(CurrentUser, Page, false, MeemiUsersList.this, MeemiUsersList.this);
+			} else {
+				MeemiDroidApplication.Engine.getFollowings(CurrentUser, Page, false, MeemiUsersList.this, MeemiUsersList.this);
+			}
+		}
+	}
 		
 	/**
 	 * The key to be used with {@link Intent#putExtra(String, String)}
@@ -234,10 +311,13 @@ public class MeemiUsersList extends ListActivity implements MeemiEngine.Callback
 	private int ListType = FOLLOWERS;
 	//private boolean isUserOwner = false;
 	
-	private List<TreeMap<String, String>> UsersList = new ArrayList<TreeMap<String, String>>();
+	private List<Friend> UsersList = new ArrayList<Friend>();
 	private int MaxNumOfUsers = 0; 
 	
-	private BaseAdapter Users = null;
-	private int CurrentPage = 1;
+	private LazyAdapterUsersList Users = null;
+	private NextPageLoader Pager = null;
+	
+	// the rows of the pages showed from the cache while they are revalidated, by page
+	private final Map<Integer, StaleRows> StalePages = new HashMap<Integer, StaleRows>();
 	
 }
@@ -1,32 +1,32 @@
 package adiep.meemidroid.dialogs;
 
 import adiep.meemidroid.R;
+import adiep.meemidroid.StartupOrchestrator;
 import adiep.meemidroid.Utility;
 import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Message;
 import android.util.Log;
 import android.widget.ImageView;
 
 /**
  * This activity represents a configurable splash screen:
- * i.e., an ImageView showed centered on the screen for a
- * specific amount of time.
+ * i.e., an ImageView showed centered on the screen while the
+ * application is prepared (see {@link StartupOrchestrator}),
+ * up to a maximum amount of time.
  * 
  * @author Andrea de Iacovo, and Eros Pedrini
- * @version 0.1
+ * @version 0.2
  */
-public class SplashScreen extends Activity {
+public class SplashScreen extends Activity implements StartupOrchestrator.OnReadyListener {
 	
 	/**
      * This method is called when the activity is first created.
      * The default ImageView layout has to be named "splash".
      * If you want change the layout, you can use {@link Intent#putExtra(String, int)}
      * to pass the new layout id. The key to use is SPLASH_LAYOUT.
-     * If you want change the showing time (in milliseconds) of the splash screen, you
-     * can use {@link Intent#putExtra(String, long)} with the key SPLASH_TIME.
+     * If you want change the maximum showing time (in milliseconds) of the splash screen,
+     * you can use {@link Intent#putExtra(String, long)} with the key SPLASH_TIME.
      *  
      * @param savedInstanceState	if the activity is being re-initialized
      * 		 						after previously being shut down then this
@@ -52,26 +52,30 @@ public class SplashScreen extends Activity {
 		
 		long SplashTime = this.getIntent().getLongExtra(SPLASH_TIME, DEFAULT_TIME);
 		
-		Message msg = new Message();
-		msg.what = STOPSPLASH;
-		splashHandler.sendMessageDelayed(msg, SplashTime);
+		Startup = new StartupOrchestrator(this, this);
+		Startup.start(SplashTime);
 	}
 	
-	/* handler for splash screen: close the splash screen after the correct amount of
-	 * time.
+	/**
+	 * This method is called when the activity is going to be destroyed
+	 * (e.g., the user has pressed the back button): the application is not
+	 * waited anymore.
 	 */
-	private Handler splashHandler = new Handler() {
-		@Override
-		public void handleMessage(Message msg) {
-			switch (msg.what) {
-				case STOPSPLASH:
-					finish();
-					break;
-			}
-
-			super.handleMessage(msg);
-		}
-	};
+	@Override
+	protected void onDestroy() {
+		Startup.cancel();
+		
+		super.onDestroy();
+	}
+	
+	/**
+	 * This method is called when the application is ready (or the maximum
+	 * time has run out): the splash screen is closed.
+	 */
+	public void onStartupReady() {
+		finish();
+	}
+	
 	
 	/**
 	 * The key to be used with {@link Intent#putExtra(String, int)} to
@@ -81,16 +85,15 @@ public class SplashScreen extends Activity {
 	
 	/**
 	 * The key to be used with {@link Intent#putExtra(String, long)} to
-	 * change the showing time of the splash screen.
+	 * change the maximum showing time of the splash screen.
 	 */
 	public static final String SPLASH_TIME = "SplashTime";
 	
 	// default splash layout id
 	private static final int DEFAULT_LAYOUT = R.layout.splash;
 	
-	// default time in milliseconds
+	// default maximum time in milliseconds
 	private static final long DEFAULT_TIME = 3000;
 	
-	// message for closing the splash
-	private static final int STOPSPLASH = 0;
+	private StartupOrchestrator Startup = null;
 }
@@ -1,7 +1,6 @@
 package adiep.meemidroid.dialogs;
 
 import java.util.Formatter;
-import java.util.Map;
 
 import adiep.meemidroid.MeemiDroidApplication;
 import adiep.meemidroid.R;
@@ -10,6 +9,7 @@ import adiep.meemidroid.engine.LifestreamConst;
 import adiep.meemidroid.engine.MeemiEngine;
 import adiep.meemidroid.engine.MeemiEngine.Callbackable;
 import adiep.meemidroid.engine.MeemiEngine.MeemiEngineResult;
+import adiep.meemidroid.engine.UserProfile;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
@@ -135,6 +135,17 @@ public class UserScreen extends Activity implements MeemiEngine.Callbackable {
 		
 		setupLayout();
 	}
+
+	/**
+	 * This method is called when the activity is going to be destroyed:
+	 * the pending requests done by this activity are cancelled.
+	 */
+	@Override
+	protected void onDestroy() {
+		MeemiDroidApplication.Engine.cancelRequests(this);
+		
+		super.onDestroy();
+	}
 	
 	/**
     * This method inflates the activity main menu (from XML resource) and uses it
@@ -287,14 +298,18 @@ public class UserScreen extends Activity implements MeemiEngine.Callbackable {
     }
     
     private void updateUI() {
+    	if (null == CurrentUserInfo) {
+    		return;
+    	}
+    	
     	String TmpHTML = formatHTMLTemplate(new String[]{
-    			CurrentUserInfo.get("avatar_url"),
-    			CurrentUserInfo.get("screen_name"),
-    			CurrentUserInfo.get("real_name"),
-    			CurrentUserInfo.get("birth"),
-    			CurrentUserInfo.get("current_location"),
-    			Utility.fromMeemiToHTML( CurrentUserInfo.get("profile") ),
-    			Utility.fromMeemiToHTML( CurrentUserInfo.get("description") )	 
+    			CurrentUserInfo.getAvatarUrl(),
+    			CurrentUserInfo.getScreenName(),
+    			CurrentUserInfo.getRealName(),
+    			CurrentUserInfo.getBirth(),
+    			CurrentUserInfo.getCurrentLocation(),
+    			Utility.fromMeemiToHTML( CurrentUserInfo.getProfile() ),
+    			Utility.fromMeemiToHTML( CurrentUserInfo.getDescription() )	 
     		});
     	
     	WebView ShortDescription = (WebView)findViewById(R.id.UserInfo);
@@ -311,7 +326,7 @@ public class UserScreen extends Activity implements MeemiEngine.Callbackable {
 		}
 		
 		if ( !isUserOwner ) {
-			if ( CurrentUserInfo.get("is_followed").equals("0") ) {
+			if ( !CurrentUserInfo.isFollowed() ) {
 				BtnFollowUnFollow.setText(R.string.BtnAddUser);
 				IsUserFollowed = false;
 			} else {
@@ -319,7 +334,7 @@ public class UserScreen extends Activity implements MeemiEngine.Callbackable {
 				IsUserFollowed = true;
 			}
 			
-			if ( CurrentUserInfo.get("is_blocked").equals("0") ) {
+			if ( !CurrentUserInfo.isBlocked() ) {
 				BtnBlockUnblock.setText(R.string.BtnBlockUser);
 				IsUserBlocked = false;
 			} else {
@@ -328,8 +343,8 @@ public class UserScreen extends Activity implements MeemiEngine.Callbackable {
 			}
 		}
 		
-		((TextView)findViewById(R.id.TextViewFollowingNumber)).setText( CurrentUserInfo.get("followings") );
-		((TextView)findViewById(R.id.TextViewFollowersNumber)).setText( CurrentUserInfo.get("followers") );
+		((TextView)findViewById(R.id.TextViewFollowingNumber)).setText( Integer.toString( CurrentUserInfo.getFollowings() ) );
+		((TextView)findViewById(R.id.TextViewFollowersNumber)).setText( Integer.toString( CurrentUserInfo.getFollowers() ) );
 		
 		((ImageButton)findViewById(R.id.ImageViewFollowers)).setOnClickListener(new FollowerClick() );
 		((ImageButton)findViewById(R.id.ImageViewFollowing)).setOnClickListener(new FollowingClick() );
@@ -415,7 +430,7 @@ public class UserScreen extends Activity implements MeemiEngine.Callbackable {
         public void onClick(View arg0) {       	
         	Intent UserInfo = new Intent(UserScreen.this, MeemiUsersList.class);
 			UserInfo.putExtra( MeemiUsersList.USER, CurrentUser );
-			UserInfo.putExtra( MeemiUsersList.NUM_OF_USERS, Integer.parseInt( CurrentUserInfo.get("followers") ) );
+			UserInfo.putExtra( MeemiUsersList.NUM_OF_USERS, CurrentUserInfo.getFollowers() );
 			UserInfo.putExtra( MeemiUsersList.TYPE, MeemiUsersList.FOLLOWERS);
         	
         	startActivityForResult(UserInfo, ACTIVITY_USERSLIST);
@@ -431,7 +446,7 @@ public class UserScreen extends Activity implements MeemiEngine.Callbackable {
         public void onClick(View arg0) {       	
         	Intent UserInfo = new Intent(UserScreen.this, MeemiUsersList.class);
 			UserInfo.putExtra( MeemiUsersList.USER, CurrentUser );
-			UserInfo.putExtra( MeemiUsersList.NUM_OF_USERS, Integer.parseInt( CurrentUserInfo.get("followings") ) );
+			UserInfo.putExtra( MeemiUsersList.NUM_OF_USERS, CurrentUserInfo.getFollowings() );
 			UserInfo.putExtra( MeemiUsersList.TYPE, MeemiUsersList.FOLLOWING);
         	
         	startActivityForResult(UserInfo, ACTIVITY_USERSLIST);
@@ -441,7 +456,7 @@ public class UserScreen extends Activity implements MeemiEngine.Callbackable {
 	
 	private String CurrentUser = null;
 	private boolean isUserOwner = false;
-	private Map<String, String> CurrentUserInfo = null;
+	private UserProfile CurrentUserInfo = null;
 	
 	private Button BtnPrivateMsgSent = null;
 	
@@ -484,7 +499,7 @@ public class UserScreen extends Activity implements MeemiEngine.Callbackable {
 		IsJustChangeBlockFollowStatus += Action;
 		
 		try {
-			int NewFollowersQnt = Integer.parseInt( CurrentUserInfo.get("followers") ) + IsJustChangeBlockFollowStatus;
+			int NewFollowersQnt = CurrentUserInfo.getFollowers() + IsJustChangeBlockFollowStatus;
 			((TextView)findViewById(R.id.TextViewFollowersNumber)).setText( Integer.toString(NewFollowersQnt) );
 		} catch (Exception es) {
 			// nothing to do
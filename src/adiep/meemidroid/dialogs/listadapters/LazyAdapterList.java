@@ -1,5 +1,7 @@
 package adiep.meemidroid.dialogs.listadapters;
 
+import java.util.List;
+
 import adiep.meemidroid.ImageLoader;
 import adiep.meemidroid.R;
 import android.app.Activity;
@@ -18,7 +20,7 @@ import android.widget.ImageView;
  *  @see LazyAdapterUsersList
  * 
  * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 0.5
+ * @version 0.6
  */
 public abstract class LazyAdapterList extends BaseAdapter {
 	
@@ -85,6 +87,18 @@ public abstract class LazyAdapterList extends BaseAdapter {
 		return position;
 	}
 	
+	/**
+	 * This method adds to the input list the URLs of the images displayed by
+	 * the row in the specified position (used to prefetch them, see
+	 * {@link ScrollPrefetcher}). By default a row has no image to prefetch.
+	 * 
+	 * @param position	The position of the item within the adapter's data set
+	 * @param Urls		The list where the URLs are added
+	 */
+	public void getImageUrls(int position, List<String> Urls) {
+		// nothing to do
+	}
+	
 	
 	protected Activity MyActivity = null;
 	
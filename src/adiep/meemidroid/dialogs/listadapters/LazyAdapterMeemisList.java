@@ -1,15 +1,13 @@
 package adiep.meemidroid.dialogs.listadapters;
 
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import adiep.meemidroid.MeemiDroidApplication;
+import adiep.meemidroid.MeemiTextCache;
 import adiep.meemidroid.R;
 import adiep.meemidroid.R.id;
-import adiep.meemidroid.Utility;
+import adiep.meemidroid.engine.Meeme;
 import android.app.Activity;
-import android.text.Html;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
@@ -19,7 +17,7 @@ import android.widget.TextView;
  * This class implements an adapter to populate the Meemi friends lists. 
  * 
  * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 1.0
+ * @version 1.1
  */
 public class LazyAdapterMeemisList extends LazyAdapterList {
 	
@@ -49,7 +47,7 @@ public class LazyAdapterMeemisList extends LazyAdapterList {
 	 * @param A					the current Andorid activity
 	 * @param MeemisData		the Meemis list to display.
 	 */
-	public LazyAdapterMeemisList(Activity A, List<TreeMap<String, String>> MeemisData) {
+	public LazyAdapterMeemisList(Activity A, List<Meeme> MeemisData) {
 		super(A, R.string.ListItemExtraLoad);
 		
 		this.MeemisData = MeemisData;
@@ -62,7 +60,7 @@ public class LazyAdapterMeemisList extends LazyAdapterList {
 	 * @param UsersData			the Meemis list to display.
 	 * @param ExtraRowStringID	the resource ID for the string to show in the extra "loading" row
 	 */
-	public LazyAdapterMeemisList(Activity A, List<TreeMap<String, String>> MeemisData, final int ExtraRowStringID) {
+	public LazyAdapterMeemisList(Activity A, List<Meeme> MeemisData, final int ExtraRowStringID) {
 		super(A, ExtraRowStringID);
 		
 		this.MeemisData = MeemisData;
@@ -76,7 +74,7 @@ public class LazyAdapterMeemisList extends LazyAdapterList {
 	 * @param ExtraRowStringID	the resource ID for the string to show in the extra "loading" row
 	 * @param ExtraRowImageID	the resource ID for the icon to show in the extra  "loading" row
 	 */
-	public LazyAdapterMeemisList(Activity A, List<TreeMap<String, String>> MeemisData, final int ExtraRowStringID, final int ExtraRowImageID) {
+	public LazyAdapterMeemisList(Activity A, List<Meeme> MeemisData, final int ExtraRowStringID, final int ExtraRowImageID) {
 		super(A, ExtraRowStringID, ExtraRowImageID);
 		
 		this.MeemisData = MeemisData;
@@ -110,6 +108,27 @@ public class LazyAdapterMeemisList extends LazyAdapterList {
 			return null;
 		}
 	}	
+	
+	/**
+	 * This method adds to the input list the URLs of the avatar of the meemer
+	 * and of the thumbnail of the image (if any) of the message in the
+	 * specified position.
+	 * 
+	 * @param position	The position of the item within the adapter's data set
+	 * @param Urls		The list where the URLs are added
+	 */
+	@Override
+	public void getImageUrls(int position, List<String> Urls) {
+		if (0 <= position && position < MeemisData.size()) {
+			Meeme Item = MeemisData.get(position);
+			
+			Urls.add( Item.getMeemerAvatar() );
+			
+			if (null != Item.getImageThumbnail()) {
+				Urls.add( Item.getImageThumbnail() );
+			}
+		}
+	}
 
 	/**
 	 * Get a View that displays the data at the specified position in the data set.
@@ -180,41 +199,39 @@ public class LazyAdapterMeemisList extends LazyAdapterList {
 
 		if (!IsExtraLine) {
 			if (null != MeemisData) {
-				Map<String, String> Item = MeemisData.get(position);
+				Meeme Item = MeemisData.get(position);
 			
-				holder.Image.setTag( (String)Item.get("MeemerAvatar") );
-				holder.Nick.setText( (String)Item.get("MeemerName") );
-				holder.Time.setText( (String)Item.get("Time") );
+				holder.Image.setTag( Item.getMeemerAvatar() );
+				holder.Nick.setText( Item.getMeemerName() );
+				holder.Time.setText( Item.getTime() );
 				
 				holder.IsPhoto.setVisibility(View.GONE);
 				holder.IsVideo.setVisibility(View.GONE);
 				holder.IsLink.setVisibility(View.GONE);
-				if ( Item.containsKey("Image") ) {
+				switch ( Item.getType() ) {
+				case Meeme.TYPE_IMAGE:
 					holder.IsPhoto.setVisibility(View.VISIBLE);
-				} else if ( Item.containsKey("Video") ) {
+					break;
+				case Meeme.TYPE_VIDEO:
 					holder.IsVideo.setVisibility(View.VISIBLE);
-				} else if ( Item.containsKey("Link") ) {
+					break;
+				case Meeme.TYPE_LINK:
 					holder.IsLink.setVisibility(View.VISIBLE);
+					break;
+				default:
+					// simple text
 				}
 				
 				holder.IsFavorite.setVisibility(View.GONE);
-				if ( "1".equals( (String)Item.get("IsFavorite") ) ) {
+				if ( Item.isFavorite() ) {
 					holder.IsFavorite.setVisibility(View.VISIBLE);
 				}
 				
-				String CleanText = "";
-				
-				/*
-				if ( Item.containsKey("ExtraContent") ) {
-					CleanText = (String)Item.get("ExtraContent") + " ";
-				}
-				*/
-				
-				CleanText += Utility.fromMeemiToCleanText( (String)Item.get("Content") );
-				holder.Message.setText( Html.fromHtml(CleanText) );
+				// the text is usually rendered by the engine when the messages are parsed
+				holder.Message.setText( MeemiTextCache.getCleanText(Item) );
 				
-				holder.OtherInfo.setText( MeemiDroidApplication.getContext().getString(R.string.MsgComment) + (String)Item.get("NumOfComments") );
-				MyImageLoader.DisplayImage( (String)Item.get("MeemerAvatar"), MyActivity, holder.Image );
+				holder.OtherInfo.setText( MeemiDroidApplication.getContext().getString(R.string.MsgComment) + Item.getNumOfComments() );
+				MyImageLoader.DisplayImage( Item.getMeemerAvatar(), MyActivity, holder.Image );
 			}
 		}
 		
@@ -222,5 +239,5 @@ public class LazyAdapterMeemisList extends LazyAdapterList {
 	}
 	
 	
-	private List<TreeMap<String, String>> MeemisData = null;	
+	private List<Meeme> MeemisData = null;	
 }
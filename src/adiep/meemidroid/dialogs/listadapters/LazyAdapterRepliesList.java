@@ -1,19 +1,18 @@
 package adiep.meemidroid.dialogs.listadapters;
 
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import adiep.meemidroid.MeemiDroidApplication;
+import adiep.meemidroid.MeemiTextRenderer;
 import adiep.meemidroid.R;
 import adiep.meemidroid.R.id;
-import adiep.meemidroid.Utility;
 import adiep.meemidroid.dialogs.UserScreen;
+import adiep.meemidroid.engine.Meeme;
 import android.app.Activity;
 import android.content.Intent;
+import android.text.SpannableStringBuilder;
 import android.view.View;
 import android.view.ViewGroup;
-import android.webkit.WebView;
 import android.widget.ImageView;
 import android.widget.TextView;
 
@@ -21,7 +20,7 @@ import android.widget.TextView;
  * This class implements an adapter to populate the Meemi replies list. 
  * 
  * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 1.0
+ * @version 1.1
  */
 public class LazyAdapterRepliesList extends LazyAdapterList {
 	
@@ -34,14 +33,14 @@ public class LazyAdapterRepliesList extends LazyAdapterList {
 	public static class ViewHolder extends LazyAdapterList.ViewHolder {
 		public TextView Nick = null;
 		public TextView Time = null;
-		public WebView Message = null;
-		//public TextView Message = null;
+		public TextView Message = null;
 		public TextView OtherInfo = null;		
 		public ImageView IsFavorite = null;
 		public ImageView IsPhoto = null;
 		public ImageView IsVideo = null;
 		public ImageView IsLink = null;
 		public ImageView IsPrivate = null;
+		public MeemiTextRenderer.ThumbnailDrawable Thumbnail = null;
 
 		public boolean IsLoadOtherReplies = false;
 		public boolean IsOriginalMeemi = false;
@@ -53,13 +52,11 @@ public class LazyAdapterRepliesList extends LazyAdapterList {
 	 * @param A					the current Andorid activity
 	 * @param MeemisData		the Meemis list to display.
 	 */
-	public LazyAdapterRepliesList(Activity A, List<TreeMap<String, String>> MeemisData, final int MaxNumberOfReplies) {
+	public LazyAdapterRepliesList(Activity A, List<Meeme> MeemisData, final int MaxNumberOfReplies) {
 		super(A);
 		
 		this.MeemisData = MeemisData;
 		this.MaxNumberOfReplies = MaxNumberOfReplies;
-		
-		JSAccountClick = new AccountClick(A);
 	}
 	
 	/**
@@ -69,13 +66,11 @@ public class LazyAdapterRepliesList extends LazyAdapterList {
 	 * @param MeemisData		the Meemis list to display.
 	 * @param ExtraRowStringID	the resource ID for the string to show in the extra "loading" row
 	 */
-	public LazyAdapterRepliesList(Activity A, List<TreeMap<String, String>> MeemisData, final int MaxNumberOfReplies, final int ExtraRowStringID) {
+	public LazyAdapterRepliesList(Activity A, List<Meeme> MeemisData, final int MaxNumberOfReplies, final int ExtraRowStringID) {
 		super(A, ExtraRowStringID);
 		
 		this.MeemisData = MeemisData;
 		this.MaxNumberOfReplies = MaxNumberOfReplies;
-		
-		JSAccountClick = new AccountClick(A);
 	}
 
 	/**
@@ -86,13 +81,11 @@ public class LazyAdapterRepliesList extends LazyAdapterList {
 	 * @param ExtraRowStringID	the resource ID for the string to show in the extra "loading" row
 	 * @param ExtraRowImageID	the resource ID for the icon to show in the extra  "loading" row
 	 */
-	public LazyAdapterRepliesList(Activity A, List<TreeMap<String, String>> MeemisData, final int MaxNumberOfReplies, final int ExtraRowStringID, final int ExtraRowImageID) {
+	public LazyAdapterRepliesList(Activity A, List<Meeme> MeemisData, final int MaxNumberOfReplies, final int ExtraRowStringID, final int ExtraRowImageID) {
 		super(A, ExtraRowStringID, ExtraRowImageID);
 		
 		this.MeemisData = MeemisData;
 		this.MaxNumberOfReplies = MaxNumberOfReplies;
-		
-		JSAccountClick = new AccountClick(A);
 	}
 
 	/**
@@ -137,33 +130,17 @@ public class LazyAdapterRepliesList extends LazyAdapterList {
 	 * @return	A View corresponding to the data at the specified position
 	 */
 	public View getView(int position, View convertView, ViewGroup parent) {
-		// FIXME: this code is really poor: please fix me :)
-		// FIXME: (the revenge) to avoid problem with WebView I need to avoid
-		//        its caching :( the code (how wrote today can use too much memory.
-		//        Need extra code cleanup.
 		View vi = convertView;
 		ViewHolder holder;
 		
 		boolean IsExtraLine = position >= MeemisData.size();
 		
-		//if (convertView == null) {
+		if (convertView == null) {
 			vi = ViewInflater.inflate(R.layout.meemi_reply_list_row_2, null);
-			holder = new ViewHolder();
-			holder.Image = (ImageView) vi.findViewById(R.id.UserAvatar);
-			holder.Nick = (TextView) vi.findViewById(R.id.UserNick);
-			holder.Time = (TextView) vi.findViewById(R.id.MeemeTime);
-			holder.Message = (WebView) vi.findViewById(R.id.Message);
-			//holder.Message = (TextView) vi.findViewById(R.id.Message);
-			holder.OtherInfo = (TextView) vi.findViewById(R.id.OtherInfo);
-			holder.IsFavorite = (ImageView) vi.findViewById(R.id.FavImage);
-			holder.IsPhoto = (ImageView) vi.findViewById(R.id.PhotoImage);
-			holder.IsVideo = (ImageView) vi.findViewById(R.id.VideoImage);
-			holder.IsLink = (ImageView) vi.findViewById(R.id.Linklmage);
-			holder.IsPrivate = (ImageView) vi.findViewById(R.id.LockImage);
-			vi.setTag(holder);
-		//} else {
-		//	holder = (ViewHolder) vi.getTag();
-		//}
+			holder = createViewHolder(vi);
+		} else {
+			holder = (ViewHolder) vi.getTag();
+		}
 		
 		if ( !holder.IsLoadOtherReplies ) {
 			if (IsExtraLine) {
@@ -179,84 +156,63 @@ public class LazyAdapterRepliesList extends LazyAdapterList {
 				holder.IsLoadOtherReplies = true;
 				vi.setTag(holder);
 			}
-		}
-		/*else {
+		} else {
 			if (!IsExtraLine) {
 				vi = ViewInflater.inflate(R.layout.meemi_reply_list_row_2, null);
-				holder = new ViewHolder();
-				holder.Avatar = (ImageView) vi.findViewById(R.id.UserAvatar);
-				holder.Nick = (TextView) vi.findViewById(R.id.UserNick);
-				holder.Time = (TextView) vi.findViewById(R.id.MeemeTime);
-				holder.Message = (WebView) vi.findViewById(R.id.Message);
-				//holder.Message = (TextView) vi.findViewById(R.id.Message);
-				holder.OtherInfo = (TextView) vi.findViewById(R.id.OtherInfo);
-				vi.setTag(holder);
-			}	
+				holder = createViewHolder(vi);
+			}
 		}
-		*/
 
 		if (!IsExtraLine) {
 			if (null != MeemisData) {
-				Map<String, String> Item = MeemisData.get(position);
+				Meeme Item = MeemisData.get(position);
 			
-				holder.Image.setTag( (String)Item.get("MeemerAvatar") );
-				holder.Nick.setText( (String)Item.get("MeemerName") );
-				holder.Time.setText( (String)Item.get("Time") );
+				holder.Image.setTag( Item.getMeemerAvatar() );
+				holder.Nick.setText( Item.getMeemerName() );
+				holder.Time.setText( Item.getTime() );
+				
+				// the thumbnail of the recycled row is not needed anymore
+				if (null != holder.Thumbnail) {
+					MyImageLoader.cancel(holder.Thumbnail);
+					holder.Thumbnail = null;
+				}
 				
-				String HTMLContent = "<div>" + Utility.fromMeemiToHTML( (String)Item.get("Content") ) + "</div>";
+				SpannableStringBuilder Content = MeemiTextRenderer.toSpanned( Item.getContent(), MentionClick );
 				
 				holder.IsPhoto.setVisibility(View.GONE);
 				holder.IsVideo.setVisibility(View.GONE);
 				holder.IsLink.setVisibility(View.GONE);
-				String Header = null;
-				if ( Item.containsKey("Image") ) {
+				if ( Meeme.TYPE_IMAGE == Item.getType() ) {
 					holder.IsPhoto.setVisibility(View.VISIBLE);
 					
-					Header = "<div class=\"media\">" +
-					 		 "<div>" +
-							 "<a href=\"" + (String)Item.get("Image") + "\">" +
-							 "<img src=\"" + (String)Item.get("ImageThumbnail") + "\" />" +
-							 "</a>" +
-							 "</div>" +
-							 "</div>";
-				} else if ( Item.containsKey("Video") ) {
+					holder.Thumbnail = new MeemiTextRenderer.ThumbnailDrawable( holder.Message,
+							MeemiTextRenderer.getMediaDrawable(MyActivity.getResources(), R.drawable.stub, MEDIA_SIZE_DIP),
+							MEDIA_SIZE_DIP );
+					
+					MeemiTextRenderer.insertMedia( Content, holder.Thumbnail, Item.getImage() );
+				} else if ( Meeme.TYPE_VIDEO == Item.getType() ) {
 					holder.IsVideo.setVisibility(View.VISIBLE);
 					
-					Header = "<div class=\"media\">" +
-					 "<div>" +
-					 "<a href=\"" + (String)Item.get("Video") + "\">" +
-					 "<img src=\"file:///android_res/drawable/meemi_video_play.png\" />" +
-					 "</a>" +
-					 "</div>" +
-					 "</div>";
-				} else if ( Item.containsKey("Link") ) {
+					MeemiTextRenderer.insertMedia( Content,
+							MeemiTextRenderer.getMediaDrawable(MyActivity.getResources(), R.drawable.meemi_video_play, MEDIA_SIZE_DIP),
+							Item.getVideo() );
+				} else if ( Meeme.TYPE_LINK == Item.getType() ) {
 					holder.IsLink.setVisibility(View.VISIBLE);
 				}
 				
-				if (null != Header) {
-					HTMLContent = Header + "<div>" + HTMLContent + "</div>";
-				}
-				
-				//MeemiDroidApplication.getContext().deleteDatabase("webview.db");
-				//MeemiDroidApplication.getContext().deleteDatabase("webviewCache.db");
-				
-				//holder.Message.clearCache(false);
-				//holder.Message.getSettings().setCacheMode(WebSettings.LOAD_NO_CACHE);
-				//holder.Message.loadData(HTMLContent, "text/html", "utf-8");
-				holder.Message.loadDataWithBaseURL("", Utility.wrapForHTML(HTMLContent, CSS), "text/html", "utf-8", "");
-				holder.Message.addJavascriptInterface(JSAccountClick, "account");
-				holder.Message.getSettings().setJavaScriptEnabled(true);
+				holder.Message.setText(Content);
 				
-				//String HTML = Utility.fromMeemiToHTML( (String)Item.get("Content") );
-				//holder.Message.setText( (String)Item.get("Content") );
+				if (null != holder.Thumbnail) {
+					MyImageLoader.DisplayImage( Item.getImageThumbnail(), holder.Thumbnail );
+				}
 				
 				holder.IsFavorite.setVisibility(View.GONE);
-				if ( "1".equals( (String)Item.get("IsFavorite") ) ) {
+				if ( Item.isFavorite() ) {
 					holder.IsFavorite.setVisibility(View.VISIBLE);
 				}			
 			
-				holder.OtherInfo.setText( MeemiDroidApplication.getContext().getString(R.string.MsgComment) + (String)Item.get("NumOfComments") );
-				MyImageLoader.DisplayImage( (String)Item.get("MeemerAvatar"), MyActivity, holder.Image );
+				holder.OtherInfo.setText( MeemiDroidApplication.getContext().getString(R.string.MsgComment) + Item.getNumOfComments() );
+				MyImageLoader.DisplayImage( Item.getMeemerAvatar(), MyActivity, holder.Image );
 			}
 		}
 		
@@ -269,48 +225,58 @@ public class LazyAdapterRepliesList extends LazyAdapterList {
 	}
 	
 	/**
-	 * This private class is used to manage the interaction with the {@link WebView} when
+	 * This method creates the holder of the views of a reply row.
+	 * 
+	 * @param vi	the reply row
+	 * 
+	 * @return	the holder of the row views
+	 */
+	private ViewHolder createViewHolder(View vi) {
+		ViewHolder holder = new ViewHolder();
+		holder.Image = (ImageView) vi.findViewById(R.id.UserAvatar);
+		holder.Nick = (TextView) vi.findViewById(R.id.UserNick);
+		holder.Time = (TextView) vi.findViewById(R.id.MeemeTime);
+		holder.Message = (TextView) vi.findViewById(R.id.Message);
+		holder.OtherInfo = (TextView) vi.findViewById(R.id.OtherInfo);
+		holder.IsFavorite = (ImageView) vi.findViewById(R.id.FavImage);
+		holder.IsPhoto = (ImageView) vi.findViewById(R.id.PhotoImage);
+		holder.IsVideo = (ImageView) vi.findViewById(R.id.VideoImage);
+		holder.IsLink = (ImageView) vi.findViewById(R.id.Linklmage);
+		holder.IsPrivate = (ImageView) vi.findViewById(R.id.LockImage);
+		
+		// the links are handled without making the text focusable, so the row can be still selected
+		holder.Message.setOnTouchListener( MeemiTextRenderer.LinkTouchListener.getInstance() );
+		
+		vi.setTag(holder);
+		
+		return holder;
+	}
+	
+	/**
+	 * This private class is used to manage the interaction with the rendered messages when
 	 * the user select a ScreenName (e.g., @capobecchino)
 	 * 
 	 * @author Andrea de Iacovo, and Eros Pedrini
 	 */
-	final class AccountClick {
-		public AccountClick(Activity A) {
-			super();
+	private final class AccountClick implements MeemiTextRenderer.OnMentionClickListener {
+		public void onMentionClick(String Name) {
+			Intent UserInfo = new Intent(MyActivity, UserScreen.class);
+			UserInfo.putExtra( UserScreen.USER, Name );
 			
-			BaseActivity = A;
+			MyActivity.startActivityForResult(UserInfo, ACTIVITY_USER);
 		}
-		
-        public void clickOnAccount(String Name) {       	
-        	Intent UserInfo = new Intent(BaseActivity, UserScreen.class);
-			UserInfo.putExtra( UserScreen.USER, Name );
-        	
-        	BaseActivity.startActivityForResult(UserInfo, ACTIVITY_USER);
-
-        }
-        
-        private Activity BaseActivity = null;
-    }
+	}
 	
 	
 	private int MaxNumberOfReplies = 0;
-	private List<TreeMap<String, String>> MeemisData = null;
+	private List<Meeme> MeemisData = null;
 	
 	
-	private static AccountClick JSAccountClick = null;
+	private final AccountClick MentionClick = new AccountClick();
 	
 	
 	private static final int ACTIVITY_USER = 0;
 	
-	private static final String CSS =
-		"body { background-color: black; color: white; } " +
-		"#userimage { float: left; } " +
-		".avatar { max-width: 120px; max-height: 120px; } " +
-		"#userinfo { text-align: justify; margin-left: 10px; } " +
-		"#userprofile { clear:both; margin-top: 5px; } " +
-		"#userinfo h1, #userinfo h2 { font-size: 13pt; } " +
-		"a.link:link, a.link:visited, a.link:hover, a.link:active { color:aqua; text-decoration:underline; } " +
-		"a.meemiaccount:link, a.meemiaccount:visited, a.meemiaccount:hover, a.meemiaccount:active { color:dodgerblue; text-decoration:underline; } " + 
-		".media { width: 100%; text-align: center; }" +
-		".media img { border: 0 none; }";
+	// the size of the image (or of the video icon) displayed with the message
+	private static final int MEDIA_SIZE_DIP = 120;
 }
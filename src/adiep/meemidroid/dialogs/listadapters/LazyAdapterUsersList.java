@@ -1,11 +1,10 @@
 package adiep.meemidroid.dialogs.listadapters;
 
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import adiep.meemidroid.R;
 import adiep.meemidroid.R.id;
+import adiep.meemidroid.engine.Friend;
 import android.app.Activity;
 import android.view.View;
 import android.view.ViewGroup;
@@ -39,7 +38,7 @@ public class LazyAdapterUsersList extends LazyAdapterList {
 	 * @param UsersData			the Users list to display.
 	 * @param MaxNumberOfUsers	the max number of followers/following stored in current user profile
 	 */
-	public LazyAdapterUsersList(Activity A, List<TreeMap<String, String>> UsersData, final int MaxNumberOfUsers) {
+	public LazyAdapterUsersList(Activity A, List<Friend> UsersData, final int MaxNumberOfUsers) {
 		super(A);
 		
 		this.UsersData = UsersData;
@@ -54,7 +53,7 @@ public class LazyAdapterUsersList extends LazyAdapterList {
 	 * @param MaxNumberOfUsers	the max number of followers/following stored in current user profile
 	 * @param ExtraRowStringID	the resource ID for the string to show in the extra "loading" row
 	 */
-	public LazyAdapterUsersList(Activity A, List<TreeMap<String, String>> UsersData, final int MaxNumberOfUsers, final int ExtraRowStringID) {
+	public LazyAdapterUsersList(Activity A, List<Friend> UsersData, final int MaxNumberOfUsers, final int ExtraRowStringID) {
 		super(A, ExtraRowStringID);
 
 		this.UsersData = UsersData;
@@ -70,7 +69,7 @@ public class LazyAdapterUsersList extends LazyAdapterList {
 	 * @param ExtraRowStringID	the resource ID for the string to show in the extra "loading" row
 	 * @param ExtraRowImageID	the resource ID for the icon to show in the extra  "loading" row
 	 */
-	public LazyAdapterUsersList(Activity A, List<TreeMap<String, String>> UsersData, final int MaxNumberOfUsers, final int ExtraRowStringID, final int ExtraRowImageID) {
+	public LazyAdapterUsersList(Activity A, List<Friend> UsersData, final int MaxNumberOfUsers, final int ExtraRowStringID, final int ExtraRowImageID) {
 		super(A, ExtraRowStringID, ExtraRowImageID);
 
 		this.UsersData = UsersData;
@@ -108,6 +107,20 @@ public class LazyAdapterUsersList extends LazyAdapterList {
 			return null;
 		}
 	}
+	
+	/**
+	 * This method adds to the input list the URL of the avatar of the user in
+	 * the specified position.
+	 * 
+	 * @param position	The position of the item within the adapter's data set
+	 * @param Urls		The list where the URLs are added
+	 */
+	@Override
+	public void getImageUrls(int position, List<String> Urls) {
+		if (0 <= position && position < UsersData.size()) {
+			Urls.add( UsersData.get(position).getAvatar() );
+		}
+	}
 
 	/**
 	 * Get a View that displays the data at the specified position in the data set.
@@ -162,11 +175,11 @@ public class LazyAdapterUsersList extends LazyAdapterList {
 
 		if (!IsExtraLine) {
 			if (null != UsersData) {
-				Map<String, String> Item = UsersData.get(position);
+				Friend Item = UsersData.get(position);
 			
-				Holder.Text.setText( (String)Item.get("UserId") );
-				Holder.Image.setTag( (String)Item.get("Avatar") );
-				MyImageLoader.DisplayImage( (String)Item.get("Avatar"), MyActivity, Holder.Image );
+				Holder.Text.setText( Item.getUserId() );
+				Holder.Image.setTag( Item.getAvatar() );
+				MyImageLoader.DisplayImage( Item.getAvatar(), MyActivity, Holder.Image );
 			}
 		}
 		
@@ -175,6 +188,6 @@ public class LazyAdapterUsersList extends LazyAdapterList {
 	
 	
 	
-	private List<TreeMap<String, String>> UsersData = null;
+	private List<Friend> UsersData = null;
 	private int MaxNumberOfUsers = 0;
 }
@@ -0,0 +1,224 @@
+package adiep.meemidroid.dialogs.listadapters;
+
+import android.os.SystemClock;
+import android.widget.AbsListView;
+
+/**
+ * This class loads the pages of a paged list view while it's scrolled: when
+ * the last visible row is within a distance from the end of the list, the
+ * next page is requested in background, so it's usually already appended
+ * when the user reaches the end of the list.
+ *
+ * Only one page is requested at a time, and no page is requested before the
+ * first one has been loaded (or has failed), or after an empty page (i.e., the end of the list):
+ * in that case only {@link #requestNextPage()} requests it again. A page that
+ * can't be loaded (e.g., the connection is down) is requested again by the
+ * scroll, waiting longer after each consecutive failure.
+ *
+ * The pages loaded out of order (e.g., to fill a gap at the top of the list) are
+ * requested by {@link #requestPage(int)}, so this object knows every page
+ * being loaded.
+ *
+ * A list view has only one scroll listener: the scroll events are forwarded to
+ * another listener (e.g., a {@link ScrollPrefetcher}).
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.4
+ */
+public class NextPageLoader implements AbsListView.OnScrollListener {
+	/**
+	 * This interface is implemented by the objects that load the pages of
+	 * the list.
+	 */
+	public interface OnLoadPageListener {
+		/**
+		 * This method is called when a page has to be loaded: when it's loaded,
+		 * {@link NextPageLoader#onPageLoaded(int, boolean)} has to be called
+		 * (or {@link NextPageLoader#onPageFailed(int)}, if it can't be loaded).
+		 *
+		 * @param Page	the page to load
+		 */
+		void onLoadPage(int Page);
+	}
+
+	/**
+	 * This is the class constructor.
+	 *
+	 * @param L		the listener loading the pages
+	 * @param Next	the listener the scroll events are forwarded to (can be null)
+	 */
+	public NextPageLoader(final OnLoadPageListener L, final AbsListView.OnScrollListener Next) {
+		this(L, Next, DEFAULT_DISTANCE);
+	}
+
+	/**
+	 * This is the class constructor.
+	 *
+	 * @param L			the listener loading the pages
+	 * @param Next		the listener the scroll events are forwarded to (can be null)
+	 * @param Distance	the number of rows from the end of the list that makes the
+	 * 					next page be requested
+	 */
+	public NextPageLoader(final OnLoadPageListener L, final AbsListView.OnScrollListener Next, final int Distance) {
+		this.Listener = L;
+		this.Next = Next;
+		this.Distance = Distance;
+	}
+
+	/**
+	 * This method requests the next page, even if the last loaded page was
+	 * empty (e.g., when the user selects the "load other" row). Nothing is done
+	 * if a page is already being loaded.
+	 */
+	public void requestNextPage() {
+		if (0 != RequestedPage) {
+			return;
+		}
+
+		RequestedPage = LastPage + 1;
+
+		Listener.onLoadPage(RequestedPage);
+	}
+
+	/**
+	 * This method requests a given page (e.g., to fill a gap between the
+	 * downloaded rows and the ones already in the list), even if another page
+	 * is being loaded. Nothing is done if the page is already being loaded.
+	 *
+	 * @param Page	the page to load
+	 */
+	public void requestPage(final int Page) {
+		if (Page == RequestedPage) {
+			return;
+		}
+
+		RequestedPage = Page;
+
+		Listener.onLoadPage(RequestedPage);
+	}
+
+	/**
+	 * This method has to be called when a page has been loaded, even if it
+	 * was not requested by this object (e.g., the first page).
+	 *
+	 * @param Page		the loaded page
+	 * @param IsEmpty	true if the page didn't add any row to the list (i.e.,
+	 * 					the end of the list has been reached)
+	 */
+	public void onPageLoaded(final int Page, final boolean IsEmpty) {
+		if (Page == RequestedPage) {
+			RequestedPage = 0;
+		}
+
+		if ( !IsEmpty && Page > LastPage ) {
+			LastPage = Page;
+		}
+
+		HasMorePages = !IsEmpty;
+
+		RetryDelay = MIN_RETRY_DELAY;
+		RetryTime = 0;
+	}
+
+	/**
+	 * This method has to be called when a page can't be loaded (e.g., the
+	 * connection is down): the list is not considered ended, and the page is
+	 * requested again by the scroll after a delay, doubled at each consecutive
+	 * failure (or at once by {@link #requestNextPage()}).
+	 *
+	 * @param Page	the page not loaded
+	 */
+	public void onPageFailed(final int Page) {
+		if (Page == RequestedPage) {
+			RequestedPage = 0;
+		}
+
+		RetryTime = SystemClock.uptimeMillis() + RetryDelay;
+		RetryDelay = Math.min(2 * RetryDelay, MAX_RETRY_DELAY);
+	}
+
+	/**
+	 * This method moves the last page loaded forward, when the list already holds
+	 * the rows of the pages before it (e.g., the rows stored offline): the scroll
+	 * requests the page after it. The last page is never moved back.
+	 *
+	 * @param Page	the page of the last row of the list
+	 */
+	public void setLastPage(final int Page) {
+		if (Page > LastPage) {
+			LastPage = Page;
+		}
+	}
+
+	/**
+	 * This method returns the last page loaded.
+	 *
+	 * @return	the last page loaded, or 0 if no page has been loaded yet
+	 */
+	public int getLastPage() {
+		return LastPage;
+	}
+
+	/**
+	 * This method forgets the pages loaded (e.g., when the list is reloaded):
+	 * the pages requested before are ignored.
+	 */
+	public void reset() {
+		LastPage = 0;
+		RequestedPage = 0;
+		HasMorePages = true;
+		RetryDelay = MIN_RETRY_DELAY;
+		RetryTime = 0;
+	}
+
+	/**
+	 * Callback method to be invoked while the list view is being scrolled:
+	 * the next page is requested if the end of the list is near.
+	 *
+	 * @param view				the list view
+	 * @param firstVisibleItem	the index of the first visible row
+	 * @param visibleItemCount	the number of visible rows
+	 * @param totalItemCount	the number of rows of the list
+	 */
+	public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+		if (null != Next) {
+			Next.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+		}
+
+		if ( (0 < LastPage || 0 != RetryTime) && HasMorePages && 0 == RequestedPage && firstVisibleItem + visibleItemCount + Distance >= totalItemCount
+				&& SystemClock.uptimeMillis() >= RetryTime) {
+			requestNextPage();
+		}
+	}
+
+	/**
+	 * Callback method to be invoked when the list view scroll state changes.
+	 *
+	 * @param view			the list view
+	 * @param scrollState	the new scroll state
+	 */
+	public void onScrollStateChanged(AbsListView view, int scrollState) {
+		if (null != Next) {
+			Next.onScrollStateChanged(view, scrollState);
+		}
+	}
+
+
+	private static final int DEFAULT_DISTANCE = 5;	// rows
+	private static final long MIN_RETRY_DELAY = 2000;	// ms
+	private static final long MAX_RETRY_DELAY = 60000;	// ms
+
+	private final OnLoadPageListener Listener;
+	private final AbsListView.OnScrollListener Next;
+	private final int Distance;
+
+	private int LastPage = 0;
+	private boolean HasMorePages = true;
+
+	// the page being loaded, or 0 if no page has been requested
+	private int RequestedPage = 0;
+
+	// after a failed page, the scroll doesn't request a page before RetryTime (uptime ms)
+	private long RetryTime = 0;
+	private long RetryDelay = MIN_RETRY_DELAY;
+}
@@ -0,0 +1,164 @@
+package adiep.meemidroid.dialogs.listadapters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import adiep.meemidroid.ImageLoader;
+import android.os.SystemClock;
+import android.widget.AbsListView;
+
+/**
+ * This class prefetches the images of the rows that are going to be showed
+ * by a list view: while the list is scrolled, the images of the next rows
+ * (in the scroll direction) are downloaded by the {@link ImageLoader} with a
+ * low priority, so they are already in its cache when the rows appear.
+ *
+ * Nothing is prefetched during a fling (the rows showed by a fling are
+ * usually skipped by the user), and the pending prefetches are cancelled
+ * when the scroll direction changes.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.1
+ */
+public class ScrollPrefetcher implements AbsListView.OnScrollListener {
+	/**
+	 * This is the class constructor.
+	 *
+	 * @param A	the adapter of the list view
+	 */
+	public ScrollPrefetcher(final LazyAdapterList A) {
+		this(A, DEFAULT_DISTANCE);
+	}
+
+	/**
+	 * This is the class constructor.
+	 *
+	 * @param A			the adapter of the list view
+	 * @param Distance	the number of rows to prefetch after the visible ones
+	 */
+	public ScrollPrefetcher(final LazyAdapterList A, final int Distance) {
+		this.Adapter = A;
+		this.Distance = Distance;
+	}
+
+	/**
+	 * Callback method to be invoked while the list view is being scrolled:
+	 * the direction and the speed of the scroll are updated, and the next
+	 * rows are prefetched if the scroll is slow enough.
+	 *
+	 * @param view				the list view
+	 * @param firstVisibleItem	the index of the first visible row
+	 * @param visibleItemCount	the number of visible rows
+	 * @param totalItemCount	the number of rows of the list
+	 */
+	public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+		long Now = SystemClock.uptimeMillis();
+
+		int Direction = Integer.signum(firstVisibleItem - LastFirstVisible);
+
+		if (0 != Direction) {
+			// rows per second since the last change of the first visible row
+			long Elapsed = Math.max(1, Now - LastChangeTime);
+			Velocity = Math.abs(firstVisibleItem - LastFirstVisible) * 1000f / Elapsed;
+
+			if (Direction != LastDirection) {
+				ImageLoader.getInstance().cancelPrefetch();
+				PrefetchedUpTo = -1;
+
+				LastDirection = Direction;
+			}
+
+			LastFirstVisible = firstVisibleItem;
+			LastChangeTime = Now;
+		}
+
+		VisibleCount = visibleItemCount;
+
+		if (PrefetchedUpTo >= totalItemCount) {
+			// the list has been reloaded
+			PrefetchedUpTo = -1;
+		}
+
+		if (SCROLL_STATE_FLING != ScrollState && Velocity < MAX_PREFETCH_VELOCITY) {
+			prefetch(firstVisibleItem, visibleItemCount);
+		}
+	}
+
+	/**
+	 * Callback method to be invoked when the list view scroll state changes:
+	 * the prefetches are paused during the flings.
+	 *
+	 * @param view			the list view
+	 * @param scrollState	the new scroll state
+	 */
+	public void onScrollStateChanged(AbsListView view, int scrollState) {
+		ScrollState = scrollState;
+
+		if (SCROLL_STATE_FLING == scrollState) {
+			ImageLoader.getInstance().cancelPrefetch();
+			PrefetchedUpTo = -1;
+		} else if (SCROLL_STATE_IDLE == scrollState) {
+			Velocity = 0;
+
+			prefetch(LastFirstVisible, VisibleCount);
+		}
+	}
+
+
+	/**
+	 * This method prefetches the images of the rows following the visible ones
+	 * in the current scroll direction (the rows already prefetched are skipped).
+	 *
+	 * @param FirstVisible	the index of the first visible row
+	 * @param VisibleCount	the number of visible rows
+	 */
+	private void prefetch(final int FirstVisible, final int VisibleCount) {
+		int From, To;
+
+		if (0 <= LastDirection) {
+			From = Math.max(FirstVisible + VisibleCount, PrefetchedUpTo + 1);
+			To = Math.min(FirstVisible + VisibleCount + Distance, Adapter.getCount());
+		} else {
+			From = Math.max(FirstVisible - Distance, 0);
+			To = (-1 != PrefetchedUpTo) ? Math.min(FirstVisible, PrefetchedUpTo) : FirstVisible;
+		}
+
+		if (From >= To) {
+			return;
+		}
+
+		Urls.clear();
+
+		for (int i = From; i < To; ++i) {
+			Adapter.getImageUrls(i, Urls);
+		}
+
+		ImageLoader IL = ImageLoader.getInstance();
+
+		for (String U : Urls) {
+			IL.prefetch(U);
+		}
+
+		// the last prefetched row, in the scroll direction
+		PrefetchedUpTo = (0 <= LastDirection) ? To - 1 : From;
+	}
+
+
+	private static final int DEFAULT_DISTANCE = 10;		// rows
+	private static final float MAX_PREFETCH_VELOCITY = 20;	// rows per second
+
+	private final LazyAdapterList Adapter;
+	private final int Distance;
+
+	private final List<String> Urls = new ArrayList<String>();
+
+	private int ScrollState = SCROLL_STATE_IDLE;
+	private int LastFirstVisible = 0;
+	private int LastDirection = 0;
+	private long LastChangeTime = 0;
+	private float Velocity = 0;
+	private int VisibleCount = 0;
+
+	// the last prefetched row, or -1 if nothing has been prefetched in the current direction
+	private int PrefetchedUpTo = -1;
+}
@@ -26,7 +26,7 @@ import android.widget.ImageButton;
  * performs a check of the user credentials. 
  * 
  * @author Andrea de Iacovo, and Eros Pedrini
- * @version 0.5
+ * @version 0.6
  */
 public class CredentialsSettingDialog extends Dialog implements MeemiEngine.Callbackable {
 	/**
@@ -46,6 +46,11 @@ public class CredentialsSettingDialog extends Dialog implements MeemiEngine.Call
 		if (isCredentialsValid) {			
 			Utility.ShowToast(CredentialsSettingDialog.this.getContext(), R.string.AllertCredentialsOk);
 			
+			// the lifestreams stored for the previous user must not be showed to the new one
+			if ( null != Username && !Username.equals(MyCredentials.getUsername()) ) {
+				MeemiDroidApplication.Engine.clearStoredLifeStreams();
+			}
+			
 			/* NOTE: this is a workaround to have the possibility to have
 			 * some post-processing after this dialog has been close.
 			 * The right way should be to use D.setOnDismissListener, but it
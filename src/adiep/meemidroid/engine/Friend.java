@@ -0,0 +1,67 @@
+package adiep.meemidroid.engine;
+
+/**
+ * This class represents a friend (a follower or a followed user) of a Meemi user.
+ * The instances are immutable.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 1.0
+ */
+public final class Friend {
+	/**
+	 * This is the class constructor.
+	 *
+	 * @param UserId		the friend nick
+	 * @param Avatar		the URL of the friend avatar
+	 * @param IsFollowingYou	true if the friend follows the logged user
+	 * @param IsFollowed	true if the logged user follows the friend
+	 */
+	public Friend(final String UserId, final String Avatar, final boolean IsFollowingYou, final boolean IsFollowed) {
+		this.UserId = UserId;
+		this.Avatar = Avatar;
+		this.IsFollowingYou = IsFollowingYou;
+		this.IsFollowed = IsFollowed;
+	}
+
+	/**
+	 * This method returns the friend nick.
+	 *
+	 * @return	the friend nick
+	 */
+	public String getUserId() {
+		return UserId;
+	}
+
+	/**
+	 * This method returns the URL of the friend avatar.
+	 *
+	 * @return	the URL of the friend avatar
+	 */
+	public String getAvatar() {
+		return Avatar;
+	}
+
+	/**
+	 * This method returns true if the friend follows the logged user.
+	 *
+	 * @return	true if the friend follows the logged user
+	 */
+	public boolean isFollowingYou() {
+		return IsFollowingYou;
+	}
+
+	/**
+	 * This method returns true if the logged user follows the friend.
+	 *
+	 * @return	true if the logged user follows the friend
+	 */
+	public boolean isFollowed() {
+		return IsFollowed;
+	}
+
+
+	private final String UserId;
+	private final String Avatar;
+	private final boolean IsFollowingYou;
+	private final boolean IsFollowed;
+}
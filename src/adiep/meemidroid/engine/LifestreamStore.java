@@ -0,0 +1,487 @@
+package adiep.meemidroid.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+/**
+ * This class represents the offline storage of the lifestreams: the messages
+ * downloaded from Meemi are stored in a SQLite database, keyed by the message
+ * identifier, for each owner and kind of lifestream (see {@link LifestreamConst}).
+ * In this way a lifestream can be showed immediately, before the newest messages
+ * are downloaded.
+ *
+ * The messages are kept in the order they have been received from Meemi (not in
+ * the order of their identifiers: e.g., the favorites are ordered by the time they
+ * have been added), and only the first messages of each lifestream are kept (see
+ * {@link #store(String, int, List, int, int)}), so the database doesn't grow
+ * without bound.
+ * When the first page of a lifestream has nothing in common with the stored
+ * messages, some messages can be missing between them: the stored messages are
+ * kept behind the gap, and they are not loaded until a following page reaches
+ * them again. The messages behind a second gap are removed.
+ *
+ * All the methods access the database, so they should not be called by the UI thread.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.3
+ */
+public class LifestreamStore extends SQLiteOpenHelper {
+	/**
+	 * This is the class constructor.
+	 *
+	 * @param C	the application context
+	 */
+	public LifestreamStore(Context C) {
+		super(C, DB_NAME, null, DB_VERSION);
+	}
+
+	/**
+	 * This method creates the database tables.
+	 *
+	 * @param DB	the database
+	 */
+	@Override
+	public void onCreate(SQLiteDatabase DB) {
+		DB.execSQL( "CREATE TABLE " + TABLE + " (" +
+					COL_OWNER + " TEXT NOT NULL, " +
+					COL_STREAM + " INTEGER NOT NULL, " +
+					COL_ID + " INTEGER NOT NULL, " +
+					COL_TIMESTAMP + " INTEGER, " +
+					COL_TIME + " TEXT, " +
+					COL_NAME + " TEXT, " +
+					COL_AVATAR + " TEXT, " +
+					COL_CONTENT + " TEXT, " +
+					COL_COMMENTS + " INTEGER, " +
+					COL_TYPE + " INTEGER, " +
+					COL_PRIVATE + " INTEGER, " +
+					COL_FAVORITE + " INTEGER, " +
+					COL_MEDIA + " TEXT, " +
+					COL_THUMBNAIL + " TEXT, " +
+					COL_POSITION + " INTEGER NOT NULL DEFAULT 0, " +
+					COL_DETACHED + " INTEGER NOT NULL DEFAULT 0, " +
+					"PRIMARY KEY (" + COL_OWNER + ", " + COL_STREAM + ", " + COL_ID + "))" );
+	}
+
+	/**
+	 * This method upgrades the database: the stored messages are only a cache
+	 * of the Meemi ones, so they are simply dropped.
+	 *
+	 * @param DB			the database
+	 * @param OldVersion	the old database version
+	 * @param NewVersion	the new database version
+	 */
+	@Override
+	public void onUpgrade(SQLiteDatabase DB, int OldVersion, int NewVersion) {
+		DB.execSQL("DROP TABLE IF EXISTS " + TABLE);
+
+		onCreate(DB);
+	}
+
+	/**
+	 * This method returns the stored messages of a lifestream, in the order they
+	 * have been received from Meemi: the messages behind a gap are not returned.
+	 *
+	 * @param Owner		the owner of the lifestream (see {@link MeemiEngine#getLifeStream(String, int, int, Context, MeemiEngine.Callbackable)})
+	 * @param Stream	the kind of lifestream (see {@link LifestreamConst})
+	 * @param Max		the maximum number of messages to return
+	 *
+	 * @return	the stored messages (an empty list if there is none, or in case of errors)
+	 */
+	public synchronized List<Meeme> load(final String Owner, final int Stream, final int Max) {
+		List<Meeme> Meemis = new ArrayList<Meeme>();
+
+		Cursor C = null;
+		try {
+			C = getReadableDatabase().query( TABLE, COLUMNS, WHERE_STREAM + " AND " + COL_DETACHED + " = 0",
+											 new String[]{ Owner, Integer.toString(Stream) },
+											 null, null, COL_POSITION + " DESC", Integer.toString(Max) );
+
+			while ( C.moveToNext() ) {
+				Meemis.add( readMeeme(C) );
+			}
+		} catch (SQLException ex) {
+			Log.w("LifestreamStore - load", "Cannot read the stored lifestream", ex);
+		} finally {
+			if (null != C) {
+				C.close();
+			}
+		}
+
+		return Meemis;
+	}
+
+	/**
+	 * This method stores (or updates) a page of messages of a lifestream, in the
+	 * order they have been received from Meemi:
+	 * - the first page is placed at the top: the stored messages that preceded
+	 *   its last already stored message are not in the lifestream anymore, so
+	 *   they are removed;
+	 * - a following page is placed after the previous one (it's stored only if the
+	 *   previous page has been stored by this instance too).
+	 * If the page has nothing in common with the following stored messages, they
+	 * are kept behind a gap. Then the last messages exceeding the retention are removed.
+	 *
+	 * @param Owner		the owner of the lifestream
+	 * @param Stream	the kind of lifestream (see {@link LifestreamConst})
+	 * @param Meemis	the messages of the page
+	 * @param Page		the page number (the first page is 1)
+	 * @param Retention	the maximum number of messages to keep for the lifestream
+	 */
+	public synchronized void store(final String Owner, final int Stream, final List<Meeme> Meemis, final int Page, final int Retention) {
+		if ( null == Meemis || Meemis.isEmpty() ) {
+			return;
+		}
+
+		String Key = Owner + "/" + Stream;
+
+		// the stored message the page follows (null for the first page)
+		Long Anchor = null;
+
+		if (1 < Page) {
+			StoredPage Previous = LastPages.get(Key);
+
+			if (null == Previous || Page != Previous.Page + 1) {
+				Log.d("LifestreamStore - store", "The page " + Page + " does not follow the stored ones: it is not stored");
+				return;
+			}
+
+			Anchor = Previous.LastId;
+		}
+
+		try {
+			SQLiteDatabase DB = getWritableDatabase();
+
+			DB.beginTransaction();
+			try {
+				List<Row> Rows = readRows(DB, Owner, Stream);
+
+				Set<Long> PageIds = new HashSet<Long>();
+				for (Meeme M : Meemis) {
+					PageIds.add( M.getId() );
+				}
+
+				int AnchorIndex = -1;
+
+				if (null != Anchor) {
+					for (int i = 0; i < Rows.size() && -1 == AnchorIndex; ++i) {
+						if ( Anchor.longValue() == Rows.get(i).Id ) {
+							AnchorIndex = i;
+						}
+					}
+
+					if (-1 == AnchorIndex) {
+						// the previous page has been removed by the retention
+						return;
+					}
+				}
+
+				// the stored messages before the page
+				List<Row> Order = new ArrayList<Row>();
+				for (int i = 0; i <= AnchorIndex; ++i) {
+					if ( !PageIds.contains( Rows.get(i).Id ) ) {
+						Order.add( Rows.get(i) );
+					}
+				}
+
+				Set<Long> Added = new HashSet<Long>();
+				for (Meeme M : Meemis) {
+					if ( Added.add( M.getId() ) ) {
+						Order.add( new Row(M.getId(), false) );
+					}
+				}
+
+				// the stored messages after the page
+				List<Row> After = Rows.subList(AnchorIndex + 1, Rows.size());
+
+				int LastCommon = -1;
+				for (int i = 0; i < After.size(); ++i) {
+					if ( PageIds.contains( After.get(i).Id ) ) {
+						LastCommon = i;
+					}
+				}
+
+				if (0 <= LastCommon) {
+					// the messages up to the last one in common are not there anymore,
+					// while the following ones continue the page (closing the gap, if any)
+					boolean IsGapClosed = After.get(LastCommon).IsDetached;
+
+					for (int i = LastCommon + 1; i < After.size(); ++i) {
+						Row R = After.get(i);
+
+						Order.add( new Row(R.Id, R.IsDetached && !IsGapClosed) );
+					}
+				} else {
+					// the following messages are behind a gap: the ones that were
+					// already behind another gap are removed
+					boolean HasAttached = false;
+					for (Row R : After) {
+						HasAttached |= !R.IsDetached;
+					}
+
+					for (Row R : After) {
+						if ( !R.IsDetached || !HasAttached ) {
+							Order.add( new Row(R.Id, true) );
+						}
+					}
+				}
+
+				// the retention: only the first messages are kept
+				if ( Order.size() > Math.max(Retention, 0) ) {
+					Order = Order.subList( 0, Math.max(Retention, 0) );
+				}
+
+				write(DB, Owner, Stream, Rows, Order, Meemis);
+
+				DB.setTransactionSuccessful();
+			} finally {
+				DB.endTransaction();
+			}
+
+			LastPages.put( Key, new StoredPage( Page, Meemis.get(Meemis.size() - 1).getId() ) );
+		} catch (SQLException ex) {
+			Log.w("LifestreamStore - store", "Cannot store the lifestream", ex);
+		}
+	}
+
+	/**
+	 * This method removes all the stored messages (e.g., when the user changes,
+	 * so that her lifestreams are not showed to the next one).
+	 */
+	public synchronized void clear() {
+		LastPages.clear();
+
+		try {
+			getWritableDatabase().delete(TABLE, null, null);
+		} catch (SQLException ex) {
+			Log.w("LifestreamStore - clear", "Cannot clear the stored lifestreams", ex);
+		}
+	}
+
+
+	/**
+	 * This method returns the stored messages of a lifestream (only their identifiers),
+	 * in the order they have been received from Meemi.
+	 *
+	 * @param DB		the database
+	 * @param Owner		the owner of the lifestream
+	 * @param Stream	the kind of lifestream (see {@link LifestreamConst})
+	 *
+	 * @return	the stored messages
+	 */
+	private static List<Row> readRows(final SQLiteDatabase DB, final String Owner, final int Stream) {
+		List<Row> Rows = new ArrayList<Row>();
+
+		Cursor C = DB.query( TABLE, new String[]{ COL_ID, COL_DETACHED }, WHERE_STREAM,
+							 new String[]{ Owner, Integer.toString(Stream) },
+							 null, null, COL_POSITION + " DESC" );
+		try {
+			while ( C.moveToNext() ) {
+				Rows.add( new Row( C.getLong(0), 0 != C.getInt(1) ) );
+			}
+		} finally {
+			C.close();
+		}
+
+		return Rows;
+	}
+
+	/**
+	 * This method writes the new order of the stored messages of a lifestream: the
+	 * messages of the page are written, the other ones are moved, and the old messages
+	 * not in the new order are removed.
+	 *
+	 * @param DB		the database
+	 * @param Owner		the owner of the lifestream
+	 * @param Stream	the kind of lifestream (see {@link LifestreamConst})
+	 * @param OldRows	the stored messages
+	 * @param Order		the new order of the messages
+	 * @param Meemis	the messages of the page
+	 */
+	private static void write(final SQLiteDatabase DB, final String Owner, final int Stream, final List<Row> OldRows, final List<Row> Order, final List<Meeme> Meemis) {
+		Map<Long, Meeme> Page = new HashMap<Long, Meeme>();
+		for (Meeme M : Meemis) {
+			Page.put(M.getId(), M);
+		}
+
+		Set<Long> Kept = new HashSet<Long>();
+		for (Row R : Order) {
+			Kept.add(R.Id);
+		}
+
+		String StreamArg = Integer.toString(Stream);
+
+		for (Row R : OldRows) {
+			if ( !Kept.contains(R.Id) ) {
+				DB.delete( TABLE, WHERE_MEEME, new String[]{ Owner, StreamArg, Long.toString(R.Id) } );
+			}
+		}
+
+		ContentValues Values = new ContentValues();
+
+		for (int i = 0; i < Order.size(); ++i) {
+			Row R = Order.get(i);
+			Meeme M = Page.get(R.Id);
+
+			Values.clear();
+
+			// the first message has the highest position
+			Values.put(COL_POSITION, Order.size() - i);
+			Values.put(COL_DETACHED, R.IsDetached ? 1 : 0);
+
+			if (null == M) {
+				DB.update( TABLE, Values, WHERE_MEEME, new String[]{ Owner, StreamArg, Long.toString(R.Id) } );
+				continue;
+			}
+
+			Values.put(COL_OWNER, Owner);
+			Values.put(COL_STREAM, Stream);
+			Values.put(COL_ID, M.getId());
+			Values.put(COL_TIMESTAMP, M.getTimestamp());
+			Values.put(COL_TIME, M.getTime());
+			Values.put(COL_NAME, M.getMeemerName());
+			Values.put(COL_AVATAR, M.getMeemerAvatar());
+			Values.put(COL_CONTENT, M.getContent());
+			Values.put(COL_COMMENTS, M.getNumOfComments());
+			Values.put(COL_TYPE, M.getType());
+			Values.put(COL_PRIVATE, M.isPrivate() ? 1 : 0);
+			Values.put(COL_FAVORITE, M.isFavorite() ? 1 : 0);
+			Values.put(COL_MEDIA, getMedia(M));
+			Values.put(COL_THUMBNAIL, M.getImageThumbnail());
+
+			DB.replace(TABLE, null, Values);
+		}
+	}
+
+	/**
+	 * This method creates a message from the current row of the input cursor.
+	 *
+	 * @param C	the cursor (created with {@link #COLUMNS})
+	 *
+	 * @return	the message
+	 */
+	private static final Meeme readMeeme(final Cursor C) {
+		Meeme.Builder Message = new Meeme.Builder();
+
+		Message.setId( C.getLong(0) );
+		Message.setTimestamp( C.getLong(1) );
+		Message.setTime( C.getString(2) );
+		Message.setMeemerName( C.getString(3) );
+		Message.setMeemerAvatar( C.getString(4) );
+		Message.setContent( C.getString(5) );
+		Message.setNumOfComments( C.getInt(6) );
+		Message.setPrivate( 0 != C.getInt(8) );
+		Message.setFavorite( 0 != C.getInt(9) );
+
+		switch ( C.getInt(7) ) {
+		case Meeme.TYPE_IMAGE:
+			Message.setImage( C.getString(10), C.getString(11) );
+			break;
+		case Meeme.TYPE_VIDEO:
+			Message.setVideo( C.getString(10) );
+			break;
+		case Meeme.TYPE_LINK:
+			Message.setLink( C.getString(10) );
+			break;
+		default:
+			// simple text: nothing to do
+		}
+
+		return Message.build();
+	}
+
+	/**
+	 * This method returns the image, the video or the link of a message
+	 * (according to its type).
+	 *
+	 * @param M	the message
+	 *
+	 * @return	the media of the message, or null if it's a simple text
+	 */
+	private static final String getMedia(final Meeme M) {
+		switch ( M.getType() ) {
+		case Meeme.TYPE_IMAGE:	return M.getImage();
+		case Meeme.TYPE_VIDEO:	return M.getVideo();
+		case Meeme.TYPE_LINK:	return M.getLink();
+		default:				return null;
+		}
+	}
+
+
+	/**
+	 * This private class represents a stored message in the order of the lifestream.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class Row {
+		public Row(final long Id, final boolean IsDetached) {
+			this.Id = Id;
+			this.IsDetached = IsDetached;
+		}
+
+		public final long Id;
+		// true if the message is behind a gap
+		public final boolean IsDetached;
+	}
+
+
+	/**
+	 * This private class represents the last page stored for a lifestream.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class StoredPage {
+		public StoredPage(final int Page, final long LastId) {
+			this.Page = Page;
+			this.LastId = LastId;
+		}
+
+		public final int Page;
+		public final long LastId;
+	}
+
+
+	private static final String DB_NAME		= "meemidroid.db";
+	private static final int DB_VERSION		= 2;
+
+	private static final String TABLE			= "lifestream";
+	private static final String COL_OWNER		= "owner";
+	private static final String COL_STREAM		= "stream";
+	private static final String COL_ID			= "id";
+	private static final String COL_TIMESTAMP	= "timestamp";
+	private static final String COL_TIME		= "time";
+	private static final String COL_NAME		= "screen_name";
+	private static final String COL_AVATAR		= "avatar";
+	private static final String COL_CONTENT		= "content";
+	private static final String COL_COMMENTS	= "replies";
+	private static final String COL_TYPE		= "type";
+	private static final String COL_PRIVATE		= "private";
+	private static final String COL_FAVORITE	= "favorite";
+	private static final String COL_MEDIA		= "media";
+	private static final String COL_THUMBNAIL	= "thumbnail";
+	private static final String COL_POSITION	= "position";
+	private static final String COL_DETACHED	= "detached";
+
+	// the order is used by readMeeme()
+	private static final String[] COLUMNS = new String[] {
+		COL_ID, COL_TIMESTAMP, COL_TIME, COL_NAME, COL_AVATAR, COL_CONTENT, COL_COMMENTS,
+		COL_TYPE, COL_PRIVATE, COL_FAVORITE, COL_MEDIA, COL_THUMBNAIL
+	};
+
+	private static final String WHERE_STREAM = COL_OWNER + " = ? AND " + COL_STREAM + " = ?";
+	private static final String WHERE_MEEME = WHERE_STREAM + " AND " + COL_ID + " = ?";
+
+	// the last page stored for each lifestream (by owner and kind)
+	private final Map<String, StoredPage> LastPages = new HashMap<String, StoredPage>();
+}
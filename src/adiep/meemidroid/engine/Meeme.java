@@ -0,0 +1,362 @@
+package adiep.meemidroid.engine;
+
+/**
+ * This class represents a Meemi message (a "meeme") as it's managed by the
+ * Meemi Client Application.
+ * The instances are immutable: they are created by {@link Meeme.Builder}, while
+ * the changes done by the user (e.g., add the message to the favorites) are
+ * done creating a modified copy (see {@link #withFavorite(boolean)}).
+ *
+ * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
+ * @version 1.1
+ */
+public final class Meeme {
+	/**
+	 * The kind of message: simple text.
+	 */
+	public static final int TYPE_TEXT	= 0;
+	/**
+	 * The kind of message: text with an image.
+	 */
+	public static final int TYPE_IMAGE	= 1;
+	/**
+	 * The kind of message: text with a video.
+	 */
+	public static final int TYPE_VIDEO	= 2;
+	/**
+	 * The kind of message: text with a link.
+	 */
+	public static final int TYPE_LINK	= 3;
+
+
+	/**
+	 * This method returns the message identifier.
+	 *
+	 * @return	the message identifier
+	 */
+	public long getId() {
+		return Id;
+	}
+
+	/**
+	 * This method returns the message identifier as used by the Meemi API.
+	 *
+	 * @return	the message identifier as String
+	 */
+	public String getIdString() {
+		return Long.toString(Id);
+	}
+
+	/**
+	 * This method returns the time of the message in milliseconds since the epoch
+	 * (0 if it's unknown).
+	 *
+	 * @return	the time of the message
+	 */
+	public long getTimestamp() {
+		return Timestamp;
+	}
+
+	/**
+	 * This method returns the time of the message formatted to be showed.
+	 *
+	 * @return	the formatted time of the message
+	 */
+	public String getTime() {
+		return Time;
+	}
+
+	/**
+	 * This method returns the nick of the message author.
+	 *
+	 * @return	the nick of the message author
+	 */
+	public String getMeemerName() {
+		return MeemerName;
+	}
+
+	/**
+	 * This method returns the URL of the message author avatar.
+	 *
+	 * @return	the URL of the author avatar
+	 */
+	public String getMeemerAvatar() {
+		return MeemerAvatar;
+	}
+
+	/**
+	 * This method returns the message content (in Meemi markup).
+	 *
+	 * @return	the message content
+	 */
+	public String getContent() {
+		return Content;
+	}
+
+	/**
+	 * This method returns the number of replies to the message.
+	 *
+	 * @return	the number of replies
+	 */
+	public int getNumOfComments() {
+		return NumOfComments;
+	}
+
+	/**
+	 * This method returns the kind of message.
+	 *
+	 * @return	one among {@link #TYPE_TEXT}, {@link #TYPE_IMAGE}, {@link #TYPE_VIDEO}, and {@link #TYPE_LINK}
+	 */
+	public int getType() {
+		return Type;
+	}
+
+	/**
+	 * This method returns true if the message is private.
+	 *
+	 * @return	true if the message is private
+	 */
+	public boolean isPrivate() {
+		return IsPrivate;
+	}
+
+	/**
+	 * This method returns true if the message is one of the user favorites.
+	 *
+	 * @return	true if the message is a favorite
+	 */
+	public boolean isFavorite() {
+		return IsFavorite;
+	}
+
+	/**
+	 * This method returns the URL of the image of the message.
+	 *
+	 * @return	the URL of the image, or null if the message is not an image
+	 */
+	public String getImage() {
+		return (TYPE_IMAGE == Type) ? Media : null;
+	}
+
+	/**
+	 * This method returns the URL of the thumbnail of the image of the message.
+	 *
+	 * @return	the URL of the thumbnail, or null if the message is not an image
+	 */
+	public String getImageThumbnail() {
+		return (TYPE_IMAGE == Type) ? ImageThumbnail : null;
+	}
+
+	/**
+	 * This method returns the URL of the video of the message.
+	 *
+	 * @return	the URL of the video, or null if the message is not a video
+	 */
+	public String getVideo() {
+		return (TYPE_VIDEO == Type) ? Media : null;
+	}
+
+	/**
+	 * This method returns the link of the message.
+	 *
+	 * @return	the link, or null if the message is not a link
+	 */
+	public String getLink() {
+		return (TYPE_LINK == Type) ? Media : null;
+	}
+
+	/**
+	 * This method returns a copy of this message with a different favorite status.
+	 *
+	 * @param Favorite	the new favorite status
+	 *
+	 * @return	the modified message (this instance if the status doesn't change)
+	 */
+	public Meeme withFavorite(final boolean Favorite) {
+		if (Favorite == IsFavorite) {
+			return this;
+		}
+
+		return new Builder(this).setFavorite(Favorite).build();
+	}
+
+	/**
+	 * This method returns true if the input message shows the same contents of
+	 * this message (e.g., a newer copy of the same message where neither the
+	 * number of replies nor the favorite status are changed).
+	 *
+	 * @param M	the message to compare
+	 *
+	 * @return	true if the two messages are showed in the same way
+	 */
+	public boolean hasSameContents(final Meeme M) {
+		if (this == M) {
+			return true;
+		}
+
+		return null != M && Id == M.Id && Timestamp == M.Timestamp &&
+			   NumOfComments == M.NumOfComments && IsFavorite == M.IsFavorite &&
+			   IsPrivate == M.IsPrivate && Type == M.Type &&
+			   isSame(Time, M.Time) && isSame(MeemerName, M.MeemerName) &&
+			   isSame(MeemerAvatar, M.MeemerAvatar) && isSame(Content, M.Content) &&
+			   isSame(Media, M.Media) && isSame(ImageThumbnail, M.ImageThumbnail);
+	}
+
+
+	/**
+	 * This class is used to create a {@link Meeme} instance.
+	 *
+	 * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
+	 * @version 1.0
+	 */
+	public static final class Builder {
+		/**
+		 * This is the class constructor.
+		 */
+		public Builder() {
+			// nothing to do
+		}
+
+		/**
+		 * This constructor initializes the builder with the data of an existing message.
+		 *
+		 * @param M	the message to copy
+		 */
+		public Builder(final Meeme M) {
+			Id = M.Id;
+			Timestamp = M.Timestamp;
+			Time = M.Time;
+			MeemerName = M.MeemerName;
+			MeemerAvatar = M.MeemerAvatar;
+			Content = M.Content;
+			NumOfComments = M.NumOfComments;
+			Type = M.Type;
+			IsPrivate = M.IsPrivate;
+			IsFavorite = M.IsFavorite;
+			Media = M.Media;
+			ImageThumbnail = M.ImageThumbnail;
+		}
+
+		public Builder setId(final long I) { Id = I; return this; }
+		public Builder setTimestamp(final long T) { Timestamp = T; return this; }
+		public Builder setTime(final String T) { Time = T; return this; }
+		public Builder setMeemerName(final String N) { MeemerName = N; return this; }
+		public Builder setMeemerAvatar(final String A) { MeemerAvatar = A; return this; }
+		public Builder setContent(final String C) { Content = C; return this; }
+		public Builder setNumOfComments(final int N) { NumOfComments = N; return this; }
+		public Builder setPrivate(final boolean P) { IsPrivate = P; return this; }
+		public Builder setFavorite(final boolean F) { IsFavorite = F; return this; }
+
+		/**
+		 * This method sets the message as an image.
+		 *
+		 * @param Image		the URL of the image
+		 * @param Thumbnail	the URL of the image thumbnail
+		 *
+		 * @return	this builder
+		 */
+		public Builder setImage(final String Image, final String Thumbnail) {
+			Type = TYPE_IMAGE;
+			Media = Image;
+			ImageThumbnail = Thumbnail;
+
+			return this;
+		}
+
+		/**
+		 * This method sets the message as a video.
+		 *
+		 * @param Video	the URL of the video
+		 *
+		 * @return	this builder
+		 */
+		public Builder setVideo(final String Video) {
+			Type = TYPE_VIDEO;
+			Media = Video;
+			ImageThumbnail = null;
+
+			return this;
+		}
+
+		/**
+		 * This method sets the message as a link.
+		 *
+		 * @param Link	the link
+		 *
+		 * @return	this builder
+		 */
+		public Builder setLink(final String Link) {
+			Type = TYPE_LINK;
+			Media = Link;
+			ImageThumbnail = null;
+
+			return this;
+		}
+
+		/**
+		 * This method creates the message.
+		 *
+		 * @return	the new message
+		 */
+		public Meeme build() {
+			return new Meeme(this);
+		}
+
+		private long Id					= 0;
+		private long Timestamp			= 0;
+		private String Time				= "";
+		private String MeemerName		= "";
+		private String MeemerAvatar		= "";
+		private String Content			= "";
+		private int NumOfComments		= 0;
+		private int Type				= TYPE_TEXT;
+		private boolean IsPrivate		= false;
+		private boolean IsFavorite		= false;
+		private String Media			= null;
+		private String ImageThumbnail	= null;
+	}
+
+
+	private Meeme(final Builder B) {
+		Id = B.Id;
+		Timestamp = B.Timestamp;
+		Time = B.Time;
+		MeemerName = B.MeemerName;
+		MeemerAvatar = B.MeemerAvatar;
+		Content = B.Content;
+		NumOfComments = B.NumOfComments;
+		Type = B.Type;
+		IsPrivate = B.IsPrivate;
+		IsFavorite = B.IsFavorite;
+		Media = B.Media;
+		ImageThumbnail = B.ImageThumbnail;
+	}
+
+	/**
+	 * This method compares two strings that can be null.
+	 *
+	 * @param A	the first string
+	 * @param B	the second string
+	 *
+	 * @return	true if the strings are both null, or equal
+	 */
+	private static boolean isSame(final String A, final String B) {
+		return (null == A) ? null == B : A.equals(B);
+	}
+
+
+	private final long Id;
+	private final long Timestamp;
+	private final String Time;
+	private final String MeemerName;
+	private final String MeemerAvatar;
+	private final String Content;
+	private final int NumOfComments;
+	private final int Type;
+	private final boolean IsPrivate;
+	private final boolean IsFavorite;
+
+	// the image, the video or the link (according to the message type)
+	private final String Media;
+	private final String ImageThumbnail;
+}
@@ -1,11 +1,20 @@
 package adiep.meemidroid.engine;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.Formatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TreeMap;
 
@@ -15,16 +24,23 @@ import org.json.JSONObject;
 
 import adiep.meemidroid.ImageLoader;
 import adiep.meemidroid.MeemiDroidApplication;
+import adiep.meemidroid.MeemiTextCache;
 import adiep.meemidroid.R;
+import adiep.meemidroid.StartupPhases;
 import adiep.meemidroid.Utility;
+import adiep.meemidroid.engine.communication.HTTPConnectionPool;
 import adiep.meemidroid.engine.communication.HTTPEngine;
 import adiep.meemidroid.engine.communication.HTTPMultipartPostEngine;
 import adiep.meemidroid.engine.communication.HTTPPostEngine;
+import adiep.meemidroid.engine.communication.HTTPResponseCache;
+import adiep.meemidroid.support.compatibility.JSONPullParser;
 import adiep.meemidroid.support.compatibility.Pair;
 import android.app.Activity;
 import android.app.Dialog;
 import android.app.ProgressDialog;
+import android.content.ContentResolver;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.util.Log;
@@ -34,7 +50,7 @@ import android.util.Log;
  * It's based upon the version 3.x of the Meemi's API.
  * 
  * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
- * @version 1.4
+ * @version 2.2
  */
 public class MeemiEngine {
 	// Identifiers for method callback
@@ -62,20 +78,40 @@ public class MeemiEngine {
 	public static final int CB_NOTIFY_FOLLOWERS		= 21;
 	public static final int CB_MARK_AS_READ			= 22;
 	public static final int CB_MARK_UNMARK_AS_FAV	= 23;
+	public static final int CB_STORED_LIFESTREAM	= 24;
 	
 	
 	/**
 	 * This class represent a generic response to a Meemi API call.
 	 * It encapsulates the JSON API response and contains the identifier of
 	 * the original request in order to support asynchronous requests.
+	 * The streams of Meemi messages are not stored as JSON: they are parsed
+	 * while the response is downloaded and stored directly in {@link #Meemis}.
+	 * The paged results also contain the requested {@link #Page}.
+	 * A result marked as {@link #IsStale} comes from the cache and it's being
+	 * revalidated: if the data have changed, an updated result (for the same
+	 * request) follows.
+	 * The other responses are parsed by the background thread too, according to
+	 * the {@link #CallbackMethod}: the 'parse' methods of {@link MeemiEngine} only
+	 * return the typed result already stored in the private field {@link #Parsed}.
+	 * A request without response is marked as {@link #IsNotSent} if it has never
+	 * reached Meemi, so it can be safely sent again.
 	 * 
 	 * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
-	 * @version 1.0
+	 * @version 1.5
 	 */
 	public class MeemiEngineResult {
 		public JSONObject Object	= null;
 		public JSONArray Array		= null;
+		public List<Meeme> Meemis	= null;
+		public int Page				= 0;
+		public boolean IsStale		= false;
+		public boolean IsNotSent	= false;
 		public int CallbackMethod	= CB_NONE;
+		
+		// the typed result (see parse(MeemiEngineResult)), valid only if IsParsed is true
+		private Object Parsed		= null;
+		private boolean IsParsed	= false;
 	}
 	
 	
@@ -88,10 +124,11 @@ public class MeemiEngine {
 	 * The class that implements this interface can manage by itself the the
 	 * result of API, returned in {@link MeemiEngineResult}, or can
 	 * use the static methods with the prefix 'parse' already implemented
-	 * in {@link MeemiEngine}
+	 * in {@link MeemiEngine}: the results are parsed before the callback is
+	 * called, so these methods are cheap to call on the UI thread.
 	 * 
 	 * @author Andrea de Iacovo, and Eros Pedrini
-	 * @version 1.0
+	 * @version 1.1
 	 */
 	public interface Callbackable {
 		/**
@@ -107,12 +144,48 @@ public class MeemiEngine {
 	/**
 	 * This is the class constructor and create the engine that
 	 * manages the interaction with Meemi's API.
+	 * The credentials, the location engine, the cache of the responses and the
+	 * outbox are created the first time they are used, or by {@link #warmUp()}
+	 * (see {@link StartupPhases.Provider}).
 	 */
 	public MeemiEngine() {
-		MyCredentials = new MeemiCredentials();
-		MyCredentials.load();
+	}
+	
+	/**
+	 * This method prepares the engine for the first requests, so they don't wait
+	 * for the initializations: the offline storage of the lifestreams and the
+	 * cache of the responses are opened, the outbox is started (so the posts not
+	 * sent during the previous executions are sent now), and a connection to
+	 * Meemi is opened in advance (see {@link HTTPConnectionPool#warmUp(String)}).
+	 * It has to be called by a background thread.
+	 */
+	public void warmUp() {
+		getStore().getReadableDatabase();
+		
+		MyResponseCache.get();
+		MyOutbox.get();
+		
+		HTTPConnectionPool.warmUp(SenderTask.MeemiUrl);
+	}
+	
+	/**
+	 * This method starts in parallel the requests needed when the application
+	 * starts: the profile of the input user and the first page of her personal
+	 * lifestream (that is stored offline, so it's showed immediately when the
+	 * lifestream is opened). No waiting dialog is showed: the same requests done
+	 * by the activities share the responses, or find them in the caches.
+	 * 
+	 * @param User				the user ScreenName
+	 * @param C					the current Android context
+	 * @param CallbackInstance	the {@link Callbackable} instance (can be null)
+	 * 
+	 * @see #getUserProfile(String, Context, Callbackable)
+	 * @see #getLifeStream(String, int, int, Context, Callbackable)
+	 */
+	public void prefetchStartup(final String User, Context C, Callbackable CallbackInstance) {
+		executeCommand(USER_PROFILE, new String[]{User}, true, CB_USER_PROFILE, false, false, C, CallbackInstance);
 		
-		MyLocationEngine = new LocationEngine(this);
+		getLifeStream(User, LifestreamConst.PERSONAL_LS, 1, false, C, CallbackInstance);
 	}
 	
 	/**
@@ -126,6 +199,52 @@ public class MeemiEngine {
 		new AsyncCommand(AsyncCommand.CLEAR_AVATAR_CACHE, ForegroundWaiting, C).execute();
 	}
 	
+	/**
+	 * This method cancels all the requests done with the input context (usually
+	 * an {@link Activity} that is going away): their callbacks will not be
+	 * called. The requests that only read data are stopped, while the ones that
+	 * change data on Meemi (e.g., a post) are completed anyway. The posts
+	 * written to the {@link Outbox} are sent anyway too.
+	 * 
+	 * @param C	the context used to do the requests
+	 * 
+	 * @return	the number of cancelled requests
+	 */
+	public int cancelRequests(Context C) {
+		if ( MyOutbox.isCreated() ) {
+			MyOutbox.get().release(C);
+		}
+		
+		return Scheduler.cancel(C);
+	}
+	
+	/**
+	 * This method logs the network statistics: the response bytes received
+	 * from the network and the ones read after the decompression (to measure
+	 * the compression savings), and the response cache hits (if the cache has
+	 * been created). It has to be called when the system is running low on
+	 * memory, like the memory caches that log their statistics.
+	 */
+	public void onLowMemory() {
+		String Stats = "wire bytes=" + HTTPEngine.getWireBytes() + ", decoded bytes=" + HTTPEngine.getDecodedBytes();
+		
+		if ( MyResponseCache.isCreated() ) {
+			Stats += ", " + MyResponseCache.get();
+		}
+		
+		Log.i("MeemiEngine - onLowMemory", Stats);
+	}
+	
+	/**
+	 * This method returns the outbox of the posts: the messages, the replies
+	 * and the images are sent in background by it.
+	 * 
+	 * @return	the outbox
+	 */
+	public Outbox getOutbox() {
+		return MyOutbox.get();
+	}
+	
 	/**
 	 * This method returns the user credentials stored in
 	 * {@link MeemiCredentials}.
@@ -135,7 +254,7 @@ public class MeemiEngine {
 	 * @see MeemiCredentials
 	 */
 	public MeemiCredentials getCredentials() {
-		return MyCredentials;
+		return MyCredentials.get();
 	}
 	
 	/**
@@ -168,7 +287,9 @@ public class MeemiEngine {
 	 * Meemi server.
 	 */
 	public void stopLocationSync() {
-		MyLocationEngine.stopLocationSync();
+		if ( MyLocationEngine.isCreated() ) {
+			MyLocationEngine.get().stopLocationSync();
+		}
 	}
 	
 	/**
@@ -179,7 +300,7 @@ public class MeemiEngine {
 	 * 					in minutes)
 	 */
 	public void startLocationSync(final int Minutes) {
-		MyLocationEngine.startLocationSync(Minutes);
+		MyLocationEngine.get().startLocationSync(Minutes);
 		
 		String CurrentLocation = MeemiDroidApplication.Prefs.getLastKnowLocation();
 		
@@ -262,7 +383,27 @@ public class MeemiEngine {
 	 * @see #parseFriendsResult(MeemiEngineResult)
 	 */
 	public void getFollowers(final String User, final int Page, Context C, Callbackable CallbackInstance) {		
-		executeCommand(FOLLWERS, new String[]{User, Integer.toString(Page)}, true, CB_FOLLOWERS, false, true, C, CallbackInstance);
+		getFollowers(User, Page, true, C, CallbackInstance);
+	}
+	
+	/**
+	 * This method returns the followers of the user used as input argument
+	 * (see {@link #getFollowers(String, int, Context, Callbackable)}).
+	 * 
+	 * @param User				the user followed
+	 * @param Page				the page to load
+	 * @param ForegroundFlag	true if a waiting message has to be showed
+	 * 							during the process
+	 * @param C					the current Android context
+	 * @param CallbackInstance	the {@link Callbackable} instance (can be null)
+	 * 
+	 * @see #parseFriendsResult(MeemiEngineResult)
+	 */
+	public void getFollowers(final String User, final int Page, final boolean ForegroundFlag, Context C, Callbackable CallbackInstance) {
+		SenderArguments STArgs = new SenderArguments(new Formatter().format(FOLLWERS, User, Integer.toString(Page)).toString(), true, null, null);
+		STArgs.Page = Page;
+		
+		executeCommand(STArgs, CB_FOLLOWERS, false, ForegroundFlag, C, CallbackInstance);
 	}
 	
 	/**
@@ -276,11 +417,34 @@ public class MeemiEngine {
 	 * @see #parseFriendsResult(MeemiEngineResult)
 	 */
 	public void getFollowings(final String User, final int Page, Context C, Callbackable CallbackInstance) {
-		executeCommand(FOLLWINGS, new String[]{User, Integer.toString(Page)}, true, CB_FOLLOWING, false, true, C, CallbackInstance);
+		getFollowings(User, Page, true, C, CallbackInstance);
+	}
+	
+	/**
+	 * This method returns the users followed by the user used as input argument
+	 * (see {@link #getFollowings(String, int, Context, Callbackable)}).
+	 * 
+	 * @param User				the starting user 
+	 * @param Page				the page to load
+	 * @param ForegroundFlag	true if a waiting message has to be showed
+	 * 							during the process
+	 * @param C					the current Android context
+	 * @param CallbackInstance	the {@link Callbackable} instance (can be null)
+	 * 
+	 * @see #parseFriendsResult(MeemiEngineResult)
+	 */
+	public void getFollowings(final String User, final int Page, final boolean ForegroundFlag, Context C, Callbackable CallbackInstance) {
+		SenderArguments STArgs = new SenderArguments(new Formatter().format(FOLLWINGS, User, Integer.toString(Page)).toString(), true, null, null);
+		STArgs.Page = Page;
+		
+		executeCommand(STArgs, CB_FOLLOWING, false, ForegroundFlag, C, CallbackInstance);
 	}
 	
 	/**
 	 * This method returns the specified lifestream of the current user.
+	 * The downloaded messages are also stored offline, so they can be
+	 * showed immediately the next time the lifestream is opened (see
+	 * {@link #loadStoredLifeStream(String, int, Context, Callbackable)}).
 	 * 
 	 * @param User				the current user related with the lifestream
 	 * 							to retrieve
@@ -292,6 +456,25 @@ public class MeemiEngine {
 	 * @see #parseMeemiStreamResult(MeemiEngineResult)
 	 */
 	public void getLifeStream(final String User, final int LifeStream, final int Page, Context C, Callbackable CallbackInstance) {
+		getLifeStream(User, LifeStream, Page, true, C, CallbackInstance);
+	}
+	
+	/**
+	 * This method retrieves the specified page of a lifestream (see
+	 * {@link #getLifeStream(String, int, int, Context, Callbackable)}).
+	 * 
+	 * @param User				the current user related with the lifestream
+	 * 							to retrieve
+	 * @param LifeStream		the lifestream to return 
+	 * @param Page				the page to load
+	 * @param ForegroundFlag	true if a waiting message has to be showed
+	 * 							during the process
+	 * @param C					the current Android context
+	 * @param CallbackInstance	the {@link Callbackable} instance (can be null)
+	 * 
+	 * @see #parseMeemiStreamResult(MeemiEngineResult)
+	 */
+	public void getLifeStream(final String User, final int LifeStream, final int Page, final boolean ForegroundFlag, Context C, Callbackable CallbackInstance) {
 		String Cmd		= USERLIFESTREAM;
 		String[] Args	= new String[]{User, Integer.toString(Page)};
 		
@@ -317,7 +500,47 @@ public class MeemiEngine {
 			// nothing to do
 		}
 		
-		executeCommand(Cmd, Args, true, CB_LIFESTREAM, false, true, C, CallbackInstance);
+		SenderArguments STArgs = new SenderArguments(new Formatter().format(Cmd, (Object[])Args).toString(), true, null, null);
+		STArgs.Page = Page;
+		STArgs.Stream = LifeStream;
+		STArgs.StreamOwner = getStreamOwner(User);
+		
+		executeCommand(STArgs, CB_LIFESTREAM, false, ForegroundFlag, C, CallbackInstance);
+	}
+	
+	/**
+	 * This method returns the messages of the specified lifestream stored
+	 * offline by the previous calls to
+	 * {@link #getLifeStream(String, int, int, Context, Callbackable)}, from the
+	 * newest one. The messages are read in background, and no waiting dialog
+	 * is showed.
+	 * 
+	 * @param User				the current user related with the lifestream
+	 * 							to retrieve
+	 * @param LifeStream		the lifestream to return 
+	 * @param C					the current Android context
+	 * @param CallbackInstance	the {@link Callbackable} instance (can be null)
+	 * 
+	 * @see #parseMeemiStreamResult(MeemiEngineResult)
+	 */
+	public void loadStoredLifeStream(final String User, final int LifeStream, Context C, Callbackable CallbackInstance) {
+		Scheduler.submit( RequestScheduler.LANE_INTERACTIVE, new StoreTask(getStreamOwner(User), LifeStream, C, CallbackInstance) );
+	}
+	
+	/**
+	 * This method removes, in background, all the lifestreams stored offline
+	 * (e.g., when the user changes her credentials, so that her lifestreams
+	 * are not showed to the next user).
+	 */
+	public void clearStoredLifeStreams() {
+		Scheduler.submit( RequestScheduler.LANE_BACKGROUND, new RequestScheduler.Request<Void>(this) {
+			@Override
+			protected Void doInBackground() {
+				getStore().clear();
+				
+				return null;
+			}
+		} );
 	}
 	
 	/**
@@ -364,7 +587,9 @@ public class MeemiEngine {
 	}
 	
 	/**
-	 * This method posts a message to Meemi.
+	 * This method posts a message to Meemi. The message is written to the
+	 * {@link Outbox} and it's sent in background, so the method returns
+	 * immediately.
 	 * 
 	 * @param Message			the message to post
 	 * @param PrivateUsersList	the comma separated list of the users that have
@@ -385,11 +610,12 @@ public class MeemiEngine {
 			Args.add( new Pair<String, String>( "private_sn", PrivateUsersList.trim() ) );
 		}
 		
-		executeCommand(POST_MESSAGE, NO_CMD_ARGS, Args, true, CB_POST_MESSAGE, false, true, C, CallbackInstance);
+		MyOutbox.get().enqueue(POST_MESSAGE, Args, null, CB_POST_MESSAGE, C, CallbackInstance);
 	}
 	
 	/**
-	 * This method replay to a message in Meemi.
+	 * This method replay to a message in Meemi. The reply is written to the
+	 * {@link Outbox} and it's sent in background.
 	 * 
 	 * @param Message			the message to post
 	 * @param MeemiId			the original Meemi message ID
@@ -407,11 +633,12 @@ public class MeemiEngine {
 		Args.add( new Pair<String, String>( "reply_screen_name", OriginalMeemer.trim() ) );
 		Args.add( new Pair<String, String>( "reply_meme_id", OriginalMessageID.trim() ) );
 		
-		executeCommand(REPLY_TO_MESSAGE, NO_CMD_ARGS, Args, true, CB_REPLY_MESSAGE, false, true, C, CallbackInstance);
+		MyOutbox.get().enqueue(REPLY_TO_MESSAGE, Args, null, CB_REPLY_MESSAGE, C, CallbackInstance);
 	}
 	
 	/**
-	 * This method posts an image stored in the Android device to Meemi.
+	 * This method posts an image stored in the Android device to Meemi. The
+	 * image is copied in the {@link Outbox} and it's sent in background.
 	 * 
 	 * @param Message			the message to post
 	 * @param ImageUri			the URI of the image to post
@@ -432,7 +659,22 @@ public class MeemiEngine {
 			Args.add( new Pair<String, String>( "private_sn", PrivateUsersList.trim() ) );
 		}
 		
-		executeCommand(POST_MESSAGE, NO_CMD_ARGS, Args, true, ImageUri, CB_POST_IMAGE, false, true, C, CallbackInstance);
+		MyOutbox.get().enqueue(POST_MESSAGE, Args, ImageUri, CB_POST_IMAGE, C, CallbackInstance);
+	}
+	
+	/**
+	 * This method sends a post written to the {@link Outbox}: the request is
+	 * not bound to any Activity, so it can not be cancelled.
+	 * 
+	 * @param Command			the command to execute
+	 * @param Args				the arguments of the command
+	 * @param ImageUri			the URI of the image to post (can be null)
+	 * @param CallingMethod		the identifier of the calling method
+	 * @param C					the application context
+	 * @param CallbackInstance	the {@link Callbackable} instance
+	 */
+	void sendPost(final String Command, final List<Pair<String, String>> Args, final Uri ImageUri, final int CallingMethod, Context C, Callbackable CallbackInstance) {
+		executeCommand(Command, NO_CMD_ARGS, Args, true, ImageUri, CallingMethod, false, false, C, CallbackInstance);
 	}
 	
 	/**
@@ -595,6 +837,10 @@ public class MeemiEngine {
 				CB_MARK_AS_READ == Result.CallbackMethod ||+
 				CB_MARK_UNMARK_AS_FAV == Result.CallbackMethod) {
 				
+				if (Result.IsParsed) {
+					return ( (Boolean)Result.Parsed ).booleanValue();
+				}
+				
 				try {
 					if (null != Result.Object) {
 						IsStatusOk = ( 1 == Result.Object.getJSONObject("message").getInt("status") );
@@ -614,37 +860,45 @@ public class MeemiEngine {
 	/**
 	 * This method parses the response to a request for getting a Meemi user
 	 * profile ({@link #getUserProfile(String, Context, Callbackable)}, and it returns user
-	 * information into a {@link Map} in order to simplify the access to
+	 * information into a {@link UserProfile} in order to simplify the access to
 	 * information.
 	 * 
 	 * @param Result	the {@link MeemiEngineResult} to parse
 	 * 
-	 * @return a {@link Map} containing the Meemi user profile information
+	 * @return a {@link UserProfile} containing the Meemi user profile information, or
+	 * 			null if the response doesn't contain a valid profile
 	 * 
 	 * @see #getUserProfile(String, Context, Callbackable)
 	 */
-	public static final Map<String, String> parseUserProfileResult(final MeemiEngineResult Result) {
-		Map<String, String> Profile = new TreeMap<String, String>();
+	public static final UserProfile parseUserProfileResult(final MeemiEngineResult Result) {
+		UserProfile Profile = null;
 		
 		if ( null != Result ) {
 			if (CB_USER_PROFILE == Result.CallbackMethod) {
+				if (Result.IsParsed) {
+					return (UserProfile)Result.Parsed;
+				}
+				
 				try {
 					if (null != Result.Object) {
-						Profile.put( "screen_name", Result.Object.getString("screen_name") );
-						Profile.put( "avatar_url", Result.Object.getString("avatar") );
-						Profile.put( "real_name", Result.Object.getString("real_name") );
+						JSONObject P = Result.Object;
 						
-						String TmpFormatedDate = Utility.formatDate( Result.Object.getString("birth"), MeemiDroidApplication.getContext().getString(R.string.DateFormat), "yyyy-MM-dd" );
-						Profile.put( "birth", TmpFormatedDate);
+						String TmpFormatedDate = Utility.formatDate( P.getString("birth"), MeemiDroidApplication.getContext().getString(R.string.DateFormat), "yyyy-MM-dd" );
 						
-						Profile.put( "current_location", Result.Object.getString("current_location") );
-						Profile.put( "followings", Result.Object.getString("qta_followings") );
-						Profile.put( "followers", Result.Object.getString("qta_followers") );
-						Profile.put( "is_followed", Result.Object.getString("you_follow") );
-						Profile.put( "he_follows", Result.Object.getString("follow_you") );
-						Profile.put( "is_blocked", Result.Object.getString("block_this_user") );
-						Profile.put( "description", Result.Object.getString("description") );
-						Profile.put( "profile", Result.Object.getString("profile") );
+						Profile = new UserProfile.Builder()
+							.setScreenName( P.getString("screen_name") )
+							.setAvatarUrl( P.getString("avatar") )
+							.setRealName( P.getString("real_name") )
+							.setBirth(TmpFormatedDate)
+							.setCurrentLocation( P.getString("current_location") )
+							.setFollowings( toInt( P.getString("qta_followings") ) )
+							.setFollowers( toInt( P.getString("qta_followers") ) )
+							.setFollowed( toFlag( P.getString("you_follow") ) )
+							.setFollowingYou( toFlag( P.getString("follow_you") ) )
+							.setBlocked( toFlag( P.getString("block_this_user") ) )
+							.setDescription( P.getString("description") )
+							.setProfile( P.getString("profile") )
+							.build();
 					}
 				} catch (JSONException ex) {
 					Log.e("MeemiEngine - parseUserProfileResult", "Problem during response parsing", ex);
@@ -662,7 +916,7 @@ public class MeemiEngine {
 	 * {@link #getFollowers(String, int, Context, Callbackable)} or
 	 * {@link #getFollowings(String, int, Context, Callbackable)} call, returning a
 	 * {@link List} where each item represents a friend (follower or followed).
-	 * Each item is a {@link Map} containing all friend information needed.
+	 * Each item is a {@link Friend} containing all friend information needed.
 	 * 
 	 * @param Result	the {@link MeemiEngineResult} to parse
 	 * 
@@ -671,13 +925,18 @@ public class MeemiEngine {
 	 * @see #getFollowers(String, int, Context, Callbackable)
 	 * @see #getFollowings(String, int, Context, Callbackable)
 	 */
-	public static final List<TreeMap<String, String>> parseFriendsResult(final MeemiEngineResult Result) {
-		List<TreeMap<String, String>> Friends = new ArrayList<TreeMap<String, String>>();
+	@SuppressWarnings("unchecked")
+	public static final List<Friend> parseFriendsResult(final MeemiEngineResult Result) {
+		List<Friend> Friends = new ArrayList<Friend>();
 		
 		if (null != Result) {
 			if (CB_FOLLOWERS == Result.CallbackMethod ||
 				CB_FOLLOWING == Result.CallbackMethod) {
 				
+				if (Result.IsParsed) {
+					return (List<Friend>)Result.Parsed;
+				}
+				
 				JSONArray Users = Result.Array;
 
 				if (null != Users && 0 != Users.length() ) {
@@ -685,12 +944,8 @@ public class MeemiEngine {
 						try {
 							JSONObject F = Users.getJSONObject(u);
 							
-							TreeMap<String, String> Item = new TreeMap<String, String>();
-							Item.put( "UserId", F.getString("screen_name") );
-							Item.put( "Avatar", F.getString("avatar") );
-							Item.put( "Follow", F.getString("follow_you") );
-							Item.put( "Followed", F.getString("you_follow") );						
-							Friends.add(Item);
+							Friends.add( new Friend( F.getString("screen_name"), F.getString("avatar"),
+													 toFlag( F.getString("follow_you") ), toFlag( F.getString("you_follow") ) ) );
 						} catch (JSONException ex) {
 							Log.e("MeemiEngine - parseFriendsResult", "Problem during response parsing", ex);
 						}
@@ -707,42 +962,32 @@ public class MeemiEngine {
 	/**
 	 * This method parses the response to the following requests and return
 	 * a {@link List} of Meemi messages. Each message is represented as a
-	 * {@link Map} containing the information needed.
+	 * {@link Meeme} containing the information needed.
 	 * This method can be used to parse response from:
 	 * - {@link #getLifeStream(String, String, int, Context, Callbackable)}
+	 * - {@link #loadStoredLifeStream(String, int, Context, Callbackable)}
 	 * - {@link #getReplies(String, String, int, Context, Callbackable)}
 	 * - {@link #executeSearch(String, Context, Callbackable)}
 	 * - {@link #getNotifies(int, Context, Callbackable)}
 	 * 
 	 * @param Result	the {@link MeemiEngineResult} to parse
 	 * 
-	 * @return a list of data about each Meeme message. Each message is represented as a {@link Map}
+	 * @return a list of data about each Meeme message. Each message is represented as a {@link Meeme}
 	 * 
 	 * @see #getLifeStream(String, String, int, Context, Callbackable)
 	 * @see #getReplies(String, String, int, Context, Callbackable)
 	 * @see #executeSearch(String, Context, Callbackable)
 	 * @see #getNotifies(int, Context, Callbackable)
 	 */
-	public static final List<TreeMap<String, String>> parseMeemiStreamResult(final MeemiEngineResult Result) {
-		List<TreeMap<String, String>> Meemis = new ArrayList<TreeMap<String, String>>();
+	public static final List<Meeme> parseMeemiStreamResult(final MeemiEngineResult Result) {
+		List<Meeme> Meemis = new ArrayList<Meeme>();
 		
 		if (null != Result) {
 			if (CB_LIFESTREAM == Result.CallbackMethod ||
+				CB_STORED_LIFESTREAM == Result.CallbackMethod ||
 				CB_REPLYSTREAM == Result.CallbackMethod) {
-				JSONArray MeemisArray = Result.Array;
-				
-				if (null != MeemisArray && 0 != MeemisArray.length() ) {
-					for(int u=0; u < MeemisArray.length(); ++u) {
-							try {
-								JSONObject M = MeemisArray.getJSONObject(u);
-				
-								TreeMap<String, String> Item = extractMeemiMessage(M);
-				
-								Meemis.add(Item);
-							} catch (JSONException ex) {
-								Log.e("MeemiEngine - parseMeemiStreamResult", "Problem during response parsing", ex);
-							}
-					}
+				if (null != Result.Meemis) {
+					Meemis = Result.Meemis;
 				}
 			} else {
 				Log.w("MeemiEngine - parseMeemiStreamResult", "You use the wrong 'parse' method");
@@ -755,29 +1000,21 @@ public class MeemiEngine {
 	/**
 	 * This method parses the response to
 	 * {@link #getSingleMeeme(String, String, Context, Callbackable)} and returns a
-	 * {@link Map} containing all the message information needed
+	 * {@link Meeme} containing all the message information needed
 	 * 
 	 * @param Result	the {@link MeemiEngineResult} to parse
 	 * 
-	 * @return a {@link Map} the message data 
+	 * @return a {@link Meeme} the message data, or null if the response doesn't contain a message 
 	 * 
 	 * @see #getSingleMeeme(String, String, Context, Callbackable)
 	 */
-	public static final TreeMap<String, String> parseSingleMeemeResult(final MeemiEngineResult Result) {
-		TreeMap<String, String> Meeme = new TreeMap<String, String>();
+	public static final Meeme parseSingleMeemeResult(final MeemiEngineResult Result) {
+		Meeme Meeme = null;
 		
 		if (null != Result) {
 			if (CB_SINGLE_MEEME == Result.CallbackMethod) {
-				JSONArray MeemisArray = Result.Array;
-
-				if (null != MeemisArray && 0 != MeemisArray.length() ) {
-					try {
-						JSONObject M = Result.Array.getJSONObject(0);
-					
-						Meeme = extractMeemiMessage(M);
-					} catch (JSONException ex) {
-						Log.e("MeemiEngine - parseSingleMeemeResult", "Problem during response parsing", ex);
-					}
+				if (null != Result.Meemis && 0 != Result.Meemis.size() ) {
+					Meeme = Result.Meemis.get(0);
 				}
 			} else {
 				Log.w("MeemiEngine - parseSingleMeemeResult", "You use the wrong 'parse' method");
@@ -814,6 +1051,10 @@ public class MeemiEngine {
 				CB_POST_IMAGE == Result.CallbackMethod ||
 				CB_POST_MESSAGE == Result.CallbackMethod) {
 				
+				if (Result.IsParsed) {
+					return (String)Result.Parsed;
+				}
+				
 				try {
 					if (null != Result.Object) {
 						MeemeId = Result.Object.getString("id_meeme");
@@ -829,6 +1070,34 @@ public class MeemiEngine {
 		return MeemeId;		
 	}
 	
+	/**
+	 * This method returns true if the outcome of a request that changes data on
+	 * Meemi (e.g., a post) is unknown: the request has been sent, but its response
+	 * has been lost (e.g., the connection has dropped while waiting for it), so
+	 * Meemi can have executed it anyway. Such a request must not be sent again
+	 * automatically.
+	 * 
+	 * @param Result	the {@link MeemiEngineResult} to check
+	 * 
+	 * @return	true if the request may have been executed by Meemi
+	 */
+	public static boolean isResultUnknown(final MeemiEngineResult Result) {
+		return null != Result && null == Result.Object && null == Result.Array && !Result.IsNotSent;
+	}
+	
+	/**
+	 * This method returns true if a request has failed: no response has been
+	 * received (e.g., the connection is down), or it can't be parsed. A page
+	 * without items (e.g., the end of a lifestream) is not a failure.
+	 * 
+	 * @param Result	the {@link MeemiEngineResult} to check
+	 * 
+	 * @return	true if the result doesn't contain any response
+	 */
+	public static boolean isResultFailed(final MeemiEngineResult Result) {
+		return null == Result || ( null == Result.Object && null == Result.Array && null == Result.Meemis );
+	}
+	
 	
 	/**
 	 * This method parses the response to the {@link #getNotifiesStats(Context, Callbackable)}
@@ -840,11 +1109,16 @@ public class MeemiEngine {
 	 * 
 	 * @see #getNotifiesStats(Context, Callbackable)
 	 */
+	@SuppressWarnings("unchecked")
 	public static final TreeMap<String, String> parseNotifyStats(final MeemiEngineResult Result) {
 		TreeMap<String, String> Notifies = new TreeMap<String, String>();
 		
 		if (null != Result) {
 			if (CB_NOTIFY_STATS == Result.CallbackMethod) {
+				if (Result.IsParsed) {
+					return (TreeMap<String, String>)Result.Parsed;
+				}
+				
 				try {
 					if (null != Result.Object) {
 						
@@ -950,7 +1224,50 @@ public class MeemiEngine {
 		
 		SenderArguments STArgs = new SenderArguments(new Formatter().format(Command, (Object[])CmdArgs).toString(), UseAuhtetification, Args, ImageUri);
 		
-		SenderTask ST = (SenderTask)( new SenderTask(this, CallingMethod, ForegroundFlag, C, CallbackInstance).execute(STArgs) );
+		return executeCommand(STArgs, CallingMethod, SyncFlag, ForegroundFlag, C, CallbackInstance);
+	}
+	
+	/**
+	 * This method executes a command prepared by the caller (see
+	 * {@link #executeCommand(String, String[], List, boolean, Uri, int, boolean, boolean, Context, Callbackable)}).
+	 * 
+	 * @param STArgs				the prepared request
+	 * @param CallingMethod			the identifier of the calling method
+	 * @param SyncFlag				true if execution has to be synchronized
+	 * @param ForegroundFlag		true if a waiting message has to be showed
+	 * 								during the process
+	 * @param C						the Activity context
+	 * @param CallbackInstance		the {@link Callbackable} instance (can be null)
+	 *  
+	 * @return	a {@link MeemiEngineResult} representing the API response. Can be
+	 * 			<code>null</code> if the request was asynchronous.
+	 */
+	private final MeemiEngineResult executeCommand(final SenderArguments STArgs, final int CallingMethod, final boolean SyncFlag, final boolean ForegroundFlag, Context C, Callbackable CallbackInstance) {
+		final Uri ImageUri = STArgs.ImageUri;
+		
+		// the identical read-only requests already in progress are shared
+		String Key = null;
+		if ( !SyncFlag && null == ImageUri && isReadOnly(CallingMethod) ) {
+			Key = getRequestKey(STArgs, CallingMethod);
+			
+			synchronized (InFlight) {
+				SenderTask Running = InFlight.get(Key);
+				
+				if ( null != Running && Running.join(C, CallbackInstance, ForegroundFlag) ) {
+					return null;
+				}
+			}
+		}
+		
+		SenderTask ST = new SenderTask(this, STArgs, Key, CallingMethod, ForegroundFlag, C, CallbackInstance);
+		
+		if (null != Key) {
+			synchronized (InFlight) {
+				InFlight.put(Key, ST);
+			}
+		}
+		
+		Scheduler.submit( getLane(CallingMethod, ImageUri), ST );
 
 		MeemiEngineResult Result = null;
 		
@@ -958,13 +1275,242 @@ public class MeemiEngine {
 			try {
 				Result = ST.get();
 			} catch (Exception ex) {
-				Log.d("MeemiEngine", "Problems with AsyncTask", ex);
+				Log.d("MeemiEngine", "Problems with the request", ex);
 			}
 		}
 		
 		return Result;
 	}
 	
+	/**
+	 * This method returns the key identifying a request: two requests with the
+	 * same key return the same response.
+	 * 
+	 * @param Args			the request arguments
+	 * @param CallingMethod	the identifier of the method asking for the service
+	 * 
+	 * @return	the key of the request
+	 */
+	private final String getRequestKey(final SenderArguments Args, final int CallingMethod) {
+		StringBuilder Key = new StringBuilder();
+		
+		Key.append(CallingMethod).append('|').append(Args.Command);
+		
+		if (Args.UseAuthentification) {
+			Key.append('|').append( getCredentials().getUsername() );
+		}
+		
+		if (null != Args.Arguments) {
+			for (Pair<String, String> A : Args.Arguments) {
+				Key.append('|').append(A.first).append('=').append(A.second);
+			}
+		}
+		
+		return Key.toString();
+	}
+	
+	/**
+	 * This method returns the key identifying the owner of a lifestream stored
+	 * offline: the lifestreams of different accounts are kept apart.
+	 * 
+	 * @param User	the user related with the lifestream
+	 * 
+	 * @return	the owner of the stored lifestream
+	 */
+	private final String getStreamOwner(final String User) {
+		return getCredentials().getUsername() + "/" + User;
+	}
+	
+	/**
+	 * This method returns the offline storage of the lifestreams, creating it
+	 * the first time it's needed.
+	 * 
+	 * @return	the offline storage of the lifestreams
+	 */
+	private final synchronized LifestreamStore getStore() {
+		if (null == Store) {
+			Store = new LifestreamStore( MeemiDroidApplication.getContext() );
+		}
+		
+		return Store;
+	}
+	
+	/**
+	 * This method prepares a result to be delivered to the callbacks, so they
+	 * don't parse it on the UI thread: the response is parsed according to the
+	 * calling method (see {@link #parse(MeemiEngineResult)}) and the text of the
+	 * messages is rendered. It has to be called by a background thread.
+	 * The replies are not rendered, since they are showed with their links
+	 * (see {@link adiep.meemidroid.MeemiTextRenderer}).
+	 * 
+	 * @param Result	the result of a request
+	 */
+	private static final void prepare(final MeemiEngineResult Result) {
+		parse(Result);
+		
+		if (CB_REPLYSTREAM != Result.CallbackMethod && CB_SINGLE_MEEME != Result.CallbackMethod) {
+			MeemiTextCache.prerender(Result.Meemis);
+		}
+	}
+	
+	/**
+	 * This method parses a result with the 'parse' method matching its calling
+	 * method, and it stores the typed result: the following calls of the same
+	 * 'parse' method return it. The streams of messages are already parsed
+	 * while they are downloaded.
+	 * 
+	 * @param Result	the result of a request
+	 */
+	private static final void parse(final MeemiEngineResult Result) {
+		Object Parsed = null;
+		
+		switch (Result.CallbackMethod) {
+		case CB_CREDENTIAL_CHECK:
+		case CB_USER_BLOCK:
+		case CB_USER_FOLLOW:
+		case CB_MARK_AS_READ:
+		case CB_MARK_UNMARK_AS_FAV:
+			Parsed = Boolean.valueOf( parseResultStatus(Result) );
+			break;
+			
+		case CB_USER_PROFILE:
+			Parsed = parseUserProfileResult(Result);
+			break;
+			
+		case CB_FOLLOWERS:
+		case CB_FOLLOWING:
+			Parsed = parseFriendsResult(Result);
+			break;
+			
+		case CB_POST_MESSAGE:
+		case CB_REPLY_MESSAGE:
+		case CB_POST_IMAGE:
+			Parsed = parsePostMeemiResult(Result);
+			break;
+			
+		case CB_NOTIFY_STATS:
+			Parsed = parseNotifyStats(Result);
+			break;
+			
+		default:
+			return;
+		}
+		
+		Result.Parsed = Parsed;
+		Result.IsParsed = true;
+	}
+	
+	/**
+	 * This method removes a completed (or cancelled) request from the requests
+	 * in progress.
+	 * 
+	 * @param Key	the key of the request (can be null)
+	 * @param ST	the request
+	 */
+	private final void removeInFlight(final String Key, final SenderTask ST) {
+		if (null != Key) {
+			synchronized (InFlight) {
+				if ( ST == InFlight.get(Key) ) {
+					InFlight.remove(Key);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * This method returns the {@link RequestScheduler} lane used to execute a request.
+	 * 
+	 * @param CallingMethod	the identifier of the method asking for the service
+	 * @param ImageUri		the URI of the image to upload (can be null)
+	 * 
+	 * @return	the lane used to execute the request
+	 */
+	private static final int getLane(final int CallingMethod, final Uri ImageUri) {
+		if (null != ImageUri) {
+			return RequestScheduler.LANE_UPLOAD;
+		}
+		
+		switch (CallingMethod) {
+		case CB_POST_LOCATION:
+		case CB_NOTIFY_STATS:
+		case CB_NOTIFY_MEMES:
+		case CB_NOTIFY_REPLIES:
+		case CB_NOTIFY_PRIV_MEMES:
+		case CB_NOTIFY_PRIV_REPLIES:
+		case CB_NOTIFY_MENTIONS:
+		case CB_NOTIFY_FOLLOWERS:
+		case CB_MARK_AS_READ:
+			return RequestScheduler.LANE_BACKGROUND;
+		default:
+			return RequestScheduler.LANE_INTERACTIVE;
+		}
+	}
+	
+	/**
+	 * This method returns true if the request only reads data from Meemi (i.e., it
+	 * doesn't change anything on the server), so it can be safely stopped.
+	 * 
+	 * @param CallingMethod	the identifier of the method asking for the service
+	 * 
+	 * @return	true if the request only reads data
+	 */
+	private static final boolean isReadOnly(final int CallingMethod) {
+		switch (CallingMethod) {
+		case CB_CREDENTIAL_CHECK:
+		case CB_USER_PROFILE:
+		case CB_FOLLOWERS:
+		case CB_FOLLOWING:
+		case CB_LIFESTREAM:
+		case CB_REPLYSTREAM:
+		case CB_SINGLE_MEEME:
+		case CB_SEARCH:
+		case CB_NOTIFY_STATS:
+		case CB_NOTIFY_MEMES:
+		case CB_NOTIFY_REPLIES:
+		case CB_NOTIFY_PRIV_MEMES:
+		case CB_NOTIFY_PRIV_REPLIES:
+		case CB_NOTIFY_MENTIONS:
+		case CB_NOTIFY_FOLLOWERS:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * This method returns the time a cached response to a request is used without
+	 * revalidating it: only the read-only requests whose data change slowly are
+	 * cached (the lifestreams are stored by {@link LifestreamStore}).
+	 * 
+	 * @param CallingMethod	the identifier of the method asking for the service
+	 * 
+	 * @return	the maximum age of the cached response (in milliseconds), or 0 if
+	 * 			the response is not cached
+	 */
+	private static final long getCacheMaxAge(final int CallingMethod) {
+		switch (CallingMethod) {
+		case CB_USER_PROFILE:		return 30 * 1000;
+		case CB_FOLLOWERS:
+		case CB_FOLLOWING:			return 2 * 60 * 1000;
+		case CB_SINGLE_MEEME:		return 2 * 60 * 1000;
+		case CB_REPLYSTREAM:		return 30 * 1000;
+		default:					return 0;
+		}
+	}
+	
+	/**
+	 * This method returns true if the cached response to a request is delivered
+	 * immediately, even if it's not fresh anymore, while the request is revalidated
+	 * in background.
+	 * 
+	 * @param CallingMethod	the identifier of the method asking for the service
+	 * 
+	 * @return	true if the stale response is delivered
+	 */
+	private static final boolean isServedStale(final int CallingMethod) {
+		return CB_USER_PROFILE == CallingMethod || CB_FOLLOWERS == CallingMethod || CB_FOLLOWING == CallingMethod;
+	}
+	
 	/**
 	 * This method modify the input message adding the location part if needed.
 	 * 
@@ -975,8 +1521,8 @@ public class MeemiEngine {
 	private String prepareMessageWithLocation(final String Message) {
 		String Message2Send = Message.trim();
 		if ( MeemiDroidApplication.Prefs.isLocationEnabled() && LocationEngine.ONLYDURINGMESSAGESENDING == MeemiDroidApplication.Prefs.getLocationSyncMin() ) {
-			if ( null != MyLocationEngine.getCurrentLocation() ) {
-				Message2Send += "\n\n(l: " + MyLocationEngine.getCurrentLocation() + ")";
+			if ( null != MyLocationEngine.get().getCurrentLocation() ) {
+				Message2Send += "\n\n(l: " + MyLocationEngine.get().getCurrentLocation() + ")";
 			}
 		}
 		return Message2Send;
@@ -1023,83 +1569,111 @@ public class MeemiEngine {
 		 * The URI of the image to upload
 		 */
 		public Uri ImageUri = null;
+		
+		/**
+		 * The requested page (only for the paged requests)
+		 */
+		public int Page = 0;
+		
+		/**
+		 * The kind of lifestream where the downloaded messages are stored
+		 * offline (-1 if they are not stored)
+		 */
+		public int Stream = -1;
+		
+		/**
+		 * The owner of the lifestream where the downloaded messages are stored
+		 */
+		public String StreamOwner = null;
 	}
 	
 	
 	/**
-	 * This private class represents an asynchronous REST request.
+	 * This private class represents an asynchronous REST request, executed
+	 * by the {@link RequestScheduler} of the engine.
+	 * A read-only request can be shared by many callers asking for the same
+	 * data (see {@link #join(Context, Callbackable, boolean)}): the response is
+	 * delivered to each of them.
 	 * 
 	 * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
-	 * @version 1.4
+	 * @version 1.8
 	 */
-	private class SenderTask extends AsyncTask< SenderArguments, Void, MeemiEngineResult > {
+	private class SenderTask extends RequestScheduler.Request<MeemiEngineResult> {
 		/**
 		 * The constructor: used to setup the asynchronous request.
 		 * 
 		 * @param ME	the Meemi engine, used to access to credentials and others stuff
+		 * @param Args	the request arguments
+		 * @param K		the key used to share the request (null if the request is not shared)
 		 * @param CM	the identifier of the method asking for the service
 		 * @param FF	true if the waiting dialog has to be showed during the process
-		 * @param C		the Activity context
+		 * @param C		the Activity context (it's also the owner of the request)
+		 * @param CB	the {@link Callbackable} instance (can be null)
 		 */
-		public SenderTask(MeemiEngine ME, final int CM, final boolean FF, Context C) {
-			this(ME, CM, FF, C, null);
-		}
-
-		/**
-		 * The constructor: used to setup the asynchronous request.
-		 * 
-		 * @param ME	the Meemi engine, used to access to credentials and others stuff
-		 * @param CM	the identifier of the method asking for the service
-		 * @param FF	true if the waiting dialog has to be showed during the process
-		 * @param C		the Activity context
-		 * @param CB	the {@link Callbackable} instance (can be null)
-		 */
-		public SenderTask(MeemiEngine ME, final int CM, final boolean FF, Context C, Callbackable CB) {
+		public SenderTask(MeemiEngine ME, SenderArguments Args, final String K, final int CM, final boolean FF, Context C, Callbackable CB) {
+			super(C);
+			
 			this.MyEngine = ME;
+			this.Arg = Args;
+			this.Key = K;
 			this.ForegroundFlag = FF;
 			this.CallingMethod = CM;
 			
 			this.CurrentContext = C;
 			
-			this.CallbackInstance = CB;
+			Waiters.add( new Waiter(C, CB) );
 		}
 		
 		/**
-		 * This method performs a computation on a background thread.
-		 * The specified parameters are the parameters passed to execute(Params...)  by the caller of this task.
-		 * This method can call publishProgress(Progress...) to publish updates on the UI thread.
+		 * This method adds a new caller waiting for the response of this request.
+		 * It has to be called by the UI thread.
 		 * 
-		 * @param args0	the parameters of the task
+		 * @param C		the Activity context of the new caller
+		 * @param CB	the {@link Callbackable} instance of the new caller (can be null)
+		 * @param FF	true if the waiting dialog has to be showed to the new caller
+		 * 
+		 * @return	false if the request has been cancelled, so it can't be shared anymore
+		 */
+		public boolean join(Context C, Callbackable CB, final boolean FF) {
+			if ( isCancelled() ) {
+				return false;
+			}
+			
+			for (Waiter W : Waiters) {
+				if (C == W.CurrentContext && CB == W.CallbackInstance) {
+					// the same caller is already waiting: nothing to do
+					return true;
+				}
+			}
+			
+			Waiter W = new Waiter(C, CB);
+			if (FF) {
+				W.showWaitingDialog();
+			}
+			
+			Waiters.add(W);
+			
+			return true;
+		}
+		
+		/**
+		 * This method performs the request on a thread of the {@link RequestScheduler}.
 		 * 
 		 * @return	a {@link MeemiEngineResult} storing a set of pairs representing the API response. Note that
 		 * 			the contents of the JSONObject changes according to the API invoked
 		 */
 		@Override
-		protected MeemiEngineResult doInBackground(SenderArguments... Args) {
+		protected MeemiEngineResult doInBackground() {
 			MeemiEngineResult Result = null;
 			
-			SenderArguments Arg = Args[0];
-			
 			HTTPEngine HttpClient = null;
 			if ( null != Arg.ImageUri && Arg.Command.equals(POST_MESSAGE) ) {
 				File ObjectFile = new File( Arg.ImageUri.getPath() );	
 				try {
-					FileInputStream read = (FileInputStream)MeemiDroidApplication.getContext().getContentResolver().openInputStream(Arg.ImageUri);
-				
-					int bytes = read.available();
-					byte ImageBytes[] = new byte[bytes];
-					int Size = read.read(ImageBytes, 0, bytes);
-					
-					if ( MeemiDroidApplication.Prefs.isImageResizeEnabled() ) {
-						int[] NewSize = MeemiDroidApplication.Prefs.getImageResize();
-						int Quality = MeemiDroidApplication.Prefs.getImageQuality();
-						
-						ImageBytes = Utility.resizeImage(ImageBytes, NewSize[0], NewSize[1], Quality);
-						
-						Size = ImageBytes.length;
-					}
+					// the image is streamed (and resized if needed) while the request is sent
+					ImageSource Image = new ImageSource( MeemiDroidApplication.getContext().getContentResolver(), Arg.ImageUri );
 				
-					HttpClient = new HTTPMultipartPostEngine(MeemiUrl + Arg.Command + "/json", ImageBytes, Size, ObjectFile.getName(), "img_pc", CurrentContext);
+					HttpClient = new HTTPMultipartPostEngine(MeemiUrl + Arg.Command + "/json", Image, ObjectFile.getName(), "img_pc");
 				} catch (Exception ex) {
 					Log.d("MeemiEngine - SenderTask", "Problem with image access: " + ex, ex);
 				}
@@ -1107,7 +1681,10 @@ public class MeemiEngine {
 				HttpClient = new HTTPPostEngine(MeemiUrl + Arg.Command + "/json");
 			}
 
-			if (null != HttpClient) {
+			// a cancelled request that changes data on Meemi is sent anyway
+			if ( null != HttpClient && !isAborted() ) {
+				CurrentClient = HttpClient;
+				
 				if (Arg.UseAuthentification) {
 					// Add data for authentification
 					HttpClient.addEntityPair( new Pair<String, String>( "app_key", MeemiAPIKey ) );
@@ -1121,50 +1698,69 @@ public class MeemiEngine {
 					}
 				}
 				
-				String JSonResponse = HttpClient.execute();
+				boolean IsStaleDelivered = false;
+				
+				if (null == Arg.ImageUri) {
+					if ( 0 < getCacheMaxAge(CallingMethod) ) {
+						MyEngine.MyResponseCache.get();
+					}
+					
+					HttpClient.setCacheMaxAge( getCacheMaxAge(CallingMethod) );
+					
+					if ( isServedStale(CallingMethod) ) {
+						MeemiEngineResult Cached = HttpClient.executeFromCache( new ResponseParser(CallingMethod) );
+						
+						if ( null != Cached && !HttpClient.isCachedResponseFresh() ) {
+							// the last known data are showed while they are revalidated
+							Cached.Page = Arg.Page;
+							Cached.IsStale = true;
+							Cached.CallbackMethod = CallingMethod;
+							
+							prepare(Cached);
+							
+							publishResult(Cached);
+							IsStaleDelivered = true;
+						}
+					}
+				}
+				
+				// the response is parsed while it's read from the connection
+				Result = HttpClient.execute( new ResponseParser(CallingMethod) );
 				
-				Log.w("SenderTask", "The JSonResponse for " + Arg.Command + " is\n" + JSonResponse);
+				// nothing new for the callers that already have the stale data
+				IsUnchanged = IsStaleDelivered && ( null == Result || HttpClient.isResponseFromCache() );
 				
-				try {  
-			        JSONObject Tmp = new JSONObject(JSonResponse);
-			        
-			        Result = new MeemiEngineResult();
-			        Result.Object = Tmp;
-			        //Result.Type = JSONType.OBJECT;
-				}  
-				catch (JSONException ex1) {  
-			        Log.d("SenderTask", "Is not a JSONObject... can be a JSONArray...");
-			        
-			        try {
-			        	JSONArray Tmp = new JSONArray(JSonResponse);
-			        	
-			        	Result = new MeemiEngineResult();
-				        Result.Array = Tmp;
-				        //Result.Type = JSONType.ARRAY;			        
-			        } catch (JSONException ex2) {
-			        	Log.d("SenderTask", "Is not a JSONArray too", ex2);
-			        	
-			        	Result = new MeemiEngineResult();
-			        }
-				}  
+				CurrentClient = null;
 			}
 			
+			if (null == Result) {
+				Result = new MeemiEngineResult();
+				
+				// without a response, the request can be sent again only if it has not reached Meemi
+				Result.IsNotSent = null == HttpClient || HttpClient.isFailedBeforeSending();
+			}
+			
+			Result.Page = Arg.Page;
 			Result.CallbackMethod = CallingMethod;
 			
+			if ( !isCancelled() ) {
+				prepare(Result);
+			}
+			
+			if ( 0 <= Arg.Stream && null != Result.Meemis && !isAborted() ) {
+				MyEngine.getStore().store( Arg.StreamOwner, Arg.Stream, Result.Meemis, Arg.Page, MeemiDroidApplication.Prefs.getLifestreamRetention() );
+			}
+			
 			return Result;
 		}
 			
 		/**
-		 * Runs on the UI thread before doInBackground(Params...).
+		 * Runs on the UI thread when the request is submitted.
 		 */
 		@Override
 		protected void onPreExecute() {
 			if (ForegroundFlag) {
-				try {
-					WaitingDialog = ProgressDialog.show(CurrentContext, "", CurrentContext.getString(R.string.AllertWaiting), true);
-				} catch (Exception ex) {
-					Log.d("MeemiEngine - Task", "Cannot open the Toast Dialog");
-				}
+				Waiters.get(0).showWaitingDialog();
 			}
 			
 			super.onPreExecute();
@@ -1172,34 +1768,170 @@ public class MeemiEngine {
 		
 		
 		/**
-		 * Runs on the UI thread after doInBackground(Params...).
-		 * The specified result is the value returned by doInBackground(Params...) or null
-		 * if the task was canceled or an exception occurred.
+		 * Runs on the UI thread when the cached (stale) data are delivered, while
+		 * the request is revalidated: the waiting dialogs are closed.
 		 */
 		@Override
-		protected void onPostExecute(MeemiEngineResult Result) {
-			if (null != WaitingDialog) {
-				WaitingDialog.dismiss();
+		protected void onPublishResult(MeemiEngineResult Result) {
+			super.onPublishResult(Result);
+			
+			for (Waiter W : Waiters) {
+				W.dismissWaitingDialog();
+				W.HasStaleResult = true;
+				
+				if (null != W.CallbackInstance) {
+					W.CallbackInstance.onEngineExecuteResult(Result);
+				}
 			}
+		}
+		
+		/**
+		 * Runs on the UI thread after doInBackground().
+		 * The specified result is the value returned by doInBackground() or null
+		 * if an exception occurred.
+		 */
+		@Override
+		protected void onPostExecute(MeemiEngineResult Result) {
+			MyEngine.removeInFlight(Key, this);
 			
 			super.onPostExecute(Result);
 			
-			if (null != CallbackInstance) {
-				if ( CallbackInstance instanceof Callbackable ) {
-					CallbackInstance.onEngineExecuteResult(Result);
+			if (null == Result) {
+				// the request has failed with an unexpected error (see RequestScheduler):
+				// the callers receive an empty result, so they can always read it
+				Result = new MeemiEngineResult();
+				
+				Result.Page = Arg.Page;
+				Result.CallbackMethod = CallingMethod;
+			}
+			
+			for (Waiter W : Waiters) {
+				W.dismissWaitingDialog();
+				
+				if (IsUnchanged && W.HasStaleResult) {
+					// the caller already has the current data
+					continue;
 				}
+				
+				if (null != W.CallbackInstance) {
+					if ( W.CallbackInstance instanceof Callbackable ) {
+						W.CallbackInstance.onEngineExecuteResult(Result);
+					}
+				}
+			}
+			
+			Waiters.clear();
+		}
+		
+		/**
+		 * Runs on the UI thread when the request has been cancelled: the callbacks
+		 * are not called.
+		 */
+		@Override
+		protected void onCancelled() {
+			MyEngine.removeInFlight(Key, this);
+			
+			for (Waiter W : Waiters) {
+				W.dismissWaitingDialog();
+			}
+			
+			Waiters.clear();
+			
+			super.onCancelled();
+		}
+		
+		/**
+		 * This method detaches the callers using the input context: the request
+		 * is cancelled only if nobody else is waiting for its response.
+		 */
+		@Override
+		protected boolean release(final Object O) {
+			Iterator<Waiter> I = Waiters.iterator();
+			
+			while ( I.hasNext() ) {
+				Waiter W = I.next();
+				
+				if (O == W.CurrentContext) {
+					W.dismissWaitingDialog();
+					I.remove();
+				}
+			}
+			
+			return Waiters.isEmpty();
+		}
+		
+		/**
+		 * Only the requests that don't change data on Meemi can be stopped.
+		 */
+		@Override
+		protected boolean isAbortable() {
+			return isReadOnly(CallingMethod);
+		}
+		
+		/**
+		 * This method stops the HTTP request in progress.
+		 */
+		@Override
+		protected void onAbort() {
+			HTTPEngine HttpClient = CurrentClient;
+			
+			if (null != HttpClient) {
+				HttpClient.abort();
 			}
 		}
+		
+		
+		/**
+		 * This private class represents a caller waiting for the response.
+		 * 
+		 * @author Andrea de Iacovo, and Eros Pedrini
+		 */
+		private final class Waiter {
+			public Waiter(Context C, Callbackable CB) {
+				this.CurrentContext = C;
+				this.CallbackInstance = CB;
+			}
+			
+			public void showWaitingDialog() {
+				try {
+					WaitingDialog = ProgressDialog.show(CurrentContext, "", CurrentContext.getString(R.string.AllertWaiting), true);
+				} catch (Exception ex) {
+					Log.d("MeemiEngine - Task", "Cannot open the Toast Dialog");
+				}
+			}
+			
+			public void dismissWaitingDialog() {
+				if (null != WaitingDialog) {
+					try {
+						WaitingDialog.dismiss();
+					} catch (Exception ex) {
+						// the Activity has been already closed
+						Log.d("MeemiEngine - Task", "Cannot close the waiting dialog");
+					}
+					
+					WaitingDialog = null;
+				}
+			}
+			
+			private final Context CurrentContext;
+			private final Callbackable CallbackInstance;
+			private Dialog WaitingDialog = null;
+			private boolean HasStaleResult = false;
+		}
+		
 
 		private MeemiEngine MyEngine	= null;
+		private SenderArguments Arg		= null;
+		private String Key				= null;
+		private volatile HTTPEngine CurrentClient = null;
+		private volatile boolean IsUnchanged = false;
 		private int CallingMethod		= MeemiEngine.CB_NONE;
 		private boolean ForegroundFlag	= true;
 		
-		private Callbackable CallbackInstance = null;
-		
 		private Context CurrentContext	= null;
 		
-		private Dialog WaitingDialog	= null;
+		// the callers waiting for the response (accessed only by the UI thread)
+		private final List<Waiter> Waiters = new ArrayList<Waiter>(1);
 		
 		/**
 		 * The Meemi API Key representing the MeemiDroid application
@@ -1215,54 +1947,386 @@ public class MeemiEngine {
 	}
 
 	
+	/**
+	 * This private class represents the parser of the Meemi API responses.
+	 * The response is read as a stream: the streams of Meemi messages are
+	 * converted directly in the maps used by the Meemi Client Application (the
+	 * fields not needed are skipped), while the other responses are converted in
+	 * {@link JSONObject} or {@link JSONArray} according to their first token.
+	 * 
+	 * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
+	 * @version 1.1
+	 */
+	private class ResponseParser implements HTTPEngine.ResponseParser<MeemiEngineResult> {
+		/**
+		 * The constructor.
+		 * 
+		 * @param CM	the identifier of the method asking for the service
+		 */
+		public ResponseParser(final int CM) {
+			this.CallingMethod = CM;
+		}
+		
+		/**
+		 * This method parses the server response.
+		 * 
+		 * @param Response	the server response
+		 * 
+		 * @return	a {@link MeemiEngineResult} storing the API response
+		 * 
+		 * @throws IOException if the response can not be read, or it's not a valid
+		 * 			JSON document (e.g., it has been truncated): so it's not cached
+		 */
+		public MeemiEngineResult parse(Reader Response) throws IOException {
+			MeemiEngineResult Result = new MeemiEngineResult();
+			
+			JSONPullParser Parser = new JSONPullParser(Response);
+			
+			try {
+				switch ( Parser.peek() ) {
+				case BEGIN_OBJECT:
+					Result.Object = (JSONObject)Parser.readValue();
+					break;
+				case BEGIN_ARRAY:
+					if ( isMeemiStream(CallingMethod) ) {
+						Result.Meemis = readMeemiMessages(Parser);
+					} else {
+						Result.Array = (JSONArray)Parser.readValue();
+					}
+					break;
+				default:
+					throw new IOException("Is not a JSONObject nor a JSONArray");
+				}
+			} catch (IOException ex) {
+				Log.d("MeemiEngine - ResponseParser", "Problem during response parsing", ex);
+				
+				throw ex;
+			}
+			
+			return Result;
+		}
+		
+		private int CallingMethod = MeemiEngine.CB_NONE;
+	}
+	
+	/**
+	 * This method returns true if the response to the input request is a stream of
+	 * Meemi messages.
+	 * 
+	 * @param CallingMethod	the identifier of the method asking for the service
+	 * 
+	 * @return	true if the response is a stream of Meemi messages
+	 */
+	private static final boolean isMeemiStream(final int CallingMethod) {
+		return CB_LIFESTREAM == CallingMethod || CB_REPLYSTREAM == CallingMethod || CB_SINGLE_MEEME == CallingMethod;
+	}
+	
+	/**
+	 * This method reads a JSON array of Meemi messages from the input parser.
+	 * Only the fields needed by {@link #extractMeemiMessage(Map, String)} are kept.
+	 * 
+	 * @param Parser	the parser positioned at the beginning of the array
+	 * 
+	 * @return	the list of the Meemi messages read
+	 * 
+	 * @throws IOException if the response is malformed or can not be read
+	 */
+	private static final List<Meeme> readMeemiMessages(final JSONPullParser Parser) throws IOException {
+		List<Meeme> Meemis = new ArrayList<Meeme>();
+		
+		String DateFormat = MeemiDroidApplication.getContext().getString(R.string.DateHourFormat);
+		Map<String, String> Fields = new HashMap<String, String>();
+		
+		Parser.beginArray();
+		while ( Parser.hasNext() ) {
+			if ( JSONPullParser.Token.BEGIN_OBJECT != Parser.peek() ) {
+				Parser.skipValue();
+				continue;
+			}
+			
+			Fields.clear();
+			
+			Parser.beginObject();
+			while ( Parser.hasNext() ) {
+				String Name = Parser.nextName();
+				
+				if ( MESSAGE_FIELDS.contains(Name) ) {
+					Fields.put( Name, Parser.nextValueAsString() );
+				} else {
+					Parser.skipValue();
+				}
+			}
+			Parser.endObject();
+			
+			try {
+				Meemis.add( extractMeemiMessage(Fields, DateFormat) );
+			} catch (JSONException ex) {
+				Log.e("MeemiEngine - readMeemiMessages", "Problem during response parsing", ex);
+			}
+		}
+		Parser.endArray();
+		
+		return Meemis;
+	}
+	
 	/**
 	 * This method extracts the information stored in a Meemi message in order
 	 * to be managed by the Meemi Client Application.
 	 * 
-	 * @param M			the {@link JSONObject} representing the Meemi message 
+	 * @param M				the fields of the Meemi message
+	 * @param DateFormat	the format used to show the message date
 	 * 
-	 * @return a Map storing all the information needed about the Meemi message
+	 * @return a {@link Meeme} storing all the information needed about the Meemi message
 	 * 
-	 * @throws JSONException
+	 * @throws JSONException if a mandatory field is missing
 	 */
-	private static final TreeMap<String, String> extractMeemiMessage(final JSONObject M) throws JSONException {
-		TreeMap<String, String> Message = new TreeMap<String, String>();
+	private static final Meeme extractMeemiMessage(final Map<String, String> M, final String DateFormat) throws JSONException {
+		Meeme.Builder Message = new Meeme.Builder();
 		
-		Message.put( "Id", M.getString("id") );
+		try {
+			Message.setId( Long.parseLong( getField(M, "id") ) );
+		} catch (NumberFormatException ex) {
+			throw new JSONException( "Invalid message id: " + M.get("id") );
+		}
 		
-		String TmpFormatedDate = Utility.formatDate( M.getString("date_time"), MeemiDroidApplication.getContext().getString(R.string.DateHourFormat), "yyyy-MM-dd hh:mm:ss" );
-		Message.put( "Time", TmpFormatedDate);
+		Date Time = Utility.parseDate( getField(M, "date_time"), "yyyy-MM-dd hh:mm:ss" );
+		if (null != Time) {
+			Message.setTimestamp( Time.getTime() );
+		}
+		Message.setTime( Utility.formatDate(Time, DateFormat) );
 								
-		Message.put( "MeemerName", M.getString("screen_name") );
-		Message.put( "MeemerAvatar", M.getString("avatar") );
-		Message.put( "Content", M.getString("content") );
-		Message.put( "NumOfComments", M.getString("qta_replies") );
+		Message.setMeemerName( getField(M, "screen_name") );
+		Message.setMeemerAvatar( getField(M, "avatar") );
+		Message.setContent( getField(M, "content") );
+		Message.setNumOfComments( toInt( getField(M, "qta_replies") ) );
 		
-		boolean IsPrivate = !( "0".equals( M.getString("private") ) ); 
+		boolean IsPrivate = !( "0".equals( getField(M, "private") ) ); 
+		Message.setPrivate(IsPrivate);
 		
 		if (!IsPrivate) {
-			Message.put( "IsFavorite", M.getString("is_preferite") );
+			Message.setFavorite( "1".equals( getField(M, "is_preferite") ) );
 		}
 		
-		if ( "image".equals( M.getString("meme_type") ) ) {
-			Message.put( "Image", M.getString("image") );
-			Message.put( "ImageThumbnail", M.getString("image_small") );
-			//Message.put( "ExtraContent", MeemiDroidApplication.getContext().getString(R.string.ImageTag) );
+		String MemeType = getField(M, "meme_type");
+		
+		if ( "image".equals(MemeType) ) {
+			Message.setImage( getField(M, "image"), getField(M, "image_small") );
 		}
 	
-		if ( "video".equals( M.getString("meme_type") ) ) {
-			String VideoSrc = Utility.getVideoSrc( M.getString("video") );
-			Message.put( "Video", VideoSrc );
-			//Message.put( "ExtraContent", MeemiDroidApplication.getContext().getString(R.string.VideoTag) );
+		if ( "video".equals(MemeType) ) {
+			Message.setVideo( Utility.getVideoSrc( getField(M, "video") ) );
+		}
+		
+		if ( "link".equals(MemeType) ) {
+			String Link = getField(M, "link");
+			
+			Message.setLink(Link);
+			Message.setContent( "[l:" + Link + "|" + getField(M, "content") + "]" );
+		}
+					
+		return Message.build();
+	}
+	
+	/**
+	 * This method converts a numeric field returned by the Meemi API.
+	 * 
+	 * @param Value	the field value
+	 * 
+	 * @return	the numeric value, or 0 if the field is not a number
+	 */
+	private static final int toInt(final String Value) {
+		try {
+			return Integer.parseInt(Value);
+		} catch (NumberFormatException ex) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * This method converts a flag field ("0" or "1") returned by the Meemi API.
+	 * 
+	 * @param Value	the field value
+	 * 
+	 * @return	false if the field is "0", otherwise true
+	 */
+	private static final boolean toFlag(final String Value) {
+		return !( "0".equals(Value) );
+	}
+	
+	/**
+	 * This method returns a field of a Meemi message.
+	 * 
+	 * @param M		the fields of the Meemi message
+	 * @param Name	the name of the field
+	 * 
+	 * @return	the field value
+	 * 
+	 * @throws JSONException if the field is missing
+	 */
+	private static final String getField(final Map<String, String> M, final String Name) throws JSONException {
+		String Value = M.get(Name);
+		
+		if (null == Value) {
+			throw new JSONException("JSONObject[\"" + Name + "\"] not found.");
+		}
+		
+		return Value;
+	}
+	
+	
+	/**
+	 * This private class represents an image to upload: the image is read from its
+	 * {@link ContentResolver} stream while the request is sent. If the user has
+	 * enabled the resize of the images (and the image is bigger than the wanted
+	 * size), the image is resized while it's sent, and its length is unknown.
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 * @version 1.0
+	 */
+	private static final class ImageSource implements HTTPMultipartPostEngine.ObjectSource {
+		/**
+		 * The constructor: it reads the image size (without decoding it) to check if
+		 * it has to be resized.
+		 * 
+		 * @param CR	the {@link ContentResolver} used to read the image
+		 * @param U		the URI of the image
+		 * 
+		 * @throws IOException if the image can not be read
+		 */
+		public ImageSource(final ContentResolver CR, final Uri U) throws IOException {
+			this.Resolver = CR;
+			this.ImageUri = U;
+			
+			if ( MeemiDroidApplication.Prefs.isImageResizeEnabled() ) {
+				NewSize = MeemiDroidApplication.Prefs.getImageResize();
+				Quality = MeemiDroidApplication.Prefs.getImageQuality();
+				
+				IsToResize = Utility.isImageToResize( Utility.getImageSize(CR, U), NewSize[0], NewSize[1] );
+			}
+			
+			Length = IsToResize ? -1 : getFileLength();
 		}
 		
-		if ( "link".equals( M.getString("meme_type") ) ) {
-			Message.put( "Link", M.getString("link") );
-			String linkContent = "[l:" + M.getString("link") + "|" + Message.get("Content") + "]";
-			Message.put( "Content", linkContent);
+		public long getLength() {
+			return Length;
 		}
+		
+		public void writeTo(OutputStream Out) throws IOException {
+			if (IsToResize) {
+				Utility.resizeImage(Resolver, ImageUri, NewSize[0], NewSize[1], Quality, Out);
+			} else {
+				InputStream In = Resolver.openInputStream(ImageUri);
+				
+				try {
+					byte[] Buffer = new byte[UPLOAD_BUFFER_SIZE];
 					
-		return Message;
+					int Read;
+					while ( -1 != ( Read = In.read(Buffer) ) ) {
+						Out.write(Buffer, 0, Read);
+					}
+				} finally {
+					In.close();
+				}
+			}
+		}
+		
+		/**
+		 * This method returns the length of the image file.
+		 * 
+		 * @return	the length of the image file, or -1 if it's unknown
+		 * 
+		 * @throws IOException if the image can not be read
+		 */
+		private long getFileLength() throws IOException {
+			long FileLength = AssetFileDescriptor.UNKNOWN_LENGTH;
+			
+			AssetFileDescriptor AFD = Resolver.openAssetFileDescriptor(ImageUri, "r");
+			if (null != AFD) {
+				FileLength = AFD.getLength();
+				AFD.close();
+			}
+			
+			if ( 0 > FileLength && "file".equals( ImageUri.getScheme() ) ) {
+				FileLength = new File( ImageUri.getPath() ).length();
+			}
+			
+			return (0 > FileLength) ? -1 : FileLength;
+		}
+		
+		private final ContentResolver Resolver;
+		private final Uri ImageUri;
+		private final long Length;
+		private boolean IsToResize = false;
+		private int[] NewSize = null;
+		private int Quality = 85;
+		
+		private static final int UPLOAD_BUFFER_SIZE = 8192;
+	}
+	
+	
+	/**
+	 * This private class represents the asynchronous read of a lifestream
+	 * stored offline, executed by the {@link RequestScheduler} of the engine.
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 * @version 1.1
+	 */
+	private class StoreTask extends RequestScheduler.Request<MeemiEngineResult> {
+		/**
+		 * The constructor: used to setup the asynchronous read.
+		 * 
+		 * @param O		the owner of the stored lifestream
+		 * @param S		the kind of lifestream
+		 * @param C		the Activity context (it's also the owner of the request)
+		 * @param CB	the {@link Callbackable} instance (can be null)
+		 */
+		public StoreTask(final String O, final int S, Context C, Callbackable CB) {
+			super(C);
+			
+			this.StreamOwner = O;
+			this.Stream = S;
+			this.CallbackInstance = CB;
+		}
+		
+		/**
+		 * This method reads the stored messages on a thread of the {@link RequestScheduler}.
+		 * 
+		 * @return	a {@link MeemiEngineResult} containing the stored messages
+		 */
+		@Override
+		protected MeemiEngineResult doInBackground() {
+			MeemiEngineResult Result = new MeemiEngineResult();
+			
+			Result.Meemis = getStore().load( StreamOwner, Stream, MeemiDroidApplication.Prefs.getLifestreamRetention() );
+			Result.CallbackMethod = CB_STORED_LIFESTREAM;
+			
+			prepare(Result);
+			
+			return Result;
+		}
+		
+		/**
+		 * Runs on the UI thread after doInBackground().
+		 */
+		@Override
+		protected void onPostExecute(MeemiEngineResult Result) {
+			super.onPostExecute(Result);
+			
+			if (null == Result) {
+				// the store can't be read: no message is showed
+				Result = new MeemiEngineResult();
+				
+				Result.CallbackMethod = CB_STORED_LIFESTREAM;
+			}
+			
+			if (null != CallbackInstance) {
+				CallbackInstance.onEngineExecuteResult(Result);
+			}
+		}
+		
+		private final String StreamOwner;
+		private final int Stream;
+		private final Callbackable CallbackInstance;
 	}
 	
 	
@@ -1389,9 +2453,56 @@ public class MeemiEngine {
 	
 	private static final String[] NO_CMD_ARGS = new String[]{};
 	
-	private MeemiCredentials MyCredentials = null;
+	// cache of the read-only API responses
+	private static final String HTTP_CACHE_DIR		= "http";
+	private static final long HTTP_CACHE_SIZE		= 1024 * 1024;
+	
+	// fields of a Meemi message used by the Meemi Client Application
+	private static final Set<String> MESSAGE_FIELDS = new HashSet<String>( Arrays.asList(
+			"id", "date_time", "screen_name", "avatar", "content", "qta_replies", "private",
+			"is_preferite", "meme_type", "image", "image_small", "video", "link" ) );
+	
+	private final StartupPhases.Provider<MeemiCredentials> MyCredentials = new StartupPhases.Provider<MeemiCredentials>("credentials") {
+		@Override
+		protected MeemiCredentials create() {
+			MeemiCredentials C = new MeemiCredentials();
+			C.load();
+			
+			return C;
+		}
+	};
+	
 	private Timer SyncManager = new Timer();
 	
-	private LocationEngine MyLocationEngine = null;
+	private final RequestScheduler Scheduler = new RequestScheduler();
+	private LifestreamStore Store = null;
+	
+	// the posts not sent during the previous executions are sent when the outbox is created
+	private final StartupPhases.Provider<Outbox> MyOutbox = new StartupPhases.Provider<Outbox>("outbox") {
+		@Override
+		protected Outbox create() {
+			return new Outbox( MeemiEngine.this, MeemiDroidApplication.getContext() );
+		}
+	};
+	
+	// the cache is installed by the first request that can be cached (its size is read from the disk)
+	private final StartupPhases.Provider<HTTPResponseCache> MyResponseCache = new StartupPhases.Provider<HTTPResponseCache>("response cache") {
+		@Override
+		protected HTTPResponseCache create() {
+			HTTPResponseCache.install( new File(MeemiDroidApplication.getContext().getCacheDir(), HTTP_CACHE_DIR), HTTP_CACHE_SIZE );
+			
+			return HTTPResponseCache.getInstance();
+		}
+	};
+	
+	// the read-only requests in progress, by request key
+	private final Map<String, SenderTask> InFlight = new HashMap<String, SenderTask>();
+	
+	private final StartupPhases.Provider<LocationEngine> MyLocationEngine = new StartupPhases.Provider<LocationEngine>("location engine") {
+		@Override
+		protected LocationEngine create() {
+			return new LocationEngine(MeemiEngine.this);
+		}
+	};
 	private String LastSentLocation = "";
 }
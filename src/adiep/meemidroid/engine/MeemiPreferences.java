@@ -191,6 +191,25 @@ public class MeemiPreferences {
 	}
 	
 	
+	/**
+	 * This method returns the maximum number of messages kept offline for
+	 * each lifestream.
+	 * 
+	 * @return	the maximum number of messages kept offline for each lifestream
+	 */
+	public int getLifestreamRetention() {
+		int Retention = DEFAULT_LIFESTREAM_RETENTION;
+		
+		try {
+			Retention = Integer.parseInt( SharedPref.getString(MEEMI_LIFESTREAM_RETENTION, Integer.toString(DEFAULT_LIFESTREAM_RETENTION)) );
+		} catch (Exception ex) {
+			Retention = DEFAULT_LIFESTREAM_RETENTION;
+		}
+		
+		return Retention;
+	}
+	
+	
 	/**
 	 * This method retrieves the current credentials from the shared preferences
 	 * system of Android.
@@ -311,6 +330,9 @@ public class MeemiPreferences {
 	// - UI
 	private static final String MEEMI_FLAT_DASHBOARD = "CBUseFlatDashboard";
 	private static final String MEEMI_FASTSCROLL = "CBActiveFastScrollListView";
+	// - Offline lifestreams
+	private static final String MEEMI_LIFESTREAM_RETENTION = "LstLifestreamRetention";
+	private static final int DEFAULT_LIFESTREAM_RETENTION = 200;
 	
 	
 	// old Preferences:
@@ -0,0 +1,678 @@
+package adiep.meemidroid.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import adiep.meemidroid.R;
+import adiep.meemidroid.Utility;
+import adiep.meemidroid.engine.MeemiEngine.Callbackable;
+import adiep.meemidroid.engine.MeemiEngine.MeemiEngineResult;
+import adiep.meemidroid.support.compatibility.Pair;
+import android.content.BroadcastReceiver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.ConnectivityManager;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * This class represents the outbox of the posts (messages, replies and images):
+ * a post is written to disk first, then it's sent in background by the outbox,
+ * one post at a time and in the order they have been written.
+ * If a post can not be sent (e.g., the server can not be reached), it's retried
+ * later with an exponential backoff, and as soon as the Internet connection is
+ * available again. The posts survive the end of the process: they are sent
+ * the next time the application starts.
+ *
+ * A post is not idempotent: if it fails after it has been sent (e.g., the response
+ * times out, or the process ends while it's being sent), Meemi can have published
+ * it anyway. Such a post is never sent again: its result is reported as unknown
+ * (see {@link MeemiEngine#isResultUnknown(MeemiEngineResult)}), so the user can
+ * check it.
+ *
+ * The results are delivered to the {@link Callbackable} used to write the post,
+ * if it's still waiting for them; otherwise an unknown result is notified with
+ * a toast.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.3
+ */
+public class Outbox {
+	/**
+	 * This is the class constructor: the posts not yet sent are sent again.
+	 *
+	 * @param ME	the engine used to send the posts
+	 * @param C		the application context
+	 */
+	Outbox(final MeemiEngine ME, final Context C) {
+		this.MyEngine = ME;
+		this.AppContext = C.getApplicationContext();
+		this.Store = new OutboxStore(AppContext);
+
+		HandlerThread Worker = new HandlerThread("MeemiDroid-Outbox", Process.THREAD_PRIORITY_BACKGROUND);
+		Worker.start();
+
+		WorkerHandler = new WorkerHandler( Worker.getLooper() );
+		WorkerHandler.sendEmptyMessage(MSG_DRAIN);
+	}
+
+	/**
+	 * This method writes a post to the outbox: it will be sent in background as
+	 * soon as possible. It has to be called by the UI thread.
+	 *
+	 * @param Command			the command to execute
+	 * @param Args				the arguments of the command
+	 * @param ImageUri			the URI of the image to post (can be null): the image is copied
+	 * 							in the outbox, so it can be sent even after the end of the process
+	 * @param CallingMethod		the identifier of the calling method
+	 * @param C					the Activity context
+	 * @param CallbackInstance	the {@link Callbackable} instance (can be null)
+	 */
+	public void enqueue(final String Command, final List<Pair<String, String>> Args, final Uri ImageUri, final int CallingMethod, Context C, Callbackable CallbackInstance) {
+		Post P = new Post();
+		P.Command = Command;
+		P.Args = Args;
+		P.CallingMethod = CallingMethod;
+		P.ImageUri = ImageUri;
+
+		if (null != CallbackInstance) {
+			Pending.put( P, new Waiter(C, CallbackInstance) );
+		}
+
+		WorkerHandler.obtainMessage(MSG_ENQUEUE, P).sendToTarget();
+	}
+
+	/**
+	 * This method detaches the callers using the input context: the posts are
+	 * sent anyway, but their results are not delivered. It has to be called by
+	 * the UI thread.
+	 *
+	 * @param C	the context used to write the posts
+	 */
+	public void release(final Context C) {
+		release( Pending.values().iterator(), C );
+		release( Waiters.values().iterator(), C );
+	}
+
+	/**
+	 * This method returns the number of posts not yet sent.
+	 *
+	 * @return	the number of posts in the outbox
+	 */
+	public int getPendingCount() {
+		return Store.count();
+	}
+
+
+	/**
+	 * This private class represents a post in the outbox.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class Post {
+		public long Id = -1;
+		public String Command = null;
+		public List<Pair<String, String>> Args = null;
+		public int CallingMethod = MeemiEngine.CB_NONE;
+		public Uri ImageUri = null;
+		public int Attempts = 0;
+		public long NextAttempt = 0;
+		// true while the post is being sent
+		public boolean IsSending = false;
+	}
+
+
+	/**
+	 * This private class represents a caller waiting for the result of a post.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class Waiter {
+		public Waiter(Context C, Callbackable CB) {
+			this.CurrentContext = C;
+			this.CallbackInstance = CB;
+		}
+
+		public final Context CurrentContext;
+		public final Callbackable CallbackInstance;
+	}
+
+
+	/**
+	 * This private class receives the result of a post sent by the engine (on the
+	 * UI thread) and hands it to the outbox worker.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private final class PostCallback implements Callbackable {
+		public PostCallback(final Post P) {
+			this.CurrentPost = P;
+		}
+
+		public void onEngineExecuteResult(MeemiEngineResult Result) {
+			WorkerHandler.obtainMessage( MSG_SENT, new Pair<Post, MeemiEngineResult>(CurrentPost, Result) ).sendToTarget();
+		}
+
+		private final Post CurrentPost;
+	}
+
+
+	/**
+	 * This private class represents the outbox worker: all the outbox operations
+	 * (except the delivery of the results) are executed by its thread, in order.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private final class WorkerHandler extends Handler {
+		public WorkerHandler(Looper L) {
+			super(L);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public void handleMessage(Message Msg) {
+			switch (Msg.what) {
+			case MSG_ENQUEUE:
+				store( (Post)Msg.obj );
+				drain();
+				break;
+			case MSG_DRAIN:
+				drain();
+				break;
+			case MSG_SENT:
+				Pair<Post, MeemiEngineResult> Sent = (Pair<Post, MeemiEngineResult>)Msg.obj;
+				completed(Sent.first, Sent.second);
+				drain();
+				break;
+			default:
+				// nothing to do
+			}
+		}
+	}
+
+
+	/**
+	 * This method removes the waiters using the input context.
+	 *
+	 * @param I	the iterator of the waiters
+	 * @param C	the context
+	 */
+	private static void release(final Iterator<Waiter> I, final Context C) {
+		while ( I.hasNext() ) {
+			if (C == I.next().CurrentContext) {
+				I.remove();
+			}
+		}
+	}
+
+	/**
+	 * This method stores a new post (and copies its image in the outbox).
+	 *
+	 * @param P	the post to store
+	 */
+	private void store(final Post P) {
+		if (null != P.ImageUri) {
+			try {
+				P.ImageUri = copyImage(P.ImageUri);
+			} catch (IOException ex) {
+				Log.w("Outbox - store", "Cannot copy the image in the outbox: the original one will be used", ex);
+			}
+		}
+
+		P.Id = Store.insert(P);
+
+		// from now on, the caller waits for the stored post
+		UIHandler.post(new Runnable() {
+			public void run() {
+				Waiter W = Pending.remove(P);
+
+				if (null == W) {
+					return;
+				}
+
+				if (0 <= P.Id) {
+					Waiters.put(P.Id, W);
+				} else {
+					MeemiEngineResult Result = MyEngine.new MeemiEngineResult();
+					Result.CallbackMethod = P.CallingMethod;
+					Result.IsNotSent = true;
+
+					W.CallbackInstance.onEngineExecuteResult(Result);
+				}
+			}
+		});
+	}
+
+	/**
+	 * This method sends the oldest post, if it's not already being sent and if it
+	 * can be sent now: otherwise it schedules the next attempt.
+	 */
+	private void drain() {
+		if (null != Sending) {
+			return;
+		}
+
+		Post P = Store.next();
+
+		if (null == P) {
+			setConnectivityMonitor(false);
+			return;
+		}
+
+		if (P.IsSending) {
+			// the process has ended while the post was being sent: it may have been published
+			Log.w("Outbox - drain", "The post " + P.Id + " may have been sent before the end of the process: it will not be sent again");
+
+			discard( P, MyEngine.new MeemiEngineResult() );
+
+			WorkerHandler.sendEmptyMessage(MSG_DRAIN);
+			return;
+		}
+
+		if ( !Utility.isInternetConnected(AppContext) ) {
+			// the drain restarts when the connection is available again
+			setConnectivityMonitor(true);
+			return;
+		}
+
+		long Delay = P.NextAttempt - System.currentTimeMillis();
+		if (0 < Delay) {
+			WorkerHandler.removeMessages(MSG_DRAIN);
+			WorkerHandler.sendEmptyMessageDelayed(MSG_DRAIN, Delay);
+			return;
+		}
+
+		Sending = P;
+
+		P.IsSending = true;
+		Store.update(P);
+
+		MyEngine.sendPost(P.Command, P.Args, P.ImageUri, P.CallingMethod, AppContext, new PostCallback(P));
+	}
+
+	/**
+	 * This method manages the result of a sent post: if the server has answered, the
+	 * post is removed from the outbox and the result is delivered. Otherwise the post
+	 * is retried later, but only if it has not reached the server: a post that may
+	 * have been published is removed, and its result is delivered as unknown.
+	 *
+	 * @param P			the sent post
+	 * @param Result	the result of the post
+	 */
+	private void completed(final Post P, final MeemiEngineResult Result) {
+		Sending = null;
+
+		boolean IsAnswered = null != Result && (null != Result.Object || null != Result.Array);
+		boolean IsNotSent = null != Result && Result.IsNotSent;
+
+		if (!IsAnswered && IsNotSent && ++P.Attempts < MAX_ATTEMPTS) {
+			long Backoff = Math.min( FIRST_BACKOFF << (P.Attempts - 1), MAX_BACKOFF );
+
+			P.NextAttempt = System.currentTimeMillis() + Backoff;
+			P.IsSending = false;
+			Store.update(P);
+
+			Log.i("Outbox - completed", "The post " + P.Id + " will be retried in " + (Backoff / 1000) + "s");
+
+			return;
+		}
+
+		if (!IsAnswered) {
+			if (IsNotSent) {
+				Log.w("Outbox - completed", "The post " + P.Id + " has been discarded after " + P.Attempts + " attempts");
+			} else {
+				Log.w("Outbox - completed", "The post " + P.Id + " may have been sent: it will not be sent again");
+			}
+		}
+
+		discard(P, Result);
+	}
+
+	/**
+	 * This method removes a post from the outbox and delivers its result.
+	 *
+	 * @param P			the post
+	 * @param Result	the result of the post
+	 */
+	private void discard(final Post P, final MeemiEngineResult Result) {
+		Store.delete(P.Id);
+		deleteImage(P.ImageUri);
+
+		deliver(P, Result);
+	}
+
+	/**
+	 * This method delivers the result of a post to its caller, on the UI thread.
+	 *
+	 * @param P			the post
+	 * @param Result	the result of the post
+	 */
+	private void deliver(final Post P, final MeemiEngineResult Result) {
+		// the request can fail without any result (e.g., an unexpected exception)
+		final MeemiEngineResult Delivered = (null != Result) ? Result : MyEngine.new MeemiEngineResult();
+		Delivered.CallbackMethod = P.CallingMethod;
+
+		UIHandler.post(new Runnable() {
+			public void run() {
+				Waiter W = Waiters.remove(P.Id);
+
+				if (null != W) {
+					W.CallbackInstance.onEngineExecuteResult(Delivered);
+				} else if ( MeemiEngine.isResultUnknown(Delivered) ) {
+					// nobody is waiting for the result, but the user has to check the post
+					Utility.ShowToast(AppContext, R.string.AllertPostUnknown);
+				} else if ( null == MeemiEngine.parsePostMeemiResult(Delivered) ) {
+					// nobody is waiting for the result (e.g., the reply screen is closed):
+					// the post has been rejected, or discarded after too many attempts
+					Utility.ShowToast(AppContext, R.string.AllertPostFailed);
+				}
+			}
+		});
+	}
+
+	/**
+	 * This method registers (or unregisters) the receiver that restarts the drain of
+	 * the outbox when the Internet connection is available again.
+	 *
+	 * @param Enable	true to register the receiver
+	 */
+	private void setConnectivityMonitor(final boolean Enable) {
+		if (Enable && null == ConnectivityMonitor) {
+			ConnectivityMonitor = new BroadcastReceiver() {
+				@Override
+				public void onReceive(Context C, Intent I) {
+					if ( Utility.isInternetConnected(C) ) {
+						WorkerHandler.sendEmptyMessage(MSG_DRAIN);
+					}
+				}
+			};
+
+			AppContext.registerReceiver( ConnectivityMonitor, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION), null, WorkerHandler );
+		} else if (!Enable && null != ConnectivityMonitor) {
+			AppContext.unregisterReceiver(ConnectivityMonitor);
+			ConnectivityMonitor = null;
+		}
+	}
+
+	/**
+	 * This method copies the image of a post in the outbox directory, keeping its
+	 * file name (it's sent to Meemi).
+	 *
+	 * @param ImageUri	the URI of the image
+	 *
+	 * @return	the URI of the copy
+	 *
+	 * @throws IOException if the image can not be copied
+	 */
+	private Uri copyImage(final Uri ImageUri) throws IOException {
+		String Name = new File( ImageUri.getPath() ).getName();
+
+		File Dir = new File( new File(AppContext.getFilesDir(), OUTBOX_DIR), Long.toString( System.currentTimeMillis() ) );
+		Dir.mkdirs();
+
+		File Copy = new File(Dir, Name);
+
+		InputStream In = AppContext.getContentResolver().openInputStream(ImageUri);
+		try {
+			OutputStream Out = new FileOutputStream(Copy);
+
+			try {
+				byte[] Buffer = new byte[COPY_BUFFER_SIZE];
+
+				int Read;
+				while ( -1 != ( Read = In.read(Buffer) ) ) {
+					Out.write(Buffer, 0, Read);
+				}
+			} finally {
+				Out.close();
+			}
+		} catch (IOException ex) {
+			Copy.delete();
+			Dir.delete();
+
+			throw ex;
+		} finally {
+			In.close();
+		}
+
+		return Uri.fromFile(Copy);
+	}
+
+	/**
+	 * This method deletes the copy of the image of a post.
+	 *
+	 * @param ImageUri	the URI of the image (can be null)
+	 */
+	private void deleteImage(final Uri ImageUri) {
+		if ( null == ImageUri || !"file".equals( ImageUri.getScheme() ) ) {
+			return;
+		}
+
+		File Image = new File( ImageUri.getPath() );
+		File Dir = Image.getParentFile();
+
+		// only the copies in the outbox are deleted
+		if ( null != Dir && null != Dir.getParentFile() && OUTBOX_DIR.equals( Dir.getParentFile().getName() ) ) {
+			Image.delete();
+			Dir.delete();
+		}
+	}
+
+
+	/**
+	 * This private class represents the storage of the posts not yet sent.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class OutboxStore extends SQLiteOpenHelper {
+		public OutboxStore(Context C) {
+			super(C, DB_NAME, null, DB_VERSION);
+		}
+
+		@Override
+		public void onCreate(SQLiteDatabase DB) {
+			DB.execSQL( "CREATE TABLE " + TABLE + " (" +
+						COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+						COL_COMMAND + " TEXT NOT NULL, " +
+						COL_ARGS + " TEXT, " +
+						COL_CALLBACK + " INTEGER, " +
+						COL_IMAGE + " TEXT, " +
+						COL_ATTEMPTS + " INTEGER DEFAULT 0, " +
+						COL_NEXT_ATTEMPT + " INTEGER DEFAULT 0, " +
+						COL_SENDING + " INTEGER DEFAULT 0)" );
+		}
+
+		@Override
+		public void onUpgrade(SQLiteDatabase DB, int OldVersion, int NewVersion) {
+			if (2 > OldVersion) {
+				DB.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + COL_SENDING + " INTEGER DEFAULT 0");
+			}
+		}
+
+		public synchronized long insert(final Post P) {
+			ContentValues Values = new ContentValues();
+
+			Values.put(COL_COMMAND, P.Command);
+			Values.put(COL_ARGS, encodeArgs(P.Args));
+			Values.put(COL_CALLBACK, P.CallingMethod);
+			Values.put( COL_IMAGE, (null != P.ImageUri) ? P.ImageUri.toString() : null );
+			Values.put(COL_ATTEMPTS, P.Attempts);
+			Values.put(COL_NEXT_ATTEMPT, P.NextAttempt);
+			Values.put(COL_SENDING, P.IsSending ? 1 : 0);
+
+			try {
+				return getWritableDatabase().insert(TABLE, null, Values);
+			} catch (SQLException ex) {
+				Log.e("Outbox - insert", "Cannot store the post", ex);
+			}
+
+			return -1;
+		}
+
+		public synchronized Post next() {
+			Cursor C = null;
+			try {
+				C = getReadableDatabase().query(TABLE, COLUMNS, null, null, null, null, COL_ID, "1");
+
+				if ( C.moveToFirst() ) {
+					Post P = new Post();
+
+					P.Id = C.getLong(0);
+					P.Command = C.getString(1);
+					P.Args = decodeArgs( C.getString(2) );
+					P.CallingMethod = C.getInt(3);
+					P.ImageUri = C.isNull(4) ? null : Uri.parse( C.getString(4) );
+					P.Attempts = C.getInt(5);
+					P.NextAttempt = C.getLong(6);
+					P.IsSending = 0 != C.getInt(7);
+
+					return P;
+				}
+			} catch (SQLException ex) {
+				Log.e("Outbox - next", "Cannot read the outbox", ex);
+			} finally {
+				if (null != C) {
+					C.close();
+				}
+			}
+
+			return null;
+		}
+
+		public synchronized void update(final Post P) {
+			ContentValues Values = new ContentValues();
+
+			Values.put(COL_ATTEMPTS, P.Attempts);
+			Values.put(COL_NEXT_ATTEMPT, P.NextAttempt);
+			Values.put(COL_SENDING, P.IsSending ? 1 : 0);
+
+			try {
+				getWritableDatabase().update( TABLE, Values, COL_ID + " = ?", new String[]{ Long.toString(P.Id) } );
+			} catch (SQLException ex) {
+				Log.e("Outbox - update", "Cannot update the post", ex);
+			}
+		}
+
+		public synchronized void delete(final long Id) {
+			try {
+				getWritableDatabase().delete( TABLE, COL_ID + " = ?", new String[]{ Long.toString(Id) } );
+			} catch (SQLException ex) {
+				Log.e("Outbox - delete", "Cannot delete the post", ex);
+			}
+		}
+
+		public synchronized int count() {
+			Cursor C = null;
+			try {
+				C = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + TABLE, null);
+
+				return C.moveToFirst() ? C.getInt(0) : 0;
+			} catch (SQLException ex) {
+				Log.e("Outbox - count", "Cannot read the outbox", ex);
+			} finally {
+				if (null != C) {
+					C.close();
+				}
+			}
+
+			return 0;
+		}
+
+		private static String encodeArgs(final List<Pair<String, String>> Args) {
+			JSONArray Encoded = new JSONArray();
+
+			if (null != Args) {
+				for (Pair<String, String> A : Args) {
+					Encoded.put(A.first);
+					Encoded.put(A.second);
+				}
+			}
+
+			return Encoded.toString();
+		}
+
+		private static List<Pair<String, String>> decodeArgs(final String Encoded) {
+			List<Pair<String, String>> Args = new ArrayList<Pair<String, String>>();
+
+			try {
+				JSONArray Decoded = new JSONArray(Encoded);
+
+				for (int i = 0; i + 1 < Decoded.length(); i += 2) {
+					Args.add( new Pair<String, String>( Decoded.getString(i), Decoded.getString(i + 1) ) );
+				}
+			} catch (JSONException ex) {
+				Log.e("Outbox - decodeArgs", "Cannot decode the post arguments", ex);
+			}
+
+			return Args;
+		}
+
+		private static final String DB_NAME				= "outbox.db";
+		private static final int DB_VERSION				= 2;
+
+		private static final String TABLE				= "posts";
+		private static final String COL_ID				= "_id";
+		private static final String COL_COMMAND			= "command";
+		private static final String COL_ARGS			= "args";
+		private static final String COL_CALLBACK		= "callback";
+		private static final String COL_IMAGE			= "image";
+		private static final String COL_ATTEMPTS		= "attempts";
+		private static final String COL_NEXT_ATTEMPT	= "next_attempt";
+		private static final String COL_SENDING			= "sending";
+
+		// the order is used by next()
+		private static final String[] COLUMNS = new String[] {
+			COL_ID, COL_COMMAND, COL_ARGS, COL_CALLBACK, COL_IMAGE, COL_ATTEMPTS, COL_NEXT_ATTEMPT, COL_SENDING
+		};
+	}
+
+
+	private static final int MSG_ENQUEUE	= 1;
+	private static final int MSG_DRAIN		= 2;
+	private static final int MSG_SENT		= 3;
+
+	private static final int MAX_ATTEMPTS		= 10;
+	private static final long FIRST_BACKOFF		= 15 * 1000;		// ms
+	private static final long MAX_BACKOFF		= 30 * 60 * 1000;	// ms
+
+	private static final String OUTBOX_DIR		= "outbox";
+	private static final int COPY_BUFFER_SIZE	= 8192;
+
+	private static final Handler UIHandler = new Handler( Looper.getMainLooper() );
+
+	private final MeemiEngine MyEngine;
+	private final Context AppContext;
+	private final OutboxStore Store;
+	private final WorkerHandler WorkerHandler;
+
+	// the post being sent (accessed only by the worker thread)
+	private Post Sending = null;
+	private BroadcastReceiver ConnectivityMonitor = null;
+
+	// the callers waiting for the results (accessed only by the UI thread): the
+	// posts being stored, and the stored ones (by identifier)
+	private final Map<Post, Waiter> Pending = new HashMap<Post, Waiter>();
+	private final Map<Long, Waiter> Waiters = new HashMap<Long, Waiter>();
+}
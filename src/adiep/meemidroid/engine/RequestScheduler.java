@@ -0,0 +1,386 @@
+package adiep.meemidroid.engine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * This class schedules the requests executed by the {@link MeemiEngine}.
+ * The requests are divided in lanes, each one with its own bounded pool of
+ * threads, so a slow request (e.g., an image upload) never delays the requests
+ * of the other lanes (e.g., the lifestream reads):
+ * - {@link #LANE_INTERACTIVE}: the requests done by the user and waited for by the UI
+ * - {@link #LANE_BACKGROUND}: the polls and the other requests nobody is waiting for
+ * - {@link #LANE_UPLOAD}: the uploads of big objects (i.e., images)
+ *
+ * Every request belongs to an owner (usually the requesting Activity): when the
+ * owner goes away, its requests can be cancelled with {@link #cancel(Object)}:
+ * their results are not delivered, but only the abortable ones are stopped.
+ * The results are always delivered on the UI thread.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.2
+ */
+public class RequestScheduler {
+	/**
+	 * The lane of the requests done by the user and waited for by the UI.
+	 */
+	public static final int LANE_INTERACTIVE	= 0;
+	/**
+	 * The lane of the polls and of the other requests nobody is waiting for.
+	 */
+	public static final int LANE_BACKGROUND		= 1;
+	/**
+	 * The lane of the uploads.
+	 */
+	public static final int LANE_UPLOAD			= 2;
+
+
+	/**
+	 * This is the class constructor: it creates the pool of threads of each lane.
+	 */
+	public RequestScheduler() {
+		Lanes = new ThreadPoolExecutor[] {
+				createLane( "Interactive", INTERACTIVE_THREADS, Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE ),
+				createLane( "Background", BACKGROUND_THREADS, Process.THREAD_PRIORITY_LOWEST ),
+				createLane( "Upload", UPLOAD_THREADS, Process.THREAD_PRIORITY_BACKGROUND )
+		};
+	}
+
+	/**
+	 * This method schedules a request. It has to be called by the UI thread, because
+	 * {@link Request#onPreExecute()} is called immediately.
+	 *
+	 * @param Lane	the lane of the request ({@link #LANE_INTERACTIVE}, {@link #LANE_BACKGROUND}, or {@link #LANE_UPLOAD})
+	 * @param R		the request to execute
+	 */
+	public void submit(final int Lane, final Request<?> R) {
+		R.Scheduler = this;
+		R.Lane = Lane;
+
+		synchronized (Pending) {
+			Pending.add(R);
+		}
+
+		R.onPreExecute();
+
+		Lanes[Lane].execute(R);
+	}
+
+	/**
+	 * This method cancels all the requests of the input owner: their results
+	 * will not be delivered, and the requests not yet completed are stopped
+	 * if they can be (see {@link Request#isAbortable()}). The other requests
+	 * are always executed until their end.
+	 *
+	 * @param Owner	the owner of the requests to cancel
+	 *
+	 * @return	the number of cancelled requests
+	 */
+	public int cancel(final Object Owner) {
+		List<Request<?>> Cancelled = new ArrayList<Request<?>>();
+
+		synchronized (Pending) {
+			Iterator<Request<?>> I = Pending.iterator();
+
+			while ( I.hasNext() ) {
+				Request<?> R = I.next();
+
+				if ( R.release(Owner) ) {
+					Cancelled.add(R);
+					I.remove();
+				}
+			}
+		}
+
+		for (Request<?> R : Cancelled) {
+			R.Cancelled = true;
+
+			if ( R.isAbortable() ) {
+				R.Aborted = true;
+
+				if ( Lanes[R.Lane].remove(R) ) {
+					// never started: it will never call back
+					R.Done.countDown();
+					R.onCancelled();
+				} else {
+					R.onAbort();
+				}
+			}
+		}
+
+		return Cancelled.size();
+	}
+
+	/**
+	 * This method returns the number of requests not yet completed.
+	 *
+	 * @return	the number of requests not yet completed
+	 */
+	public int getPendingCount() {
+		synchronized (Pending) {
+			return Pending.size();
+		}
+	}
+
+
+	/**
+	 * This class represents a request executed by the {@link RequestScheduler}.
+	 * It mimics the {@link android.os.AsyncTask} life cycle: {@link #onPreExecute()}
+	 * runs on the UI thread when the request is submitted, {@link #doInBackground()}
+	 * on a thread of the lane, and then {@link #onPostExecute(Object)} (or
+	 * {@link #onCancelled()} if the request has been cancelled) on the UI thread.
+	 *
+	 * @param <Result>	the type of the request result
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 * @version 0.1
+	 */
+	public abstract static class Request<Result> implements Runnable {
+		/**
+		 * The constructor.
+		 *
+		 * @param Owner	the owner of the request (usually the requesting Activity)
+		 */
+		protected Request(final Object Owner) {
+			this.Owner = Owner;
+		}
+
+		/**
+		 * This method returns true if the request has been cancelled: its result
+		 * will not be delivered.
+		 *
+		 * @return	true if the request has been cancelled
+		 */
+		public final boolean isCancelled() {
+			return Cancelled;
+		}
+
+		/**
+		 * This method returns true if the request has been cancelled and it has to
+		 * be stopped (see {@link #isAbortable()}): the requests that are not abortable
+		 * are never stopped, even if they are cancelled.
+		 *
+		 * @return	true if the request has to be stopped
+		 */
+		public final boolean isAborted() {
+			return Aborted;
+		}
+
+		/**
+		 * This method waits for the end of the request and returns its result. It
+		 * must not be called by the UI thread.
+		 *
+		 * @return	the request result, or null if the request has been aborted
+		 *
+		 * @throws InterruptedException if the current thread is interrupted while waiting
+		 */
+		public final Result get() throws InterruptedException {
+			Done.await();
+
+			return ResultValue;
+		}
+
+		/**
+		 * Do not call this method directly: it's called by the lane thread.
+		 */
+		public final void run() {
+			try {
+				if (!Aborted) {
+					ResultValue = doInBackground();
+				}
+			} catch (RuntimeException ex) {
+				Log.e("RequestScheduler - Request", "The request has failed", ex);
+			} finally {
+				Done.countDown();
+			}
+
+			UIHandler.post(new Runnable() {
+				public void run() {
+					// the request is pending until its result is delivered, so it
+					// can be still cancelled by its owner
+					synchronized (Scheduler.Pending) {
+						Scheduler.Pending.remove(Request.this);
+					}
+
+					if (Cancelled) {
+						onCancelled();
+					} else {
+						onPostExecute(ResultValue);
+					}
+				}
+			});
+		}
+
+		/**
+		 * This method can be called by {@link #doInBackground()} to deliver a partial
+		 * result (e.g., the cached data while the fresh ones are downloaded): it's
+		 * delivered on the UI thread to {@link #onPublishResult(Object)}, before the
+		 * final result.
+		 * 
+		 * @param R	the partial result
+		 */
+		protected final void publishResult(final Result R) {
+			UIHandler.post(new Runnable() {
+				public void run() {
+					if (!Cancelled) {
+						onPublishResult(R);
+					}
+				}
+			});
+		}
+		
+		/**
+		 * This method performs the request on a thread of the lane.
+		 *
+		 * @return	the request result
+		 */
+		protected abstract Result doInBackground();
+
+		/**
+		 * Runs on the UI thread when the request is submitted.
+		 */
+		protected void onPreExecute() {
+			// nothing to do
+		}
+
+		/**
+		 * Runs on the UI thread after {@link #doInBackground()}, if the request
+		 * has not been cancelled.
+		 *
+		 * @param R	the value returned by {@link #doInBackground()}
+		 */
+		protected void onPostExecute(final Result R) {
+			// nothing to do
+		}
+
+		/**
+		 * Runs on the UI thread for each partial result delivered by
+		 * {@link #publishResult(Object)}, if the request has not been cancelled.
+		 * 
+		 * @param R	the partial result
+		 */
+		protected void onPublishResult(final Result R) {
+			// nothing to do
+		}
+		
+		/**
+		 * Runs on the UI thread, instead of {@link #onPostExecute(Object)}, when
+		 * the request has been cancelled.
+		 */
+		protected void onCancelled() {
+			// nothing to do
+		}
+
+		/**
+		 * This method is called, by {@link RequestScheduler#cancel(Object)}, when the
+		 * input owner cancels its requests: it returns true if the request has to be
+		 * cancelled. A request shared by many owners can override this method to
+		 * detach only the input owner, and to be cancelled only when nobody else is
+		 * waiting for it.
+		 *
+		 * @param O	the owner cancelling its requests
+		 *
+		 * @return	true if the request has to be cancelled
+		 */
+		protected boolean release(final Object O) {
+			return Owner == O;
+		}
+
+		/**
+		 * This method returns true if the request can be stopped when it's
+		 * cancelled; otherwise the request is completed anyway, but its result
+		 * is not delivered. The requests that change the data on the server
+		 * should not be abortable.
+		 *
+		 * @return	true if the request can be stopped
+		 */
+		protected boolean isAbortable() {
+			return true;
+		}
+
+		/**
+		 * This method is called, by the cancelling thread, when an abortable
+		 * request is cancelled while it's running: it can be used to interrupt
+		 * the I/O operations in progress.
+		 */
+		protected void onAbort() {
+			// nothing to do
+		}
+
+
+		private final Object Owner;
+		private RequestScheduler Scheduler = null;
+		private int Lane = LANE_INTERACTIVE;
+
+		// the result is not delivered
+		private volatile boolean Cancelled = false;
+		// the request is stopped (only if it's abortable)
+		private volatile boolean Aborted = false;
+		private volatile Result ResultValue = null;
+		private final CountDownLatch Done = new CountDownLatch(1);
+	}
+
+
+	/**
+	 * This method creates the pool of threads of a lane.
+	 *
+	 * @param Name		the lane name
+	 * @param Threads	the maximum number of concurrent requests of the lane
+	 * @param Priority	the priority of the lane threads
+	 *
+	 * @return	the pool of threads
+	 */
+	private static ThreadPoolExecutor createLane(final String Name, final int Threads, final int Priority) {
+		return new ThreadPoolExecutor( Threads, Threads, KEEP_ALIVE, TimeUnit.MILLISECONDS,
+									   new LinkedBlockingQueue<Runnable>(), new LaneThreadFactory(Name, Priority) );
+	}
+
+
+	/**
+	 * This private class creates the threads of a lane.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class LaneThreadFactory implements ThreadFactory {
+		public LaneThreadFactory(final String Name, final int Priority) {
+			this.Name = Name;
+			this.Priority = Priority;
+		}
+
+		public Thread newThread(final Runnable R) {
+			return new Thread( new Runnable() {
+				public void run() {
+					Process.setThreadPriority(Priority);
+
+					R.run();
+				}
+			}, "MeemiDroid-" + Name + "-" + (++Count) );
+		}
+
+		private final String Name;
+		private final int Priority;
+		private int Count = 0;
+	}
+
+
+	private static final int INTERACTIVE_THREADS	= 3;
+	private static final int BACKGROUND_THREADS		= 1;
+	private static final int UPLOAD_THREADS			= 1;
+	private static final long KEEP_ALIVE			= 30000;	// ms
+
+	private static final Handler UIHandler = new Handler( Looper.getMainLooper() );
+
+	private final ThreadPoolExecutor[] Lanes;
+	private final List<Request<?>> Pending = new ArrayList<Request<?>>();
+}
@@ -0,0 +1,192 @@
+package adiep.meemidroid.engine;
+
+/**
+ * This class represents the profile of a Meemi user.
+ * The instances are immutable and they are created by {@link UserProfile.Builder}.
+ *
+ * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
+ * @version 1.0
+ */
+public final class UserProfile {
+	/**
+	 * This method returns the user nick.
+	 *
+	 * @return	the user nick
+	 */
+	public String getScreenName() {
+		return ScreenName;
+	}
+
+	/**
+	 * This method returns the URL of the user avatar.
+	 *
+	 * @return	the URL of the user avatar
+	 */
+	public String getAvatarUrl() {
+		return AvatarUrl;
+	}
+
+	/**
+	 * This method returns the user real name.
+	 *
+	 * @return	the user real name
+	 */
+	public String getRealName() {
+		return RealName;
+	}
+
+	/**
+	 * This method returns the user birth date formatted to be showed.
+	 *
+	 * @return	the formatted birth date (empty if it's unknown)
+	 */
+	public String getBirth() {
+		return Birth;
+	}
+
+	/**
+	 * This method returns the user current location.
+	 *
+	 * @return	the user current location
+	 */
+	public String getCurrentLocation() {
+		return CurrentLocation;
+	}
+
+	/**
+	 * This method returns the number of users followed by the user.
+	 *
+	 * @return	the number of users followed
+	 */
+	public int getFollowings() {
+		return Followings;
+	}
+
+	/**
+	 * This method returns the number of users following the user.
+	 *
+	 * @return	the number of followers
+	 */
+	public int getFollowers() {
+		return Followers;
+	}
+
+	/**
+	 * This method returns true if the logged user follows this user.
+	 *
+	 * @return	true if the logged user follows this user
+	 */
+	public boolean isFollowed() {
+		return IsFollowed;
+	}
+
+	/**
+	 * This method returns true if this user follows the logged user.
+	 *
+	 * @return	true if this user follows the logged user
+	 */
+	public boolean isFollowingYou() {
+		return IsFollowingYou;
+	}
+
+	/**
+	 * This method returns true if the logged user blocked this user.
+	 *
+	 * @return	true if this user is blocked
+	 */
+	public boolean isBlocked() {
+		return IsBlocked;
+	}
+
+	/**
+	 * This method returns the user description (in Meemi markup).
+	 *
+	 * @return	the user description
+	 */
+	public String getDescription() {
+		return Description;
+	}
+
+	/**
+	 * This method returns the user profile text (in Meemi markup).
+	 *
+	 * @return	the user profile text
+	 */
+	public String getProfile() {
+		return Profile;
+	}
+
+
+	/**
+	 * This class is used to create a {@link UserProfile} instance.
+	 *
+	 * @author Andrea de Iacovo, Lorenzo Mele, and Eros Pedrini
+	 * @version 1.0
+	 */
+	public static final class Builder {
+		public Builder setScreenName(final String S) { ScreenName = S; return this; }
+		public Builder setAvatarUrl(final String A) { AvatarUrl = A; return this; }
+		public Builder setRealName(final String R) { RealName = R; return this; }
+		public Builder setBirth(final String B) { Birth = B; return this; }
+		public Builder setCurrentLocation(final String L) { CurrentLocation = L; return this; }
+		public Builder setFollowings(final int F) { Followings = F; return this; }
+		public Builder setFollowers(final int F) { Followers = F; return this; }
+		public Builder setFollowed(final boolean F) { IsFollowed = F; return this; }
+		public Builder setFollowingYou(final boolean F) { IsFollowingYou = F; return this; }
+		public Builder setBlocked(final boolean B) { IsBlocked = B; return this; }
+		public Builder setDescription(final String D) { Description = D; return this; }
+		public Builder setProfile(final String P) { Profile = P; return this; }
+
+		/**
+		 * This method creates the user profile.
+		 *
+		 * @return	the new user profile
+		 */
+		public UserProfile build() {
+			return new UserProfile(this);
+		}
+
+		private String ScreenName		= "";
+		private String AvatarUrl		= "";
+		private String RealName			= "";
+		private String Birth			= "";
+		private String CurrentLocation	= "";
+		private int Followings			= 0;
+		private int Followers			= 0;
+		private boolean IsFollowed		= false;
+		private boolean IsFollowingYou	= false;
+		private boolean IsBlocked		= false;
+		private String Description		= "";
+		private String Profile			= "";
+	}
+
+
+	private UserProfile(final Builder B) {
+		ScreenName = B.ScreenName;
+		AvatarUrl = B.AvatarUrl;
+		RealName = B.RealName;
+		Birth = B.Birth;
+		CurrentLocation = B.CurrentLocation;
+		Followings = B.Followings;
+		Followers = B.Followers;
+		IsFollowed = B.IsFollowed;
+		IsFollowingYou = B.IsFollowingYou;
+		IsBlocked = B.IsBlocked;
+		Description = B.Description;
+		Profile = B.Profile;
+	}
+
+
+	private final String ScreenName;
+	private final String AvatarUrl;
+	private final String RealName;
+	private final String Birth;
+	private final String CurrentLocation;
+	private final int Followings;
+	private final int Followers;
+	private final boolean IsFollowed;
+	private final boolean IsFollowingYou;
+	private final boolean IsBlocked;
+	private final String Description;
+	private final String Profile;
+}
@@ -0,0 +1,196 @@
+package adiep.meemidroid.engine.communication;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HTTP;
+
+import android.util.Log;
+
+/**
+ * This class owns the process-wide HTTP client shared by all the {@link HTTPEngine}
+ * implementations.
+ * The client is backed by a thread safe connection manager: connections are kept alive
+ * and reused between requests (bounded per route and in total), while a low priority
+ * daemon thread closes the connections that stay idle for too long.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.2
+ */
+public final class HTTPConnectionPool {
+	/**
+	 * This method returns the shared HTTP client, creating it (and the connection
+	 * manager behind it) the first time it's called.
+	 *
+	 * @return	the shared HTTP client
+	 */
+	public static synchronized HttpClient getClient() {
+		if (null == SharedClient) {
+			SharedClient = createClient();
+		}
+
+		return SharedClient;
+	}
+
+	/**
+	 * This method opens in advance a connection to the host of the input URL and
+	 * leaves it idle in the pool: the first request to the host doesn't wait for
+	 * the name resolution and for the connection handshake. Nothing is done if an
+	 * idle connection to the host is already pooled.
+	 * It has to be called by a background thread: the errors are only logged.
+	 *
+	 * @param Url	the URL of the host to connect to
+	 */
+	public static void warmUp(final String Url) {
+		ClientConnectionManager Manager = getClient().getConnectionManager();
+		ManagedClientConnection Connection = null;
+
+		try {
+			URI U = new URI(Url);
+
+			// the same route planned by the client for the requests to the URL
+			HttpRoute Route = new HttpRoute( new HttpHost( U.getHost(), U.getPort(), U.getScheme() ) );
+
+			Connection = Manager.requestConnection(Route, null).getConnection(POOL_TIMEOUT, TimeUnit.MILLISECONDS);
+
+			if ( !Connection.isOpen() ) {
+				Connection.open( Route, new BasicHttpContext(), getClient().getParams() );
+				Connection.markReusable();
+			}
+		} catch (Exception ex) {
+			Log.d("HTTPConnectionPool - warmUp", "Cannot connect to " + Url, ex);
+		} finally {
+			if (null != Connection) {
+				// a connection not reusable (i.e., not opened) is closed
+				Manager.releaseConnection(Connection, IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * This method closes all the pooled connections and stops the idle connections
+	 * evictor. The next call to {@link #getClient()} creates a new pool.
+	 */
+	public static synchronized void shutdown() {
+		if (null != Evictor) {
+			Evictor.interrupt();
+			Evictor = null;
+		}
+
+		if (null != SharedClient) {
+			SharedClient.getConnectionManager().shutdown();
+			SharedClient = null;
+		}
+	}
+
+
+	/**
+	 * This method creates the HTTP client and its thread safe connection manager.
+	 *
+	 * @return	the new HTTP client
+	 */
+	private static HttpClient createClient() {
+		HttpParams Params = new BasicHttpParams();
+
+		// protocol: HTTP/1.1 (i.e., keep-alive) without the "Expect: 100-continue" extra round trip
+		HttpProtocolParams.setVersion(Params, HttpVersion.HTTP_1_1);
+		HttpProtocolParams.setContentCharset(Params, HTTP.UTF_8);
+		HttpProtocolParams.setUseExpectContinue(Params, false);
+
+		// sockets
+		HttpConnectionParams.setConnectionTimeout(Params, CONNECTION_TIMEOUT);
+		HttpConnectionParams.setSoTimeout(Params, SOCKET_TIMEOUT);
+		HttpConnectionParams.setSocketBufferSize(Params, SOCKET_BUFFER_SIZE);
+		HttpConnectionParams.setStaleCheckingEnabled(Params, true);
+
+		// pool
+		ConnManagerParams.setMaxTotalConnections(Params, MAX_TOTAL_CONNECTIONS);
+		ConnManagerParams.setMaxConnectionsPerRoute( Params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_ROUTE) );
+		ConnManagerParams.setTimeout(Params, POOL_TIMEOUT);
+
+		SchemeRegistry Registry = new SchemeRegistry();
+		Registry.register( new Scheme("http", PlainSocketFactory.getSocketFactory(), 80) );
+		Registry.register( new Scheme("https", SSLSocketFactory.getSocketFactory(), 443) );
+
+		ClientConnectionManager Manager = new ThreadSafeClientConnManager(Params, Registry);
+
+		Evictor = new IdleConnectionEvictor(Manager);
+		Evictor.start();
+
+		return new DefaultHttpClient(Manager, Params);
+	}
+
+
+	/**
+	 * This private class represents the thread that periodically closes the expired
+	 * connections and the ones idle for more than {@link HTTPConnectionPool#IDLE_TIMEOUT}.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class IdleConnectionEvictor extends Thread {
+		public IdleConnectionEvictor(ClientConnectionManager M) {
+			super("MeemiDroid-HTTPEvictor");
+
+			Manager = M;
+
+			setDaemon(true);
+			setPriority(Thread.MIN_PRIORITY);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while ( !isInterrupted() ) {
+					Thread.sleep(IDLE_TIMEOUT);
+
+					Manager.closeExpiredConnections();
+					Manager.closeIdleConnections(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+				}
+			} catch (InterruptedException ex) {
+				// allow thread to exit
+			} catch (Exception ex) {
+				Log.d("HTTPConnectionPool", "The idle connections evictor has been stopped", ex);
+			}
+		}
+
+		private final ClientConnectionManager Manager;
+	}
+
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private HTTPConnectionPool() {}
+
+
+	private static final int MAX_TOTAL_CONNECTIONS		= 6;
+	private static final int MAX_CONNECTIONS_PER_ROUTE	= 4;
+
+	private static final int CONNECTION_TIMEOUT			= 20000;	// ms
+	private static final int SOCKET_TIMEOUT				= 30000;	// ms
+	private static final long POOL_TIMEOUT				= 10000;	// ms
+	private static final long IDLE_TIMEOUT				= 30000;	// ms
+	private static final int SOCKET_BUFFER_SIZE			= 8192;
+
+	private static HttpClient SharedClient = null;
+	private static IdleConnectionEvictor Evictor = null;
+}
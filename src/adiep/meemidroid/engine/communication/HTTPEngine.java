@@ -1,15 +1,46 @@
 package adiep.meemidroid.engine.communication;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.util.EntityUtils;
+
+import android.util.Log;
 import adiep.meemidroid.support.compatibility.Pair;
 
 /**
  * This abstract class represents the engine used to low level access to the HTTP Post protocol.
+ * The responses of the read-only requests can be cached (see {@link #setCacheMaxAge(long)}).
+ * The engine asks for compressed responses (gzip or deflate) and decodes them
+ * transparently, counting the bytes received against the decoded ones (see
+ * {@link #getWireBytes()} and {@link #getDecodedBytes()}).
+ * A failed request that never reached the server can be recognized by
+ * {@link #isFailedBeforeSending()}.
  * 
  * @author Andrea de Iacovo, and Eros Pedrini
- * @version 0.1
+ * @version 0.5
  */
 public abstract class HTTPEngine {
 	/**
@@ -85,13 +116,565 @@ public abstract class HTTPEngine {
 		return Entities;
 	}
 	
+	/**
+	 * This interface represents a parser of the server response: it receives the
+	 * response content as a character stream, so the response can be consumed while
+	 * it's downloaded, without being buffered in a String first.
+	 * 
+	 * @param <T>	the type of the object built from the server response
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	public interface ResponseParser<T> {
+		/**
+		 * This method builds an object reading the server response.
+		 * 
+		 * @param Response	the server response
+		 * 
+		 * @return	the object built from the server response
+		 * 
+		 * @throws IOException if the response can not be read or parsed
+		 */
+		T parse(Reader Response) throws IOException;
+	}
+	
 	/**
 	 * This method performs the HTTP POST request and returns the server response
 	 * 
 	 * @return	the server response for an HTPP POST request
 	 */
-	public abstract String execute();
+	public String execute() {
+		String ServerResponse = execute(TEXT_PARSER);
+		
+		return (null != ServerResponse) ? ServerResponse : "";
+	}
+	
+	/**
+	 * This method performs the HTTP POST request and parses the server response
+	 * with the input parser while it's read from the connection.
+	 * 
+	 * @param Parser	the parser of the server response
+	 * 
+	 * @return	the object built by the parser, or null if the request fails
+	 */
+	public abstract <T> T execute(ResponseParser<T> Parser);
+	
+	/**
+	 * This method enables the cache of the response (see {@link HTTPResponseCache}):
+	 * a cached response younger than the input age is returned without using the
+	 * network, while an older one is revalidated with a conditional request if
+	 * the server has sent its validators ("ETag" or "Last-Modified").
+	 * It must be called after all the entities have been added, and only for the
+	 * requests that don't change data on the server.
+	 * 
+	 * @param MaxAge	the time (in milliseconds) a cached response is used without
+	 * 					revalidating it (0 disables the cache)
+	 */
+	public void setCacheMaxAge(final long MaxAge) {
+		this.CacheMaxAge = MaxAge;
+		
+		if (0 < MaxAge) {
+			StringBuilder Request = new StringBuilder(ConnectionURI);
+			
+			for (Pair<String, String> E : Entities) {
+				Request.append('\n').append(E.first).append('=').append(E.second);
+			}
+			
+			CacheKey = HTTPResponseCache.getKey( Request.toString() );
+		}
+	}
+	
+	/**
+	 * This method parses the cached response (even if it's not fresh anymore) without
+	 * using the network: it can be used to show the last known data while the
+	 * request is executed.
+	 * 
+	 * @param Parser	the parser of the cached response
+	 * 
+	 * @return	the object built by the parser, or null if the response is not cached
+	 * 
+	 * @see #setCacheMaxAge(long)
+	 * @see #isCachedResponseFresh()
+	 */
+	public <T> T executeFromCache(final ResponseParser<T> Parser) {
+		HTTPResponseCache Cache = HTTPResponseCache.getInstance();
+		
+		if (0 >= CacheMaxAge || null == Cache) {
+			return null;
+		}
+		
+		CachedEntry = Cache.get(CacheKey);
+		
+		if (null == CachedEntry) {
+			return null;
+		}
+		
+		try {
+			return parseCachedEntry(CachedEntry, Parser);
+		} catch (IOException ex) {
+			Log.d("HTTPEngine", "Can not parse the cached response", ex);
+			
+			Cache.remove(CacheKey);
+			CachedEntry = null;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This method returns true if the response returned by
+	 * {@link #executeFromCache(ResponseParser)} is still fresh: i.e., the request
+	 * doesn't need to be executed.
+	 * 
+	 * @return	true if the cached response is fresh
+	 */
+	public boolean isCachedResponseFresh() {
+		return null != CachedEntry && CachedEntry.isFresh(CacheMaxAge);
+	}
+	
+	/**
+	 * This method returns true if the last execution has returned the cached
+	 * response, because the server has answered "304 Not Modified" or the
+	 * cached response was still fresh.
+	 * 
+	 * @return	true if the response has not been downloaded again
+	 */
+	public boolean isResponseFromCache() {
+		return IsResponseFromCache;
+	}
+	
+	/**
+	 * This method returns true if the last execution has failed before the request
+	 * was sent to the server (e.g., the server name can not be resolved, or the
+	 * connection can not be opened): a request that changes data on the server can
+	 * be sent again without the risk of executing it twice.
+	 * When the request fails after the connection has been opened (e.g., the
+	 * response times out), this method returns false: the server can have
+	 * executed the request anyway.
+	 * 
+	 * @return	true if the request has not reached the server
+	 */
+	public boolean isFailedBeforeSending() {
+		return IsFailedBeforeSending;
+	}
+	
+	/**
+	 * This method returns the number of response bytes received from the network
+	 * by all the engines (i.e., compressed if the server has compressed them).
+	 * 
+	 * @return	the number of bytes received
+	 */
+	public static long getWireBytes() {
+		return WireBytes.get();
+	}
+	
+	/**
+	 * This method returns the number of response bytes read by the parsers of all
+	 * the engines, after the decompression.
+	 * 
+	 * @return	the number of decoded bytes
+	 */
+	public static long getDecodedBytes() {
+		return DecodedBytes.get();
+	}
+	
+	/**
+	 * This method aborts the HTTP request in progress (if any): it can be called
+	 * by a thread different from the one executing the request.
+	 */
+	public void abort() {
+		IsAborted = true;
+		
+		HttpPost Post = CurrentRequest;
+		if (null != Post) {
+			Post.abort();
+		}
+	}
+	
+	
+	/**
+	 * This method returns the process-wide HTTP client: all the engines share the
+	 * same pool of keep-alive connections.
+	 * 
+	 * @return	the shared HTTP client
+	 * 
+	 * @see HTTPConnectionPool
+	 */
+	protected static HttpClient getSharedClient() {
+		return HTTPConnectionPool.getClient();
+	}
+	
+	/**
+	 * This method executes the input HTTP POST request through the shared HTTP client
+	 * and parses the server response with the input parser.
+	 * The response content is always fully consumed (or the request aborted) so that
+	 * the connection can go back to the pool and be reused by the next request.
+	 * 
+	 * @param Post		the request to execute
+	 * @param Parser	the parser of the server response
+	 * 
+	 * @return	the object built by the parser, or null if the request fails
+	 */
+	protected <T> T executeRequest(final HttpPost Post, final ResponseParser<T> Parser) {
+		T Result = null;
+		
+		IsResponseFromCache = false;
+		IsFailedBeforeSending = false;
+		
+		HTTPResponseCache Cache = (0 < CacheMaxAge) ? HTTPResponseCache.getInstance() : null;
+		HTTPResponseCache.Entry Cached = null;
+		
+		if (null != Cache) {
+			Cached = (null != CachedEntry) ? CachedEntry : Cache.get(CacheKey);
+			
+			if ( null != Cached && Cached.isFresh(CacheMaxAge) ) {
+				try {
+					Result = parseCachedEntry(Cached, Parser);
+					
+					Cache.Hits.incrementAndGet();
+					IsResponseFromCache = true;
+					
+					return Result;
+				} catch (IOException ex) {
+					Log.d("HTTPEngine", "Can not parse the cached response", ex);
+					
+					Cache.remove(CacheKey);
+					Cached = null;
+				}
+			}
+			
+			if ( null != Cached && Cached.hasValidators() ) {
+				if (null != Cached.ETag) {
+					Post.setHeader("If-None-Match", Cached.ETag);
+				}
+				
+				if (null != Cached.LastModified) {
+					Post.setHeader("If-Modified-Since", Cached.LastModified);
+				}
+			}
+		}
+		
+		// the responses are compressed if the server supports it
+		Post.setHeader("Accept-Encoding", ACCEPTED_ENCODINGS);
+		
+		CurrentRequest = Post;
+		
+		try {
+			if (IsAborted) {
+				IsFailedBeforeSending = true;
+				
+				throw new IOException("The request has been aborted");
+			}
+			
+			HttpResponse WebServerAnswer = getSharedClient().execute(Post);
+			
+			HttpEntity Entity = WebServerAnswer.getEntity();
+			
+			if ( null != Cached && HttpStatus.SC_NOT_MODIFIED == WebServerAnswer.getStatusLine().getStatusCode() ) {
+				if (null != Entity) {
+					Entity.consumeContent();
+				}
+				
+				try {
+					Result = parseCachedEntry(Cached, Parser);
+				} catch (IOException ex) {
+					// the cached response can't be used anymore
+					Cache.remove(CacheKey);
+					
+					throw ex;
+				}
+				
+				// the cached response is still valid
+				Cached.StoredAt = System.currentTimeMillis();
+				Cache.put(CacheKey, Cached);
+				Cache.ConditionalHits.incrementAndGet();
+				
+				IsResponseFromCache = true;
+			} else if (null != Entity) {
+				String Charset = EntityUtils.getContentCharSet(Entity);
+				
+				boolean IsCacheable = null != Cache && HttpStatus.SC_OK == WebServerAnswer.getStatusLine().getStatusCode();
+				
+				InputStream Content = decode( Entity.getContent(), getHeaderValue(WebServerAnswer, "Content-Encoding") );
+				RecordingInputStream Recorder = null;
+				
+				if (IsCacheable) {
+					// the response is recorded while it's parsed
+					Recorder = new RecordingInputStream(Content);
+					Content = Recorder;
+				}
+				
+				// closing the reader releases the connection
+				Reader Response = new InputStreamReader( Content, (null != Charset) ? Charset : HTTP.UTF_8 );
+				
+				if (IsCacheable) {
+					Cache.Misses.incrementAndGet();
+				}
+				
+				// a response that can't be parsed (e.g., truncated) throws an IOException: it's not cached
+				try {
+					Result = Parser.parse(Response);
+				} finally {
+					Response.close();
+				}
+				
+				if (IsCacheable) {
+					if ( null != Result && !Recorder.isOverflowed() ) {
+						HTTPResponseCache.Entry Entry = new HTTPResponseCache.Entry();
+						
+						Entry.Body = Recorder.toByteArray();
+						Entry.Charset = Charset;
+						Entry.ETag = getHeaderValue(WebServerAnswer, "ETag");
+						Entry.LastModified = getHeaderValue(WebServerAnswer, "Last-Modified");
+						Entry.StoredAt = System.currentTimeMillis();
+						
+						Cache.put(CacheKey, Entry);
+					}
+				}
+			}
+		} catch (IOException ex) {
+			Log.d("HTTPEngine", "Can not read the server response", ex);
+			
+			// the connection has never been opened: nothing has been sent
+			if ( ex instanceof UnknownHostException || ex instanceof ConnectException || ex instanceof ConnectTimeoutException ) {
+				IsFailedBeforeSending = true;
+			}
+			
+			Post.abort();
+		} finally {
+			CurrentRequest = null;
+		}
+		
+		return Result;
+	}
+	
+	
+	/**
+	 * This method parses a cached response.
+	 * 
+	 * @param Cached	the cached response
+	 * @param Parser	the parser of the response
+	 * 
+	 * @return	the object built by the parser
+	 * 
+	 * @throws IOException if the response can not be parsed
+	 */
+	private static <T> T parseCachedEntry(final HTTPResponseCache.Entry Cached, final ResponseParser<T> Parser) throws IOException {
+		Reader Response = new InputStreamReader( new ByteArrayInputStream(Cached.Body), (null != Cached.Charset) ? Cached.Charset : HTTP.UTF_8 );
+		
+		try {
+			return Parser.parse(Response);
+		} finally {
+			Response.close();
+		}
+	}
+	
+	/**
+	 * This method returns the stream of the decoded response content, counting
+	 * the bytes received and the decoded ones.
+	 * 
+	 * @param Content	the response content, as received from the network
+	 * @param Encoding	the value of the "Content-Encoding" header (can be null)
+	 * 
+	 * @return	the decoded response content
+	 * 
+	 * @throws IOException if the compressed content is not valid
+	 */
+	private static InputStream decode(final InputStream Content, final String Encoding) throws IOException {
+		InputStream Decoded = new CountingInputStream(Content, WireBytes);
+		
+		if ( "gzip".equalsIgnoreCase(Encoding) || "x-gzip".equalsIgnoreCase(Encoding) ) {
+			Decoded = new GZIPInputStream(Decoded, DECODE_BUFFER_SIZE);
+		} else if ( "deflate".equalsIgnoreCase(Encoding) ) {
+			// some servers send the raw deflate data, without the zlib header
+			BufferedInputStream Buffered = new BufferedInputStream(Decoded, DECODE_BUFFER_SIZE);
+			
+			Buffered.mark(2);
+			int B0 = Buffered.read();
+			int B1 = Buffered.read();
+			Buffered.reset();
+			
+			boolean HasZlibHeader = -1 != B1 && 8 == (B0 & 0x0F) && 0 == ( (B0 << 8) | B1 ) % 31;
+			
+			Decoded = new InflaterInputStream( Buffered, new Inflater(!HasZlibHeader), DECODE_BUFFER_SIZE );
+		}
+		
+		return new CountingInputStream(Decoded, DecodedBytes);
+	}
+	
+	/**
+	 * This method returns the value of a response header.
+	 * 
+	 * @param R		the server response
+	 * @param Name	the header name
+	 * 
+	 * @return	the header value, or null if the header is missing
+	 */
+	private static String getHeaderValue(final HttpResponse R, final String Name) {
+		Header H = R.getFirstHeader(Name);
+		
+		return (null != H) ? H.getValue() : null;
+	}
+	
+	
+	/**
+	 * This private class represents a stream that records the bytes read from
+	 * the server, so the response can be cached after it has been parsed.
+	 * The recording stops if the response is too big to be cached.
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class RecordingInputStream extends FilterInputStream {
+		public RecordingInputStream(InputStream In) {
+			super(In);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int B = super.read();
+			
+			if (-1 != B) {
+				record(B);
+			}
+			
+			return B;
+		}
+		
+		@Override
+		public int read(byte[] Buffer, int Offset, int Count) throws IOException {
+			int Read = super.read(Buffer, Offset, Count);
+			
+			if (0 < Read && !Overflowed) {
+				Recorded.write(Buffer, Offset, Read);
+				
+				checkOverflow();
+			}
+			
+			return Read;
+		}
+		
+		public boolean isOverflowed() {
+			return Overflowed;
+		}
+		
+		public byte[] toByteArray() {
+			return Recorded.toByteArray();
+		}
+		
+		private void record(final int B) {
+			if (!Overflowed) {
+				Recorded.write(B);
+				
+				checkOverflow();
+			}
+		}
+		
+		private void checkOverflow() {
+			if (Recorded.size() > MAX_CACHED_RESPONSE_SIZE) {
+				Overflowed = true;
+				Recorded.reset();
+			}
+		}
+		
+		private final ByteArrayOutputStream Recorded = new ByteArrayOutputStream(TEXT_BUFFER_SIZE);
+		private boolean Overflowed = false;
+	}
+	
+	
+	/**
+	 * This private class represents a stream that adds the number of bytes read
+	 * to a counter.
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+		public CountingInputStream(InputStream In, AtomicLong C) {
+			super(In);
+			
+			Counter = C;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int B = super.read();
+			
+			if (-1 != B) {
+				Counter.incrementAndGet();
+			}
+			
+			return B;
+		}
+		
+		@Override
+		public int read(byte[] Buffer, int Offset, int Count) throws IOException {
+			int Read = super.read(Buffer, Offset, Count);
+			
+			if (0 < Read) {
+				Counter.addAndGet(Read);
+			}
+			
+			return Read;
+		}
+		
+		@Override
+		public long skip(long N) throws IOException {
+			long Skipped = super.skip(N);
+			
+			if (0 < Skipped) {
+				Counter.addAndGet(Skipped);
+			}
+			
+			return Skipped;
+		}
+		
+		private final AtomicLong Counter;
+	}
+	
+	
+	/**
+	 * This private class represents the parser that returns the server response as
+	 * it is.
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private static final class TextParser implements ResponseParser<String> {
+		public String parse(Reader Response) throws IOException {
+			StringBuilder Text = new StringBuilder(TEXT_BUFFER_SIZE);
+			char[] Buffer = new char[TEXT_BUFFER_SIZE];
+			
+			int Read;
+			while ( -1 != ( Read = Response.read(Buffer) ) ) {
+				Text.append(Buffer, 0, Read);
+			}
+			
+			return Text.toString();
+		}
+	}
+	
+	
+	private static final int TEXT_BUFFER_SIZE = 2048;
+	private static final int MAX_CACHED_RESPONSE_SIZE = 256 * 1024;
+	private static final int DECODE_BUFFER_SIZE = 4096;
+	private static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+	
+	// traffic statistics
+	private static final AtomicLong WireBytes = new AtomicLong();
+	private static final AtomicLong DecodedBytes = new AtomicLong();
+	private static final ResponseParser<String> TEXT_PARSER = new TextParser();
 	
 	protected String ConnectionURI = null;
 	protected List<Pair<String, String>> Entities = new ArrayList<Pair<String,String>>();
+	
+	private volatile HttpPost CurrentRequest = null;
+	private volatile boolean IsAborted = false;
+	
+	// cache
+	private long CacheMaxAge = 0;
+	private String CacheKey = null;
+	private HTTPResponseCache.Entry CachedEntry = null;
+	private boolean IsResponseFromCache = false;
+	
+	// true if the last execution has failed before sending the request (or if
+	// the request has not been executed yet)
+	private boolean IsFailedBeforeSending = true;
 }
@@ -1,29 +1,32 @@
 package adiep.meemidroid.engine.communication;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.protocol.HTTP;
 
-import android.content.Context;
 import android.util.Log;
 import adiep.meemidroid.support.compatibility.Pair;
 
 /**
  * This class represents the engine used to low level access multipart HTTP Post protocol.
- * This implementation relays on standard Java communication protocol, because at the
- * current time Android (2.2) doesn't support multipart message.
- * One possible solution is to use a set of external library provided by Apache, but
- * we want a light-impact solution.
+ * At the current time Android (2.2) doesn't support multipart message: one possible
+ * solution is to use a set of external library provided by Apache, but we want a
+ * light-impact solution. So the multipart body is written by this class, while the
+ * request is sent through the connections pool shared by all the engines (see
+ * {@link HTTPConnectionPool}).
+ * The object to send is never loaded in memory: it's streamed from its
+ * {@link ObjectSource} to the connection while the body is written.
  * This class is a refactoring of the original version od Andrea de Iacovo implementation. 
  * 
  * @author Andrea de Iacovo, and Eros Pedrini
- * @version 0.1
+ * @version 0.2
  */
 public class HTTPMultipartPostEngine extends HTTPEngine {
 
@@ -46,78 +49,69 @@ public class HTTPMultipartPostEngine extends HTTPEngine {
 	/**
 	 * This is the HttpPost class constructor. It sets the URI (usually an URL) representing the HTTP address.
 	 * 
-	 * @param U				the URI representing the HTTP address
-	 * @param ObjectURI		the Object to send via HTTP Post
-	 * @param ObjectType	the type of the object to send
-	 * @param C				the application context (it's used to retrieve the stream of the object to send)
+	 * @param U					the URI representing the HTTP address
+	 * @param Source			the Object to send via HTTP Post
+	 * @param ObjectFileName	the file name of the object to send
+	 * @param ObjectType		the type of the object to send
 	 */
-	public HTTPMultipartPostEngine(final String U, final byte[] ObjectBytes, final int ObjectSize, final String ObjectFileName, final String ObjectType, Context C) {
+	public HTTPMultipartPostEngine(final String U, final ObjectSource Source, final String ObjectFileName, final String ObjectType) {
 		setURI(U);
 		
-		this.ObjectBytes = ObjectBytes;
-		this.ObjectSize = ObjectSize;
+		this.Source = Source;
 		this.ObjectFileName = ObjectFileName;
 		this.ObjectType = ObjectType;
-		this.MyContext = C;
+	}
+	
+	
+	/**
+	 * This interface represents the source of the object sent by the engine: the
+	 * object is written directly to the connection, so it's never loaded in memory.
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	public interface ObjectSource {
+		/**
+		 * This method returns the length of the object.
+		 * 
+		 * @return	the length of the object (in bytes), or a negative number if it's
+		 * 			unknown: in this case the body is sent with the chunked encoding
+		 */
+		long getLength();
+		
+		/**
+		 * This method writes the object. It can be called more than once (e.g.,
+		 * if the request is retried), and each call has to write the whole object.
+		 * 
+		 * @param Out	the stream where the object is written
+		 * 
+		 * @throws IOException if the object can not be read or written
+		 */
+		void writeTo(OutputStream Out) throws IOException;
 	}
 
 	/**
-	 * This method performs the HTTP POST request and returns the server response
+	 * This method performs the HTTP POST request and parses the server response
+	 * with the input parser.
 	 * 
-	 * @return	the server response for an HTPP POST request
+	 * @param Parser	the parser of the server response
+	 * 
+	 * @return	the object built by the parser, or null if the request fails
 	 */
-	public String execute() {
-		String ServerResponse = "";
+	public <T> T execute(final ResponseParser<T> Parser) {
+		HttpPost Post = new HttpPost(ConnectionURI);
 		
-		URLConnection Connection	= null;
-		DataOutputStream Writer		= null;
 		try {
-			Connection = new URL(ConnectionURI).openConnection();
-			Connection.setDoOutput(true);
-			Connection.setDoInput(true);
-			Connection.setRequestProperty("Content-type", "multipart/form-data; boundary=data_boundary");
-			
-			Writer = new DataOutputStream( Connection.getOutputStream() );
-			
-			setUrlEncodedFormEntities(Entities, Writer, HTTP.UTF_8);
-			
-			if (null != ObjectBytes && null != ObjectType && null != MyContext) {
-				setObject(Writer);
-			}
-			
-			Writer.close();
-			
-			
-		} catch (Exception ex) {
+			Post.setEntity( new MultipartEntity( prepareFormEntities(Entities, HTTP.UTF_8) ) );
+		} catch (IOException ex) {
 			Log.d("HTTPMultipartPostEngine", "Can not execute the Server call", ex);
 			
-			if (null != Writer) {
-				try {
-					Writer.close();
-				} catch (IOException e) {
-					// nothing to do
-				}
-			}
+			return null;
 		}
 		
-		try{
-			BufferedReader rd = new BufferedReader( new InputStreamReader( Connection.getInputStream() ) );
-         
-			String Line;
-
-			while ( null != ( Line = rd.readLine() ) ) {
-				 ServerResponse += Line + "\n";
-			}
-         
-			rd.close();
-		}catch (Exception ex){
-			Log.d("HTTPMultipartPostEngine", "Can not add read json response", ex);
-		}
-
-        return ServerResponse;
+		return executeRequest(Post, Parser);
 	}
 	
-	private void setUrlEncodedFormEntities(final List<Pair<String, String>> Entities, DataOutputStream Writer, final String EncodeType) throws IOException {
+	private byte[] prepareFormEntities(final List<Pair<String, String>> Entities, final String EncodeType) throws IOException {
 		String UrlEncodeData = MP_FIRST_BOUNDARY;
 		
 		for (Pair<String, String> A : Entities) {
@@ -133,28 +127,103 @@ public class HTTPMultipartPostEngine extends HTTPEngine {
 			}
 		}
 		
-		Writer.write( UrlEncodeData.getBytes(EncodeType) );
+		return UrlEncodeData.getBytes(EncodeType);
 	}
 	
-	private void setObject(DataOutputStream Writer) throws IOException {
-		if ( ObjectType.contains("img_pc") ) {
-			String Data = "Content-Disposition: file; filename=\"" + ObjectFileName + "\"; name=\"img_pc\"" + MP_NEWLINE + MP_NEWLINE;
-            Writer.writeBytes(Data);
-            
-            Writer.write(ObjectBytes, 0, ObjectSize);
-            Writer.writeBytes(MP_BOUNDARY);
+	private byte[] prepareObjectHeader() throws IOException {
+		String Data = "Content-Disposition: file; filename=\"" + ObjectFileName + "\"; name=\"img_pc\"" + MP_NEWLINE + MP_NEWLINE;
+		
+		return Data.getBytes(HTTP.ISO_8859_1);
+	}
+	
+	private boolean hasObject() {
+		return null != Source && null != ObjectType && ObjectType.contains("img_pc");
+	}
+	
+	
+	/**
+	 * This private class represents the multipart body of the request: the form
+	 * entities followed by the (optional) object to send.
+	 * If the length of the object is known in advance, the body is sent with a fixed
+	 * Content-Length, otherwise with the chunked encoding.
+	 * 
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	private final class MultipartEntity extends AbstractHttpEntity {
+		public MultipartEntity(final byte[] FormEntities) throws IOException {
+			this.FormEntities = FormEntities;
+			
+			if ( hasObject() ) {
+				ObjectHeader = prepareObjectHeader();
+				ObjectFooter = MP_BOUNDARY.getBytes(HTTP.ISO_8859_1);
+				ObjectLength = Source.getLength();
+			}
+			
+			setContentType(MP_CONTENT_TYPE);
+			setChunked( 0 > getContentLength() );
+		}
+		
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+		
+		@Override
+		public long getContentLength() {
+			long Length = FormEntities.length;
+			
+			if (null != ObjectHeader) {
+				if (0 > ObjectLength) {
+					return -1;
+				}
+				
+				Length += ObjectHeader.length + ObjectLength + ObjectFooter.length;
+			}
+			
+			return Length;
 		}
+		
+		@Override
+		public InputStream getContent() throws IOException {
+			// only for debugging: the client uses writeTo()
+			ByteArrayOutputStream Content = new ByteArrayOutputStream();
+			writeTo(Content);
+			
+			return new ByteArrayInputStream( Content.toByteArray() );
+		}
+		
+		@Override
+		public void writeTo(OutputStream Writer) throws IOException {
+			Writer.write(FormEntities);
+			
+			if (null != ObjectHeader) {
+				Writer.write(ObjectHeader);
+				Source.writeTo(Writer);
+				Writer.write(ObjectFooter);
+			}
+			
+			Writer.flush();
+		}
+		
+		@Override
+		public boolean isStreaming() {
+			return false;
+		}
+		
+		private final byte[] FormEntities;
+		private byte[] ObjectHeader = null;
+		private byte[] ObjectFooter = null;
+		private long ObjectLength = 0;
 	}
 	
 	
-	private byte[] ObjectBytes		= null;
-	private int ObjectSize			= 0;
+	private ObjectSource Source		= null;
 	private String ObjectFileName	= null;
 	private String ObjectType		= null;
-	private Context MyContext		= null;
 	
 	private final String MP_FIRST_BOUNDARY = "--data_boundary\r\n";
 	private final String MP_BOUNDARY = "\r\n--data_boundary\r\n";
 	private final String MP_NEWLINE = "\r\n";
+	private final String MP_CONTENT_TYPE = "multipart/form-data; boundary=data_boundary";
 
 }
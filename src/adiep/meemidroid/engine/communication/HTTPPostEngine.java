@@ -3,19 +3,13 @@
  */
 package adiep.meemidroid.engine.communication;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.HTTP;
 
@@ -24,7 +18,8 @@ import adiep.meemidroid.support.compatibility.Pair;
 
 /**
  * This class represents the engine used to low level access no-multipart HTTP Post protocol.
- * This implementation relays on the Apache HTTPClient library.
+ * This implementation relays on the Apache HTTPClient library, and it uses the
+ * connections pool shared by all the engines (see {@link HTTPConnectionPool}).
  * 
  * @author Andrea de Iacovo, and Eros Pedrini
  * @version 0.1
@@ -48,13 +43,14 @@ public class HTTPPostEngine extends HTTPEngine {
 	}
 
 	/**
-	 * This method performs the HTTP POST request and returns the server response
+	 * This method performs the HTTP POST request and parses the server response
+	 * with the input parser.
 	 * 
-	 * @return	the server response for an HTPP POST request
+	 * @param Parser	the parser of the server response
+	 * 
+	 * @return	the object built by the parser, or null if the request fails
 	 */
-	public String execute() {
-		// Create the Apache HTTP client and post
-		HttpClient httpclient = new DefaultHttpClient();
+	public <T> T execute(final ResponseParser<T> Parser) {
 		HttpPost httppost = new HttpPost(ConnectionURI);
 		
 		List<NameValuePair> pairs = new ArrayList<NameValuePair>(2);
@@ -73,25 +69,7 @@ public class HTTPPostEngine extends HTTPEngine {
 			}
 		}
 		
-		String ServerResponse = "";
-		try {
-			// Finally, execute the request
-			HttpResponse webServerAnswer = httpclient.execute(httppost);
-		
-			// Now we can retrieve all the response
-			BufferedReader rd = new BufferedReader( new InputStreamReader( webServerAnswer.getEntity().getContent() ) );
-		
-			String Line;
-		
-			while ( null != ( Line = rd.readLine() ) ) {
-				ServerResponse += Line + "\n";
-			}
-			
-			rd.close();
-		} catch (IOException ex) {
-			Log.d("HTTPPostEngine", "Can not add read json response", ex);
-		}
-		
-		return ServerResponse;
+		// Finally, execute the request through the shared (pooled) HTTP client
+		return executeRequest(httppost, Parser);
 	}
 }
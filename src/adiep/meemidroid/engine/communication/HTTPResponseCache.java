@@ -0,0 +1,370 @@
+package adiep.meemidroid.engine.communication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.Log;
+
+/**
+ * This class represents the disk cache of the responses to the read-only API
+ * commands (see {@link HTTPEngine#setCacheMaxAge(long)}).
+ * Each response is stored in its own file, together with its validators
+ * (the "ETag" and "Last-Modified" headers) used to revalidate it with a
+ * conditional request. When the cache exceeds its maximum size, the least
+ * recently stored responses are removed.
+ *
+ * The cache counts its hits and misses, for diagnostics.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.1
+ */
+public final class HTTPResponseCache {
+	/**
+	 * This method installs the shared cache: until it's called, the responses are
+	 * not cached.
+	 *
+	 * @param Dir		the directory of the cache
+	 * @param MaxSize	the maximum size of the cache (in bytes)
+	 */
+	public static synchronized void install(final File Dir, final long MaxSize) {
+		if (null == Instance) {
+			Instance = new HTTPResponseCache(Dir, MaxSize);
+		}
+	}
+
+	/**
+	 * This method returns the shared cache.
+	 *
+	 * @return	the shared cache, or null if it has not been installed
+	 */
+	public static synchronized HTTPResponseCache getInstance() {
+		return Instance;
+	}
+
+	/**
+	 * This method returns the cached response of the input key.
+	 *
+	 * @param Key	the key of the request (see {@link #getKey(String)})
+	 *
+	 * @return	the cached response, or null if the response is not cached
+	 */
+	public synchronized Entry get(final String Key) {
+		File F = new File(Dir, Key);
+
+		if ( !F.exists() ) {
+			return null;
+		}
+
+		DataInputStream In = null;
+		try {
+			In = new DataInputStream( new BufferedInputStream( new FileInputStream(F) ) );
+
+			if (FORMAT_VERSION != In.readInt()) {
+				throw new IOException("Unknown cache entry format");
+			}
+
+			Entry E = new Entry();
+			E.StoredAt = In.readLong();
+			E.Charset = readNullableString(In);
+			E.ETag = readNullableString(In);
+			E.LastModified = readNullableString(In);
+			E.Body = new byte[ In.readInt() ];
+			In.readFully(E.Body);
+
+			return E;
+		} catch (IOException ex) {
+			Log.d("HTTPResponseCache - get", "Cannot read the cached response", ex);
+
+			remove(Key);
+		} finally {
+			close(In);
+		}
+
+		return null;
+	}
+
+	/**
+	 * This method stores a response.
+	 *
+	 * @param Key	the key of the request (see {@link #getKey(String)})
+	 * @param E		the response to store
+	 */
+	public synchronized void put(final String Key, final Entry E) {
+		File F = new File(Dir, Key);
+		long OldLength = F.length();
+
+		DataOutputStream Out = null;
+		try {
+			if ( !Dir.exists() ) {
+				Dir.mkdirs();
+			}
+
+			Out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(F) ) );
+
+			Out.writeInt(FORMAT_VERSION);
+			Out.writeLong(E.StoredAt);
+			writeNullableString(Out, E.Charset);
+			writeNullableString(Out, E.ETag);
+			writeNullableString(Out, E.LastModified);
+			Out.writeInt(E.Body.length);
+			Out.write(E.Body);
+
+			Out.close();
+			Out = null;
+
+			Size += F.length() - OldLength;
+		} catch (IOException ex) {
+			Log.d("HTTPResponseCache - put", "Cannot store the response", ex);
+
+			close(Out);
+
+			if ( F.delete() ) {
+				Size -= OldLength;
+			}
+		}
+
+		trim();
+	}
+
+	/**
+	 * This method removes a response from the cache.
+	 *
+	 * @param Key	the key of the request
+	 */
+	public synchronized void remove(final String Key) {
+		File F = new File(Dir, Key);
+
+		long Length = F.length();
+		if ( F.delete() ) {
+			Size -= Length;
+		}
+	}
+
+	/**
+	 * This method removes all the cached responses.
+	 */
+	public synchronized void clear() {
+		File[] Files = Dir.listFiles();
+
+		if (null != Files) {
+			for (File F : Files) {
+				F.delete();
+			}
+		}
+
+		Size = 0;
+	}
+
+	/**
+	 * This method returns the number of requests served by the cache without
+	 * using the network.
+	 *
+	 * @return	the number of hits
+	 */
+	public int getHitCount() {
+		return Hits.get();
+	}
+
+	/**
+	 * This method returns the number of cached responses revalidated by the
+	 * server (i.e., the server has answered "304 Not Modified").
+	 *
+	 * @return	the number of conditional hits
+	 */
+	public int getConditionalHitCount() {
+		return ConditionalHits.get();
+	}
+
+	/**
+	 * This method returns the number of cacheable requests whose response has
+	 * been downloaded.
+	 *
+	 * @return	the number of misses
+	 */
+	public int getMissCount() {
+		return Misses.get();
+	}
+
+	/**
+	 * This method returns the current size of the cache.
+	 *
+	 * @return	the size of the cache (in bytes)
+	 */
+	public synchronized long getSize() {
+		return Size;
+	}
+
+	/**
+	 * This method returns a description of the cache usage, for diagnostics.
+	 *
+	 * @return	the description of the cache usage
+	 */
+	@Override
+	public String toString() {
+		return "HTTPResponseCache[hits=" + getHitCount() + ", conditional hits=" + getConditionalHitCount() +
+			   ", misses=" + getMissCount() + ", size=" + getSize() + "/" + MaxSize + "]";
+	}
+
+	/**
+	 * This method returns the key of a request: it's the hexadecimal SHA-1 digest
+	 * of the input description of the request, so it can be used as file name.
+	 *
+	 * @param Request	the description of the request (URI and arguments)
+	 *
+	 * @return	the key of the request
+	 */
+	public static String getKey(final String Request) {
+		try {
+			byte[] Digest = MessageDigest.getInstance("SHA-1").digest( Request.getBytes("UTF-8") );
+
+			StringBuilder Key = new StringBuilder(Digest.length * 2);
+			for (byte B : Digest) {
+				Key.append( HEX_DIGITS[(B >> 4) & 0x0F] ).append( HEX_DIGITS[B & 0x0F] );
+			}
+
+			return Key.toString();
+		} catch (NoSuchAlgorithmException ex) {
+			return Integer.toHexString( Request.hashCode() );
+		} catch (IOException ex) {
+			return Integer.toHexString( Request.hashCode() );
+		}
+	}
+
+
+	/**
+	 * This class represents a cached response.
+	 *
+	 * @author Andrea de Iacovo, and Eros Pedrini
+	 */
+	public static final class Entry {
+		/**
+		 * This method returns true if the response has been stored (or revalidated)
+		 * less than the input time ago.
+		 *
+		 * @param MaxAge	the maximum age of the response (in milliseconds)
+		 *
+		 * @return	true if the response is still fresh
+		 */
+		public boolean isFresh(final long MaxAge) {
+			long Age = System.currentTimeMillis() - StoredAt;
+
+			return 0 <= Age && Age < MaxAge;
+		}
+
+		/**
+		 * This method returns true if the response can be revalidated with a
+		 * conditional request.
+		 *
+		 * @return	true if the response has a validator
+		 */
+		public boolean hasValidators() {
+			return null != ETag || null != LastModified;
+		}
+
+		public byte[] Body			= null;
+		public String Charset		= null;
+		public String ETag			= null;
+		public String LastModified	= null;
+		public long StoredAt		= 0;
+	}
+
+
+	/**
+	 * This is the class constructor: it computes the current size of the cache.
+	 *
+	 * @param D			the directory of the cache
+	 * @param MaxSize	the maximum size of the cache (in bytes)
+	 */
+	private HTTPResponseCache(final File D, final long MaxSize) {
+		this.Dir = D;
+		this.MaxSize = MaxSize;
+
+		File[] Files = Dir.listFiles();
+		if (null != Files) {
+			for (File F : Files) {
+				Size += F.length();
+			}
+		}
+	}
+
+	/**
+	 * This method removes the least recently stored responses until the cache
+	 * fits its maximum size.
+	 */
+	private void trim() {
+		if (Size <= MaxSize) {
+			return;
+		}
+
+		File[] Files = Dir.listFiles();
+		if (null == Files) {
+			return;
+		}
+
+		Arrays.sort(Files, new Comparator<File>() {
+			public int compare(File F1, File F2) {
+				long M1 = F1.lastModified();
+				long M2 = F2.lastModified();
+
+				return (M1 < M2) ? -1 : ( (M1 == M2) ? 0 : 1 );
+			}
+		});
+
+		for (int i = 0; i < Files.length && Size > MaxSize; ++i) {
+			long Length = Files[i].length();
+
+			if ( Files[i].delete() ) {
+				Size -= Length;
+			}
+		}
+	}
+
+	private static String readNullableString(final DataInputStream In) throws IOException {
+		return In.readBoolean() ? In.readUTF() : null;
+	}
+
+	private static void writeNullableString(final DataOutputStream Out, final String S) throws IOException {
+		Out.writeBoolean(null != S);
+
+		if (null != S) {
+			Out.writeUTF(S);
+		}
+	}
+
+	private static void close(final Closeable C) {
+		if (null != C) {
+			try {
+				C.close();
+			} catch (IOException ex) {
+				// nothing to do
+			}
+		}
+	}
+
+
+	private static final int FORMAT_VERSION = 1;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static HTTPResponseCache Instance = null;
+
+	private final File Dir;
+	private final long MaxSize;
+	private long Size = 0;
+
+	// statistics
+	final AtomicInteger Hits = new AtomicInteger();
+	final AtomicInteger ConditionalHits = new AtomicInteger();
+	final AtomicInteger Misses = new AtomicInteger();
+}
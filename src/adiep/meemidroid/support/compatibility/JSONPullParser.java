@@ -0,0 +1,549 @@
+package adiep.meemidroid.support.compatibility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * This class is a streaming (pull) JSON parser: it reads the tokens one at a time
+ * directly from a {@link Reader}, so a document can be consumed without loading it
+ * into a String first. It's a light version of the android.util.JsonReader class,
+ * available only since Android 3.0 (API 11).
+ *
+ * The values that are not needed can be skipped with {@link #skipValue()}, while
+ * {@link #readValue()} builds the usual org.json objects for the parts of the
+ * document that are managed as a tree.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.2
+ */
+public class JSONPullParser implements Closeable {
+	/**
+	 * The kind of tokens returned by {@link JSONPullParser#peek()}.
+	 */
+	public enum Token {
+		BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+
+	/**
+	 * This is the class constructor.
+	 *
+	 * @param R	the reader containing the JSON document
+	 */
+	public JSONPullParser(Reader R) {
+		In = R;
+
+		push(EMPTY_DOCUMENT);
+	}
+
+	/**
+	 * This method returns the kind of the next token without consuming it.
+	 *
+	 * @return	the kind of the next token
+	 *
+	 * @throws IOException if the document is malformed or can not be read
+	 */
+	public Token peek() throws IOException {
+		if (null != Peeked) {
+			return Peeked;
+		}
+
+		switch ( Stack[StackSize - 1] ) {
+		case EMPTY_DOCUMENT:
+			replaceTop(NONEMPTY_DOCUMENT);
+			return nextValue();
+		case EMPTY_ARRAY:
+			return nextInArray(true);
+		case NONEMPTY_ARRAY:
+			return nextInArray(false);
+		case EMPTY_OBJECT:
+			return nextInObject(true);
+		case DANGLING_NAME:
+			return objectValue();
+		case NONEMPTY_OBJECT:
+			return nextInObject(false);
+		default:
+			if ( -1 != nextNonWhitespace(false) ) {
+				throw syntaxError("Expected the end of the document");
+			}
+
+			return Peeked = Token.END_DOCUMENT;
+		}
+	}
+
+	/**
+	 * This method returns true if the current array or object has another element.
+	 *
+	 * @return	true if the current array or object has another element
+	 *
+	 * @throws IOException if the document is malformed or can not be read
+	 */
+	public boolean hasNext() throws IOException {
+		Token T = peek();
+
+		return Token.END_OBJECT != T && Token.END_ARRAY != T && Token.END_DOCUMENT != T;
+	}
+
+	/**
+	 * This method consumes the beginning of an array.
+	 *
+	 * @throws IOException if the next token is not the beginning of an array
+	 */
+	public void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+	}
+
+	/**
+	 * This method consumes the end of the current array.
+	 *
+	 * @throws IOException if the next token is not the end of an array
+	 */
+	public void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+	}
+
+	/**
+	 * This method consumes the beginning of an object.
+	 *
+	 * @throws IOException if the next token is not the beginning of an object
+	 */
+	public void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+	}
+
+	/**
+	 * This method consumes the end of the current object.
+	 *
+	 * @throws IOException if the next token is not the end of an object
+	 */
+	public void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+	}
+
+	/**
+	 * This method consumes the next property name.
+	 *
+	 * @return	the property name
+	 *
+	 * @throws IOException if the next token is not a property name
+	 */
+	public String nextName() throws IOException {
+		expect(Token.NAME);
+
+		return Value;
+	}
+
+	/**
+	 * This method consumes the next string, number or boolean value and returns
+	 * it as a String.
+	 *
+	 * @return	the value as String
+	 *
+	 * @throws IOException if the next token is not a string, a number or a boolean
+	 */
+	public String nextString() throws IOException {
+		Token T = peek();
+
+		if (Token.STRING != T && Token.NUMBER != T && Token.BOOLEAN != T) {
+			throw new IOException("Expected a string but was " + T);
+		}
+
+		Peeked = null;
+
+		return Value;
+	}
+
+	/**
+	 * This method consumes the next value, whatever it is, and returns it as a
+	 * String in the same way {@link JSONObject#getString(String)} does: i.e., null
+	 * becomes "null" and the arrays and objects become their JSON text.
+	 *
+	 * @return	the value as String
+	 *
+	 * @throws IOException if the document is malformed or can not be read
+	 */
+	public String nextValueAsString() throws IOException {
+		switch ( peek() ) {
+		case NULL:
+			Peeked = null;
+			return "null";
+		case BEGIN_ARRAY:
+		case BEGIN_OBJECT:
+			return readValue().toString();
+		default:
+			return nextString();
+		}
+	}
+
+	/**
+	 * This method skips the next value, recursively for arrays and objects.
+	 *
+	 * @throws IOException if the document is malformed or can not be read
+	 */
+	public void skipValue() throws IOException {
+		int Depth = 0;
+
+		do {
+			switch ( peek() ) {
+			case BEGIN_ARRAY:
+			case BEGIN_OBJECT:
+				++Depth;
+				break;
+			case END_ARRAY:
+			case END_OBJECT:
+				--Depth;
+				break;
+			case END_DOCUMENT:
+				throw syntaxError("Unexpected end of the document");
+			default:
+				// names and scalar values
+			}
+
+			Peeked = null;
+		} while (0 != Depth);
+	}
+
+	/**
+	 * This method consumes the next value and returns it as an org.json object:
+	 * a {@link JSONObject}, a {@link JSONArray}, a String, a Boolean, a Number or
+	 * {@link JSONObject#NULL}.
+	 *
+	 * @return	the next value
+	 *
+	 * @throws IOException if the document is malformed or can not be read
+	 */
+	public Object readValue() throws IOException {
+		try {
+			switch ( peek() ) {
+			case BEGIN_OBJECT:
+				JSONObject O = new JSONObject();
+
+				beginObject();
+				while ( hasNext() ) {
+					String Name = nextName();
+					O.put( Name, readValue() );
+				}
+				endObject();
+
+				return O;
+			case BEGIN_ARRAY:
+				JSONArray A = new JSONArray();
+
+				beginArray();
+				while ( hasNext() ) {
+					A.put( readValue() );
+				}
+				endArray();
+
+				return A;
+			case NUMBER:
+				return toNumber( nextString() );
+			case BOOLEAN:
+				return Boolean.valueOf( nextString() );
+			case NULL:
+				Peeked = null;
+				return JSONObject.NULL;
+			case STRING:
+				return nextString();
+			default:
+				throw syntaxError( "Unexpected " + peek() );
+			}
+		} catch (JSONException ex) {
+			throw syntaxError( ex.getMessage() );
+		}
+	}
+
+	/**
+	 * This method closes the underlying reader.
+	 */
+	public void close() throws IOException {
+		Peeked = null;
+		StackSize = 0;
+
+		In.close();
+	}
+
+
+	private void expect(final Token Expected) throws IOException {
+		Token T = peek();
+
+		if (Expected != T) {
+			throw new IOException("Expected " + Expected + " but was " + T);
+		}
+
+		Peeked = null;
+	}
+
+	private Token nextInArray(final boolean First) throws IOException {
+		if (First) {
+			replaceTop(NONEMPTY_ARRAY);
+		} else {
+			int C = nextNonWhitespace(true);
+
+			if (']' == C) {
+				--StackSize;
+				return Peeked = Token.END_ARRAY;
+			} else if (',' != C) {
+				throw syntaxError("Unterminated array");
+			}
+		}
+
+		int C = nextNonWhitespace(true);
+
+		if (First && ']' == C) {
+			--StackSize;
+			return Peeked = Token.END_ARRAY;
+		}
+
+		--Pos;
+
+		return nextValue();
+	}
+
+	private Token nextInObject(final boolean First) throws IOException {
+		int C = nextNonWhitespace(true);
+
+		if ('}' == C) {
+			--StackSize;
+			return Peeked = Token.END_OBJECT;
+		}
+
+		if (!First) {
+			if (',' != C) {
+				throw syntaxError("Unterminated object");
+			}
+
+			C = nextNonWhitespace(true);
+		}
+
+		if ('"' != C) {
+			throw syntaxError("Expected a name");
+		}
+
+		Value = readString();
+		replaceTop(DANGLING_NAME);
+
+		return Peeked = Token.NAME;
+	}
+
+	private Token objectValue() throws IOException {
+		if ( ':' != nextNonWhitespace(true) ) {
+			throw syntaxError("Expected ':'");
+		}
+
+		replaceTop(NONEMPTY_OBJECT);
+
+		return nextValue();
+	}
+
+	private Token nextValue() throws IOException {
+		int C = nextNonWhitespace(true);
+
+		switch (C) {
+		case '{':
+			push(EMPTY_OBJECT);
+			return Peeked = Token.BEGIN_OBJECT;
+		case '[':
+			push(EMPTY_ARRAY);
+			return Peeked = Token.BEGIN_ARRAY;
+		case '"':
+			Value = readString();
+			return Peeked = Token.STRING;
+		default:
+			--Pos;
+			return readLiteral();
+		}
+	}
+
+	private Token readLiteral() throws IOException {
+		Builder.setLength(0);
+
+		while ( Pos < Limit || fill() ) {
+			char C = Buffer[Pos];
+
+			if ( isLiteralEnd(C) ) {
+				break;
+			}
+
+			Builder.append(C);
+			++Pos;
+		}
+
+		Value = Builder.toString();
+
+		if ( "true".equals(Value) || "false".equals(Value) ) {
+			return Peeked = Token.BOOLEAN;
+		} else if ( "null".equals(Value) ) {
+			return Peeked = Token.NULL;
+		} else if ( 0 != Value.length() && ( '-' == Value.charAt(0) || Character.isDigit( Value.charAt(0) ) ) ) {
+			return Peeked = Token.NUMBER;
+		}
+
+		throw syntaxError("Unexpected value '" + Value + "'");
+	}
+
+	private String readString() throws IOException {
+		Builder.setLength(0);
+
+		while (true) {
+			int Start = Pos;
+
+			while (Pos < Limit) {
+				char C = Buffer[Pos++];
+
+				if ('"' == C) {
+					Builder.append(Buffer, Start, Pos - Start - 1);
+					return Builder.toString();
+				} else if ('\\' == C) {
+					Builder.append(Buffer, Start, Pos - Start - 1);
+					Builder.append( readEscapeCharacter() );
+					Start = Pos;
+				}
+			}
+
+			Builder.append(Buffer, Start, Pos - Start);
+
+			if ( !fill() ) {
+				throw syntaxError("Unterminated string");
+			}
+		}
+	}
+
+	private char readEscapeCharacter() throws IOException {
+		char C = nextChar();
+
+		switch (C) {
+		case 'u':
+			int Code = 0;
+			for (int i = 0; i < 4; ++i) {
+				int Digit = Character.digit(nextChar(), 16);
+
+				if (-1 == Digit) {
+					throw syntaxError("Malformed unicode escape");
+				}
+
+				Code = (Code << 4) + Digit;
+			}
+			return (char)Code;
+		case 'b':	return '\b';
+		case 'f':	return '\f';
+		case 'n':	return '\n';
+		case 'r':	return '\r';
+		case 't':	return '\t';
+		default:	return C;	// '"', '\\', '/'
+		}
+	}
+
+	private char nextChar() throws IOException {
+		if ( Pos == Limit && !fill() ) {
+			throw syntaxError("Unterminated escape sequence");
+		}
+
+		return Buffer[Pos++];
+	}
+
+	private int nextNonWhitespace(final boolean ThrowOnEOF) throws IOException {
+		while ( Pos < Limit || fill() ) {
+			char C = Buffer[Pos++];
+
+			if (' ' != C && '\n' != C && '\r' != C && '\t' != C) {
+				return C;
+			}
+		}
+
+		if (ThrowOnEOF) {
+			throw syntaxError("Unexpected end of the document");
+		}
+
+		return -1;
+	}
+
+	/* Note that the buffer is refilled only when it's fully consumed, so the
+	 * last read character is always available at Pos - 1.
+	 */
+	private boolean fill() throws IOException {
+		Pos = 0;
+		Limit = 0;
+
+		int Read = In.read(Buffer, 0, Buffer.length);
+
+		if (0 < Read) {
+			Limit = Read;
+			return true;
+		}
+
+		return false;
+	}
+
+	private void push(final int Scope) {
+		if (Stack.length == StackSize) {
+			int[] NewStack = new int[StackSize * 2];
+			System.arraycopy(Stack, 0, NewStack, 0, StackSize);
+			Stack = NewStack;
+		}
+
+		Stack[StackSize++] = Scope;
+	}
+
+	private void replaceTop(final int Scope) {
+		Stack[StackSize - 1] = Scope;
+	}
+
+	private IOException syntaxError(final String Message) {
+		return new IOException(Message + " (JSON syntax error)");
+	}
+
+	private static boolean isLiteralEnd(final char C) {
+		return ',' == C || ':' == C || ']' == C || '}' == C || ' ' == C || '\n' == C || '\r' == C || '\t' == C;
+	}
+
+	private Object toNumber(final String N) throws IOException {
+		try {
+			long L = Long.parseLong(N);
+
+			if (Integer.MIN_VALUE <= L && L <= Integer.MAX_VALUE) {
+				return Integer.valueOf( (int)L );
+			}
+
+			return Long.valueOf(L);
+		} catch (NumberFormatException ex) {
+			// not an integer
+		}
+
+		try {
+			return Double.valueOf(N);
+		} catch (NumberFormatException ex) {
+			throw syntaxError( "Malformed number " + N );
+		}
+	}
+
+
+	// scopes of the parser stack
+	private static final int EMPTY_ARRAY		= 1;
+	private static final int NONEMPTY_ARRAY		= 2;
+	private static final int EMPTY_OBJECT		= 3;
+	private static final int DANGLING_NAME		= 4;
+	private static final int NONEMPTY_OBJECT	= 5;
+	private static final int EMPTY_DOCUMENT		= 6;
+	private static final int NONEMPTY_DOCUMENT	= 7;
+
+	private static final int BUFFER_SIZE = 2048;
+
+	private final Reader In;
+	private final char[] Buffer = new char[BUFFER_SIZE];
+	private int Pos = 0;
+	private int Limit = 0;
+
+	private int[] Stack = new int[16];
+	private int StackSize = 0;
+
+	private Token Peeked = null;
+	private String Value = null;
+
+	private final StringBuilder Builder = new StringBuilder();
+}
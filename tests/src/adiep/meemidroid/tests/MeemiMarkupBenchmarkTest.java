@@ -0,0 +1,254 @@
+package adiep.meemidroid.tests;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+import android.util.Base64;
+import android.util.Log;
+import adiep.meemidroid.MeemiMarkup;
+
+/**
+ * This class measures {@link MeemiMarkup} against the previous compilation of the
+ * messages (a chain of regular expressions, where the links and the urls were
+ * protected from the ScreenNames replacement by encoding them in Base64), copied
+ * below as it was.
+ *
+ * The messages are built as the ones of a long lifestream: each block holds a
+ * ScreenName, a link with a ScreenName in its text and a url with a '@' in its path.
+ * Before the timings, the tests check that both the compilations give the same output;
+ * the timings are written to the log (tag "MeemiMarkupBenchmarkTest").
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.1
+ */
+public class MeemiMarkupBenchmarkTest extends TestCase {
+	/**
+	 * This method checks that {@link MeemiMarkup} compiles the measured messages as
+	 * the previous chain.
+	 */
+	public void testSameOutput() {
+		for (int Blocks : BLOCKS) {
+			String Msg = buildMessage(Blocks);
+			
+			assertEquals( legacyToHTML(Msg), MeemiMarkup.toHTML(Msg) );
+			assertEquals( legacyToCleanText(Msg), MeemiMarkup.toCleanText(Msg) );
+		}
+	}
+	
+	/**
+	 * This method times the compilation of the messages to HTML.
+	 */
+	public void testToHTMLTiming() {
+		for (int Blocks : BLOCKS) {
+			String Msg = buildMessage(Blocks);
+			
+			for (int r = 0; r < ROUNDS; ++r) {
+				long T0 = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; ++i) {
+					legacyToHTML(Msg);
+				}
+				
+				long T1 = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; ++i) {
+					MeemiMarkup.toHTML(Msg);
+				}
+				long T2 = System.nanoTime();
+				
+				Log.i("MeemiMarkupBenchmarkTest - testToHTMLTiming", "length " + Msg.length() + ": previous " + (T1 - T0) / ITERATIONS / 1000 + "us, MeemiMarkup " + (T2 - T1) / ITERATIONS / 1000 + "us");
+			}
+		}
+	}
+	
+	/**
+	 * This method times the compilation of the messages to clean text.
+	 */
+	public void testToCleanTextTiming() {
+		for (int Blocks : BLOCKS) {
+			String Msg = buildMessage(Blocks);
+			
+			for (int r = 0; r < ROUNDS; ++r) {
+				long T0 = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; ++i) {
+					legacyToCleanText(Msg);
+				}
+				
+				long T1 = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; ++i) {
+					MeemiMarkup.toCleanText(Msg);
+				}
+				long T2 = System.nanoTime();
+				
+				Log.i("MeemiMarkupBenchmarkTest - testToCleanTextTiming", "length " + Msg.length() + ": previous " + (T1 - T0) / ITERATIONS / 1000 + "us, MeemiMarkup " + (T2 - T1) / ITERATIONS / 1000 + "us");
+			}
+		}
+	}
+	
+	
+	/**
+	 * This method builds a message with the given number of blocks.
+	 * 
+	 * @param Blocks	the number of blocks
+	 * 
+	 * @return	the message
+	 */
+	private static String buildMessage(final int Blocks) {
+		StringBuilder Msg = new StringBuilder();
+		
+		for (int i = 0; i < Blocks; ++i) {
+			Msg.append("ciao @utente").append(i).append(" **ecco**");
+			Msg.append(" vedi [l:http://meemi.com/p/").append(i).append("|post @nome").append(i).append(']');
+			Msg.append(" e http://x.com/@abcdef").append(i).append(" fine\n");
+		}
+		
+		return Msg.toString();
+	}
+	
+	/**
+	 * This method is the previous compilation of a message to clean text.
+	 */
+	private static String legacyToCleanText(final String Meemi) {
+		String CleanMeemi = "";
+		
+		// strange (and dangerous) chars... 
+		CleanMeemi = Meemi.replaceAll("%", "&#037;");
+		
+		// carriage return
+		CleanMeemi = CleanMeemi.replaceAll("(\\r\\n|\\n|\\r)", " ");
+		
+		// Bold		
+		CleanMeemi = CleanMeemi.replaceAll("\\[b\\](.*?)\\[/b\\]", "<b>$1</b>");
+		CleanMeemi = CleanMeemi.replaceAll("\\*\\*(.*?)\\*\\*", "<b>$1</b>");
+		
+		// Italic
+		CleanMeemi = CleanMeemi.replaceAll("<em>(.*?)</em>", "<i>$1</i>");
+		CleanMeemi = CleanMeemi.replaceAll("\\[i\\](.*?)\\[/i\\]", "<i>$1</i>");
+		CleanMeemi = CleanMeemi.replaceAll("__(.*?)__", "<i>$1</i>");
+		
+		// Underline
+		CleanMeemi = CleanMeemi.replaceAll("\\[u\\](.*?)\\[/u\\]", "<u>$1</u>");
+		
+		// Stroke
+		CleanMeemi = CleanMeemi.replaceAll("\\[del\\](.*?)\\[/del\\]", "<del>$1</del>");
+		
+		// Quote
+		CleanMeemi = CleanMeemi.replaceAll("\\[quote\\](.*?)\\[/quote\\]", "$1");
+		
+		// Code
+		CleanMeemi = CleanMeemi.replaceAll("\\[code\\](.*?)\\[/code\\]", "$1");
+		
+		// Link
+		CleanMeemi = CleanMeemi.replaceAll("\\[l:([^\\|]*?)\\|([^\\]]*?)\\]", "<i>$2</i>");
+		
+		// ScreenName 
+		CleanMeemi = CleanMeemi.replaceAll("\\@(\\w{5,})", " <i>@$1</i>");
+		
+		return CleanMeemi;
+	}
+	
+	/**
+	 * This method is the previous compilation of a message to HTML.
+	 */
+	private static String legacyToHTML(final String Meemi) {
+		String HTML = "";
+		
+		// strange (and dangerous) chars... 
+		HTML = Meemi.replaceAll("%", "&#037;");
+		
+		// carriage return
+		HTML = HTML.replaceAll("(\\r\\n|\\n|\\r)", "<br />");
+		
+		// Bold		
+		HTML = HTML.replaceAll("\\[b\\](.*?)\\[/b\\]", "<b>$1</b>");
+		HTML = HTML.replaceAll("\\*\\*(.*?)\\*\\*", "<b>$1</b>");
+		
+		// Italic
+		HTML = HTML.replaceAll("<em>(.*?)</em>", "<i>$1</i>");
+		HTML = HTML.replaceAll("\\[i\\](.*?)\\[/i\\]", "<i>$1</i>");
+		HTML = HTML.replaceAll("__(.*?)__", "<i>$1</i>");
+		
+		// Underline
+		HTML = HTML.replaceAll("\\[u\\](.*?)\\[/u\\]", "<u>$1</u>");
+		
+		// Stroke
+		HTML = HTML.replaceAll("\\[del\\](.*?)\\[/del\\]", "<del>$1</del>");
+		
+		// Quote
+		HTML = HTML.replaceAll("\\[quote\\](.*?)\\[/quote\\]", "<blockquote>$1</blockquote>");
+		
+		// Code
+		HTML = HTML.replaceAll("\\[code\\](.*?)\\[/code\\]", "<pre><code>$1</code></pre>");
+		
+		// forward transformation to resolve ScreenName problem
+		HTML = legacyEncodeParts(HTML, "\\[l:([^\\|]*?)\\|([^\\]]*?)\\]");
+		HTML = legacyEncodeParts(HTML, "(?<!href=\")(http|https|ftp|mailto)://([\\S&&[^<;|]]+)");
+		
+		// ScreenName
+		HTML = HTML.replaceAll("\\@(\\w{5,})", " <a class=\"link\" onClick=\"window.account.clickOnAccount('$1')\" href='#'>@$1</a>");
+		
+		// backward transformation
+		HTML = legacyDecodeParts(HTML, "\\{mds:([^\\}]*?)\\}");
+		
+		// Link
+		HTML = HTML.replaceAll("\\[l:([^\\|]*?)\\|([^\\]]*?)\\]", "<a class=\"link\" href=\"$1\" title=\"go to $2\">$2</a>");
+		
+		// HTML urls
+		HTML = HTML.replaceAll("(?<!href=\")(http|https|ftp|mailto)://([\\S&&[^<;|]]+)", "<a class=\"link\" href=\"$1://$2\" title=\"go to $2\">$2</a>" );
+		
+		return HTML;
+	}
+	
+	/**
+	 * This method encodes the parts of a message as the previous compilation did.
+	 */
+	private static String legacyEncodeParts(final String Msg, final String RegEx) {
+		Pattern P = Pattern.compile(RegEx, Pattern.CASE_INSENSITIVE);
+			
+		String R = "";
+		
+		Matcher M = P.matcher(Msg);
+		int LastIndex = 0;
+		while ( M.find() ) {
+			R += Msg.substring(LastIndex, M.start()) + "{mds:";
+			
+			String Part2Encode = Msg.substring(M.start(), M.end());
+			R += Base64.encodeToString(Part2Encode.getBytes(), Base64.DEFAULT);
+			
+			R += "}";
+			
+			LastIndex = M.end();
+		}
+		R += Msg.substring(LastIndex);
+		
+		return R;
+	}
+	
+	/**
+	 * This method decodes the parts of a message as the previous compilation did.
+	 */
+	private static String legacyDecodeParts(final String Msg, final String RegEx) {
+		Pattern P = Pattern.compile(RegEx, Pattern.CASE_INSENSITIVE);
+			
+		String R = "";
+		
+		Matcher M = P.matcher(Msg);
+		int LastIndex = 0;
+		while ( M.find() ) {
+			R += Msg.substring(LastIndex, M.start());
+			
+			String Part2Decode = Msg.substring(M.start()+5, M.end()-1);
+			R += new String( Base64.decode(Part2Decode, Base64.DEFAULT) );
+			
+			LastIndex = M.end();
+		}
+		R += Msg.substring(LastIndex);
+		
+		return R;
+	}
+	
+	
+	// the number of blocks of the measured messages
+	private static final int[] BLOCKS = { 50, 200 };
+	private static final int ROUNDS = 5;
+	private static final int ITERATIONS = 20;
+}
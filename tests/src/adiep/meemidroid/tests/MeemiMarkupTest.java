@@ -0,0 +1,335 @@
+package adiep.meemidroid.tests;
+
+import junit.framework.TestCase;
+import adiep.meemidroid.MeemiMarkup;
+
+/**
+ * This class checks the compilation of the messages in Meemi format against a table of
+ * golden outputs.
+ *
+ * The outputs of the GOLDEN table were produced by the previous chain of regular
+ * expressions (the one replaced by {@link MeemiMarkup}), so the table guarantees that the
+ * messages are still rendered as before. The FIXED table collects the few messages that
+ * the previous chain rendered as malformed HTML, with the output expected now.
+ *
+ * @author Andrea de Iacovo, and Eros Pedrini
+ * @version 0.1
+ */
+public class MeemiMarkupTest extends TestCase {
+	/**
+	 * This method checks the HTML version of the golden messages.
+	 */
+	public void testToHTML() {
+		checkHTML(GOLDEN);
+	}
+
+	/**
+	 * This method checks the clean version of the golden messages.
+	 */
+	public void testToCleanText() {
+		checkCleanText(GOLDEN);
+	}
+
+	/**
+	 * This method checks the messages that the previous chain of regular expressions
+	 * rendered as malformed HTML.
+	 */
+	public void testFixedMessages() {
+		checkHTML(FIXED);
+		checkCleanText(FIXED);
+	}
+
+
+	/**
+	 * This method compares the HTML version of each message of a table with the
+	 * expected one.
+	 *
+	 * @param Table	the table of { message, HTML, clean text }
+	 */
+	private static void checkHTML(final String[][] Table) {
+		for (String[] Row : Table) {
+			assertEquals("toHTML(" + Row[0] + ")", Row[1], MeemiMarkup.toHTML(Row[0]));
+		}
+	}
+
+	/**
+	 * This method compares the clean version of each message of a table with the
+	 * expected one.
+	 *
+	 * @param Table	the table of { message, HTML, clean text }
+	 */
+	private static void checkCleanText(final String[][] Table) {
+		for (String[] Row : Table) {
+			assertEquals("toCleanText(" + Row[0] + ")", Row[2], MeemiMarkup.toCleanText(Row[0]));
+		}
+	}
+
+
+	private static final String[][] GOLDEN = {
+		{ "",
+		  "",
+		  "" },
+		{ "ciao a tutti",
+		  "ciao a tutti",
+		  "ciao a tutti" },
+		{ "ciao @capobecchino come va?",
+		  "ciao  <a class=\"link\" onClick=\"window.account.clickOnAccount('capobecchino')\" href='#'>@capobecchino</a> come va?",
+		  "ciao  <i>@capobecchino</i> come va?" },
+		{ "@abc troppo corto",
+		  "@abc troppo corto",
+		  "@abc troppo corto" },
+		{ "[b]grassetto[/b] e **anche** questo",
+		  "<b>grassetto</b> e <b>anche</b> questo",
+		  "<b>grassetto</b> e <b>anche</b> questo" },
+		{ "__corsivo__ e [i]corsivo[/i] e <em>enfasi</em>",
+		  "<i>corsivo</i> e <i>corsivo</i> e <i>enfasi</i>",
+		  "<i>corsivo</i> e <i>corsivo</i> e <i>enfasi</i>" },
+		{ "[u]sotto[/u] [del]barrato[/del]",
+		  "<u>sotto</u> <del>barrato</del>",
+		  "<u>sotto</u> <del>barrato</del>" },
+		{ "[quote]citazione @someone12[/quote] ok",
+		  "<blockquote>citazione  <a class=\"link\" onClick=\"window.account.clickOnAccount('someone12')\" href='#'>@someone12</a></blockquote> ok",
+		  "citazione  <i>@someone12</i> ok" },
+		{ "[code]int x = 0;[/code]",
+		  "<pre><code>int x = 0;</code></pre>",
+		  "int x = 0;" },
+		{ "guarda http://meemi.com/capobecchino/123 bello",
+		  "guarda <a class=\"link\" href=\"http://meemi.com/capobecchino/123\" title=\"go to meemi.com/capobecchino/123\">meemi.com/capobecchino/123</a> bello",
+		  "guarda http://meemi.com/capobecchino/123 bello" },
+		{ "vedi [l:http://meemi.com|Meemi] e @pippo_pluto",
+		  "vedi <a class=\"link\" href=\"http://meemi.com\" title=\"go to Meemi\">Meemi</a> e  <a class=\"link\" onClick=\"window.account.clickOnAccount('pippo_pluto')\" href='#'>@pippo_pluto</a>",
+		  "vedi <i>Meemi</i> e  <i>@pippo_pluto</i>" },
+		{ "sconto del 50% su http://x.com/a%20b ok",
+		  "sconto del 50&#037; su <a class=\"link\" href=\"http://x.com/a&#037\" title=\"go to x.com/a&#037\">x.com/a&#037</a>;20b ok",
+		  "sconto del 50&#037; su http://x.com/a&#037;20b ok" },
+		{ "riga1\nriga2\r\nriga3\rriga4",
+		  "riga1<br />riga2<br />riga3<br />riga4",
+		  "riga1 riga2 riga3 riga4" },
+		{ "link https://www.google.it/search?q=a&b=c;d|e fine",
+		  "link <a class=\"link\" href=\"https://www.google.it/search?q=a&b=c\" title=\"go to www.google.it/search?q=a&b=c\">www.google.it/search?q=a&b=c</a>;d|e fine",
+		  "link https://www.google.it/search?q=a&b=c;d|e fine" },
+		{ "mail mailto://a@bcdefg.com e ftp://ftp.x.org/file.zip",
+		  "mail <a class=\"link\" href=\"mailto://a@bcdefg.com\" title=\"go to a@bcdefg.com\">a@bcdefg.com</a> e <a class=\"link\" href=\"ftp://ftp.x.org/file.zip\" title=\"go to ftp.x.org/file.zip\">ftp.x.org/file.zip</a>",
+		  "mail mailto://a <i>@bcdefg</i>.com e ftp://ftp.x.org/file.zip" },
+		{ "email pippo@pluto12.com",
+		  "email pippo <a class=\"link\" onClick=\"window.account.clickOnAccount('pluto12')\" href='#'>@pluto12</a>.com",
+		  "email pippo <i>@pluto12</i>.com" },
+		{ "[b]non chiuso",
+		  "[b]non chiuso",
+		  "[b]non chiuso" },
+		{ "**a**b**c**",
+		  "<b>a</b>b<b>c</b>",
+		  "<b>a</b>b<b>c</b>" },
+		{ "***x***",
+		  "<b>*x</b>*",
+		  "<b>*x</b>*" },
+		{ "[b]a [i]b[/b] c[/i]",
+		  "<b>a <i>b</b> c</i>",
+		  "<b>a <i>b</b> c</i>" },
+		{ "[l:http://a.com|[b]grassetto[/b] link]",
+		  "<a class=\"link\" href=\"http://a.com\" title=\"go to <b>grassetto</b> link\"><b>grassetto</b> link</a>",
+		  "<i><b>grassetto</b> link</i>" },
+		{ "<a href=\"http://x.com\">http://x.com</a>",
+		  "<a href=\"http://x.com\"><a class=\"link\" href=\"http://x.com\" title=\"go to x.com\">x.com</a></a>",
+		  "<a href=\"http://x.com\">http://x.com</a>" },
+		{ "HTTP://UPPER.COM @upper_case",
+		  "HTTP://UPPER.COM  <a class=\"link\" onClick=\"window.account.clickOnAccount('upper_case')\" href='#'>@upper_case</a>",
+		  "HTTP://UPPER.COM  <i>@upper_case</i>" },
+		{ "[L:http://a.com|maiuscolo]",
+		  "[L:<a class=\"link\" href=\"http://a.com\" title=\"go to a.com\">a.com</a>|maiuscolo]",
+		  "[L:http://a.com|maiuscolo]" },
+		{ "@abcdehttp://x.com",
+		  " <a class=\"link\" onClick=\"window.account.clickOnAccount('abcde')\" href='#'>@abcde</a><a class=\"link\" href=\"http://x.com\" title=\"go to x.com\">x.com</a>",
+		  " <i>@abcdehttp</i>://x.com" },
+		{ "testo @utente1, @utente2 e @utente3!",
+		  "testo  <a class=\"link\" onClick=\"window.account.clickOnAccount('utente1')\" href='#'>@utente1</a>,  <a class=\"link\" onClick=\"window.account.clickOnAccount('utente2')\" href='#'>@utente2</a> e  <a class=\"link\" onClick=\"window.account.clickOnAccount('utente3')\" href='#'>@utente3</a>!",
+		  "testo  <i>@utente1</i>,  <i>@utente2</i> e  <i>@utente3</i>!" },
+		{ "http://x.com/[b]y[/b]z",
+		  "<a class=\"link\" href=\"http://x.com/\" title=\"go to x.com/\">x.com/</a><b>y</b>z",
+		  "http://x.com/<b>y</b>z" },
+		{ "__a__b__",
+		  "<i>a</i>b__",
+		  "<i>a</i>b__" },
+		{ "multi\n[b]riga\nbold[/b]",
+		  "multi<br /><b>riga<br />bold</b>",
+		  "multi <b>riga bold</b>" },
+		{ "[quote]uno[/quote][quote]due[/quote]",
+		  "<blockquote>uno</blockquote><blockquote>due</blockquote>",
+		  "unodue" },
+		{ "@abc[quote]de[/quote] unito",
+		  "@abc<blockquote>de</blockquote> unito",
+		  " <i>@abcde</i> unito" },
+		{ "[l:a|b] [l:c|d]",
+		  "<a class=\"link\" href=\"a\" title=\"go to b\">b</a> <a class=\"link\" href=\"c\" title=\"go to d\">d</a>",
+		  "<i>b</i> <i>d</i>" },
+		{ "[l:a|b",
+		  "[l:a|b",
+		  "[l:a|b" },
+		{ "[l:a b] | c]",
+		  "<a class=\"link\" href=\"a b] \" title=\"go to  c\"> c</a>",
+		  "<i> c</i>" },
+		{ "foto: http://meemi.com/i/abc.jpg\n@capobecchino guarda",
+		  "foto: <a class=\"link\" href=\"http://meemi.com/i/abc.jpg\" title=\"go to meemi.com/i/abc.jpg\">meemi.com/i/abc.jpg</a><br /> <a class=\"link\" onClick=\"window.account.clickOnAccount('capobecchino')\" href='#'>@capobecchino</a> guarda",
+		  "foto: http://meemi.com/i/abc.jpg  <i>@capobecchino</i> guarda" },
+		{ "100% d'accordo con @capobecchino!!!",
+		  "100&#037; d'accordo con  <a class=\"link\" onClick=\"window.account.clickOnAccount('capobecchino')\" href='#'>@capobecchino</a>!!!",
+		  "100&#037; d'accordo con  <i>@capobecchino</i>!!!" },
+		{ "ciao [b]x [/b] [b]y[/b]",
+		  "ciao <b>x </b> <b>y</b>",
+		  "ciao <b>x </b> <b>y</b>" },
+		{ "riga\u2028separata [b]a\u2028b[/b]",
+		  "riga\u2028separata [b]a\u2028b[/b]",
+		  "riga\u2028separata [b]a\u2028b[/b]" },
+		{ "[b][/b]****____",
+		  "<b></b><b></b><i></i>",
+		  "<b></b><b></b><i></i>" },
+		{ "[i]@capobecchino[/i] e **@pippo_pluto**",
+		  "<i> <a class=\"link\" onClick=\"window.account.clickOnAccount('capobecchino')\" href='#'>@capobecchino</a></i> e <b> <a class=\"link\" onClick=\"window.account.clickOnAccount('pippo_pluto')\" href='#'>@pippo_pluto</a></b>",
+		  "<i> <i>@capobecchino</i></i> e <b> <i>@pippo_pluto</i></b>" },
+		{ "href=\"http://x.com\" senza tag",
+		  "href=\"http://x.com\" senza tag",
+		  "href=\"http://x.com\" senza tag" },
+		{ "[code][b]non[/b] interpretato?[/code]",
+		  "<pre><code><b>non</b> interpretato?</code></pre>",
+		  "<b>non</b> interpretato?" },
+		{ "@x[code]\n>",
+		  "@x[code]<br />>",
+		  "@x[code] >" },
+		{ "[b]http://abcdemailto://href=\"HTTP://",
+		  "[b]<a class=\"link\" href=\"http://abcdemailto://href=\"HTTP://\" title=\"go to abcdemailto://href=\"HTTP://\">abcdemailto://href=\"HTTP://</a>",
+		  "[b]http://abcdemailto://href=\"HTTP://" },
+		{ "[b]1[l:[/i]ABCDE.|[u][quote]",
+		  "[b]1<a class=\"link\" href=\"[/i]ABCDE.\" title=\"go to [u\">[u</a>[quote]",
+		  "[b]1<i>[u</i>[quote]" },
+		{ "mailto://<mailto://[L:[i]\u0085[del]mailto://<em>_[/b][l:/",
+		  "mailto://<<a class=\"link\" href=\"mailto://[L:[i]\u0085[del]mailto://\" title=\"go to [L:[i]\u0085[del]mailto://\">[L:[i]\u0085[del]mailto://</a><em>_[/b][l:/",
+		  "mailto://<mailto://[L:[i]\u0085[del]mailto://<em>_[/b][l:/" },
+		{ "1[u]]**",
+		  "1[u]]**",
+		  "1[u]]**" },
+		{ "[L:;;xy{[/b]HTTP://ftp://ABCDE%\u2028</em>mailto://",
+		  "[L:;;xy{[/b]HTTP://<a class=\"link\" href=\"ftp://ABCDE&#037\" title=\"go to ABCDE&#037\">ABCDE&#037</a>;\u2028</em>mailto://",
+		  "[L:;;xy{[/b]HTTP://ftp://ABCDE&#037;\u2028</em>mailto://" },
+		{ "[/u][i]@[L:[/quote]%\u0085_[L:[/b]];",
+		  "[/u][i]@[L:[/quote]&#037;\u0085_[L:[/b]];",
+		  "[/u][i]@[L:[/quote]&#037;\u0085_[L:[/b]];" },
+		{ ";[/u]<[/u]\n",
+		  ";[/u]<[/u]<br />",
+		  ";[/u]<[/u] " },
+		{ "https://__1</em>[u][i]1[del][quote]\n_abcde.",
+		  "<a class=\"link\" href=\"https://__1\" title=\"go to __1\">__1</a></em>[u][i]1[del][quote]<br />_abcde.",
+		  "https://__1</em>[u][i]1[del][quote] _abcde." },
+		{ ">[/del]href=\"__",
+		  ">[/del]href=\"__",
+		  ">[/del]href=\"__" },
+		{ "'__[/quote][b]mailto://[/del]",
+		  "'__[/quote][b]<a class=\"link\" href=\"mailto://[/del]\" title=\"go to [/del]\">[/del]</a>",
+		  "'__[/quote][b]mailto://[/del]" },
+		{ "{ftp://ahref=\"\u2028[/code]1[i]_[/u]\u0085",
+		  "{<a class=\"link\" href=\"ftp://ahref=\"\u2028[/code]1[i]_[/u]\u0085\" title=\"go to ahref=\"\u2028[/code]1[i]_[/u]\u0085\">ahref=\"\u2028[/code]1[i]_[/u]\u0085</a>",
+		  "{ftp://ahref=\"\u2028[/code]1[i]_[/u]\u0085" },
+		{ "**[l:\u0085/[u][quote]",
+		  "**[l:\u0085/[u][quote]",
+		  "**[l:\u0085/[u][quote]" },
+		{ ";mailto://@xxyABCDEhttp://[quote][/i][/quote][L:https://|</em>",
+		  ";<a class=\"link\" href=\"mailto://@xxyABCDEhttp://\" title=\"go to @xxyABCDEhttp://\">@xxyABCDEhttp://</a><blockquote>[/i]</blockquote>[L:https://|</em>",
+		  ";mailto:// <i>@xxyABCDEhttp</i>://[/i][L:https://|</em>" },
+		{ "HTTP://a__HTTP://HTTP://",
+		  "HTTP://a__HTTP://HTTP://",
+		  "HTTP://a__HTTP://HTTP://" },
+		{ "[l:\u0085a[quote]ftp://[/u][l: \u0085ABCDE",
+		  "[l:\u0085a[quote]<a class=\"link\" href=\"ftp://[/u][l:\" title=\"go to [/u][l:\">[/u][l:</a> \u0085ABCDE",
+		  "[l:\u0085a[quote]ftp://[/u][l: \u0085ABCDE" },
+		{ "[/b]@a[b].._http://[code]\u2028_|",
+		  "[/b]@a[b].._<a class=\"link\" href=\"http://[code]\u2028_\" title=\"go to [code]\u2028_\">[code]\u2028_</a>|",
+		  "[/b]@a[b].._http://[code]\u2028_|" },
+		{ "[u]1mailto://{[/i]</em>[b][l:[/del]",
+		  "[u]1<a class=\"link\" href=\"mailto://{[/i]\" title=\"go to {[/i]\">{[/i]</a></em>[b][l:[/del]",
+		  "[u]1mailto://{[/i]</em>[b][l:[/del]" },
+		{ "]%]]/@1[del]xy",
+		  "]&#037;]]/@1[del]xy",
+		  "]&#037;]]/@1[del]xy" },
+		{ "'http://xy[/quote]<__[L:<em>[/b]xy\r\n%",
+		  "'<a class=\"link\" href=\"http://xy[/quote]\" title=\"go to xy[/quote]\">xy[/quote]</a><__[L:<em>[/b]xy<br />&#037;",
+		  "'http://xy[/quote]<__[L:<em>[/b]xy &#037;" },
+		{ "href=\"</em></em>_</em>\r\n[del]__",
+		  "href=\"</em></em>_</em><br />[del]__",
+		  "href=\"</em></em>_</em> [del]__" },
+		{ "[/del].[l:.>",
+		  "[/del].[l:.>",
+		  "[/del].[l:.>" },
+		{ "\u2028[l:[i]a[L:[/b][/code].1mailto://",
+		  "\u2028[l:[i]a[L:[/b][/code].1mailto://",
+		  "\u2028[l:[i]a[L:[/b][/code].1mailto://" },
+		{ "%{[/u][/code]\r\n**",
+		  "&#037;{[/u][/code]<br />**",
+		  "&#037;{[/u][/code] **" },
+		{ "[del]ftp://[l:[i]\u0085<[code]",
+		  "[del]<a class=\"link\" href=\"ftp://[l:[i]\u0085\" title=\"go to [l:[i]\u0085\">[l:[i]\u0085</a><[code]",
+		  "[del]ftp://[l:[i]\u0085<[code]" },
+		{ "[/b][/quote]__>",
+		  "[/b][/quote]__>",
+		  "[/b][/quote]__>" },
+		{ "__[/del]<em>[i][i][u]",
+		  "__[/del]<em>[i][i][u]",
+		  "__[/del]<em>[i][i][u]" },
+		{ "mailto://<[/i]abcdehref=\"href=\"@x[l:ABCDE\u0085",
+		  "mailto://<[/i]abcdehref=\"href=\"@x[l:ABCDE\u0085",
+		  "mailto://<[/i]abcdehref=\"href=\"@x[l:ABCDE\u0085" },
+		{ "href=\"\u2028[/b]href=\"__[i]",
+		  "href=\"\u2028[/b]href=\"__[i]",
+		  "href=\"\u2028[/b]href=\"__[i]" },
+		{ "[/code]/[/i][i]ABCDE[L:\r\n[b]",
+		  "[/code]/[/i][i]ABCDE[L:<br />[b]",
+		  "[/code]/[/i][i]ABCDE[L: [b]" },
+		{ "\u2028@[quote][u]/ABCDE[i]__\u2028",
+		  "\u2028@[quote][u]/ABCDE[i]__\u2028",
+		  "\u2028@[quote][u]/ABCDE[i]__\u2028" },
+		{ "][del]<[/i][L:[L:|https://",
+		  "][del]<[/i][L:[L:|https://",
+		  "][del]<[/i][L:[L:|https://" },
+		{ "_\n[i][del]\nmailto://\n[/del]%|[/u][/del]ABCDE",
+		  "_<br />[i]<del><br />mailto://<br /></del>&#037;|[/u][/del]ABCDE",
+		  "_ [i]<del> mailto:// </del>&#037;|[/u][/del]ABCDE" },
+		{ "http://|}[/quote] [/del]**ftp://@[/code]http://</em>",
+		  "http://|}[/quote] [/del]**<a class=\"link\" href=\"ftp://@[/code]http://\" title=\"go to @[/code]http://\">@[/code]http://</a></em>",
+		  "http://|}[/quote] [/del]**ftp://@[/code]http://</em>" },
+		{ "[b]abcdehttps://HTTP://",
+		  "[b]abcde<a class=\"link\" href=\"https://HTTP://\" title=\"go to HTTP://\">HTTP://</a>",
+		  "[b]abcdehttps://HTTP://" },
+		{ "[quote][code].]",
+		  "[quote][code].]",
+		  "[quote][code].]" },
+		{ ">[/quote][/b][/del]|[/b]xy[b]._mailto://",
+		  ">[/quote][/b][/del]|[/b]xy[b]._mailto://",
+		  ">[/quote][/b][/del]|[/b]xy[b]._mailto://" },
+		{ "a[/b]__[/u]mailto://ABCDE[/code]@xABCDE[del]http://\u00851",
+		  "a[/b]__[/u]<a class=\"link\" href=\"mailto://ABCDE[/code]@xABCDE[del]http://\u00851\" title=\"go to ABCDE[/code]@xABCDE[del]http://\u00851\">ABCDE[/code]@xABCDE[del]http://\u00851</a>",
+		  "a[/b]__[/u]mailto://ABCDE[/code] <i>@xABCDE</i>[del]http://\u00851" },
+		{ "}[u]xy]<em>[del]href=\"https://[quote]\n__",
+		  "}[u]xy]<em>[del]href=\"https://[quote]<br />__",
+		  "}[u]xy]<em>[del]href=\"https://[quote] __" },
+		{ "href=\"@[L:http://",
+		  "href=\"@[L:http://",
+		  "href=\"@[L:http://" }
+	};
+
+	private static final String[][] FIXED = {
+		// the url followed a link: the previous chain leaked its placeholder into the url
+		{ "http://a.com[l:http://b.com|b]",
+		  "<a class=\"link\" href=\"http://a.com\" title=\"go to a.com\">a.com</a><a class=\"link\" href=\"http://b.com\" title=\"go to b\">b</a>",
+		  "http://a.com<i>b</i>" },
+		// a url inside the url of a link: the previous chain nested an anchor into the href
+		{ "[l:http://a.com/http://b.com|label]",
+		  "<a class=\"link\" href=\"http://a.com/http://b.com\" title=\"go to label\">label</a>",
+		  "<i>label</i>" },
+		// a url inside the text of a link: the previous chain nested an anchor into the title
+		{ "[l:http://a.com|vai su http://b.com]",
+		  "<a class=\"link\" href=\"http://a.com\" title=\"go to vai su http://b.com\">vai su http://b.com</a>",
+		  "<i>vai su http://b.com</i>" },
+		// a placeholder typed by the user: the previous chain decoded it
+		{ "{mds:aGVsbG8=} non decodificato",
+		  "{mds:aGVsbG8=} non decodificato",
+		  "{mds:aGVsbG8=} non decodificato" }
+	};
+}